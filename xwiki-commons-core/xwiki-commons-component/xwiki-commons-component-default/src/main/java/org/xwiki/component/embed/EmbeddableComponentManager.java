@@ -29,6 +29,7 @@
 import java.util.Objects;
 import java.util.ServiceLoader;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Provider;
 
@@ -53,6 +54,11 @@
 
 /**
  * Simple implementation of {@link ComponentManager} to be used when using some XWiki modules standalone.
+ * <p>
+ * Components are indexed by role and then by hint so that looking up a component does not allocate anything and
+ * listing the components of a role does not go through all the registered components. Components which cannot be
+ * found in this component manager nor in its parents are remembered until a component is registered or unregistered
+ * in any {@link EmbeddableComponentManager}.
  *
  * @version $Id$
  * @since 2.0M1
@@ -64,6 +70,20 @@ public class EmbeddableComponentManager implements NamespacedComponentManager, D
      */
     private static final Logger SHUTDOWN_LOGGER = LoggerFactory.getLogger("org.xwiki.shutdown");
 
+    private static final String DEFAULT_HINT = "default";
+
+    /**
+     * The maximum number of roles for which missing components are remembered.
+     */
+    private static final int MISSING_CACHE_SIZE = 1000;
+
+    /**
+     * Incremented each time a component is registered or unregistered in any {@link EmbeddableComponentManager} (at
+     * the same time the {@code ComponentDescriptorAddedEvent} and {@code ComponentDescriptorRemovedEvent} events are
+     * sent), used to invalidate the missing components.
+     */
+    private static final AtomicLong GENERATION = new AtomicLong();
+
     /**
      * @see #getNamespace()
      */
@@ -78,6 +98,11 @@ public class EmbeddableComponentManager implements NamespacedComponentManager, D
 
     private static class ComponentEntry<R>
     {
+        /**
+         * The role and hint under which the component is registered.
+         */
+        public final RoleHint<R> roleHint;
+
         /**
          * Descriptor of the component.
          */
@@ -91,14 +116,24 @@ public class EmbeddableComponentManager implements NamespacedComponentManager, D
          */
         public volatile R instance;
 
-        public ComponentEntry(ComponentDescriptor<R> descriptor, R instance)
+        public ComponentEntry(RoleHint<R> roleHint, ComponentDescriptor<R> descriptor, R instance)
         {
+            this.roleHint = roleHint;
             this.descriptor = descriptor;
             this.instance = instance;
         }
     }
 
-    private Map<RoleHint<?>, ComponentEntry<?>> componentEntries = new ConcurrentHashMap<>();
+    /**
+     * The registered components by role and hint.
+     */
+    private Map<Type, Map<String, ComponentEntry<?>>> componentEntries = new ConcurrentHashMap<>();
+
+    /**
+     * The components (by role and hint) which cannot be found in this component manager nor in its parents, associated
+     * to the {@link #GENERATION} at the time it was checked.
+     */
+    private Map<Type, Map<String, Long>> missingComponents = new ConcurrentHashMap<>();
 
     private Logger logger = LoggerFactory.getLogger(EmbeddableComponentManager.class);
 
@@ -162,32 +197,110 @@ public void initialize(ClassLoader classLoader)
         }
     }
 
+    private static String getHint(String hint)
+    {
+        return hint != null ? hint : DEFAULT_HINT;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> ComponentEntry<T> getComponentEntry(Type role, String hint)
+    {
+        Map<String, ComponentEntry<?>> roleEntries = this.componentEntries.get(role);
+
+        return roleEntries != null ? (ComponentEntry<T>) roleEntries.get(getHint(hint)) : null;
+    }
+
+    private List<ComponentEntry<?>> getComponentEntries()
+    {
+        List<ComponentEntry<?>> entries = new ArrayList<>();
+
+        for (Map<String, ComponentEntry<?>> roleEntries : this.componentEntries.values()) {
+            entries.addAll(roleEntries.values());
+        }
+
+        return entries;
+    }
+
+    /**
+     * @return true if the missing components of this component manager can be remembered, i.e. it's possible to know
+     *         when a component is added to one of its parents
+     */
+    private boolean isMissingCacheable()
+    {
+        ComponentManager parentComponentManager = getParent();
+
+        return parentComponentManager == null || (parentComponentManager instanceof EmbeddableComponentManager
+            && ((EmbeddableComponentManager) parentComponentManager).isMissingCacheable());
+    }
+
+    private boolean isMissing(Type role, String hint)
+    {
+        Map<String, Long> roleMissingComponents = this.missingComponents.get(role);
+
+        if (roleMissingComponents != null) {
+            Long generation = roleMissingComponents.get(getHint(hint));
+
+            return generation != null && generation.longValue() == GENERATION.get();
+        }
+
+        return false;
+    }
+
+    /**
+     * @param role the role of the missing component
+     * @param hint the hint of the missing component
+     * @param generation the {@link #GENERATION} before checking that the component is missing
+     */
+    private void setMissing(Type role, String hint, long generation)
+    {
+        if (isMissingCacheable()) {
+            if (this.missingComponents.size() > MISSING_CACHE_SIZE) {
+                this.missingComponents.clear();
+            }
+
+            this.missingComponents.computeIfAbsent(role, k -> new ConcurrentHashMap<>()).put(getHint(hint),
+                generation);
+        }
+    }
+
     @Override
     public boolean hasComponent(Type role)
     {
-        return hasComponent(role, "default");
+        return hasComponent(role, DEFAULT_HINT);
     }
 
     @Override
     public boolean hasComponent(Type role, String hint)
     {
-        if (this.componentEntries.containsKey(new RoleHint<>(role, hint))) {
+        if (getComponentEntry(role, hint) != null) {
+            return true;
+        }
+
+        if (isMissing(role, hint)) {
+            return false;
+        }
+
+        long generation = GENERATION.get();
+
+        if (getParent() != null && getParent().hasComponent(role, hint)) {
             return true;
         }
 
-        return getParent() != null ? getParent().hasComponent(role, hint) : false;
+        setMissing(role, hint, generation);
+
+        return false;
     }
 
     @Override
     public <T> T getInstance(Type roleType) throws ComponentLookupException
     {
-        return getComponentInstance(new RoleHint<T>(roleType));
+        return getComponentInstance(roleType, DEFAULT_HINT);
     }
 
     @Override
     public <T> T getInstance(Type roleType, String roleHint) throws ComponentLookupException
     {
-        return getComponentInstance(new RoleHint<T>(roleType, roleHint));
+        return getComponentInstance(roleType, roleHint);
     }
 
     @Override
@@ -206,14 +319,13 @@ public <T> Map<String, T> getInstanceMap(Type role) throws ComponentLookupExcept
     {
         Map<String, T> objects = new HashMap<>();
 
-        for (Map.Entry<RoleHint<?>, ComponentEntry<?>> entry : this.componentEntries.entrySet()) {
-            RoleHint<?> roleHint = entry.getKey();
-
-            if (role.equals(roleHint.getRoleType())) {
+        Map<String, ComponentEntry<?>> roleEntries = this.componentEntries.get(role);
+        if (roleEntries != null) {
+            for (ComponentEntry<?> entry : roleEntries.values()) {
                 try {
-                    objects.put(roleHint.getHint(), getComponentInstance((ComponentEntry<T>) entry.getValue()));
+                    objects.put(entry.roleHint.getHint(), getComponentInstance((ComponentEntry<T>) entry));
                 } catch (Exception e) {
-                    throw new ComponentLookupException("Failed to lookup component [" + roleHint + "]", e);
+                    throw new ComponentLookupException("Failed to lookup component [" + entry.roleHint + "]", e);
                 }
             }
         }
@@ -236,7 +348,7 @@ public <T> Map<String, T> getInstanceMap(Type role) throws ComponentLookupExcept
     public <T> ComponentDescriptor<T> getComponentDescriptor(Type role, String hint)
     {
         ComponentDescriptor<T> result = null;
-        ComponentEntry<T> componentEntry = (ComponentEntry<T>) this.componentEntries.get(new RoleHint<T>(role, hint));
+        ComponentEntry<T> componentEntry = getComponentEntry(role, hint);
         if (componentEntry == null) {
             // Check in parent!
             if (getParent() != null) {
@@ -255,9 +367,10 @@ public <T> List<ComponentDescriptor<T>> getComponentDescriptorList(Type role)
     {
         Map<String, ComponentDescriptor<T>> descriptors = new HashMap<>();
 
-        for (Map.Entry<RoleHint<?>, ComponentEntry<?>> entry : this.componentEntries.entrySet()) {
-            if (entry.getKey().getRoleType().equals(role)) {
-                descriptors.put(entry.getKey().getHint(), (ComponentDescriptor<T>) entry.getValue().descriptor);
+        Map<String, ComponentEntry<?>> roleEntries = this.componentEntries.get(role);
+        if (roleEntries != null) {
+            for (ComponentEntry<?> entry : roleEntries.values()) {
+                descriptors.put(entry.roleHint.getHint(), (ComponentDescriptor<T>) entry.descriptor);
             }
         }
 
@@ -297,6 +410,9 @@ public ComponentManager getParent()
     public void setParent(ComponentManager parentComponentManager)
     {
         this.parent = parentComponentManager;
+
+        // The missing components depend on the parent
+        this.missingComponents.clear();
     }
 
     private <T> T createInstance(ComponentDescriptor<T> descriptor) throws Exception
@@ -380,25 +496,46 @@ protected Object createLogger(Class<?> instanceClass)
         return LoggerFactory.getLogger(instanceClass);
     }
 
-    @SuppressWarnings("unchecked")
     protected <T> T getComponentInstance(RoleHint<T> roleHint) throws ComponentLookupException
+    {
+        return getComponentInstance(roleHint.getRoleType(), roleHint.getHint());
+    }
+
+    private <T> T getComponentInstance(Type role, String hint) throws ComponentLookupException
     {
         T instance;
 
-        ComponentEntry<T> componentEntry = (ComponentEntry<T>) this.componentEntries.get(roleHint);
+        ComponentEntry<T> componentEntry = getComponentEntry(role, hint);
 
         if (componentEntry != null) {
             try {
                 instance = getComponentInstance(componentEntry);
             } catch (Throwable e) {
                 throw new ComponentLookupException(String.format("Failed to lookup component [%s] identified by [%s]",
-                    componentEntry.descriptor.getImplementation().getName(), roleHint.toString()), e);
+                    componentEntry.descriptor.getImplementation().getName(), componentEntry.roleHint.toString()), e);
             }
+        } else if (isMissing(role, hint)) {
+            throw new ComponentLookupException(
+                "Can't find descriptor for the component [" + new RoleHint<>(role, hint) + "]");
         } else {
+            long generation = GENERATION.get();
+
             if (getParent() != null) {
-                instance = getParent().getInstance(roleHint.getRoleType(), roleHint.getHint());
+                try {
+                    instance = getParent().getInstance(role, hint);
+                } catch (ComponentLookupException e) {
+                    // Remember the component if it's really missing (and not just failing)
+                    if (!getParent().hasComponent(role, hint)) {
+                        setMissing(role, hint, generation);
+                    }
+
+                    throw e;
+                }
             } else {
-                throw new ComponentLookupException("Can't find descriptor for the component [" + roleHint + "]");
+                setMissing(role, hint, generation);
+
+                throw new ComponentLookupException(
+                    "Can't find descriptor for the component [" + new RoleHint<>(role, hint) + "]");
             }
         }
 
@@ -460,10 +597,14 @@ public <T> void registerComponent(ComponentDescriptor<T> componentDescriptor, T
 
     private <T> void addComponent(RoleHint<T> roleHint, ComponentDescriptor<T> descriptor, T instance)
     {
-        ComponentEntry<T> componentEntry = new ComponentEntry<T>(descriptor, instance);
+        ComponentEntry<T> componentEntry = new ComponentEntry<T>(roleHint, descriptor, instance);
 
         // Register new component
-        this.componentEntries.put(roleHint, componentEntry);
+        this.componentEntries.computeIfAbsent(roleHint.getRoleType(), k -> new ConcurrentHashMap<>())
+            .put(roleHint.getHint(), componentEntry);
+
+        // Forget missing components
+        GENERATION.incrementAndGet();
 
         // Send event about component registration
         if (this.eventManager != null) {
@@ -496,10 +637,10 @@ public void release(Object component) throws ComponentLifecycleException
         // First find the descriptor matching the passed component
         RoleHint<?> key = null;
         ComponentDescriptor<?> oldDescriptor = null;
-        for (Map.Entry<RoleHint<?>, ComponentEntry<?>> entry : this.componentEntries.entrySet()) {
-            if (entry.getValue().instance == component) {
-                key = entry.getKey();
-                oldDescriptor = entry.getValue().descriptor;
+        for (ComponentEntry<?> entry : getComponentEntries()) {
+            if (entry.instance == component) {
+                key = entry.roleHint;
+                oldDescriptor = entry.descriptor;
                 break;
             }
         }
@@ -546,9 +687,13 @@ private void removeComponent(RoleHint<?> roleHint) throws ComponentLifecycleExce
     {
         // Make sure to remove the entry from the map before destroying it to reduce at the minimum the risk of
         // lookupping something invalid
-        ComponentEntry<?> componentEntry = this.componentEntries.remove(roleHint);
+        Map<String, ComponentEntry<?>> roleEntries = this.componentEntries.get(roleHint.getRoleType());
+        ComponentEntry<?> componentEntry = roleEntries != null ? roleEntries.remove(roleHint.getHint()) : null;
 
         if (componentEntry != null) {
+            // Forget missing components
+            GENERATION.incrementAndGet();
+
             ComponentDescriptor<?> oldDescriptor = componentEntry.descriptor;
 
             // We don't want the component manager to dispose itself just because it's not registered as component*
@@ -584,7 +729,7 @@ private int sortEntry(List<RoleHint<?>> keys, int index)
         int newIndex = index;
 
         RoleHint<?> key = keys.get(index);
-        ComponentEntry<?> componentEntry = this.componentEntries.get(key);
+        ComponentEntry<?> componentEntry = getComponentEntry(key.getRoleType(), key.getHint());
 
         for (ComponentDependency<?> dependency : componentEntry.descriptor.getComponentDependencies()) {
             RoleHint<?> dependencyRole = new RoleHint<Object>(dependency.getRoleType(), dependency.getRoleHint());
@@ -609,11 +754,14 @@ private int sortEntry(List<RoleHint<?>> keys, int index)
     @Override
     public void dispose()
     {
-        List<RoleHint<?>> keys = new ArrayList<>(this.componentEntries.keySet());
+        List<RoleHint<?>> keys = new ArrayList<>();
+        for (ComponentEntry<?> entry : getComponentEntries()) {
+            keys.add(entry.roleHint);
+        }
 
         // Exclude this component
         RoleHint<ComponentManager> cmRoleHint = new RoleHint<>(ComponentManager.class);
-        ComponentEntry<?> cmEntry = this.componentEntries.get(cmRoleHint);
+        ComponentEntry<?> cmEntry = getComponentEntry(ComponentManager.class, null);
         if (cmEntry != null && cmEntry.instance == this) {
             keys.remove(cmRoleHint);
         }
@@ -634,7 +782,7 @@ public int compare(RoleHint<?> rh1, RoleHint<?> rh2)
 
             private int getPriority(RoleHint<?> rh)
             {
-                Object instance = componentEntries.get(rh).instance;
+                Object instance = getComponentEntry(rh.getRoleType(), rh.getHint()).instance;
                 if (instance == null) {
                     // The component has not been instantiated yet. We don't need to dispose it in this case... :)
                     // Return the default priority since it doesn't matter.
@@ -648,7 +796,7 @@ private int getPriority(RoleHint<?> rh)
 
         // Dispose old components
         for (RoleHint<?> key : keys) {
-            ComponentEntry<?> componentEntry = this.componentEntries.get(key);
+            ComponentEntry<?> componentEntry = getComponentEntry(key.getRoleType(), key.getHint());
 
             synchronized (componentEntry) {
                 Object instance = componentEntry.instance;
@@ -672,8 +820,13 @@ private int getPriority(RoleHint<?> rh)
         // components that have to use a component already disposed (usually because it dynamically requires it and
         // there is no way for the ComponentManager to know that dependency).
         for (RoleHint<?> key : keys) {
-            this.componentEntries.remove(key);
+            Map<String, ComponentEntry<?>> roleEntries = this.componentEntries.get(key.getRoleType());
+            if (roleEntries != null) {
+                roleEntries.remove(key.getHint());
+            }
         }
+
+        GENERATION.incrementAndGet();
     }
 
     // Deprecated
@@ -684,9 +837,9 @@ private int getPriority(RoleHint<?> rh)
     public <T> List<ComponentDescriptor<T>> getComponentDescriptorList(Class<T> role)
     {
         List<ComponentDescriptor<T>> results = new ArrayList<>();
-        for (Map.Entry<RoleHint<?>, ComponentEntry<?>> entry : this.componentEntries.entrySet()) {
-            if (entry.getKey().getRoleClass() == role) {
-                results.add((ComponentDescriptor<T>) entry.getValue().descriptor);
+        for (ComponentEntry<?> entry : getComponentEntries()) {
+            if (entry.roleHint.getRoleClass() == role) {
+                results.add((ComponentDescriptor<T>) entry.descriptor);
             }
         }
         return results;
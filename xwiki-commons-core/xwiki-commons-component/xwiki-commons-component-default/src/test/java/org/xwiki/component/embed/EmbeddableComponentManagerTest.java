@@ -274,6 +274,48 @@ public void testGetInstanceWhenComponentInParent() throws Exception
         Assert.assertNotNull(instance);
     }
 
+    @Test
+    public void getInstanceWhenComponentRegisteredInParentAfterMissingLookup() throws Exception
+    {
+        EmbeddableComponentManager parent = new EmbeddableComponentManager();
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+        ecm.setParent(parent);
+
+        Assert.assertFalse(ecm.hasComponent(Role.class, "hint"));
+        try {
+            ecm.getInstance(Role.class, "hint");
+            Assert.fail("Should have thrown a ComponentLookupException");
+        } catch (ComponentLookupException expected) {
+            // Expected
+        }
+
+        DefaultComponentDescriptor<Role> cd = new DefaultComponentDescriptor<Role>();
+        cd.setRoleType(Role.class);
+        cd.setRoleHint("hint");
+        cd.setImplementation(RoleImpl.class);
+        parent.registerComponent(cd);
+
+        Assert.assertTrue(ecm.hasComponent(Role.class, "hint"));
+        Assert.assertNotNull(ecm.getInstance(Role.class, "hint"));
+
+        parent.unregisterComponent(Role.class, "hint");
+
+        Assert.assertFalse(ecm.hasComponent(Role.class, "hint"));
+    }
+
+    @Test
+    public void getInstanceWhenParentChangedAfterMissingLookup() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        Assert.assertFalse(ecm.hasComponent(Role.class));
+
+        ecm.setParent(createParentComponentManager());
+
+        Assert.assertTrue(ecm.hasComponent(Role.class));
+        Assert.assertNotNull(ecm.getInstance(Role.class));
+    }
+
     @Test
     public void testGetInstanceListAndMapWhenSomeComponentsInParent() throws Exception
     {
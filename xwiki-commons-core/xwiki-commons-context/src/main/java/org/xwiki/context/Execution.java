@@ -19,6 +19,8 @@
  */
 package org.xwiki.context;
 
+import java.util.concurrent.Callable;
+
 import org.xwiki.component.annotation.Role;
 
 /**
@@ -54,4 +56,60 @@
      * Remove all context levels for the current thread.
      */
     void removeContext();
+
+    /**
+     * Execute the provided code with the provided context as current context of the current thread. The context is
+     * pushed before and popped after the execution, whatever the execution did.
+     *
+     * @param <V> the type of the result
+     * @param context the context to use during the execution
+     * @param callable the code to execute
+     * @return the result of the execution
+     * @throws Exception when the execution fails
+     * @since 8.3RC1
+     */
+    default <V> V call(ExecutionContext context, Callable<V> callable) throws Exception
+    {
+        pushContext(context);
+
+        try {
+            return callable.call();
+        } finally {
+            popContext();
+        }
+    }
+
+    /**
+     * Execute the provided code with the provided context as current context of the current thread. The context is
+     * pushed before and popped after the execution, whatever the execution did.
+     *
+     * @param context the context to use during the execution
+     * @param runnable the code to execute
+     * @since 8.3RC1
+     */
+    default void run(ExecutionContext context, Runnable runnable)
+    {
+        pushContext(context);
+
+        try {
+            runnable.run();
+        } finally {
+            popContext();
+        }
+    }
+
+    /**
+     * Same as {@link #run(ExecutionContext, Runnable)} but the provided context is used as is instead of inheriting
+     * from the current context of the current thread. Meant for contexts which already inherited from the right
+     * context (for example in the thread which created an asynchronous task). Implementations which don't support it
+     * fall back on {@link #run(ExecutionContext, Runnable)}.
+     *
+     * @param context the context to use during the execution
+     * @param runnable the code to execute
+     * @since 8.3RC1
+     */
+    default void runWithoutInheritance(ExecutionContext context, Runnable runnable)
+    {
+        run(context, runnable);
+    }
 }
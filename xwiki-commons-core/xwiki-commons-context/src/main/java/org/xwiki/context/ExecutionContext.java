@@ -19,6 +19,7 @@
  */
 package org.xwiki.context;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -29,6 +30,10 @@
 /**
  * Contains all state data related to the current user action. Note that the execution context is independent of the
  * environment and all environment-dependent data are stored in the Container component instead.
+ * <p>
+ * The inherited properties are not copied: a context reads through the (never modified) properties inherited from its
+ * parent and only copies a property when it's modified. Property instances shared with another context are never
+ * modified in place.
  *
  * @version $Id$
  * @since 1.5M2
@@ -39,9 +44,101 @@
     private static final Logger LOGGER = LoggerFactory.getLogger(ExecutionContext.class);
 
     /**
+     * Used when there is no property to avoid allocating a map for each context.
+     */
+    private static final Map<String, ExecutionContextProperty> NO_PROPERTIES = Collections.emptyMap();
+
+    /**
+     * A set of properties which is never modified.
+     */
+    private static final class Layer
+    {
+        private static final Layer EMPTY = new Layer(NO_PROPERTIES, false);
+
+        private final Map<String, ExecutionContextProperty> properties;
+
+        /**
+         * True if some of the properties values need to be cloned when inherited.
+         */
+        private final boolean clonedValues;
+
+        Layer(Map<String, ExecutionContextProperty> properties, boolean clonedValues)
+        {
+            this.properties = properties;
+            this.clonedValues = clonedValues;
+        }
+    }
+
+    /**
+     * The properties declared or modified in this context. They override the inherited ones.
+     *
      * @see #getProperty(String)
      */
-    private Map<String, ExecutionContextProperty> properties = new HashMap<String, ExecutionContextProperty>();
+    private Map<String, ExecutionContextProperty> properties = NO_PROPERTIES;
+
+    /**
+     * The properties inherited from the parent context.
+     */
+    private Layer inheritedProperties = Layer.EMPTY;
+
+    /**
+     * The properties to inherit in children contexts, null if it needs to be computed.
+     */
+    private Layer inheritableProperties;
+
+    /**
+     * True if the {@link #properties} map is also used by another context.
+     */
+    private boolean propertiesMapShared;
+
+    /**
+     * True if some of the {@link #properties} instances can be referenced by another context.
+     */
+    private boolean propertiesShared;
+
+    /**
+     * @param key the key of the property
+     * @return the property or null if no property exist for the passed key
+     */
+    private ExecutionContextProperty getExecutionContextProperty(String key)
+    {
+        ExecutionContextProperty property = this.properties.get(key);
+
+        return property != null ? property : this.inheritedProperties.properties.get(key);
+    }
+
+    /**
+     * @return the properties of this context, ready to be modified
+     */
+    private Map<String, ExecutionContextProperty> getModifiableProperties()
+    {
+        if (this.propertiesMapShared || this.properties == NO_PROPERTIES) {
+            this.properties = new HashMap<String, ExecutionContextProperty>(this.properties);
+            this.propertiesMapShared = false;
+        }
+
+        this.inheritableProperties = null;
+
+        return this.properties;
+    }
+
+    /**
+     * Copy the inherited properties in this context properties.
+     */
+    private void flatten()
+    {
+        if (!this.inheritedProperties.properties.isEmpty()) {
+            Map<String, ExecutionContextProperty> merged =
+                new HashMap<String, ExecutionContextProperty>(this.inheritedProperties.properties);
+            merged.putAll(this.properties);
+
+            this.properties = merged;
+            this.propertiesMapShared = false;
+            this.propertiesShared = true;
+            this.inheritedProperties = Layer.EMPTY;
+            this.inheritableProperties = null;
+        }
+    }
 
     /**
      * @param key the key under which is stored the property to retrieve
@@ -49,7 +146,7 @@
      */
     public Object getProperty(String key)
     {
-        ExecutionContextProperty property = this.properties.get(key);
+        ExecutionContextProperty property = getExecutionContextProperty(key);
 
         if (property == null) {
             LOGGER.debug("Getting undefined property {} from execution context.", key);
@@ -75,7 +172,7 @@ public DeclarationBuilder newProperty(String key)
      */
     public boolean hasProperty(String key)
     {
-        return this.properties.containsKey(key);
+        return this.properties.containsKey(key) || this.inheritedProperties.properties.containsKey(key);
     }
 
     /**
@@ -85,6 +182,9 @@ public Map<String, Object> getProperties()
     {
         Map<String, Object> map = new HashMap<String, Object>();
 
+        for (Map.Entry<String, ExecutionContextProperty> entry : this.inheritedProperties.properties.entrySet()) {
+            map.put(entry.getKey(), entry.getValue().getValue());
+        }
         for (Map.Entry<String, ExecutionContextProperty> entry : this.properties.entrySet()) {
             map.put(entry.getKey(), entry.getValue().getValue());
         }
@@ -97,13 +197,20 @@ public Map<String, Object> getProperties()
      */
     public void removeProperty(String key)
     {
-        ExecutionContextProperty property = this.properties.get(key);
+        ExecutionContextProperty property = getExecutionContextProperty(key);
 
         if (property != null && property.isFinal()) {
             throw new PropertyIsFinalException(key);
         }
 
-        this.properties.remove(key);
+        // Inherited properties cannot be removed from the inherited layer
+        if (this.inheritedProperties.properties.containsKey(key)) {
+            flatten();
+        }
+
+        if (this.properties.containsKey(key)) {
+            getModifiableProperties().remove(key);
+        }
     }
 
     /**
@@ -114,15 +221,29 @@ public void setProperty(String key, Object value)
     {
         ExecutionContextProperty property = this.properties.get(key);
 
-        if (property == null) {
-            LOGGER.debug("Implicit declaration of property {}.", key);
-            newProperty(key).declare();
-            property = this.properties.get(key);
-        } else if (property.isFinal()) {
-            throw new PropertyIsFinalException(key);
-        }
+        if (property != null) {
+            if (property.isFinal()) {
+                throw new PropertyIsFinalException(key);
+            }
 
-        property.setValue(value);
+            if (this.propertiesShared) {
+                getModifiableProperties().put(key, property.withValue(value));
+            } else {
+                property.setValue(value);
+            }
+        } else {
+            property = this.inheritedProperties.properties.get(key);
+
+            if (property == null) {
+                LOGGER.debug("Implicit declaration of property {}.", key);
+                newProperty(key).initial(value).declare();
+            } else if (property.isFinal()) {
+                throw new PropertyIsFinalException(key);
+            } else {
+                // Copy on write
+                getModifiableProperties().put(key, property.withValue(value));
+            }
+        }
     }
 
     /**
@@ -144,11 +265,11 @@ public void setProperties(Map<String, Object> properties)
      */
     private void declareProperty(ExecutionContextProperty property)
     {
-        if (this.properties.containsKey(property.getKey())) {
+        if (hasProperty(property.getKey())) {
             throw new PropertyAlreadyExistsException(property.getKey());
         }
 
-        this.properties.put(property.getKey(), property);
+        getModifiableProperties().put(property.getKey(), property);
     }
 
     /**
@@ -169,15 +290,101 @@ private void declareProperty(ExecutionContextProperty property)
      */
     public void inheritFrom(ExecutionContext executionContext)
     {
-        for (ExecutionContextProperty property : executionContext.properties.values()) {
-            if (property.isInherited()) {
-                if (this.properties.containsKey(property.getKey())) {
-                    checkIfInheritedPropertyMayBeIgnored(property);
-                } else {
-                    declareProperty(property.clone());
+        Layer layer = executionContext.getInheritableProperties();
+
+        if (layer.properties.isEmpty()) {
+            return;
+        }
+
+        // Only one layer of inherited properties is supported
+        flatten();
+
+        for (ExecutionContextProperty property : this.properties.values()) {
+            ExecutionContextProperty inheritedProperty = layer.properties.get(property.getKey());
+            if (inheritedProperty != null) {
+                checkIfInheritedPropertyMayBeIgnored(inheritedProperty);
+            }
+        }
+
+        this.inheritedProperties = layer;
+        this.inheritableProperties = null;
+
+        // Values which need to be cloned cannot be shared
+        if (layer.clonedValues) {
+            for (ExecutionContextProperty property : layer.properties.values()) {
+                if (property.isCloneValue() && !this.properties.containsKey(property.getKey())) {
+                    getModifiableProperties().put(property.getKey(), property.clone());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the properties to inherit in children contexts
+     */
+    private Layer getInheritableProperties()
+    {
+        if (this.inheritableProperties == null) {
+            boolean modified = false;
+            for (ExecutionContextProperty property : this.properties.values()) {
+                if (property.isInherited() || this.inheritedProperties.properties.containsKey(property.getKey())) {
+                    modified = true;
+                    break;
+                }
+            }
+
+            if (modified) {
+                Map<String, ExecutionContextProperty> map = new HashMap<String, ExecutionContextProperty>();
+                boolean clonedValues = false;
+
+                for (ExecutionContextProperty property : this.inheritedProperties.properties.values()) {
+                    if (!this.properties.containsKey(property.getKey())) {
+                        map.put(property.getKey(), property);
+                        clonedValues |= property.isCloneValue();
+                    }
+                }
+                for (ExecutionContextProperty property : this.properties.values()) {
+                    if (property.isInherited()) {
+                        map.put(property.getKey(), property);
+                        clonedValues |= property.isCloneValue();
+                    }
                 }
+
+                this.inheritableProperties = new Layer(Collections.unmodifiableMap(map), clonedValues);
+
+                // Some of this context properties are now referenced by the children contexts
+                this.propertiesShared = true;
+            } else {
+                // Nothing changed: children can read through the same properties
+                this.inheritableProperties = this.inheritedProperties;
             }
         }
+
+        return this.inheritableProperties;
+    }
+
+    /**
+     * Create a copy of this context in constant time, for example to hand it off to a background task. The two
+     * contexts share their properties until one of them modifies it (the values themselves are not cloned).
+     *
+     * @return a copy of this context
+     * @since 8.3RC1
+     */
+    public ExecutionContext snapshot()
+    {
+        ExecutionContext snapshot = new ExecutionContext();
+
+        snapshot.properties = this.properties;
+        snapshot.inheritedProperties = this.inheritedProperties;
+        snapshot.inheritableProperties = this.inheritableProperties;
+
+        // Both contexts now use the same map and property instances
+        snapshot.propertiesMapShared = true;
+        snapshot.propertiesShared = true;
+        this.propertiesMapShared = true;
+        this.propertiesShared = true;
+
+        return snapshot;
     }
 
     /**
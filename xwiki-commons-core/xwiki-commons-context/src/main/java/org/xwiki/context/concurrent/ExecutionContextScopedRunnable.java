@@ -0,0 +1,84 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.context.concurrent;
+
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+
+/**
+ * {@link Runnable} wrapper which executes the wrapped runnable in a context inheriting from the context of the thread
+ * which created the wrapper.
+ * <p>
+ * Contrary to {@link ExecutionContextRunnable} the context is not initialized from scratch (which makes it much
+ * cheaper for short tasks) and it's bound to the executing thread only for the duration of the task (which makes it
+ * safe to use with pooled threads).
+ *
+ * @version $Id$
+ * @since 8.3RC1
+ */
+public class ExecutionContextScopedRunnable implements Runnable
+{
+    /**
+     * Used to bind the context in the executing thread.
+     */
+    private final Execution execution;
+
+    /**
+     * The runnable to wrap.
+     */
+    private final Runnable runnable;
+
+    /**
+     * The context to use during the execution.
+     */
+    private final ExecutionContext context;
+
+    /**
+     * @param runnable the runnable to wrap
+     * @param execution used to access the current context and to bind the context in the executing thread
+     */
+    public ExecutionContextScopedRunnable(Runnable runnable, Execution execution)
+    {
+        this.runnable = runnable;
+        this.execution = execution;
+
+        // Inherit in the creating thread since the parent context is not supposed to be accessed from another thread
+        this.context = new ExecutionContext();
+        ExecutionContext parent = execution.getContext();
+        if (parent != null) {
+            this.context.inheritFrom(parent);
+        }
+    }
+
+    /**
+     * @return the context used during the execution
+     */
+    public ExecutionContext getContext()
+    {
+        return this.context;
+    }
+
+    @Override
+    public void run()
+    {
+        // The context already inherited from the creating thread context
+        this.execution.runWithoutInheritance(this.context, this.runnable);
+    }
+}
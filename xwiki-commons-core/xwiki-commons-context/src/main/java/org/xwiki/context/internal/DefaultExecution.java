@@ -19,7 +19,9 @@
  */
 package org.xwiki.context.internal;
 
-import java.util.Stack;
+import java.util.Arrays;
+import java.util.EmptyStackException;
+import java.util.concurrent.Callable;
 
 import javax.inject.Singleton;
 
@@ -31,6 +33,9 @@
  * Holds the Execution Context object. Note that we require this Execution component since we want to be able to pass
  * the Execution Context to singleton components. Thus this holder is a singleton itself and the Execution Context is
  * saved as a ThreadLocal variable.
+ * <p>
+ * The contexts of a thread are stored in a non synchronized array based stack (it's only accessed by its thread) and
+ * the thread local is cleared as soon as the stack is empty so that nothing leaks in pooled threads.
  *
  * @version $Id$
  * @since 1.5M2
@@ -39,20 +44,89 @@
 @Singleton
 public class DefaultExecution implements Execution
 {
+    /**
+     * The contexts of a thread.
+     */
+    private static final class ContextStack
+    {
+        private static final int INITIAL_CAPACITY = 4;
+
+        private ExecutionContext[] contexts = new ExecutionContext[INITIAL_CAPACITY];
+
+        private int size;
+
+        void push(ExecutionContext context)
+        {
+            if (this.size == this.contexts.length) {
+                this.contexts = Arrays.copyOf(this.contexts, this.size * 2);
+            }
+
+            this.contexts[this.size++] = context;
+        }
+
+        void pop()
+        {
+            if (this.size == 0) {
+                throw new EmptyStackException();
+            }
+
+            // Don't keep a reference to the context
+            this.contexts[--this.size] = null;
+        }
+
+        ExecutionContext peek()
+        {
+            return this.size > 0 ? this.contexts[this.size - 1] : null;
+        }
+
+        void set(ExecutionContext context)
+        {
+            this.contexts[this.size - 1] = context;
+        }
+
+        void truncate(int newSize)
+        {
+            if (newSize < this.size) {
+                Arrays.fill(this.contexts, newSize, this.size, null);
+                this.size = newSize;
+            }
+        }
+
+        boolean isEmpty()
+        {
+            return this.size == 0;
+        }
+
+        int size()
+        {
+            return this.size;
+        }
+    }
+
     /**
      * Isolate the execution context by thread.
      */
-    private ThreadLocal<Stack<ExecutionContext>> context = new ThreadLocal<Stack<ExecutionContext>>();
+    private final ThreadLocal<ContextStack> context = new ThreadLocal<ContextStack>();
 
-    @Override
-    public void pushContext(ExecutionContext context)
+    private ContextStack getStack()
     {
-        Stack<ExecutionContext> stack = this.context.get();
+        ContextStack stack = this.context.get();
         if (stack == null) {
-            stack = new Stack<ExecutionContext>();
+            stack = new ContextStack();
             this.context.set(stack);
-        } else if (!stack.isEmpty()) {
-            context.inheritFrom(stack.peek());
+        }
+
+        return stack;
+    }
+
+    @Override
+    public void pushContext(ExecutionContext context)
+    {
+        ContextStack stack = getStack();
+
+        ExecutionContext current = stack.peek();
+        if (current != null) {
+            context.inheritFrom(current);
         }
 
         stack.push(context);
@@ -61,31 +135,39 @@ public void pushContext(ExecutionContext context)
     @Override
     public void popContext()
     {
-        this.context.get().pop();
+        ContextStack stack = this.context.get();
+        if (stack == null) {
+            throw new EmptyStackException();
+        }
+
+        stack.pop();
+
+        if (stack.isEmpty()) {
+            this.context.remove();
+        }
     }
 
     @Override
     public ExecutionContext getContext()
     {
-        Stack<ExecutionContext> stack = this.context.get();
-        return stack == null || stack.isEmpty() ? null : stack.peek();
+        ContextStack stack = this.context.get();
+
+        return stack != null ? stack.peek() : null;
     }
 
     @Override
     public void setContext(ExecutionContext context)
     {
-        Stack<ExecutionContext> stack = this.context.get();
-        if (stack == null) {
-            stack = new Stack<ExecutionContext>();
-            this.context.set(stack);
-            stack.push(context);
-        } else if (stack.isEmpty()) {
+        ContextStack stack = getStack();
+
+        if (stack.isEmpty()) {
             stack.push(context);
         } else {
-            if (context != null) {
-                context.inheritFrom(stack.peek());
+            ExecutionContext current = stack.peek();
+            if (context != null && current != null) {
+                context.inheritFrom(current);
             }
-            stack.set(stack.size() - 1, context);
+            stack.set(context);
         }
     }
 
@@ -94,4 +176,66 @@ public void removeContext()
     {
         this.context.remove();
     }
+
+    @Override
+    public <V> V call(ExecutionContext context, Callable<V> callable) throws Exception
+    {
+        int depth = getStack().size();
+
+        pushContext(context);
+
+        try {
+            return callable.call();
+        } finally {
+            restore(depth);
+        }
+    }
+
+    @Override
+    public void run(ExecutionContext context, Runnable runnable)
+    {
+        int depth = getStack().size();
+
+        pushContext(context);
+
+        try {
+            runnable.run();
+        } finally {
+            restore(depth);
+        }
+    }
+
+    @Override
+    public void runWithoutInheritance(ExecutionContext context, Runnable runnable)
+    {
+        ContextStack stack = getStack();
+        int depth = stack.size();
+
+        stack.push(context);
+
+        try {
+            runnable.run();
+        } finally {
+            restore(depth);
+        }
+    }
+
+    /**
+     * Put back the stack of the current thread in the state it was before entering a scope, whatever was done with it
+     * in the scope.
+     *
+     * @param depth the size of the stack before entering the scope
+     */
+    private void restore(int depth)
+    {
+        ContextStack stack = this.context.get();
+
+        if (stack != null) {
+            stack.truncate(depth);
+
+            if (stack.isEmpty()) {
+                this.context.remove();
+            }
+        }
+    }
 }
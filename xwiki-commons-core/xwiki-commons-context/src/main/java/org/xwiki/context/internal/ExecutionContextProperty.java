@@ -140,6 +140,35 @@ public boolean isInherited()
         return this.inherited;
     }
 
+    /**
+     * @return wether the value should be cloned when this property is cloned
+     * @since 8.3RC1
+     */
+    public boolean isCloneValue()
+    {
+        return this.cloneValue;
+    }
+
+    /**
+     * Create a copy of this property with a different value. Unlike {@link #clone()} the value is not cloned but, like
+     * {@link #clone()}, the copy is considered to be cloned from this property.
+     *
+     * @param value the value of the copy
+     * @return the copy
+     * @throws IllegalArgumentException if the value is null and this property has the nonNull attribute set, or if the
+     *             type is set for this value, but the value is not assignable to the set type.
+     * @since 8.3RC1
+     */
+    public ExecutionContextProperty withValue(Object value)
+    {
+        ExecutionContextProperty copy = new ExecutionContextProperty(getKey(), value, this.cloneValue, isFinal(),
+            isInherited(), this.nonNull, getType());
+
+        copy.clonedFrom = new WeakReference<ExecutionContextProperty>(this);
+
+        return copy;
+    }
+
     /**
      * @return the type of the value
      */
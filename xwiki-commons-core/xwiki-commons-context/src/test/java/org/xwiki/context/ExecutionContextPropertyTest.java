@@ -98,6 +98,20 @@ public void cloning() throws Exception
         Assert.assertTrue(fetch(context, k3).clone().isClonedFrom(fetch(context, k3)));
     }
 
+    @Test
+    public void withValue() throws Exception
+    {
+        ExecutionContext context = new ExecutionContext();
+        context.newProperty("key").initial("value").declare();
+
+        ExecutionContextProperty property = fetch(context, "key");
+        ExecutionContextProperty copy = property.withValue("other");
+
+        Assert.assertEquals("other", copy.getValue());
+        Assert.assertEquals("value", property.getValue());
+        Assert.assertTrue(copy.isClonedFrom(property));
+    }
+
     @Test(expected = IllegalStateException.class)
     public void cloningNonPublicCloneMethod() throws Exception
     {
@@ -21,6 +21,7 @@
 
 import static org.hamcrest.Matchers.hasEntry;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
@@ -109,4 +110,95 @@ public void removeUnexistingProperty()
         ExecutionContext context = new ExecutionContext();
         context.removeProperty("doesnotexist");
     }
+
+    @Test
+    public void inheritanceIsolation()
+    {
+        ExecutionContext parent = new ExecutionContext();
+        parent.newProperty("inherited").inherited().initial("parent").declare();
+        parent.newProperty("notinherited").initial("parent").declare();
+
+        ExecutionContext child = new ExecutionContext();
+        child.inheritFrom(parent);
+
+        ExecutionContext grandChild = new ExecutionContext();
+        grandChild.inheritFrom(child);
+
+        assertEquals("parent", child.getProperty("inherited"));
+        assertEquals("parent", grandChild.getProperty("inherited"));
+        assertFalse(child.hasProperty("notinherited"));
+        assertFalse(grandChild.hasProperty("notinherited"));
+
+        // Modifications in the child are not visible in the parent
+        child.setProperty("inherited", "child");
+
+        assertEquals("child", child.getProperty("inherited"));
+        assertEquals("parent", parent.getProperty("inherited"));
+        assertEquals("parent", grandChild.getProperty("inherited"));
+
+        // Modifications in the parent are not visible in the children
+        parent.setProperty("inherited", "parent2");
+
+        assertEquals("child", child.getProperty("inherited"));
+        assertEquals("parent", grandChild.getProperty("inherited"));
+
+        // The property is inherited from the child
+        ExecutionContext grandChild2 = new ExecutionContext();
+        grandChild2.inheritFrom(child);
+
+        assertEquals("child", grandChild2.getProperty("inherited"));
+
+        // Removing an inherited property
+        grandChild.removeProperty("inherited");
+
+        assertFalse(grandChild.hasProperty("inherited"));
+        assertEquals("child", child.getProperty("inherited"));
+        assertEquals(1, child.getProperties().size());
+    }
+
+    @Test(expected = PropertyIsFinalException.class)
+    public void setInheritedFinalProperty()
+    {
+        ExecutionContext parent = new ExecutionContext();
+        parent.newProperty("final").inherited().makeFinal().initial("value").declare();
+
+        ExecutionContext child = new ExecutionContext();
+        child.inheritFrom(parent);
+
+        // Inheriting again the same final property is allowed
+        ExecutionContext grandChild = new ExecutionContext();
+        grandChild.inheritFrom(child);
+        grandChild.inheritFrom(parent);
+
+        child.setProperty("final", "other value");
+    }
+
+    @Test
+    public void snapshot()
+    {
+        ExecutionContext parent = new ExecutionContext();
+        parent.newProperty("inherited").inherited().initial("parent").declare();
+
+        ExecutionContext context = new ExecutionContext();
+        context.inheritFrom(parent);
+        context.setProperty("key", "value");
+
+        ExecutionContext snapshot = context.snapshot();
+
+        assertEquals("parent", snapshot.getProperty("inherited"));
+        assertEquals("value", snapshot.getProperty("key"));
+
+        context.setProperty("key", "value2");
+        context.setProperty("inherited", "context");
+        context.setProperty("other", "other");
+
+        assertEquals("value", snapshot.getProperty("key"));
+        assertEquals("parent", snapshot.getProperty("inherited"));
+        assertFalse(snapshot.hasProperty("other"));
+
+        snapshot.removeProperty("key");
+
+        assertFalse(snapshot.hasProperty("key"));
+        assertEquals("value2", context.getProperty("key"));
+    }
 }
@@ -0,0 +1,109 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.context.concurrent;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.internal.DefaultExecution;
+
+/**
+ * Validate {@link ExecutionContextScopedRunnable}.
+ *
+ * @version $Id$
+ */
+public class ExecutionContextScopedRunnableTest
+{
+    @Test
+    public void inheritedExecutionContext() throws InterruptedException
+    {
+        Execution execution = new DefaultExecution();
+
+        ExecutionContext parent = new ExecutionContext();
+        parent.newProperty("inherited").inherited().initial("value").declare();
+        parent.newProperty("notinherited").initial("value").declare();
+        execution.pushContext(parent);
+
+        AtomicReference<ExecutionContext> taskContext = new AtomicReference<>();
+        AtomicReference<ExecutionContext> afterContext = new AtomicReference<>();
+
+        ExecutionContextScopedRunnable runnable =
+            new ExecutionContextScopedRunnable(() -> taskContext.set(execution.getContext()), execution);
+
+        Thread thread = new Thread(() -> {
+            runnable.run();
+            afterContext.set(execution.getContext());
+        });
+
+        thread.start();
+
+        thread.join(10000);
+
+        Assert.assertSame(runnable.getContext(), taskContext.get());
+        Assert.assertEquals("value", taskContext.get().getProperty("inherited"));
+        Assert.assertFalse(taskContext.get().hasProperty("notinherited"));
+
+        // The context is released when the task is done
+        Assert.assertNull(afterContext.get());
+
+        // The context of the creating thread is not affected
+        Assert.assertSame(parent, execution.getContext());
+    }
+
+    @Test
+    public void runInThreadWithContext() throws InterruptedException
+    {
+        Execution execution = new DefaultExecution();
+
+        ExecutionContext parent = new ExecutionContext();
+        parent.newProperty("inherited").inherited().initial("value").declare();
+        execution.pushContext(parent);
+
+        AtomicReference<ExecutionContext> taskContext = new AtomicReference<>();
+        AtomicReference<ExecutionContext> afterContext = new AtomicReference<>();
+
+        ExecutionContextScopedRunnable runnable =
+            new ExecutionContextScopedRunnable(() -> taskContext.set(execution.getContext()), execution);
+
+        ExecutionContext threadContext = new ExecutionContext();
+        threadContext.newProperty("thread").inherited().initial("value").declare();
+
+        Thread thread = new Thread(() -> {
+            execution.pushContext(threadContext);
+            runnable.run();
+            afterContext.set(execution.getContext());
+        });
+
+        thread.start();
+
+        thread.join(10000);
+
+        // The context of the task only inherits from the context of the creating thread
+        Assert.assertSame(runnable.getContext(), taskContext.get());
+        Assert.assertEquals("value", taskContext.get().getProperty("inherited"));
+        Assert.assertFalse(taskContext.get().hasProperty("thread"));
+
+        // The context of the executing thread is restored
+        Assert.assertSame(threadContext, afterContext.get());
+    }
+}
@@ -19,6 +19,8 @@
  */
 package org.xwiki.context.internal;
 
+import java.util.EmptyStackException;
+
 import org.junit.Assert;
 import org.junit.Test;
 import org.xwiki.context.Execution;
@@ -86,4 +88,62 @@ public void removeContext() throws Exception
 
         Assert.assertNull(execution.getContext());
     }
+
+    @Test
+    public void runRestoresStack() throws Exception
+    {
+        Execution execution = new DefaultExecution();
+
+        ExecutionContext context1 = new ExecutionContext();
+        execution.pushContext(context1);
+
+        ExecutionContext context2 = new ExecutionContext();
+
+        execution.run(context2, () -> {
+            Assert.assertSame(context2, execution.getContext());
+
+            // Forget to pop
+            execution.pushContext(new ExecutionContext());
+        });
+
+        Assert.assertSame(context1, execution.getContext());
+
+        Assert.assertEquals("result", execution.call(context2, () -> {
+            Assert.assertSame(context2, execution.getContext());
+
+            return "result";
+        }));
+
+        Assert.assertSame(context1, execution.getContext());
+    }
+
+    @Test(expected = EmptyStackException.class)
+    public void popEmptyContext() throws Exception
+    {
+        Execution execution = new DefaultExecution();
+
+        execution.pushContext(new ExecutionContext());
+        execution.popContext();
+
+        execution.popContext();
+    }
+
+    @Test
+    public void pushManyContexts() throws Exception
+    {
+        Execution execution = new DefaultExecution();
+
+        ExecutionContext[] contexts = new ExecutionContext[20];
+        for (int i = 0; i < contexts.length; ++i) {
+            contexts[i] = new ExecutionContext();
+            execution.pushContext(contexts[i]);
+        }
+
+        for (int i = contexts.length - 1; i >= 0; --i) {
+            Assert.assertSame(contexts[i], execution.getContext());
+            execution.popContext();
+        }
+
+        Assert.assertNull(execution.getContext());
+    }
 }
@@ -58,4 +58,32 @@
      * @return the user agent to declare when communication with external services (generally repositories)
      */
     String getUserAgent();
+
+    /**
+     * @return the maximum number of repositories queried at the same time when resolving an extension (which is also
+     *         the number of threads shared by all the resolutions), 1 or less to query them one after another
+     * @since 8.3RC1
+     */
+    default int getResolveThreads()
+    {
+        return 1;
+    }
+
+    /**
+     * @return true if the remote repositories should be searched through a local index
+     * @since 8.3RC1
+     */
+    default boolean isSearchIndexEnabled()
+    {
+        return false;
+    }
+
+    /**
+     * @return the minimum number of seconds between two refreshes of the local search index of a repository
+     * @since 8.3RC1
+     */
+    default int getSearchIndexRefreshInterval()
+    {
+        return 3600;
+    }
 }
@@ -66,6 +66,16 @@ public class DefaultExtensionManagerConfiguration implements ExtensionManagerCon
      */
     private static final String DEFAULT_USERAGENT = "XWikiExtensionManager";
 
+    /**
+     * The default maximum number of repositories queried at the same time.
+     */
+    private static final int DEFAULT_RESOLVE_THREADS = 5;
+
+    /**
+     * The default minimum number of seconds between two refreshes of a repository search index.
+     */
+    private static final int DEFAULT_SEARCH_INDEX_REFRESH_INTERVAL = 3600;
+
     /**
      * The prefix of all the extension related properties.
      */
@@ -229,4 +239,23 @@ public String getUserAgent()
         // TODO: add version (need a way to get platform version first)
         return this.configuration.get().getProperty(CK_PREFIX + "userAgent", DEFAULT_USERAGENT);
     }
+
+    @Override
+    public int getResolveThreads()
+    {
+        return this.configuration.get().getProperty(CK_PREFIX + "resolveThreads", DEFAULT_RESOLVE_THREADS);
+    }
+
+    @Override
+    public boolean isSearchIndexEnabled()
+    {
+        return this.configuration.get().getProperty(CK_PREFIX + "index.enabled", false);
+    }
+
+    @Override
+    public int getSearchIndexRefreshInterval()
+    {
+        return this.configuration.get().getProperty(CK_PREFIX + "index.refreshInterval",
+            DEFAULT_SEARCH_INDEX_REFRESH_INTERVAL);
+    }
 }
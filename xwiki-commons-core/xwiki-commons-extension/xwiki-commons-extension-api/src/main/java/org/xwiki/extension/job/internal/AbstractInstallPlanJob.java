@@ -29,17 +29,23 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.inject.Inject;
 
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.namespace.NamespaceNotAllowedException;
 import org.xwiki.component.namespace.NamespaceValidator;
+import org.xwiki.context.Execution;
+import org.xwiki.context.concurrent.ExecutionContextScopedRunnable;
 import org.xwiki.extension.CoreExtension;
 import org.xwiki.extension.DefaultExtensionDependency;
 import org.xwiki.extension.Extension;
 import org.xwiki.extension.ExtensionDependency;
 import org.xwiki.extension.ExtensionId;
+import org.xwiki.extension.ExtensionManagerConfiguration;
 import org.xwiki.extension.InstallException;
 import org.xwiki.extension.InstalledExtension;
 import org.xwiki.extension.ResolveException;
@@ -57,6 +63,7 @@
 import org.xwiki.extension.repository.ExtensionRepositoryManager;
 import org.xwiki.extension.version.IncompatibleVersionConstraintException;
 import org.xwiki.extension.version.VersionConstraint;
+import org.xwiki.logging.event.LoggerListener;
 
 /**
  * Create an Extension plan.
@@ -177,6 +184,46 @@ public void setChildren(Collection<? extends ExtensionPlanNode> children)
     protected Map<String, Map<String, ModifableExtensionPlanNode>> extensionsNodeCache =
         new HashMap<String, Map<String, ModifableExtensionPlanNode>>();
 
+    /**
+     * Used to know how many dependencies can be resolved in parallel.
+     */
+    @Inject
+    private ExtensionManagerConfiguration extensionManagerConfiguration;
+
+    /**
+     * Used to execute the prefetched resolutions in the context of the job.
+     */
+    @Inject
+    private Execution execution;
+
+    /**
+     * The remote resolutions done during the job, shared by all the branches of the plan.
+     */
+    private ExtensionResolutionCache resolutionCache;
+
+    /**
+     * Used to resolve dependencies in advance.
+     */
+    private ExecutorService prefetchExecutor;
+
+    @Override
+    protected void jobFinished(Throwable error)
+    {
+        if (this.resolutionCache != null) {
+            // Don't start the resolutions nobody will ask for (the running ones are not interrupted to not leave
+            // repositories in a bad state but their result is dropped)
+            this.resolutionCache.dispose();
+            this.resolutionCache = null;
+        }
+
+        if (this.prefetchExecutor != null) {
+            this.prefetchExecutor.shutdown();
+            this.prefetchExecutor = null;
+        }
+
+        super.jobFinished(error);
+    }
+
     protected void setExtensionTree(ModifableExtensionPlanTree extensionTree)
     {
         this.extensionTree = extensionTree;
@@ -719,6 +766,64 @@ private ModifableExtensionPlanNode installExtension(ExtensionId extensionId, boo
         }
     }
 
+    private ExtensionResolutionCache getResolutionCache()
+    {
+        if (this.resolutionCache == null) {
+            int threads = this.extensionManagerConfiguration.getResolveThreads();
+            if (threads > 1) {
+                BasicThreadFactory threadFactory = new BasicThreadFactory.Builder()
+                    .namingPattern("Extension plan dependency resolution %d").daemon(true).build();
+                this.prefetchExecutor = Executors.newFixedThreadPool(threads, threadFactory);
+            }
+
+            this.resolutionCache = new ExtensionResolutionCache(this.repositoryManager,
+                this.prefetchExecutor != null ? this::prefetch : null, this::isRemoteDependency);
+        }
+
+        return this.resolutionCache;
+    }
+
+    /**
+     * Execute a prefetched resolution in a context inheriting from the job context and with the logs associated with
+     * the job.
+     *
+     * @param resolution the resolution to execute
+     */
+    private void prefetch(Runnable resolution)
+    {
+        LoggerListener logListener =
+            new LoggerListener(LoggerListener.class.getName() + '_' + hashCode(), getStatus().getLog());
+
+        this.prefetchExecutor.execute(new ExecutionContextScopedRunnable(() -> {
+            this.loggerManager.pushLogListener(logListener);
+            try {
+                resolution.run();
+            } finally {
+                this.loggerManager.popLogListener();
+            }
+        }, this.execution));
+    }
+
+    /**
+     * @param dependency the dependency
+     * @return true if the dependency will have to be resolved remotely, false if it's a core extension or it's
+     *         already in the local repository
+     */
+    private boolean isRemoteDependency(ExtensionDependency dependency)
+    {
+        if (this.coreExtensionRepository.exists(dependency.getId())) {
+            return false;
+        }
+
+        try {
+            this.localExtensionRepository.resolve(dependency);
+
+            return false;
+        } catch (ResolveException e) {
+            return true;
+        }
+    }
+
     /**
      * @param extensionId the identifier of the extension to install
      * @return the extension
@@ -734,7 +839,7 @@ private Extension resolveExtension(ExtensionId extensionId) throws InstallExcept
 
             // Resolve extension
             try {
-                extension = this.repositoryManager.resolve(extensionId);
+                extension = getResolutionCache().resolve(extensionId);
             } catch (ResolveException e1) {
                 throw new InstallException(String.format("Failed to resolve extension [%s]", extensionId), e1);
             }
@@ -759,7 +864,7 @@ private Extension resolveExtension(ExtensionDependency extensionDependency) thro
 
             // Resolve extension
             try {
-                extension = this.repositoryManager.resolve(extensionDependency);
+                extension = getResolutionCache().resolve(extensionDependency);
             } catch (ResolveException e1) {
                 throw new InstallException(
                     String.format("Failed to resolve extension dependency [%s]", extensionDependency), e1);
@@ -871,6 +976,9 @@ private ModifableExtensionPlanNode installExtension(Extension extension, boolean
 
             List<ModifableExtensionPlanNode> children = null;
             if (!dependencies.isEmpty()) {
+                // Start resolving the dependencies in the background
+                getResolutionCache().prefetch(extension, managedDependencies);
+
                 this.progressManager.pushLevelProgress(dependencies.size() + 1, this);
 
                 try {
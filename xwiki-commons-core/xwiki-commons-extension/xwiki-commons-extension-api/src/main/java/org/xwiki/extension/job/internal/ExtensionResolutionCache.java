@@ -0,0 +1,252 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.extension.job.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.function.Predicate;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.xwiki.extension.Extension;
+import org.xwiki.extension.ExtensionDependency;
+import org.xwiki.extension.ExtensionId;
+import org.xwiki.extension.ResolveException;
+import org.xwiki.extension.internal.ExtensionUtils;
+import org.xwiki.extension.repository.ExtensionRepositoryDescriptor;
+import org.xwiki.extension.repository.ExtensionRepositoryManager;
+import org.xwiki.extension.version.VersionConstraint;
+
+/**
+ * Remember the remote resolutions done during a plan job, including the failed ones, so that the same extension or
+ * dependency is resolved only once whatever the number of branches of the plan which need it.
+ * <p>
+ * When an executor is provided the dependencies of an extension can be resolved in parallel before the plan actually
+ * reaches them, see {@link #prefetch(Extension, Map)}. A prefetched resolution which is not started yet when the plan
+ * needs it is executed by the plan thread instead of waiting for the executor.
+ *
+ * @version $Id$
+ * @since 8.3RC1
+ */
+public class ExtensionResolutionCache
+{
+    /**
+     * The identifier of a dependency resolution: the id, the version constraint and the repositories.
+     *
+     * @version $Id$
+     */
+    private static final class DependencyKey
+    {
+        private final String id;
+
+        private final VersionConstraint versionConstraint;
+
+        private final List<ExtensionRepositoryDescriptor> repositories;
+
+        /**
+         * @param dependency the dependency to resolve
+         */
+        DependencyKey(ExtensionDependency dependency)
+        {
+            this.id = dependency.getId();
+            this.versionConstraint = dependency.getVersionConstraint();
+            this.repositories = new ArrayList<>(dependency.getRepositories());
+        }
+
+        @Override
+        public int hashCode()
+        {
+            HashCodeBuilder builder = new HashCodeBuilder();
+
+            builder.append(this.id);
+            builder.append(this.versionConstraint);
+            builder.append(this.repositories);
+
+            return builder.toHashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) {
+                return true;
+            }
+
+            if (obj instanceof DependencyKey) {
+                DependencyKey otherKey = (DependencyKey) obj;
+
+                EqualsBuilder builder = new EqualsBuilder();
+
+                builder.append(this.id, otherKey.id);
+                builder.append(this.versionConstraint, otherKey.versionConstraint);
+                builder.append(this.repositories, otherKey.repositories);
+
+                return builder.isEquals();
+            }
+
+            return false;
+        }
+
+        @Override
+        public String toString()
+        {
+            return this.id + '-' + this.versionConstraint;
+        }
+    }
+
+    private final ExtensionRepositoryManager repositoryManager;
+
+    private final Executor executor;
+
+    private final Predicate<ExtensionDependency> prefetchFilter;
+
+    /**
+     * The resolutions indexed by {@link ExtensionId} or {@link DependencyKey}.
+     */
+    private final Map<Object, FutureTask<Extension>> resolutions = new ConcurrentHashMap<>();
+
+    /**
+     * @param repositoryManager the repository manager used to resolve the extensions
+     * @param executor the executor used to prefetch dependencies, null to disable prefetching
+     * @param prefetchFilter indicate which dependencies are worth prefetching (for example the ones which are not core
+     *            extensions or already in the local repository)
+     */
+    public ExtensionResolutionCache(ExtensionRepositoryManager repositoryManager, Executor executor,
+        Predicate<ExtensionDependency> prefetchFilter)
+    {
+        this.repositoryManager = repositoryManager;
+        this.executor = executor;
+        this.prefetchFilter = prefetchFilter;
+    }
+
+    /**
+     * @param extensionId the extension to resolve
+     * @return the resolved extension
+     * @throws ResolveException when the extension could not be resolved (now or the first time it was asked)
+     */
+    public Extension resolve(ExtensionId extensionId) throws ResolveException
+    {
+        return get(extensionId, () -> this.repositoryManager.resolve(extensionId));
+    }
+
+    /**
+     * @param dependency the dependency to resolve
+     * @return the resolved extension
+     * @throws ResolveException when the dependency could not be resolved (now or the first time it was asked)
+     */
+    public Extension resolve(ExtensionDependency dependency) throws ResolveException
+    {
+        return get(new DependencyKey(dependency), () -> this.repositoryManager.resolve(dependency));
+    }
+
+    private Extension get(Object key, Callable<Extension> resolution) throws ResolveException
+    {
+        FutureTask<Extension> future = new FutureTask<>(resolution);
+
+        FutureTask<Extension> existingFuture = this.resolutions.putIfAbsent(key, future);
+        if (existingFuture != null) {
+            future = existingFuture;
+        }
+
+        // Resolve it in the current thread if it's the first time or if the prefetch did not start yet (does nothing
+        // if the resolution is already running or done)
+        future.run();
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new ResolveException("Interrupted while waiting for the resolution of [" + key + "]", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof ResolveException) {
+                throw (ResolveException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new ResolveException("Failed to resolve [" + key + "]", cause);
+        }
+    }
+
+    /**
+     * Start resolving in the background the dependencies of the passed extension.
+     * <p>
+     * Only the direct dependencies are resolved since they are the ones the plan is about to need: the dependencies of
+     * the resolved extensions are prefetched when (and if) the plan actually selects them.
+     *
+     * @param extension the extension for which to resolve the dependencies
+     * @param managedDependencies the managed dependencies applying to the passed extension dependencies, can be null
+     */
+    public void prefetch(Extension extension, Map<String, ExtensionDependency> managedDependencies)
+    {
+        if (this.executor == null) {
+            return;
+        }
+
+        Map<String, ExtensionDependency> currentManagedDependencies =
+            managedDependencies != null ? managedDependencies : Collections.emptyMap();
+
+        for (ExtensionDependency dependency : extension.getDependencies()) {
+            ExtensionDependency targetDependency =
+                ExtensionUtils.getDependency(dependency, currentManagedDependencies, extension);
+
+            if (targetDependency.getVersionConstraint() != null) {
+                prefetch(targetDependency);
+            }
+        }
+    }
+
+    /**
+     * Cancel the prefetches which are not started yet and forget all the resolutions.
+     */
+    public void dispose()
+    {
+        for (FutureTask<Extension> future : this.resolutions.values()) {
+            future.cancel(false);
+        }
+
+        this.resolutions.clear();
+    }
+
+    private void prefetch(ExtensionDependency dependency)
+    {
+        DependencyKey key = new DependencyKey(dependency);
+
+        if (!this.resolutions.containsKey(key) && this.prefetchFilter.test(dependency)) {
+            FutureTask<Extension> future = new FutureTask<>(() -> this.repositoryManager.resolve(dependency));
+
+            if (this.resolutions.putIfAbsent(key, future) == null) {
+                this.executor.execute(future);
+            }
+        }
+    }
+}
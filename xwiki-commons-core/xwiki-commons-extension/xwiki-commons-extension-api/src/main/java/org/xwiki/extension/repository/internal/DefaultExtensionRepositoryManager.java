@@ -19,6 +19,7 @@
  */
 package org.xwiki.extension.repository.internal;
 
+import java.io.Closeable;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -30,21 +31,29 @@
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.apache.commons.collections4.map.LRUMap;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
+import org.xwiki.context.Execution;
 import org.xwiki.extension.Extension;
 import org.xwiki.extension.ExtensionDependency;
 import org.xwiki.extension.ExtensionId;
+import org.xwiki.extension.ExtensionManagerConfiguration;
 import org.xwiki.extension.ExtensionNotFoundException;
 import org.xwiki.extension.ResolveException;
 import org.xwiki.extension.repository.ExtensionRepository;
@@ -54,6 +63,8 @@
 import org.xwiki.extension.repository.ExtensionRepositoryId;
 import org.xwiki.extension.repository.ExtensionRepositoryManager;
 import org.xwiki.extension.repository.ExtensionRepositorySource;
+import org.xwiki.extension.repository.internal.index.ExtensionSearchIndex;
+import org.xwiki.extension.repository.internal.index.ExtensionSearchIndexCache;
 import org.xwiki.extension.repository.result.CollectionIterableResult;
 import org.xwiki.extension.repository.result.IterableResult;
 import org.xwiki.extension.repository.search.AdvancedSearchable;
@@ -70,7 +81,7 @@
  */
 @Component
 @Singleton
-public class DefaultExtensionRepositoryManager implements ExtensionRepositoryManager, Initializable
+public class DefaultExtensionRepositoryManager implements ExtensionRepositoryManager, Initializable, Disposable
 {
     /**
      * Used to lookup {@link ExtensionRepositoryFactory}s.
@@ -90,6 +101,24 @@ public class DefaultExtensionRepositoryManager implements ExtensionRepositoryMan
     @Inject
     private List<ExtensionRepositorySource> repositoriesSources;
 
+    /**
+     * Used to know how many repositories can be queried at the same time.
+     */
+    @Inject
+    private ExtensionManagerConfiguration configuration;
+
+    /**
+     * Used to execute the repositories queries in the context of the caller.
+     */
+    @Inject
+    private Execution execution;
+
+    /**
+     * Used to search the repositories locally.
+     */
+    @Inject
+    private ExtensionSearchIndexCache searchIndexCache;
+
     /**
      * The registered repositories.
      */
@@ -100,6 +129,11 @@ public class DefaultExtensionRepositoryManager implements ExtensionRepositoryMan
 
     private LRUMap<ExtensionRepositoryDescriptor, ExtensionRepository> repositoriesCache = new LRUMap<>(100);
 
+    /**
+     * The thread pool used to query the repositories in parallel, shared by all the resolutions.
+     */
+    private ThreadPoolExecutor executor;
+
     @Override
     public void initialize() throws InitializationException
     {
@@ -116,6 +150,45 @@ public void initialize() throws InitializationException
         }
     }
 
+    @Override
+    public synchronized void dispose()
+    {
+        if (this.executor != null) {
+            this.executor.shutdown();
+        }
+    }
+
+    private synchronized ThreadPoolExecutor getExecutor(int threads)
+    {
+        if (this.executor == null) {
+            BasicThreadFactory threadFactory = new BasicThreadFactory.Builder()
+                .namingPattern("Extension repository query %d").daemon(true).build();
+            // The queries which don't find a free thread are executed by the caller when it needs their result (see
+            // ExtensionRepositoryTasks) so waiting in the queue does not block the resolution
+            this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), threadFactory);
+            this.executor.allowCoreThreadTimeOut(true);
+        }
+
+        return this.executor;
+    }
+
+    /**
+     * @param repositories the repositories to query, in the order in which the results will be consumed
+     * @param task the query to run on each repository
+     * @param <T> the type of the query result
+     * @return the queries, started in parallel if allowed by the configuration
+     */
+    private <T> ExtensionRepositoryTasks<T> startTasks(List<ExtensionRepository> repositories,
+        ExtensionRepositoryTasks.RepositoryTask<T> task)
+    {
+        int threads = this.configuration.getResolveThreads();
+
+        ThreadPoolExecutor tasksExecutor = threads > 1 && repositories.size() > 1 ? getExecutor(threads) : null;
+
+        return new ExtensionRepositoryTasks<>(repositories, task, tasksExecutor, this.execution, threads);
+    }
+
     @Override
     @Deprecated
     public ExtensionRepository addRepository(ExtensionRepositoryId repositoryId) throws ExtensionRepositoryException
@@ -147,15 +220,38 @@ public ExtensionRepository addRepository(ExtensionRepositoryDescriptor repositor
     @Override
     public void addRepository(ExtensionRepository repository)
     {
-        this.repositoryMap.put(repository.getDescriptor().getId(), repository);
+        ExtensionRepository previousRepository =
+            this.repositoryMap.put(repository.getDescriptor().getId(), repository);
         this.repositories = new ArrayList<>(this.repositoryMap.values());
+
+        if (previousRepository != null && previousRepository != repository) {
+            close(previousRepository);
+        }
     }
 
     @Override
     public void removeRepository(String repositoryId)
     {
-        this.repositoryMap.remove(repositoryId);
+        ExtensionRepository repository = this.repositoryMap.remove(repositoryId);
         this.repositories = new ArrayList<>(this.repositoryMap.values());
+
+        if (repository != null) {
+            close(repository);
+        }
+    }
+
+    /**
+     * Release the resources (like HTTP connections) held by a repository which is not registered anymore.
+     *
+     * @param repository the removed repository
+     */
+    private void close(ExtensionRepository repository)
+    {
+        this.repositoriesCache.values().removeIf(cachedRepository -> cachedRepository == repository);
+
+        if (repository instanceof Closeable) {
+            IOUtils.closeQuietly((Closeable) repository);
+        }
     }
 
     @Override
@@ -207,18 +303,29 @@ public Extension resolve(ExtensionId extensionId) throws ResolveException
     {
         ResolveException lastException = null;
 
-        for (ExtensionRepository repository : this.repositories) {
-            try {
-                return repository.resolve(extensionId);
-            } catch (ExtensionNotFoundException e1) {
-                this.logger.debug("Could not find extension [{}] in repository [{}]", extensionId,
-                    repository.getDescriptor(), e1);
-            } catch (ResolveException e2) {
-                this.logger.error("Unexpected error when trying to find extension [{}] in repository [{}]", extensionId,
-                    repository.getDescriptor(), e2);
-
-                lastException = e2;
+        List<ExtensionRepository> repositoryList = new ArrayList<>(this.repositories);
+        ExtensionRepositoryTasks<Extension> tasks =
+            startTasks(repositoryList, repository -> repository.resolve(extensionId));
+
+        try {
+            for (int i = 0; i < repositoryList.size(); ++i) {
+                ExtensionRepository repository = repositoryList.get(i);
+
+                try {
+                    return tasks.get(i);
+                } catch (ExtensionNotFoundException e1) {
+                    this.logger.debug("Could not find extension [{}] in repository [{}]", extensionId,
+                        repository.getDescriptor(), e1);
+                } catch (ResolveException e2) {
+                    this.logger.error("Unexpected error when trying to find extension [{}] in repository [{}]",
+                        extensionId, repository.getDescriptor(), e2);
+
+                    lastException = e2;
+                }
             }
+        } finally {
+            // Stop querying lower priority repositories
+            tasks.cancel();
         }
 
         if (lastException != null) {
@@ -233,8 +340,7 @@ public Extension resolve(ExtensionId extensionId) throws ResolveException
     public Extension resolve(ExtensionDependency extensionDependency) throws ResolveException
     {
         Set<ExtensionRepositoryDescriptor> checkedRepositories = new HashSet<>();
-
-        Exception lastException = null;
+        List<ExtensionRepository> repositoryList = new ArrayList<>();
 
         // Try repositories declared in the extension dependency
         for (ExtensionRepositoryDescriptor repositoryDescriptor : extensionDependency.getRepositories()) {
@@ -245,29 +351,16 @@ public Extension resolve(ExtensionDependency extensionDependency) throws Resolve
             // Remember we tried that repository
             checkedRepositories.add(repositoryDescriptor);
 
-            ExtensionRepository repository;
             try {
-                repository = getRepository(repositoryDescriptor);
+                repositoryList.add(getRepository(repositoryDescriptor));
             } catch (ExtensionRepositoryException e) {
                 this.logger.warn("Invalid repository [{}] in extension dependency",
                     extensionDependency.getRepositories(), extensionDependency, ExceptionUtils.getRootCauseMessage(e));
-
-                continue;
-            }
-
-            try {
-                return repository.resolve(extensionDependency);
-            } catch (ExtensionNotFoundException e1) {
-                this.logger.debug("Could not find extension dependency [{}] in repository [{}]", extensionDependency,
-                    repository.getDescriptor(), e1);
-            } catch (ResolveException e2) {
-                this.logger.warn("Unexpected error when trying to find extension dependency [{}] in repository [{}]: ",
-                    extensionDependency, repository.getDescriptor(), ExceptionUtils.getRootCauseMessage(e2));
-
-                lastException = e2;
             }
         }
 
+        int dependencyRepositories = repositoryList.size();
+
         // Try configured repositories
         for (ExtensionRepository repository : this.repositories) {
             if (checkedRepositories.contains(repository.getDescriptor())) {
@@ -277,17 +370,40 @@ public Extension resolve(ExtensionDependency extensionDependency) throws Resolve
             // Remember we tried that repository
             checkedRepositories.add(repository.getDescriptor());
 
-            try {
-                return repository.resolve(extensionDependency);
-            } catch (ExtensionNotFoundException e1) {
-                this.logger.debug("Could not find extension dependency [{}] in repository [{}]", extensionDependency,
-                    repository.getDescriptor(), e1);
-            } catch (ResolveException e2) {
-                this.logger.error("Unexpected error when trying to find extension dependency [{}] in repository [{}]",
-                    extensionDependency, repository.getDescriptor(), e2);
-
-                lastException = e2;
+            repositoryList.add(repository);
+        }
+
+        Exception lastException = null;
+
+        ExtensionRepositoryTasks<Extension> tasks =
+            startTasks(repositoryList, repository -> repository.resolve(extensionDependency));
+
+        try {
+            for (int i = 0; i < repositoryList.size(); ++i) {
+                ExtensionRepository repository = repositoryList.get(i);
+
+                try {
+                    return tasks.get(i);
+                } catch (ExtensionNotFoundException e1) {
+                    this.logger.debug("Could not find extension dependency [{}] in repository [{}]",
+                        extensionDependency, repository.getDescriptor(), e1);
+                } catch (ResolveException e2) {
+                    if (i < dependencyRepositories) {
+                        this.logger.warn(
+                            "Unexpected error when trying to find extension dependency [{}] in repository [{}]: ",
+                            extensionDependency, repository.getDescriptor(), ExceptionUtils.getRootCauseMessage(e2));
+                    } else {
+                        this.logger.error(
+                            "Unexpected error when trying to find extension dependency [{}] in repository [{}]",
+                            extensionDependency, repository.getDescriptor(), e2);
+                    }
+
+                    lastException = e2;
+                }
             }
+        } finally {
+            // Stop querying lower priority repositories
+            tasks.cancel();
         }
 
         if (lastException != null) {
@@ -305,19 +421,28 @@ public IterableResult<Version> resolveVersions(String id, int offset, int nb) th
     {
         SortedSet<Version> versionSet = new TreeSet<>();
 
-        for (ExtensionRepository repository : this.repositories) {
-            try {
-                IterableResult<Version> versions = repository.resolveVersions(id, 0, -1);
+        List<ExtensionRepository> repositoryList = new ArrayList<>(this.repositories);
+        ExtensionRepositoryTasks<IterableResult<Version>> tasks =
+            startTasks(repositoryList, repository -> repository.resolveVersions(id, 0, -1));
+
+        try {
+            for (int i = 0; i < repositoryList.size(); ++i) {
+                try {
+                    IterableResult<Version> versions = tasks.get(i);
 
-                for (Version version : versions) {
-                    versionSet.add(version);
+                    for (Version version : versions) {
+                        versionSet.add(version);
+                    }
+                } catch (ExtensionNotFoundException e1) {
+                    this.logger.debug("Could not find extension with id [{}] in repository [{}]", id,
+                        repositoryList.get(i).getDescriptor(), e1);
+                } catch (ResolveException e2) {
+                    this.logger.error("Unexpected error when trying to find versions for extension with id [{}]", id,
+                        e2);
                 }
-            } catch (ExtensionNotFoundException e1) {
-                this.logger.debug("Could not find extension with id [{}] in repository [{}]", id,
-                    repository.getDescriptor(), e1);
-            } catch (ResolveException e2) {
-                this.logger.error("Unexpected error when trying to find versions for extension with id [{}]", id, e2);
             }
+        } finally {
+            tasks.cancel();
         }
 
         if (versionSet.isEmpty()) {
@@ -342,6 +467,14 @@ public IterableResult<Extension> search(String pattern, int offset, int nb)
     @Override
     public IterableResult<Extension> search(ExtensionQuery query)
     {
+        if (this.configuration.isSearchIndexEnabled()) {
+            IterableResult<Extension> indexResult = searchIndexes(query);
+
+            if (indexResult != null) {
+                return indexResult;
+            }
+        }
+
         IterableResult<Extension> searchResult = null;
 
         int currentOffset = query.getOffset() > 0 ? query.getOffset() : 0;
@@ -386,6 +519,33 @@ public IterableResult<Extension> search(ExtensionQuery query)
 
     }
 
+    /**
+     * Search the local indexes of the repositories.
+     *
+     * @param query the search query
+     * @return the search result, null if one of the searchable repositories is not indexed yet
+     */
+    private IterableResult<Extension> searchIndexes(ExtensionQuery query)
+    {
+        List<ExtensionSearchIndex> indexes = new ArrayList<>();
+        boolean complete = true;
+
+        for (ExtensionRepository repository : this.repositories) {
+            if (repository instanceof Searchable) {
+                // Get all the indexes to make sure the missing ones are all being built
+                ExtensionSearchIndex index = this.searchIndexCache.getIndex(repository);
+
+                if (index != null) {
+                    indexes.add(index);
+                } else {
+                    complete = false;
+                }
+            }
+        }
+
+        return complete ? ExtensionSearchIndex.search(query, indexes) : null;
+    }
+
     /**
      * Search one repository.
      *
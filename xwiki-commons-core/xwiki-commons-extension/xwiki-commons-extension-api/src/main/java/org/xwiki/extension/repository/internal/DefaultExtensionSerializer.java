@@ -73,8 +73,10 @@
 import org.xwiki.extension.ExtensionScmConnection;
 import org.xwiki.extension.InstalledExtension;
 import org.xwiki.extension.InvalidExtensionException;
+import org.xwiki.extension.repository.ExtensionRepository;
 import org.xwiki.extension.repository.internal.core.DefaultCoreExtension;
 import org.xwiki.extension.repository.internal.core.DefaultCoreExtensionRepository;
+import org.xwiki.extension.repository.internal.index.IndexedExtension;
 import org.xwiki.extension.repository.internal.local.DefaultLocalExtension;
 import org.xwiki.extension.repository.internal.local.DefaultLocalExtensionRepository;
 import org.xwiki.extension.version.internal.DefaultVersionConstraint;
@@ -252,6 +254,20 @@ public DefaultLocalExtension loadLocalExtensionDescriptor(DefaultLocalExtensionR
         return localExtension;
     }
 
+    @Override
+    public IndexedExtension loadExtensionDescriptor(ExtensionRepository repository, InputStream descriptor)
+        throws InvalidExtensionException
+    {
+        Element extensionElement = getExtensionElement(descriptor);
+
+        IndexedExtension extension =
+            new IndexedExtension(repository, getExtensionId(extensionElement), getExtensionType(extensionElement));
+
+        loadExtensionDescriptor(extension, extensionElement);
+
+        return extension;
+    }
+
     private Element getExtensionElement(InputStream descriptor) throws InvalidExtensionException
     {
         DocumentBuilder documentBuilder;
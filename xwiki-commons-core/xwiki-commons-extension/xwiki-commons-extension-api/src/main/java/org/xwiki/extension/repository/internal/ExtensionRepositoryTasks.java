@@ -0,0 +1,182 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.extension.repository.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import org.xwiki.context.Execution;
+import org.xwiki.context.concurrent.ExecutionContextScopedRunnable;
+import org.xwiki.extension.ResolveException;
+import org.xwiki.extension.repository.ExtensionRepository;
+
+/**
+ * Run the same query on a list of repositories, in parallel when an executor is provided, while letting the caller
+ * consume the results in the order of the repositories.
+ * <p>
+ * At most {@code maxConcurrent} queries are started ahead of the one the caller is waiting for. The queries are
+ * executed in a context inheriting from the caller context and with the caller context class loader. A query which
+ * has not been started by the executor yet when the caller needs its result is executed in the caller thread. The
+ * remaining queries should be cancelled with {@link #cancel()} as soon as the caller got what it needed: the queries
+ * which are already running are not interrupted but their result is ignored.
+ *
+ * @param <T> the type of the query result
+ * @version $Id$
+ * @since 8.3RC1
+ */
+public class ExtensionRepositoryTasks<T>
+{
+    /**
+     * A query to run on a repository.
+     *
+     * @param <T> the type of the query result
+     * @version $Id$
+     */
+    @FunctionalInterface
+    public interface RepositoryTask<T>
+    {
+        /**
+         * @param repository the repository to query
+         * @return the result of the query
+         * @throws ResolveException when failing to query the repository
+         */
+        T call(ExtensionRepository repository) throws ResolveException;
+    }
+
+    private final List<ExtensionRepository> repositories;
+
+    private final RepositoryTask<T> task;
+
+    private final Executor executor;
+
+    private final Execution execution;
+
+    private final int maxConcurrent;
+
+    private final List<FutureTask<T>> futures;
+
+    /**
+     * @param repositories the repositories to query
+     * @param task the query to run on each repository
+     * @param executor the executor used to run the queries in parallel, null to run them in the caller thread when
+     *            {@link #get(int)} is called
+     * @param execution used to execute the queries in a context inheriting from the caller context
+     * @param maxConcurrent the maximum number of queries started in advance
+     */
+    public ExtensionRepositoryTasks(List<ExtensionRepository> repositories, RepositoryTask<T> task, Executor executor,
+        Execution execution, int maxConcurrent)
+    {
+        this.repositories = repositories;
+        this.task = task;
+        this.executor = executor;
+        this.execution = execution;
+        this.maxConcurrent = Math.max(maxConcurrent, 1);
+
+        if (this.executor != null) {
+            this.futures = new ArrayList<>(repositories.size());
+
+            submitUntil(this.maxConcurrent);
+        } else {
+            this.futures = null;
+        }
+    }
+
+    private void submitUntil(int end)
+    {
+        for (int i = this.futures.size(); i < end && i < this.repositories.size(); ++i) {
+            ExtensionRepository repository = this.repositories.get(i);
+
+            FutureTask<T> future = new FutureTask<>(() -> this.task.call(repository));
+            this.futures.add(future);
+
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            this.executor.execute(new ExecutionContextScopedRunnable(() -> {
+                Thread thread = Thread.currentThread();
+                ClassLoader currentClassLoader = thread.getContextClassLoader();
+                thread.setContextClassLoader(classLoader);
+                try {
+                    // Does nothing if the query was cancelled or already executed by the caller
+                    future.run();
+                } finally {
+                    thread.setContextClassLoader(currentClassLoader);
+                }
+            }, this.execution));
+        }
+    }
+
+    /**
+     * @param index the index of the repository
+     * @return the result of the query on the repository at the passed index
+     * @throws ResolveException when failing to query the repository
+     */
+    public T get(int index) throws ResolveException
+    {
+        if (this.executor == null) {
+            return this.task.call(this.repositories.get(index));
+        }
+
+        submitUntil(index + this.maxConcurrent);
+
+        FutureTask<T> future = this.futures.get(index);
+
+        // Don't wait for the executor if it did not start the query yet (does nothing if it did)
+        future.run();
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            cancel();
+            Thread.currentThread().interrupt();
+
+            throw new ResolveException(
+                "Interrupted while querying repository [" + this.repositories.get(index).getDescriptor() + "]", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof ResolveException) {
+                throw (ResolveException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new ResolveException(
+                "Failed to query repository [" + this.repositories.get(index).getDescriptor() + "]", cause);
+        }
+    }
+
+    /**
+     * Cancel the queries which are not finished yet. The queries which are not started yet are never executed and the
+     * result of the running ones is ignored.
+     */
+    public void cancel()
+    {
+        if (this.futures != null) {
+            for (FutureTask<T> future : this.futures) {
+                // Interrupting the repository could leave it (and the shared connections it's using) in a bad state
+                future.cancel(false);
+            }
+        }
+    }
+}
@@ -29,8 +29,10 @@
 import org.xwiki.component.annotation.Role;
 import org.xwiki.extension.Extension;
 import org.xwiki.extension.InvalidExtensionException;
+import org.xwiki.extension.repository.ExtensionRepository;
 import org.xwiki.extension.repository.internal.core.DefaultCoreExtension;
 import org.xwiki.extension.repository.internal.core.DefaultCoreExtensionRepository;
+import org.xwiki.extension.repository.internal.index.IndexedExtension;
 import org.xwiki.extension.repository.internal.local.DefaultLocalExtension;
 import org.xwiki.extension.repository.internal.local.DefaultLocalExtensionRepository;
 
@@ -66,6 +68,23 @@ DefaultLocalExtension loadLocalExtensionDescriptor(DefaultLocalExtensionReposito
     DefaultCoreExtension loadCoreExtensionDescriptor(DefaultCoreExtensionRepository repository, URL url,
         InputStream descriptor) throws InvalidExtensionException;
 
+    /**
+     * Load an extension descriptor as an extension of the passed repository.
+     * <p>
+     * Not supported by default, the extensions stored in the local search index are ignored when it's not implemented.
+     *
+     * @param repository the repository where the extension comes from
+     * @param descriptor the descriptor content
+     * @return the {@link Extension} instance
+     * @throws InvalidExtensionException error when trying to parse extension descriptor
+     * @since 8.3RC1
+     */
+    default IndexedExtension loadExtensionDescriptor(ExtensionRepository repository, InputStream descriptor)
+        throws InvalidExtensionException
+    {
+        throw new UnsupportedOperationException("Loading an extension descriptor of any repository is not supported");
+    }
+
     /**
      * Save local extension descriptor.
      *
@@ -65,8 +65,9 @@ private int compare(Extension o1, Extension o2, SortClause sortClause)
         Object value2 = o2.get(sortClause.getField());
 
         if (value1 instanceof Comparable && value2 instanceof Comparable) {
-            return ObjectUtils.compare((Comparable) value1, (Comparable) value2)
-                + (sortClause.getOrder() == ORDER.ASC ? 1 : -1);
+            int result = ObjectUtils.compare((Comparable) value1, (Comparable) value2);
+
+            return sortClause.getOrder() == ORDER.ASC ? result : -result;
         }
 
         return 0;
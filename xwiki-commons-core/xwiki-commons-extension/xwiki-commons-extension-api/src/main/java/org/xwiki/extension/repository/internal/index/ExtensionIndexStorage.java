@@ -0,0 +1,197 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.extension.repository.internal.index;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.extension.Extension;
+import org.xwiki.extension.ExtensionId;
+import org.xwiki.extension.internal.PathUtils;
+import org.xwiki.extension.repository.ExtensionRepository;
+import org.xwiki.extension.repository.internal.ExtensionSerializer;
+
+/**
+ * Store the indexed extensions of a repository on the filesystem, one descriptor file per extension.
+ *
+ * @version $Id$
+ * @since 8.3RC1
+ */
+public class ExtensionIndexStorage
+{
+    /**
+     * Logging tool.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExtensionIndexStorage.class);
+
+    /**
+     * The extension of the descriptor files prefixed with dot.
+     */
+    private static final String DESCRIPTOR_SUFFIX = ".xed";
+
+    /**
+     * The name of the file listing the descriptor files in the repository order.
+     */
+    private static final String ORDER_FILE = "extensions.txt";
+
+    /**
+     * The extension of the files being written.
+     */
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final File folder;
+
+    private final ExtensionSerializer serializer;
+
+    /**
+     * @param folder the folder where to store the descriptors
+     * @param serializer used to read and write the descriptors
+     */
+    public ExtensionIndexStorage(File folder, ExtensionSerializer serializer)
+    {
+        this.folder = folder;
+        this.serializer = serializer;
+    }
+
+    /**
+     * @return true if the index has been stored
+     */
+    public boolean exists()
+    {
+        return new File(this.folder, ORDER_FILE).exists();
+    }
+
+    /**
+     * @return the date of the last update of the stored index, in milliseconds
+     */
+    public long getLastUpdate()
+    {
+        return new File(this.folder, ORDER_FILE).lastModified();
+    }
+
+    /**
+     * @param repository the repository to set in the loaded extensions
+     * @return the stored extensions, in the repository order
+     * @throws IOException when failing to read the index
+     */
+    public List<Extension> load(ExtensionRepository repository) throws IOException
+    {
+        List<String> fileNames = FileUtils.readLines(new File(this.folder, ORDER_FILE), StandardCharsets.UTF_8);
+
+        List<Extension> extensions = new ArrayList<>(fileNames.size());
+        for (String fileName : fileNames) {
+            File file = new File(this.folder, fileName);
+
+            try (FileInputStream stream = new FileInputStream(file)) {
+                extensions.add(this.serializer.loadExtensionDescriptor(repository, stream));
+            } catch (Exception e) {
+                LOGGER.warn("Failed to load indexed extension from file [{}]", file, e);
+            }
+        }
+
+        return extensions;
+    }
+
+    /**
+     * Store the passed extensions. Only the descriptors of the new or modified extensions are written and the ones of
+     * the extensions which are not there anymore are deleted. Each file is replaced atomically so that a concurrent
+     * {@link #load(ExtensionRepository)} (or a crash) never sees a partially written index.
+     *
+     * @param extensions the extensions to store, in the repository order
+     * @throws IOException when failing to write the index
+     */
+    public void update(Collection<? extends Extension> extensions) throws IOException
+    {
+        FileUtils.forceMkdir(this.folder);
+
+        List<String> fileNames = new ArrayList<>(extensions.size());
+        for (Extension extension : extensions) {
+            String fileName = getFileName(extension.getId());
+
+            File file = new File(this.folder, fileName);
+            try {
+                ByteArrayOutputStream stream = new ByteArrayOutputStream();
+                this.serializer.saveExtensionDescriptor(extension, stream);
+                byte[] descriptor = stream.toByteArray();
+
+                // Don't rewrite the descriptors which did not change
+                if (!file.exists() || !Arrays.equals(descriptor, FileUtils.readFileToByteArray(file))) {
+                    write(file, descriptor);
+                }
+            } catch (Exception e) {
+                LOGGER.warn("Failed to store indexed extension [{}]", extension.getId(), e);
+
+                FileUtils.deleteQuietly(file);
+
+                continue;
+            }
+
+            fileNames.add(fileName);
+        }
+
+        // Remove the extensions which are not in the repository anymore (and the leftovers of interrupted writes)
+        Set<String> fileNameSet = new HashSet<>(fileNames);
+        File[] files = this.folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if ((name.endsWith(DESCRIPTOR_SUFFIX) && !fileNameSet.contains(name)) || name.endsWith(TMP_SUFFIX)) {
+                    FileUtils.deleteQuietly(file);
+                }
+            }
+        }
+
+        write(new File(this.folder, ORDER_FILE), String.join("\n", fileNames).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void write(File file, byte[] content) throws IOException
+    {
+        File tmpFile = new File(file.getParentFile(), file.getName() + TMP_SUFFIX);
+
+        FileUtils.writeByteArrayToFile(tmpFile, content);
+
+        try {
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private String getFileName(ExtensionId id)
+    {
+        return PathUtils.encode(id.getId()) + '-' + PathUtils.encode(id.getVersion().getValue()) + DESCRIPTOR_SUFFIX;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.extension.repository.internal.index;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.xwiki.extension.Extension;
+import org.xwiki.extension.internal.converter.ExtensionIdConverter;
+import org.xwiki.extension.repository.internal.RepositoryUtils;
+import org.xwiki.extension.repository.result.IterableResult;
+import org.xwiki.extension.repository.search.ExtensionQuery;
+
+/**
+ * In memory inverted index of extensions metadata.
+ * <p>
+ * Each searched field ({@link RepositoryUtils#matches(Pattern, Collection, Extension)}) is split in lower case
+ * trigrams associated to the extensions containing them. A query pattern first select the extensions containing all
+ * its trigrams and only those candidates are then matched with the usual {@link RepositoryUtils} rules, so the result
+ * is exactly the same as with a full scan.
+ *
+ * @version $Id$
+ * @since 8.3RC1
+ */
+public class ExtensionSearchIndex
+{
+    private static final int GRAM_SIZE = 3;
+
+    private final List<Extension> extensions;
+
+    private final Map<String, BitSet> grams = new HashMap<>();
+
+    /**
+     * @param extensions the extensions to index
+     */
+    public ExtensionSearchIndex(Collection<? extends Extension> extensions)
+    {
+        this.extensions = Collections.unmodifiableList(new ArrayList<Extension>(extensions));
+
+        for (int i = 0; i < this.extensions.size(); ++i) {
+            for (Object value : getSearchedValues(this.extensions.get(i))) {
+                if (value != null) {
+                    addGrams(value.toString().toLowerCase(), i);
+                }
+            }
+        }
+    }
+
+    private static Object[] getSearchedValues(Extension extension)
+    {
+        return new Object[] { extension.getId().getId(), extension.getDescription(), extension.getSummary(),
+            extension.getName(), ExtensionIdConverter.toStringList(extension.getExtensionFeatures()) };
+    }
+
+    private void addGrams(String value, int extensionIndex)
+    {
+        for (int i = 0; i + GRAM_SIZE <= value.length(); ++i) {
+            String gram = value.substring(i, i + GRAM_SIZE);
+
+            BitSet gramExtensions = this.grams.get(gram);
+            if (gramExtensions == null) {
+                gramExtensions = new BitSet(this.extensions.size());
+                this.grams.put(gram, gramExtensions);
+            }
+
+            gramExtensions.set(extensionIndex);
+        }
+    }
+
+    /**
+     * @return the indexed extensions
+     */
+    public List<Extension> getExtensions()
+    {
+        return this.extensions;
+    }
+
+    /**
+     * @param query the query
+     * @return the indexed extensions matching the query pattern and filters, in the index order
+     */
+    public List<Extension> find(ExtensionQuery query)
+    {
+        Pattern patternMatcher = RepositoryUtils.createPatternMatcher(query.getQuery());
+
+        List<Extension> result = new ArrayList<>();
+
+        BitSet candidates = getCandidates(query.getQuery());
+        if (candidates != null) {
+            for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                addMatching(this.extensions.get(i), patternMatcher, query, result);
+            }
+        } else {
+            for (Extension extension : this.extensions) {
+                addMatching(extension, patternMatcher, query, result);
+            }
+        }
+
+        return result;
+    }
+
+    private void addMatching(Extension extension, Pattern patternMatcher, ExtensionQuery query, List<Extension> result)
+    {
+        if (RepositoryUtils.matches(patternMatcher, query.getFilters(), extension)) {
+            result.add(extension);
+        }
+    }
+
+    /**
+     * @param pattern the query pattern
+     * @return the extensions which might match the pattern, null if the pattern is too short to use the index
+     */
+    private BitSet getCandidates(String pattern)
+    {
+        if (pattern == null || pattern.length() < GRAM_SIZE) {
+            return null;
+        }
+
+        String lowerPattern = pattern.toLowerCase();
+
+        BitSet candidates = null;
+        for (int i = 0; i + GRAM_SIZE <= lowerPattern.length(); ++i) {
+            BitSet gramExtensions = this.grams.get(lowerPattern.substring(i, i + GRAM_SIZE));
+
+            if (gramExtensions == null) {
+                return new BitSet();
+            }
+
+            if (candidates == null) {
+                candidates = (BitSet) gramExtensions.clone();
+            } else {
+                candidates.and(gramExtensions);
+            }
+        }
+
+        return candidates;
+    }
+
+    /**
+     * Search several indexes as if they were one: the sort clauses and the pagination are applied to the merged
+     * result.
+     *
+     * @param query the query
+     * @param indexes the indexes to search, in priority order
+     * @return the search result
+     */
+    public static IterableResult<Extension> search(ExtensionQuery query, Collection<ExtensionSearchIndex> indexes)
+    {
+        List<Extension> result = new ArrayList<>();
+
+        for (ExtensionSearchIndex index : indexes) {
+            result.addAll(index.find(query));
+        }
+
+        if (!query.getSortClauses().isEmpty()) {
+            RepositoryUtils.sort(result, query.getSortClauses());
+        }
+
+        return RepositoryUtils.getIterableResult(query.getOffset(), query.getLimit(), result);
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.extension.repository.internal.index;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.context.concurrent.ExecutionContextRunnable;
+import org.xwiki.environment.Environment;
+import org.xwiki.extension.Extension;
+import org.xwiki.extension.ExtensionManagerConfiguration;
+import org.xwiki.extension.internal.PathUtils;
+import org.xwiki.extension.repository.ExtensionRepository;
+import org.xwiki.extension.repository.ExtensionRepositoryDescriptor;
+import org.xwiki.extension.repository.internal.ExtensionSerializer;
+import org.xwiki.extension.repository.result.IterableResult;
+import org.xwiki.extension.repository.search.AdvancedSearchable;
+import org.xwiki.extension.repository.search.ExtensionQuery;
+import org.xwiki.extension.repository.search.SearchException;
+import org.xwiki.extension.repository.search.Searchable;
+
+/**
+ * Maintain a local search index of the extensions available in remote repositories.
+ * <p>
+ * The indexes are stored in the permanent directory so that they are available right after a restart, even without
+ * network. They are refreshed in the background from the repositories when they are older than
+ * {@link ExtensionManagerConfiguration#getSearchIndexRefreshInterval()}.
+ *
+ * @version $Id$
+ * @since 8.3RC1
+ */
+@Component(roles = ExtensionSearchIndexCache.class)
+@Singleton
+public class ExtensionSearchIndexCache implements Initializable, Disposable
+{
+    /**
+     * The number of extensions asked to the repository at once.
+     */
+    private static final int PAGE_SIZE = 100;
+
+    @Inject
+    private Environment environment;
+
+    @Inject
+    private ExtensionSerializer serializer;
+
+    @Inject
+    private ExtensionManagerConfiguration configuration;
+
+    @Inject
+    private ComponentManager componentManager;
+
+    @Inject
+    private Logger logger;
+
+    private File folder;
+
+    private final Map<ExtensionRepositoryDescriptor, IndexEntry> indexes = new ConcurrentHashMap<>();
+
+    private ExecutorService executor;
+
+    /**
+     * The index of a repository.
+     *
+     * @version $Id$
+     */
+    private static final class IndexEntry
+    {
+        private final ExtensionIndexStorage storage;
+
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private volatile ExtensionSearchIndex index;
+
+        private volatile long lastUpdate;
+
+        IndexEntry(ExtensionIndexStorage storage)
+        {
+            this.storage = storage;
+        }
+    }
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        File permanentDirectory = this.environment.getPermanentDirectory();
+        if (permanentDirectory != null) {
+            this.folder = new File(permanentDirectory, "cache/extension/index/");
+        }
+    }
+
+    @Override
+    public synchronized void dispose()
+    {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+        }
+    }
+
+    private synchronized ExecutorService getExecutor()
+    {
+        if (this.executor == null) {
+            this.executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "Extension search index refresh");
+                thread.setDaemon(true);
+
+                return thread;
+            });
+        }
+
+        return this.executor;
+    }
+
+    /**
+     * Return the current index of the passed repository and schedule a refresh if it's outdated.
+     *
+     * @param repository the repository
+     * @return the index of the repository, null if it's not available yet
+     */
+    public ExtensionSearchIndex getIndex(ExtensionRepository repository)
+    {
+        IndexEntry entry = this.indexes.computeIfAbsent(repository.getDescriptor(), key -> load(repository));
+
+        long interval = TimeUnit.SECONDS.toMillis(this.configuration.getSearchIndexRefreshInterval());
+        if (System.currentTimeMillis() - entry.lastUpdate > interval) {
+            refresh(repository, entry);
+        }
+
+        return entry.index;
+    }
+
+    private IndexEntry load(ExtensionRepository repository)
+    {
+        ExtensionIndexStorage storage = null;
+        if (this.folder != null) {
+            ExtensionRepositoryDescriptor descriptor = repository.getDescriptor();
+            storage = new ExtensionIndexStorage(new File(this.folder, PathUtils.encode(descriptor.getId()) + '-'
+                + DigestUtils.md5Hex(String.valueOf(descriptor.getURI()))), this.serializer);
+        }
+
+        IndexEntry entry = new IndexEntry(storage);
+
+        if (storage != null && storage.exists()) {
+            try {
+                entry.index = new ExtensionSearchIndex(storage.load(repository));
+                entry.lastUpdate = storage.getLastUpdate();
+            } catch (Exception e) {
+                this.logger.warn("Failed to load the search index of repository [{}]: {}", repository.getDescriptor(),
+                    ExceptionUtils.getRootCauseMessage(e));
+            }
+        }
+
+        return entry;
+    }
+
+    private void refresh(ExtensionRepository repository, IndexEntry entry)
+    {
+        if (entry.refreshing.compareAndSet(false, true)) {
+            getExecutor().execute(new ExecutionContextRunnable(() -> {
+                try {
+                    List<Extension> extensions = getExtensions(repository);
+
+                    entry.index = new ExtensionSearchIndex(extensions);
+
+                    if (entry.storage != null) {
+                        entry.storage.update(extensions);
+                    }
+                } catch (Exception e) {
+                    this.logger.warn("Failed to refresh the search index of repository [{}]: {}",
+                        repository.getDescriptor(), ExceptionUtils.getRootCauseMessage(e));
+                } finally {
+                    // Don't retry before the next refresh
+                    entry.lastUpdate = System.currentTimeMillis();
+                    entry.refreshing.set(false);
+                }
+            }, this.componentManager));
+        }
+    }
+
+    /**
+     * @param repository the repository
+     * @return all the extensions returned by an empty search on the passed repository
+     * @throws SearchException when failing to search the repository
+     */
+    private List<Extension> getExtensions(ExtensionRepository repository) throws SearchException
+    {
+        List<Extension> extensions = new ArrayList<>();
+
+        // The total hits is not always known (-1) so stop at the first incomplete page
+        int pageSize;
+        do {
+            IterableResult<Extension> result = search(repository, extensions.size());
+
+            pageSize = 0;
+            for (Extension extension : result) {
+                extensions.add(extension);
+                ++pageSize;
+            }
+        } while (pageSize == PAGE_SIZE);
+
+        return extensions;
+    }
+
+    private IterableResult<Extension> search(ExtensionRepository repository, int offset) throws SearchException
+    {
+        if (repository instanceof AdvancedSearchable) {
+            ExtensionQuery query = new ExtensionQuery("");
+            query.setOffset(offset);
+            query.setLimit(PAGE_SIZE);
+
+            return ((AdvancedSearchable) repository).search(query);
+        } else if (repository instanceof Searchable) {
+            return ((Searchable) repository).search("", offset, PAGE_SIZE);
+        }
+
+        throw new SearchException("Repository [" + repository.getDescriptor() + "] is not searchable");
+    }
+}
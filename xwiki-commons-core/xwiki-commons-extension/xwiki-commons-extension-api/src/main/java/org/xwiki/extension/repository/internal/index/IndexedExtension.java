@@ -0,0 +1,55 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.extension.repository.internal.index;
+
+import org.xwiki.extension.AbstractExtension;
+import org.xwiki.extension.Extension;
+import org.xwiki.extension.ExtensionId;
+import org.xwiki.extension.repository.ExtensionRepository;
+
+/**
+ * An extension descriptor stored in a local search index.
+ *
+ * @version $Id$
+ * @since 8.3RC1
+ */
+public class IndexedExtension extends AbstractExtension
+{
+    /**
+     * @param repository the repository where this extension comes from
+     * @param id the extension identifier
+     * @param type the extension type
+     */
+    public IndexedExtension(ExtensionRepository repository, ExtensionId id, String type)
+    {
+        super(repository, id, type);
+    }
+
+    /**
+     * Create new extension descriptor by copying provided one.
+     *
+     * @param repository the repository where this extension comes from
+     * @param extension the extension to copy
+     */
+    public IndexedExtension(ExtensionRepository repository, Extension extension)
+    {
+        super(repository, extension);
+    }
+}
@@ -122,4 +122,14 @@ public void testGetExtensionRepositoryDescriptorsWithProperties() throws URISynt
         Assert.assertEquals("other value", descriptor.getProperty("property.with.dots"));
         Assert.assertEquals(0, this.logCapture.size());
     }
+
+    @Test
+    public void testGetResolveThreads()
+    {
+        Assert.assertEquals(5, this.configuration.getResolveThreads());
+
+        this.source.setProperty("extension.resolveThreads", 1);
+
+        Assert.assertEquals(1, this.configuration.getResolveThreads());
+    }
 }
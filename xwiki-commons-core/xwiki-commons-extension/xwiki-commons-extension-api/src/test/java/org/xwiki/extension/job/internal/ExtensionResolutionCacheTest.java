@@ -0,0 +1,201 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.extension.job.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.extension.DefaultExtensionDependency;
+import org.xwiki.extension.Extension;
+import org.xwiki.extension.ExtensionDependency;
+import org.xwiki.extension.ExtensionId;
+import org.xwiki.extension.ResolveException;
+import org.xwiki.extension.repository.ExtensionRepositoryManager;
+import org.xwiki.extension.version.internal.DefaultVersionConstraint;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link ExtensionResolutionCache}.
+ *
+ * @version $Id$
+ * @since 8.3RC1
+ */
+public class ExtensionResolutionCacheTest
+{
+    private ExtensionRepositoryManager repositoryManager;
+
+    @Before
+    public void before()
+    {
+        this.repositoryManager = mock(ExtensionRepositoryManager.class);
+    }
+
+    private ExtensionDependency dependency(String id)
+    {
+        return new DefaultExtensionDependency(id, new DefaultVersionConstraint("1.0"));
+    }
+
+    private Extension extension(String id, ExtensionDependency... dependencies)
+    {
+        Extension extension = mock(Extension.class, id);
+        when(extension.getId()).thenReturn(new ExtensionId(id, "1.0"));
+        when(extension.getDependencies()).thenReturn(Arrays.asList(dependencies));
+
+        return extension;
+    }
+
+    @Test
+    public void resolveDependencyOnce() throws ResolveException
+    {
+        Extension extension = extension("extension");
+        when(this.repositoryManager.resolve(any(ExtensionDependency.class))).thenReturn(extension);
+
+        ExtensionResolutionCache cache = new ExtensionResolutionCache(this.repositoryManager, null, d -> true);
+
+        assertSame(extension, cache.resolve(dependency("extension")));
+        assertSame(extension, cache.resolve(dependency("extension")));
+
+        verify(this.repositoryManager, times(1)).resolve(any(ExtensionDependency.class));
+
+        // Different version constraint
+        cache.resolve(new DefaultExtensionDependency("extension", new DefaultVersionConstraint("2.0")));
+
+        verify(this.repositoryManager, times(2)).resolve(any(ExtensionDependency.class));
+    }
+
+    @Test
+    public void resolveExtensionIdOnce() throws ResolveException
+    {
+        Extension extension = extension("extension");
+        when(this.repositoryManager.resolve(extension.getId())).thenReturn(extension);
+
+        ExtensionResolutionCache cache = new ExtensionResolutionCache(this.repositoryManager, null, d -> true);
+
+        assertSame(extension, cache.resolve(new ExtensionId("extension", "1.0")));
+        assertSame(extension, cache.resolve(new ExtensionId("extension", "1.0")));
+
+        verify(this.repositoryManager, times(1)).resolve(any(ExtensionId.class));
+    }
+
+    @Test
+    public void resolveFailureOnce() throws ResolveException
+    {
+        ResolveException exception = new ResolveException("not found");
+        when(this.repositoryManager.resolve(any(ExtensionDependency.class))).thenThrow(exception);
+
+        ExtensionResolutionCache cache = new ExtensionResolutionCache(this.repositoryManager, null, d -> true);
+
+        for (int i = 0; i < 2; ++i) {
+            try {
+                cache.resolve(dependency("missing"));
+
+                fail("Should have failed");
+            } catch (ResolveException e) {
+                assertSame(exception, e);
+            }
+        }
+
+        verify(this.repositoryManager, times(1)).resolve(any(ExtensionDependency.class));
+    }
+
+    @Test
+    public void prefetch() throws ResolveException
+    {
+        ExtensionDependency dependency1 = dependency("dependency1");
+        ExtensionDependency dependency2 = dependency("dependency2");
+        ExtensionDependency excluded = dependency("excluded");
+
+        Extension root = extension("root", dependency1, excluded);
+        Extension extension1 = extension("dependency1", dependency2);
+        Extension extension2 = extension("dependency2");
+
+        when(this.repositoryManager.resolve(dependency1)).thenReturn(extension1);
+        when(this.repositoryManager.resolve(dependency2)).thenReturn(extension2);
+
+        ExtensionResolutionCache cache = new ExtensionResolutionCache(this.repositoryManager, Runnable::run,
+            d -> !d.getId().equals("excluded"));
+
+        cache.prefetch(root, Collections.<String, ExtensionDependency>emptyMap());
+
+        verify(this.repositoryManager).resolve(dependency1);
+        verify(this.repositoryManager, never()).resolve(excluded);
+        // The dependencies of the dependencies are prefetched only when the plan selects them
+        verify(this.repositoryManager, never()).resolve(dependency2);
+
+        // Already resolved
+        assertSame(extension1, cache.resolve(dependency("dependency1")));
+
+        verify(this.repositoryManager, times(1)).resolve(any(ExtensionDependency.class));
+    }
+
+    @Test
+    public void resolveNotStartedPrefetch() throws ResolveException
+    {
+        ExtensionDependency dependency = dependency("dependency");
+        Extension extension = extension("dependency");
+
+        when(this.repositoryManager.resolve(dependency)).thenReturn(extension);
+
+        // An executor which never gets to the prefetches
+        List<Runnable> queue = new ArrayList<>();
+        ExtensionResolutionCache cache = new ExtensionResolutionCache(this.repositoryManager, queue::add, d -> true);
+
+        cache.prefetch(extension("root", dependency), null);
+        assertEquals(1, queue.size());
+
+        // The plan does not wait for the executor
+        assertSame(extension, cache.resolve(dependency("dependency")));
+
+        // The executor finally gets to the prefetch which was already done
+        queue.get(0).run();
+
+        verify(this.repositoryManager, times(1)).resolve(any(ExtensionDependency.class));
+    }
+
+    @Test
+    public void dispose() throws ResolveException
+    {
+        List<Runnable> queue = new ArrayList<>();
+        ExtensionResolutionCache cache = new ExtensionResolutionCache(this.repositoryManager, queue::add, d -> true);
+
+        cache.prefetch(extension("root", dependency("dependency")), null);
+        cache.dispose();
+
+        queue.get(0).run();
+
+        verifyZeroInteractions(this.repositoryManager);
+    }
+
+    @Test
+    public void prefetchWithoutExecutor() throws ResolveException
+    {
+        ExtensionResolutionCache cache = new ExtensionResolutionCache(this.repositoryManager, null, d -> true);
+
+        cache.prefetch(extension("root", dependency("dependency")), null);
+
+        verifyZeroInteractions(this.repositoryManager);
+    }
+}
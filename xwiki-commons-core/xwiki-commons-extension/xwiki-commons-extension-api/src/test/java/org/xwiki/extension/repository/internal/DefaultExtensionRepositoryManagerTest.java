@@ -19,18 +19,30 @@
  */
 package org.xwiki.extension.repository.internal;
 
+import java.io.Closeable;
 import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
 import org.xwiki.extension.Extension;
+import org.xwiki.extension.ExtensionId;
+import org.xwiki.extension.ExtensionManagerConfiguration;
+import org.xwiki.extension.ExtensionNotFoundException;
 import org.xwiki.extension.ResolveException;
 import org.xwiki.extension.repository.DefaultExtensionRepositoryDescriptor;
 import org.xwiki.extension.repository.ExtensionRepository;
@@ -46,7 +58,11 @@
 
 import com.google.common.collect.Lists;
 
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.withSettings;
 
@@ -149,6 +165,19 @@ private void assertSearch(String id, int offset, int nb, Extension... extensions
         assertSameElements(Arrays.asList(extensions), this.mock.getComponentUnderTest().search("id", offset, nb));
     }
 
+    private void enableConcurrentResolve() throws ComponentLookupException
+    {
+        ExtensionManagerConfiguration configuration = this.mock.getInstance(ExtensionManagerConfiguration.class);
+        when(configuration.getResolveThreads()).thenReturn(2);
+
+        Execution execution = this.mock.getInstance(Execution.class);
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArguments()[1]).run();
+
+            return null;
+        }).when(execution).runWithoutInheritance(any(ExecutionContext.class), any(Runnable.class));
+    }
+
     // Tests
 
     @Test
@@ -191,4 +220,113 @@ public void search() throws SearchException, ComponentLookupException
         assertSearch("pattern", 0, 1, this.extension1);
         assertSearch("pattern", 1, -1, this.extension2, this.extension3, this.extension4);
     }
+
+    @Test
+    public void resolveVersionsConcurrently() throws ResolveException, ComponentLookupException
+    {
+        enableConcurrentResolve();
+
+        resolveVersions();
+    }
+
+    @Test
+    public void resolveConcurrentlyKeepsRepositoriesOrder() throws ResolveException, ComponentLookupException
+    {
+        enableConcurrentResolve();
+
+        ExtensionId extensionId = new ExtensionId("id", "version");
+
+        when(this.mockRepository1.resolve(extensionId)).thenAnswer(invocation -> {
+            Thread.sleep(100);
+
+            return this.extension1;
+        });
+        when(this.mockRepository2.resolve(extensionId)).thenReturn(this.extension2);
+
+        Assert.assertSame(this.extension1, this.mock.getComponentUnderTest().resolve(extensionId));
+
+        doThrow(new ExtensionNotFoundException("not found")).when(this.mockRepository1).resolve(extensionId);
+
+        Assert.assertSame(this.extension2, this.mock.getComponentUnderTest().resolve(extensionId));
+    }
+
+    @Test
+    public void resolveConcurrentlyCancelsOtherRepositoriesWithoutInterrupting() throws Exception
+    {
+        enableConcurrentResolve();
+
+        ExtensionId extensionId = new ExtensionId("id", "version");
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+
+        when(this.mockRepository1.resolve(extensionId)).thenAnswer(invocation -> {
+            started.await();
+
+            return this.extension1;
+        });
+        when(this.mockRepository2.resolve(extensionId)).thenAnswer(invocation -> {
+            started.countDown();
+            try {
+                released.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            } finally {
+                finished.countDown();
+            }
+
+            return this.extension2;
+        });
+
+        Assert.assertSame(this.extension1, this.mock.getComponentUnderTest().resolve(extensionId));
+
+        released.countDown();
+        Assert.assertTrue(finished.await(10, TimeUnit.SECONDS));
+        Assert.assertFalse(interrupted.get());
+    }
+
+    @Test
+    public void resolveConcurrentlyWithCallerClassLoader() throws Exception
+    {
+        enableConcurrentResolve();
+
+        ExtensionId extensionId = new ExtensionId("id", "version");
+
+        AtomicReference<ClassLoader> classLoader = new AtomicReference<>();
+
+        doThrow(new ExtensionNotFoundException("not found")).when(this.mockRepository1).resolve(extensionId);
+        when(this.mockRepository2.resolve(extensionId)).thenAnswer(invocation -> {
+            classLoader.set(Thread.currentThread().getContextClassLoader());
+
+            return this.extension2;
+        });
+
+        Thread thread = Thread.currentThread();
+        ClassLoader currentClassLoader = thread.getContextClassLoader();
+        ClassLoader callerClassLoader = new URLClassLoader(new URL[0], currentClassLoader);
+        thread.setContextClassLoader(callerClassLoader);
+        try {
+            Assert.assertSame(this.extension2, this.mock.getComponentUnderTest().resolve(extensionId));
+        } finally {
+            thread.setContextClassLoader(currentClassLoader);
+        }
+
+        Assert.assertSame(callerClassLoader, classLoader.get());
+    }
+
+    @Test
+    public void removeRepositoryClosesIt() throws Exception
+    {
+        ExtensionRepository repository =
+            mock(ExtensionRepository.class, withSettings().extraInterfaces(Closeable.class).name("closeable"));
+        when(repository.getDescriptor())
+            .thenReturn(new DefaultExtensionRepositoryDescriptor("closeable", "type", new URI("uri:uri")));
+        this.mock.getComponentUnderTest().addRepository(repository);
+
+        this.mock.getComponentUnderTest().removeRepository("closeable");
+
+        verify((Closeable) repository).close();
+    }
 }
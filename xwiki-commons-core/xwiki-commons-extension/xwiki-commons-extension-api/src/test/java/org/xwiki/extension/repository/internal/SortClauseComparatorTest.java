@@ -0,0 +1,85 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.extension.repository.internal;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.xwiki.extension.Extension;
+import org.xwiki.extension.ExtensionId;
+import org.xwiki.extension.repository.internal.index.IndexedExtension;
+import org.xwiki.extension.repository.search.ExtensionQuery.ORDER;
+import org.xwiki.extension.repository.search.ExtensionQuery.SortClause;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Validate {@link SortClauseComparator}.
+ *
+ * @version $Id$
+ */
+public class SortClauseComparatorTest
+{
+    private IndexedExtension createExtension(String name, String type)
+    {
+        IndexedExtension extension = new IndexedExtension(null, new ExtensionId(name, "1.0"), type);
+        extension.setName(name);
+
+        return extension;
+    }
+
+    private SortClauseComparator createComparator(SortClause... sortClauses)
+    {
+        return new SortClauseComparator(Arrays.asList(sortClauses));
+    }
+
+    // Tests
+
+    @Test
+    public void compareAscending()
+    {
+        SortClauseComparator comparator = createComparator(new SortClause(Extension.FIELD_NAME, ORDER.ASC));
+
+        assertTrue(comparator.compare(createExtension("a", "jar"), createExtension("b", "jar")) < 0);
+        assertTrue(comparator.compare(createExtension("b", "jar"), createExtension("a", "jar")) > 0);
+        assertEquals(0, comparator.compare(createExtension("a", "jar"), createExtension("a", "jar")));
+    }
+
+    @Test
+    public void compareDescending()
+    {
+        SortClauseComparator comparator = createComparator(new SortClause(Extension.FIELD_NAME, ORDER.DESC));
+
+        assertTrue(comparator.compare(createExtension("a", "jar"), createExtension("b", "jar")) > 0);
+        assertTrue(comparator.compare(createExtension("b", "jar"), createExtension("a", "jar")) < 0);
+        assertEquals(0, comparator.compare(createExtension("a", "jar"), createExtension("a", "jar")));
+    }
+
+    @Test
+    public void compareWithSeveralClauses()
+    {
+        SortClauseComparator comparator = createComparator(new SortClause(Extension.FIELD_TYPE, ORDER.ASC),
+            new SortClause(Extension.FIELD_NAME, ORDER.DESC));
+
+        assertTrue(comparator.compare(createExtension("a", "jar"), createExtension("b", "xar")) < 0);
+        assertTrue(comparator.compare(createExtension("a", "jar"), createExtension("b", "jar")) > 0);
+    }
+}
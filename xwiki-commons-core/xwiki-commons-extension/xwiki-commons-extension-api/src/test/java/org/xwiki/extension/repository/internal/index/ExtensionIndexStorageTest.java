@@ -0,0 +1,107 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.extension.repository.internal.index;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xwiki.extension.Extension;
+import org.xwiki.extension.ExtensionId;
+import org.xwiki.extension.repository.internal.ExtensionSerializer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Validate {@link ExtensionIndexStorage}.
+ *
+ * @version $Id$
+ */
+public class ExtensionIndexStorageTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ExtensionIndexStorage storage;
+
+    private File storageFolder;
+
+    @Before
+    public void before() throws Exception
+    {
+        // Serialize the extensions as their summary
+        ExtensionSerializer serializer = mock(ExtensionSerializer.class);
+        doAnswer(invocation -> {
+            Extension extension = (Extension) invocation.getArguments()[0];
+            OutputStream stream = (OutputStream) invocation.getArguments()[1];
+            stream.write(extension.getSummary().getBytes(StandardCharsets.UTF_8));
+
+            return null;
+        }).when(serializer).saveExtensionDescriptor(any(Extension.class), any(OutputStream.class));
+
+        this.storageFolder = new File(this.folder.getRoot(), "index");
+        this.storage = new ExtensionIndexStorage(this.storageFolder, serializer);
+    }
+
+    private IndexedExtension createExtension(String id, String summary)
+    {
+        IndexedExtension extension = new IndexedExtension(null, new ExtensionId(id, "1.0"), "jar");
+        extension.setSummary(summary);
+
+        return extension;
+    }
+
+    private String readDescriptor(String id) throws Exception
+    {
+        return FileUtils.readFileToString(new File(this.storageFolder, id + "-1%2E0.xed"), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void update() throws Exception
+    {
+        this.storage.update(Arrays.asList(createExtension("a", "first a"), createExtension("b", "first b")));
+
+        assertEquals("first a", readDescriptor("a"));
+        assertEquals("first b", readDescriptor("b"));
+        assertEquals(Arrays.asList("a-1%2E0.xed", "b-1%2E0.xed"),
+            FileUtils.readLines(new File(this.storageFolder, "extensions.txt"), StandardCharsets.UTF_8));
+
+        this.storage.update(Arrays.asList(createExtension("c", "first c"), createExtension("a", "second a")));
+
+        assertEquals("second a", readDescriptor("a"));
+        assertEquals("first c", readDescriptor("c"));
+        assertEquals(Arrays.asList("c-1%2E0.xed", "a-1%2E0.xed"),
+            FileUtils.readLines(new File(this.storageFolder, "extensions.txt"), StandardCharsets.UTF_8));
+
+        String[] files = this.storageFolder.list();
+        Arrays.sort(files);
+        assertArrayEquals(new String[] {"a-1%2E0.xed", "c-1%2E0.xed", "extensions.txt"}, files);
+    }
+}
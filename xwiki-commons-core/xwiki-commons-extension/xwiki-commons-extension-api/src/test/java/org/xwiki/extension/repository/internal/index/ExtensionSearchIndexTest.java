@@ -0,0 +1,138 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.extension.repository.internal.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.extension.Extension;
+import org.xwiki.extension.ExtensionId;
+import org.xwiki.extension.repository.result.IterableResult;
+import org.xwiki.extension.repository.search.ExtensionQuery;
+import org.xwiki.extension.repository.search.ExtensionQuery.COMPARISON;
+import org.xwiki.extension.repository.search.ExtensionQuery.ORDER;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Validate {@link ExtensionSearchIndex}.
+ *
+ * @version $Id$
+ */
+public class ExtensionSearchIndexTest
+{
+    private IndexedExtension extension1;
+
+    private IndexedExtension extension2;
+
+    private IndexedExtension extension3;
+
+    private ExtensionSearchIndex index1;
+
+    private ExtensionSearchIndex index2;
+
+    @Before
+    public void before()
+    {
+        this.extension1 = new IndexedExtension(null, new ExtensionId("org.xwiki:blog", "1.0"), "xar");
+        this.extension1.setName("Blog Application");
+        this.extension1.setSummary("Simple blog");
+
+        this.extension2 = new IndexedExtension(null, new ExtensionId("org.xwiki:calendar", "2.0"), "jar");
+        this.extension2.setName("Calendar");
+        this.extension2.setDescription("Display events in a BLOG-like timeline");
+
+        this.extension3 = new IndexedExtension(null, new ExtensionId("org.xwiki:tags", "3.0"), "xar");
+        this.extension3.setName("Tags");
+        this.extension3.addExtensionFeature(new ExtensionId("org.xwiki:labels", "3.0"));
+
+        this.index1 = new ExtensionSearchIndex(Arrays.asList(this.extension1, this.extension2));
+        this.index2 = new ExtensionSearchIndex(Arrays.asList(this.extension3));
+    }
+
+    private List<Extension> toList(IterableResult<Extension> result)
+    {
+        List<Extension> list = new ArrayList<>();
+        for (Extension extension : result) {
+            list.add(extension);
+        }
+
+        return list;
+    }
+
+    // Tests
+
+    @Test
+    public void findWithPattern()
+    {
+        assertEquals(Arrays.asList(this.extension1, this.extension2), this.index1.find(new ExtensionQuery("blog")));
+        assertEquals(Arrays.asList(this.extension2), this.index1.find(new ExtensionQuery("CALEND")));
+        assertEquals(Arrays.asList(), this.index1.find(new ExtensionQuery("unknown")));
+        assertEquals(Arrays.asList(this.extension3), this.index2.find(new ExtensionQuery("labels")));
+    }
+
+    @Test
+    public void findWithShortPattern()
+    {
+        assertEquals(Arrays.asList(this.extension1, this.extension2), this.index1.find(new ExtensionQuery("")));
+        assertEquals(Arrays.asList(this.extension1, this.extension2), this.index1.find(new ExtensionQuery("lo")));
+        assertEquals(Arrays.asList(this.extension2), this.index1.find(new ExtensionQuery("nd")));
+    }
+
+    @Test
+    public void findWithAllGramsButNoMatch()
+    {
+        // "app", "ppl" and "ple" are all indexed for the first extension but "apple" is not contained in any field
+        assertEquals(Arrays.asList(), this.index1.find(new ExtensionQuery("apple")));
+    }
+
+    @Test
+    public void findWithFilter()
+    {
+        ExtensionQuery query = new ExtensionQuery("blog");
+        query.addFilter(Extension.FIELD_TYPE, "xar", COMPARISON.EQUAL);
+
+        assertEquals(Arrays.asList(this.extension1), this.index1.find(query));
+    }
+
+    @Test
+    public void searchSeveralIndexes()
+    {
+        ExtensionQuery query = new ExtensionQuery("");
+        query.addSort(Extension.FIELD_NAME, ORDER.DESC);
+
+        IterableResult<Extension> result = ExtensionSearchIndex.search(query, Arrays.asList(this.index1, this.index2));
+
+        assertEquals(3, result.getTotalHits());
+        assertEquals(Arrays.asList(this.extension3, this.extension2, this.extension1), toList(result));
+
+        query.setOffset(1);
+        query.setLimit(1);
+
+        result = ExtensionSearchIndex.search(query, Arrays.asList(this.index1, this.index2));
+
+        assertEquals(3, result.getTotalHits());
+        assertEquals(1, result.getOffset());
+        assertEquals(Arrays.asList(this.extension2), toList(result));
+    }
+}
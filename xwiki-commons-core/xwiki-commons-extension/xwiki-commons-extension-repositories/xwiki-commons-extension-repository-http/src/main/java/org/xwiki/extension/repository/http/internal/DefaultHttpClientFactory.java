@@ -19,12 +19,18 @@
  */
 package org.xwiki.extension.repository.http.internal;
 
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
@@ -33,9 +39,15 @@
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.cache.CacheConfig;
+import org.apache.http.impl.client.cache.CachingHttpClientBuilder;
 import org.apache.http.impl.conn.BasicHttpClientConnectionManager;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
 import org.xwiki.extension.ExtensionManagerConfiguration;
+import org.xwiki.extension.repository.ExtensionRepositoryDescriptor;
 
 /**
  * Configures user agent, timeouts, proxy and authentication.
@@ -45,19 +57,66 @@
  */
 @Component
 @Singleton
-public class DefaultHttpClientFactory implements HttpClientFactory
+public class DefaultHttpClientFactory implements HttpClientFactory, Disposable
 {
+    private static final String PROPERTY_USER = "auth.user";
+
+    private static final String PROPERTY_PASSWORD = "auth.password";
+
+    private static final int DEFAULT_TIMEOUT = 30000;
+
+    private static final int DEFAULT_CONNECTION_MAX = 10;
+
+    private static final int DEFAULT_CACHE_MAX_ENTRIES = 500;
+
+    private static final int DEFAULT_CACHE_MAX_OBJECT_SIZE = 128 * 1024;
+
+    /**
+     * The time after which an unused pooled connection is closed.
+     */
+    private static final long CONNECTION_IDLE_TIME = 60;
+
     /**
      * Used to get the user agent to use when performing HTTP calls to the remote Extension Repository.
      */
     @Inject
     private ExtensionManagerConfiguration configuration;
 
+    /**
+     * The shared clients indexed by repository descriptor and properties (the descriptor equality ignores the
+     * properties and they contain the credentials).
+     */
+    private final ConcurrentMap<Pair<ExtensionRepositoryDescriptor, Map<String, String>>, SharedClientEntry> clients =
+        new ConcurrentHashMap<>();
+
+    /**
+     * A shared client and the number of callers using it.
+     *
+     * @version $Id$
+     */
+    private static final class SharedClientEntry
+    {
+        private final SharedHttpClient client;
+
+        /**
+         * Only modified from {@link ConcurrentMap#compute} which is atomic.
+         */
+        private int references;
+
+        SharedClientEntry(SharedHttpClient client)
+        {
+            this.client = client;
+        }
+    }
+
     @Override
     public HttpClientBuilder createHttpClientBuilder(String user, String password)
     {
-        HttpClientBuilder httpClientBuilder = HttpClientBuilder.create();
+        return configure(HttpClientBuilder.create(), user, password);
+    }
 
+    private <B extends HttpClientBuilder> B configure(B httpClientBuilder, String user, String password)
+    {
         // Pre-configure with everything configured at JVM level
         httpClientBuilder.useSystemProperties();
 
@@ -85,25 +144,111 @@ public CloseableHttpClient createClient(String user, String password)
     public HttpClientBuilder createHttpClientBuilder(Map<String, String> properties)
     {
         HttpClientBuilder httpClientBuilder =
-            createHttpClientBuilder(properties.get("auth.user"), properties.get("auth.password"));
+            createHttpClientBuilder(properties.get(PROPERTY_USER), properties.get(PROPERTY_PASSWORD));
 
         // Set socket timeouts
         BasicHttpClientConnectionManager connectionManager = new BasicHttpClientConnectionManager();
-        SocketConfig.Builder socketConfigBuilder = SocketConfig.custom();
-        socketConfigBuilder.setSoTimeout(getIntProperty(properties, SOCKET_TIMEOUT, 30000));
-        connectionManager.setSocketConfig(socketConfigBuilder.build());
+        connectionManager.setSocketConfig(createSocketConfig(properties));
         httpClientBuilder.setConnectionManager(connectionManager);
 
         // Set request timeouts
-        RequestConfig.Builder requestBuilder = RequestConfig.custom();
-        requestBuilder = requestBuilder.setConnectTimeout(getIntProperty(properties, CONNECTION_TIMEOUT, 30000));
-        httpClientBuilder.setDefaultRequestConfig(requestBuilder.build());
+        httpClientBuilder.setDefaultRequestConfig(createRequestConfig(properties));
 
         return httpClientBuilder;
     }
 
+    private SocketConfig createSocketConfig(Map<String, String> properties)
+    {
+        SocketConfig.Builder socketConfigBuilder = SocketConfig.custom();
+        socketConfigBuilder.setSoTimeout(getIntProperty(properties, SOCKET_TIMEOUT, DEFAULT_TIMEOUT));
+
+        return socketConfigBuilder.build();
+    }
+
+    private RequestConfig createRequestConfig(Map<String, String> properties)
+    {
+        RequestConfig.Builder requestBuilder = RequestConfig.custom();
+        requestBuilder.setConnectTimeout(getIntProperty(properties, CONNECTION_TIMEOUT, DEFAULT_TIMEOUT));
+
+        return requestBuilder.build();
+    }
+
     private int getIntProperty(Map<String, String> properties, String key, int def)
     {
         return NumberUtils.toInt(properties.get(key), def);
     }
+
+    @Override
+    public SharedHttpClient getSharedClient(ExtensionRepositoryDescriptor repositoryDescriptor)
+    {
+        Map<String, String> properties = new HashMap<>(repositoryDescriptor.getProperties());
+
+        SharedClientEntry entry = this.clients.compute(Pair.of(repositoryDescriptor, properties), (key, value) -> {
+            SharedClientEntry result = value != null ? value : new SharedClientEntry(createSharedClient(properties));
+            ++result.references;
+
+            return result;
+        });
+
+        return entry.client;
+    }
+
+    @Override
+    public void releaseSharedClient(SharedHttpClient client)
+    {
+        for (Pair<ExtensionRepositoryDescriptor, Map<String, String>> key : this.clients.keySet()) {
+            this.clients.computeIfPresent(key, (k, entry) -> {
+                if (entry.client == client && --entry.references <= 0) {
+                    // Not used anymore
+                    IOUtils.closeQuietly(entry.client);
+
+                    return null;
+                }
+
+                return entry;
+            });
+        }
+    }
+
+    private SharedHttpClient createSharedClient(Map<String, String> properties)
+    {
+        // Keep the connections alive and reuse them between requests
+        int maxConnections = getIntProperty(properties, CONNECTION_MAX, DEFAULT_CONNECTION_MAX);
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        connectionManager.setDefaultSocketConfig(createSocketConfig(properties));
+
+        // Cache the responses and revalidate them using ETag and Last-Modified
+        HttpClientBuilder httpClientBuilder;
+        int cacheMaxEntries = getIntProperty(properties, CACHE_MAX_ENTRIES, DEFAULT_CACHE_MAX_ENTRIES);
+        if (cacheMaxEntries > 0) {
+            httpClientBuilder = CachingHttpClientBuilder.create().setCacheConfig(CacheConfig.custom()
+                .setMaxCacheEntries(cacheMaxEntries)
+                .setMaxObjectSize(getIntProperty(properties, CACHE_MAX_OBJECT_SIZE, DEFAULT_CACHE_MAX_OBJECT_SIZE))
+                // The cache is dedicated to a repository and its credentials
+                .setSharedCache(false).build());
+        } else {
+            httpClientBuilder = HttpClientBuilder.create();
+        }
+
+        configure(httpClientBuilder, properties.get(PROPERTY_USER), properties.get(PROPERTY_PASSWORD));
+
+        httpClientBuilder.setConnectionManager(connectionManager);
+        httpClientBuilder.setDefaultRequestConfig(createRequestConfig(properties));
+        httpClientBuilder.evictExpiredConnections();
+        httpClientBuilder.evictIdleConnections(CONNECTION_IDLE_TIME, TimeUnit.SECONDS);
+
+        return new SharedHttpClient(httpClientBuilder.build(), connectionManager);
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        for (SharedClientEntry entry : this.clients.values()) {
+            IOUtils.closeQuietly(entry.client);
+        }
+
+        this.clients.clear();
+    }
 }
@@ -25,6 +25,7 @@
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.xwiki.component.annotation.Role;
+import org.xwiki.extension.repository.ExtensionRepositoryDescriptor;
 
 /**
  * Constructs {@link CloseableHttpClient} objects that can be used to perform request on HTTP-based Extension
@@ -62,6 +63,39 @@
      */
     String CONNECTION_TIMEOUT = "http.connection.timeout";
 
+    /**
+     * The maximum number of connections kept open by the shared client of a repository (see
+     * {@link #getSharedClient(ExtensionRepositoryDescriptor)}).
+     * <p>
+     * This parameter expects a value of type {@link Integer}.
+     * </p>
+     *
+     * @since 8.3RC1
+     */
+    String CONNECTION_MAX = "http.connection.max";
+
+    /**
+     * The maximum number of entries in the response cache of the shared client of a repository (see
+     * {@link #getSharedClient(ExtensionRepositoryDescriptor)}). A value of zero disables the cache.
+     * <p>
+     * This parameter expects a value of type {@link Integer}.
+     * </p>
+     *
+     * @since 8.3RC1
+     */
+    String CACHE_MAX_ENTRIES = "http.cache.maxEntries";
+
+    /**
+     * The maximum size in bytes of a response stored in the response cache of the shared client of a repository (see
+     * {@link #getSharedClient(ExtensionRepositoryDescriptor)}). Bigger responses are never cached.
+     * <p>
+     * This parameter expects a value of type {@link Integer}.
+     * </p>
+     *
+     * @since 8.3RC1
+     */
+    String CACHE_MAX_OBJECT_SIZE = "http.cache.maxObjectSize";
+
     /**
      * @param user the user if the remote repository requires authentication, or null if no authentication is required
      * @param password the password if the remote repository requires authentication, or null if no authentication is
@@ -88,4 +122,30 @@
      * @since 8.3M1
      */
     HttpClientBuilder createHttpClientBuilder(Map<String, String> properties);
+
+    /**
+     * Return the client shared by all the requests sent to the passed repository. The client is created the first
+     * time it's asked and reuses its connections and cached responses until it's released by all the callers (see
+     * {@link #releaseSharedClient(SharedHttpClient)}) or the factory is disposed.
+     *
+     * @param repositoryDescriptor the descriptor of the repository (the authentication and the {@code http.*}
+     *            properties are taken from it)
+     * @return the client to use to send requests to the repository
+     * @since 8.3RC1
+     */
+    SharedHttpClient getSharedClient(ExtensionRepositoryDescriptor repositoryDescriptor);
+
+    /**
+     * Indicate that the caller does not use anymore a client returned by
+     * {@link #getSharedClient(ExtensionRepositoryDescriptor)}. The client is closed when it's not used by anyone.
+     * <p>
+     * Does nothing by default, the shared clients are then closed when the factory is disposed.
+     *
+     * @param client the client to release
+     * @since 8.3RC1
+     */
+    default void releaseSharedClient(SharedHttpClient client)
+    {
+        // Do nothing by default
+    }
 }
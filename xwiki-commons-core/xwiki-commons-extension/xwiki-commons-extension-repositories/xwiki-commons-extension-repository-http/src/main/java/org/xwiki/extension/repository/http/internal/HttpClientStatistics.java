@@ -0,0 +1,93 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.extension.repository.http.internal;
+
+import org.apache.http.pool.PoolStats;
+
+/**
+ * A snapshot of the connection pool and response cache usage of a {@link SharedHttpClient}.
+ *
+ * @version $Id$
+ * @since 8.3RC1
+ */
+public class HttpClientStatistics
+{
+    private final PoolStats poolStats;
+
+    private final long cacheHits;
+
+    private final long cacheMisses;
+
+    private final long cacheValidations;
+
+    /**
+     * @param poolStats the state of the connection pool
+     * @param cacheHits the number of responses served from the cache without contacting the server
+     * @param cacheMisses the number of responses fully downloaded from the server
+     * @param cacheValidations the number of cached responses revalidated with the server
+     */
+    public HttpClientStatistics(PoolStats poolStats, long cacheHits, long cacheMisses, long cacheValidations)
+    {
+        this.poolStats = poolStats;
+        this.cacheHits = cacheHits;
+        this.cacheMisses = cacheMisses;
+        this.cacheValidations = cacheValidations;
+    }
+
+    /**
+     * @return the state of the connection pool (leased, available, pending and maximum connections)
+     */
+    public PoolStats getPoolStats()
+    {
+        return this.poolStats;
+    }
+
+    /**
+     * @return the number of responses served from the cache without contacting the server
+     */
+    public long getCacheHits()
+    {
+        return this.cacheHits;
+    }
+
+    /**
+     * @return the number of responses fully downloaded from the server
+     */
+    public long getCacheMisses()
+    {
+        return this.cacheMisses;
+    }
+
+    /**
+     * @return the number of cached responses revalidated with the server (conditional requests answered with a
+     *         {@code 304 Not Modified})
+     */
+    public long getCacheValidations()
+    {
+        return this.cacheValidations;
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.poolStats + ", cache hits: " + this.cacheHits + ", cache misses: " + this.cacheMisses
+            + ", cache validations: " + this.cacheValidations;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.extension.repository.http.internal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.client.AuthCache;
+import org.apache.http.client.cache.CacheResponseStatus;
+import org.apache.http.client.cache.HttpCacheContext;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+/**
+ * A long lived {@link CloseableHttpClient} dedicated to one extension repository.
+ * <p>
+ * Connections are pooled and kept alive between requests and, when enabled, responses are cached and revalidated
+ * with the server using {@code ETag} and {@code Last-Modified} headers.
+ * <p>
+ * The responses returned by {@link #execute(HttpUriRequest, AuthCache)} must always be closed to give the connection
+ * back to the pool.
+ *
+ * @version $Id$
+ * @since 8.3RC1
+ */
+public class SharedHttpClient implements Closeable
+{
+    private final CloseableHttpClient client;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+
+    private final AtomicLong cacheHits = new AtomicLong();
+
+    private final AtomicLong cacheMisses = new AtomicLong();
+
+    private final AtomicLong cacheValidations = new AtomicLong();
+
+    /**
+     * @param client the client used to execute the requests
+     * @param connectionManager the connection pool used by the client
+     */
+    public SharedHttpClient(CloseableHttpClient client, PoolingHttpClientConnectionManager connectionManager)
+    {
+        this.client = client;
+        this.connectionManager = connectionManager;
+    }
+
+    /**
+     * @param request the request to execute
+     * @param authCache the authentication schemes to use preemptively, null if none
+     * @return the response
+     * @throws IOException when failing to execute the request
+     */
+    public CloseableHttpResponse execute(HttpUriRequest request, AuthCache authCache) throws IOException
+    {
+        // A new context for each request since contexts are not thread safe
+        HttpCacheContext context = HttpCacheContext.create();
+        if (authCache != null) {
+            context.setAuthCache(authCache);
+        }
+
+        CloseableHttpResponse response = this.client.execute(request, context);
+
+        count(context.getCacheResponseStatus());
+
+        return response;
+    }
+
+    private void count(CacheResponseStatus status)
+    {
+        if (status == CacheResponseStatus.CACHE_HIT) {
+            this.cacheHits.incrementAndGet();
+        } else if (status == CacheResponseStatus.VALIDATED) {
+            this.cacheValidations.incrementAndGet();
+        } else if (status == CacheResponseStatus.CACHE_MISS) {
+            this.cacheMisses.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return the current state of the connection pool and the response cache
+     */
+    public HttpClientStatistics getStatistics()
+    {
+        return new HttpClientStatistics(this.connectionManager.getTotalStats(), this.cacheHits.get(),
+            this.cacheMisses.get(), this.cacheValidations.get());
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        this.client.close();
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.extension.repository.http.internal;
+
+import java.net.URI;
+import java.util.Date;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.util.EntityUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.extension.repository.DefaultExtensionRepositoryDescriptor;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Validate {@link DefaultHttpClientFactory}.
+ *
+ * @version $Id$
+ */
+public class DefaultHttpClientFactoryTest
+{
+    private static final int PORT = 8889;
+
+    @Rule
+    public WireMockRule wireMock = new WireMockRule(PORT);
+
+    @Rule
+    public MockitoComponentMockingRule<HttpClientFactory> mocker =
+        new MockitoComponentMockingRule<HttpClientFactory>(DefaultHttpClientFactory.class);
+
+    private DefaultExtensionRepositoryDescriptor descriptor;
+
+    @Before
+    public void before() throws Exception
+    {
+        this.descriptor =
+            new DefaultExtensionRepositoryDescriptor("id", "type", new URI("http://localhost:" + PORT + "/"));
+    }
+
+    private String execute(SharedHttpClient client, String path) throws Exception
+    {
+        try (CloseableHttpResponse response =
+            client.execute(new HttpGet("http://localhost:" + PORT + path), null)) {
+            return EntityUtils.toString(response.getEntity());
+        }
+    }
+
+    // Tests
+
+    @Test
+    public void getSharedClient() throws Exception
+    {
+        SharedHttpClient client = this.mocker.getComponentUnderTest().getSharedClient(this.descriptor);
+
+        assertSame(client, this.mocker.getComponentUnderTest().getSharedClient(
+            new DefaultExtensionRepositoryDescriptor(this.descriptor)));
+
+        DefaultExtensionRepositoryDescriptor otherDescriptor =
+            new DefaultExtensionRepositoryDescriptor(this.descriptor);
+        otherDescriptor.putProperty(HttpClientFactory.CONNECTION_MAX, "2");
+        assertNotSame(client, this.mocker.getComponentUnderTest().getSharedClient(otherDescriptor));
+    }
+
+    @Test
+    public void releaseSharedClient() throws Exception
+    {
+        SharedHttpClient client = this.mocker.getComponentUnderTest().getSharedClient(this.descriptor);
+        this.mocker.getComponentUnderTest().getSharedClient(this.descriptor);
+
+        // Still used by one caller
+        this.mocker.getComponentUnderTest().releaseSharedClient(client);
+        assertSame(client, this.mocker.getComponentUnderTest().getSharedClient(this.descriptor));
+
+        this.mocker.getComponentUnderTest().releaseSharedClient(client);
+        this.mocker.getComponentUnderTest().releaseSharedClient(client);
+        assertNotSame(client, this.mocker.getComponentUnderTest().getSharedClient(this.descriptor));
+    }
+
+    @Test
+    public void pool() throws Exception
+    {
+        this.wireMock.stubFor(get(urlEqualTo("/pool")).willReturn(aResponse().withStatus(200).withBody("pool")));
+
+        this.descriptor.putProperty(HttpClientFactory.CONNECTION_MAX, "3");
+        SharedHttpClient client = this.mocker.getComponentUnderTest().getSharedClient(this.descriptor);
+
+        assertEquals("pool", execute(client, "/pool"));
+        assertEquals("pool", execute(client, "/pool"));
+
+        HttpClientStatistics statistics = client.getStatistics();
+        assertEquals(3, statistics.getPoolStats().getMax());
+        assertEquals(0, statistics.getPoolStats().getLeased());
+        // The connection is kept alive and reused
+        assertEquals(1, statistics.getPoolStats().getAvailable());
+    }
+
+    @Test
+    public void cache() throws Exception
+    {
+        this.wireMock.stubFor(get(urlEqualTo("/cached")).willReturn(aResponse().withStatus(200)
+            .withHeader("Date", DateUtils.formatDate(new Date())).withHeader("Cache-Control", "max-age=3600")
+            .withBody("cached")));
+
+        SharedHttpClient client = this.mocker.getComponentUnderTest().getSharedClient(this.descriptor);
+
+        assertEquals("cached", execute(client, "/cached"));
+        assertEquals("cached", execute(client, "/cached"));
+
+        this.wireMock.verify(1, getRequestedFor(urlEqualTo("/cached")));
+
+        HttpClientStatistics statistics = client.getStatistics();
+        assertEquals(1, statistics.getCacheMisses());
+        assertEquals(1, statistics.getCacheHits());
+        assertEquals(0, statistics.getCacheValidations());
+    }
+
+    @Test
+    public void cacheValidation() throws Exception
+    {
+        // HttpClient cache never stores "no-cache" responses, "max-age=0" is stored but must always be revalidated
+        this.wireMock.stubFor(get(urlEqualTo("/validated")).willReturn(aResponse().withStatus(200)
+            .withHeader("Date", DateUtils.formatDate(new Date())).withHeader("Cache-Control", "max-age=0")
+            .withHeader("ETag", "\"v1\"").withBody("validated")));
+        this.wireMock.stubFor(get(urlEqualTo("/validated")).withHeader("If-None-Match", equalTo("\"v1\""))
+            .willReturn(aResponse().withStatus(304).withHeader("Date", DateUtils.formatDate(new Date()))
+                .withHeader("ETag", "\"v1\"")));
+
+        SharedHttpClient client = this.mocker.getComponentUnderTest().getSharedClient(this.descriptor);
+
+        assertEquals("validated", execute(client, "/validated"));
+        assertEquals("validated", execute(client, "/validated"));
+
+        HttpClientStatistics statistics = client.getStatistics();
+        assertEquals(1, statistics.getCacheMisses());
+        assertEquals(0, statistics.getCacheHits());
+        assertEquals(1, statistics.getCacheValidations());
+    }
+
+    @Test
+    public void cacheDisabled() throws Exception
+    {
+        this.wireMock.stubFor(get(urlEqualTo("/cached")).willReturn(aResponse().withStatus(200)
+            .withHeader("Date", DateUtils.formatDate(new Date())).withHeader("Cache-Control", "max-age=3600")
+            .withBody("cached")));
+
+        this.descriptor.putProperty(HttpClientFactory.CACHE_MAX_ENTRIES, "0");
+        SharedHttpClient client = this.mocker.getComponentUnderTest().getSharedClient(this.descriptor);
+
+        assertEquals("cached", execute(client, "/cached"));
+        assertEquals("cached", execute(client, "/cached"));
+
+        this.wireMock.verify(2, getRequestedFor(urlEqualTo("/cached")));
+
+        HttpClientStatistics statistics = client.getStatistics();
+        assertEquals(0, statistics.getCacheMisses());
+        assertEquals(0, statistics.getCacheHits());
+    }
+}
@@ -89,6 +89,18 @@ public InputStream openStream() throws IOException
     {
         XWikiRepositorySystemSession session = this.repository.createRepositorySystemSession();
 
+        try {
+            return openStream(session);
+        } catch (IOException | RuntimeException | Error e) {
+            // The session is closed by the returned stream otherwise
+            session.close();
+
+            throw e;
+        }
+    }
+
+    private InputStream openStream(XWikiRepositorySystemSession session) throws IOException
+    {
         List<RemoteRepository> repositories = this.repository.newResolutionRepositories(session);
         RemoteRepository repository = repositories.get(0);
 
@@ -42,6 +42,7 @@
 import org.xwiki.extension.repository.ExtensionRepositoryDescriptor;
 import org.xwiki.extension.repository.ExtensionRepositoryException;
 import org.xwiki.extension.repository.ExtensionRepositoryManager;
+import org.xwiki.extension.repository.aether.internal.configuration.AetherConfiguration;
 
 /**
  * @version $Id$
@@ -64,6 +65,15 @@ public class AetherExtensionRepositoryFactory extends AbstractExtensionRepositor
     @Inject
     private Provider<ExtensionRepositoryManager> repositoryManagerProvider;
 
+    @Inject
+    private AetherConfiguration aetherConfiguration;
+
+    /**
+     * Looked up instead of injected since this component is also wired by Sisu, which cannot resolve the
+     * dependencies of {@link AetherLocalRepository}.
+     */
+    private AetherLocalRepository localRepository;
+
     private RepositorySystem repositorySystem;
 
     @Override
@@ -74,13 +84,21 @@ public void initialize() throws InitializationException
         } catch (ComponentLookupException e) {
             throw new InitializationException("Failed to lookup RepositorySystem", e);
         }
+
+        try {
+            this.localRepository = this.componentManager.getInstance(AetherLocalRepository.class);
+        } catch (org.xwiki.component.manager.ComponentLookupException e) {
+            throw new InitializationException("Failed to lookup the shared local repository", e);
+        }
     }
 
     public XWikiRepositorySystemSession createRepositorySystemSession()
     {
-        XWikiRepositorySystemSession session = new XWikiRepositorySystemSession(this.repositorySystem);
+        XWikiRepositorySystemSession session =
+            new XWikiRepositorySystemSession(this.repositorySystem, this.localRepository);
 
         session.setUserAgent(this.configuration.getUserAgent());
+        session.setUpdatePolicy(this.aetherConfiguration.getUpdatePolicy());
 
         return session;
     }
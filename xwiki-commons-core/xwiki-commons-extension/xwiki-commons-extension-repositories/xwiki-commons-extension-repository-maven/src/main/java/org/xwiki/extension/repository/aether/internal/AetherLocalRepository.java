@@ -0,0 +1,255 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.extension.repository.aether.internal;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.eclipse.aether.repository.LocalRepository;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.extension.repository.aether.internal.configuration.AetherConfiguration;
+
+/**
+ * The local repository shared by all the {@link XWikiRepositorySystemSession}s so that POMs, parents and metadata are
+ * downloaded only once.
+ * <p>
+ * Sessions only add files to the repository (Aether downloads in temporary files which are then renamed) so they can
+ * work concurrently. Removing files is only done by {@link #cleanup()} when no session is using the repository.
+ *
+ * @version $Id$
+ * @since 8.3RC1
+ */
+@Component(roles = AetherLocalRepository.class)
+@Singleton
+public class AetherLocalRepository
+{
+    /**
+     * The minimum time between two automatic cleanups.
+     */
+    private static final long CLEANUP_INTERVAL = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * The maximum time to wait for the sessions to be closed before giving up a cleanup, in seconds.
+     */
+    private static final long CLEANUP_TIMEOUT = 30;
+
+    private static final int MAX_SESSIONS = Integer.MAX_VALUE;
+
+    @Inject
+    private AetherConfiguration configuration;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * Each session takes one permit and the cleanup takes all of them. A semaphore is used instead of a read/write
+     * lock because sessions are not always closed by the thread which created them.
+     */
+    private final Semaphore sessions = new Semaphore(MAX_SESSIONS, true);
+
+    private volatile long lastCleanup;
+
+    private LocalRepository localRepository;
+
+    private static final class VersionDirectory
+    {
+        private final File directory;
+
+        private final long size;
+
+        private final long lastModified;
+
+        VersionDirectory(File directory, long size, long lastModified)
+        {
+            this.directory = directory;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * @return the local repository
+     */
+    public synchronized LocalRepository getLocalRepository()
+    {
+        if (this.localRepository == null) {
+            this.localRepository = new LocalRepository(this.configuration.getLocalRepository());
+        }
+
+        return this.localRepository;
+    }
+
+    /**
+     * Indicate that a session started using the repository.
+     */
+    void startSession()
+    {
+        this.sessions.acquireUninterruptibly();
+    }
+
+    /**
+     * Indicate that a session stopped using the repository and cleanup the repository if it's time to.
+     */
+    void endSession()
+    {
+        this.sessions.release();
+
+        if (System.currentTimeMillis() - this.lastCleanup > CLEANUP_INTERVAL) {
+            cleanup(false);
+        }
+    }
+
+    /**
+     * Remove the least recently downloaded artifacts until the repository size goes back under the configured limit.
+     * Wait for the sessions currently using the repository to be closed (the cleanup is skipped if they are not closed
+     * after a few seconds).
+     */
+    public void cleanup()
+    {
+        cleanup(true);
+    }
+
+    private void cleanup(boolean wait)
+    {
+        if (wait) {
+            try {
+                if (!this.sessions.tryAcquire(MAX_SESSIONS, CLEANUP_TIMEOUT, TimeUnit.SECONDS)) {
+                    this.logger.warn("Skipped the cleanup of the local Maven repository: some sessions are still using"
+                        + " it after [{}] seconds", CLEANUP_TIMEOUT);
+
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                return;
+            }
+        } else if (!this.sessions.tryAcquire(MAX_SESSIONS)) {
+            // Some sessions are still using the repository, try again later
+            return;
+        }
+
+        try {
+            this.lastCleanup = System.currentTimeMillis();
+
+            long maxSize = this.configuration.getLocalRepositoryMaxSize();
+            if (maxSize > 0) {
+                cleanup(getLocalRepository().getBasedir(), maxSize);
+            }
+        } finally {
+            this.sessions.release(MAX_SESSIONS);
+        }
+    }
+
+    private void cleanup(File basedir, long maxSize)
+    {
+        List<VersionDirectory> directories = new ArrayList<>();
+        long size = collect(basedir, directories);
+
+        if (size <= maxSize) {
+            return;
+        }
+
+        // Oldest first
+        Collections.sort(directories, new Comparator<VersionDirectory>()
+        {
+            @Override
+            public int compare(VersionDirectory d1, VersionDirectory d2)
+            {
+                return Long.compare(d1.lastModified, d2.lastModified);
+            }
+        });
+
+        for (VersionDirectory directory : directories) {
+            size -= deleteFiles(directory.directory);
+
+            if (size <= maxSize) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Delete the files directly located in the passed directory (sub directories are handled separately).
+     *
+     * @param directory the directory
+     * @return the size of the deleted files
+     */
+    private long deleteFiles(File directory)
+    {
+        long deleted = 0;
+
+        for (File file : directory.listFiles()) {
+            if (file.isFile()) {
+                long length = file.length();
+                if (file.delete()) {
+                    deleted += length;
+                } else {
+                    this.logger.warn("Failed to delete file [{}] from the local Maven repository", file);
+                }
+            }
+        }
+
+        // Remove the directory if it's now empty
+        directory.delete();
+
+        return deleted;
+    }
+
+    /**
+     * @param directory the directory to parse
+     * @param directories the directories containing files (Maven versions and artifacts metadata)
+     * @return the total size of the passed directory
+     */
+    private long collect(File directory, List<VersionDirectory> directories)
+    {
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return 0;
+        }
+
+        long size = 0;
+        long filesSize = 0;
+        long lastModified = 0;
+        for (File child : children) {
+            if (child.isDirectory()) {
+                size += collect(child, directories);
+            } else {
+                filesSize += child.length();
+                lastModified = Math.max(lastModified, child.lastModified());
+            }
+        }
+
+        if (lastModified > 0) {
+            directories.add(new VersionDirectory(directory, filesSize, lastModified));
+        }
+
+        return size + filesSize;
+    }
+}
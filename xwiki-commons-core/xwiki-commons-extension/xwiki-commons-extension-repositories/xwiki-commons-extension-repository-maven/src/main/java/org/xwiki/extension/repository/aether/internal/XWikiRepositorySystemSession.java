@@ -19,9 +19,9 @@
  */
 package org.xwiki.extension.repository.aether.internal;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
@@ -41,8 +41,8 @@
 import com.google.common.io.Files;
 
 /**
- * Encapsulate {@link DefaultRepositorySystemSession} to generate and clean a temporary local repository for each
- * sessions.
+ * Encapsulate {@link DefaultRepositorySystemSession} to use the shared {@link AetherLocalRepository} (or generate and
+ * clean a temporary local repository for each sessions).
  *
  * @version $Id$
  * @since 6.0
@@ -53,20 +53,47 @@ public class XWikiRepositorySystemSession extends AbstractForwardingRepositorySy
 
     private final DefaultRepositorySystemSession session;
 
+    /**
+     * The shared local repository, null when using a temporary one.
+     */
+    private final AetherLocalRepository sharedLocalRepository;
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
     /**
      * @param repositorySystem the AETHER repository system component
      */
     public XWikiRepositorySystemSession(RepositorySystem repositorySystem)
+    {
+        this(repositorySystem, null);
+    }
+
+    /**
+     * @param repositorySystem the AETHER repository system component
+     * @param sharedLocalRepository the local repository shared between sessions, null to use a temporary one
+     * @since 8.3RC1
+     */
+    public XWikiRepositorySystemSession(RepositorySystem repositorySystem, AetherLocalRepository sharedLocalRepository)
     {
         this.session = MavenRepositorySystemUtils.newSession();
+        this.sharedLocalRepository = sharedLocalRepository;
 
         // Local repository
 
-        File localDir = Files.createTempDir();
-        LocalRepository localRepository = new LocalRepository(localDir);
+        LocalRepository localRepository;
+        if (sharedLocalRepository != null) {
+            localRepository = sharedLocalRepository.getLocalRepository();
+        } else {
+            localRepository = new LocalRepository(Files.createTempDir());
+        }
         this.session
             .setLocalRepositoryManager(repositorySystem.newLocalRepositoryManager(this.session, localRepository));
 
+        if (sharedLocalRepository != null) {
+            // Only when nothing can fail anymore since the session is not returned (and won't be closed) otherwise
+            sharedLocalRepository.startSession();
+        }
+
         // Proxy selector
 
         this.session.setProxySelector(JREPROXYSELECTOR);
@@ -99,6 +126,17 @@ protected RepositorySystemSession getSession()
     @Override
     public void close()
     {
+        if (!this.closed.compareAndSet(false, true)) {
+            return;
+        }
+
+        if (this.sharedLocalRepository != null) {
+            // Keep the downloaded files for the next sessions
+            this.sharedLocalRepository.endSession();
+
+            return;
+        }
+
         LocalRepository repository = this.session.getLocalRepository();
 
         if (repository.getBasedir().exists()) {
@@ -118,6 +156,16 @@ public void setUserAgent(String userAgent)
         this.session.setConfigProperty(ConfigurationProperties.USER_AGENT, userAgent);
     }
 
+    /**
+     * @param updatePolicy the policy used to check the remote repositories for updates, null to use the policy of
+     *            each repository
+     * @since 8.3RC1
+     */
+    public void setUpdatePolicy(String updatePolicy)
+    {
+        this.session.setUpdatePolicy(updatePolicy);
+    }
+
     /**
      * @param properties the custom properties
      */
@@ -31,8 +31,21 @@
 public interface AetherConfiguration
 {
     /**
-     * @deprecated not used anymore since 6.0
+     * @return the directory where the artifacts and metadata downloaded by Aether are stored and reused between
+     *         sessions (was not used between 6.0 and 8.3RC1)
      */
-    @Deprecated
     File getLocalRepository();
+
+    /**
+     * @return the maximum size in bytes of the local repository, 0 or less for no limit
+     * @since 8.3RC1
+     */
+    long getLocalRepositoryMaxSize();
+
+    /**
+     * @return the policy used to decide when to check the remote repositories for updated metadata (see
+     *         {@link org.eclipse.aether.repository.RepositoryPolicy}), null to use the policy of each repository
+     * @since 8.3RC1
+     */
+    String getUpdatePolicy();
 }
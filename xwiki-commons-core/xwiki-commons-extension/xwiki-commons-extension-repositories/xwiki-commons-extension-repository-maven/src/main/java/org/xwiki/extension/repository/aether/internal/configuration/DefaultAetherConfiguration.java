@@ -37,6 +37,17 @@
 @Singleton
 public class DefaultAetherConfiguration implements AetherConfiguration
 {
+    private static final String CK_PREFIX = "extension.aether.";
+
+    private static final String CK_LOCALREPOSITORY = CK_PREFIX + "localRepository";
+
+    /**
+     * The default maximum size of the local repository, in megabytes.
+     */
+    private static final long DEFAULT_LOCALREPOSITORY_MAXSIZE = 1024;
+
+    private static final long MEGABYTE = 1024L * 1024L;
+
     @Inject
     private Provider<ConfigurationSource> configurationSourceProvider;
 
@@ -46,16 +57,29 @@ public class DefaultAetherConfiguration implements AetherConfiguration
     @Override
     public File getLocalRepository()
     {
-        String localRepositoryPath =
-            this.configurationSourceProvider.get().getProperty("extension.aether.localRepository");
+        String localRepositoryPath = this.configurationSourceProvider.get().getProperty(CK_LOCALREPOSITORY);
 
         File directory;
         if (localRepositoryPath == null) {
-            directory = new File(this.environment.getTemporaryDirectory(), "aether-repository");
+            directory = new File(this.environment.getPermanentDirectory(), "extension/aether/");
         } else {
             directory = new File(localRepositoryPath);
         }
 
         return directory;
     }
+
+    @Override
+    public long getLocalRepositoryMaxSize()
+    {
+        // The size is configured in megabytes
+        return this.configurationSourceProvider.get().getProperty(CK_LOCALREPOSITORY + ".maxSize",
+            DEFAULT_LOCALREPOSITORY_MAXSIZE) * MEGABYTE;
+    }
+
+    @Override
+    public String getUpdatePolicy()
+    {
+        return this.configurationSourceProvider.get().getProperty(CK_PREFIX + "updatePolicy");
+    }
 }
@@ -0,0 +1,134 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.extension.repository.aether.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.extension.repository.aether.internal.configuration.AetherConfiguration;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+/**
+ * Validate {@link AetherLocalRepository}.
+ *
+ * @version $Id$
+ */
+public class AetherLocalRepositoryTest
+{
+    @Rule
+    public MockitoComponentMockingRule<AetherLocalRepository> mocker =
+        new MockitoComponentMockingRule<AetherLocalRepository>(AetherLocalRepository.class);
+
+    private AetherConfiguration configuration;
+
+    private File basedir;
+
+    @Before
+    public void before() throws Exception
+    {
+        this.basedir = new File("target/test-" + new Date().getTime() + "/aether/");
+
+        this.configuration = this.mocker.getInstance(AetherConfiguration.class);
+        when(this.configuration.getLocalRepository()).thenReturn(this.basedir);
+    }
+
+    private File createFile(String path, int size, long lastModified) throws IOException
+    {
+        File file = new File(this.basedir, path);
+
+        FileUtils.writeByteArrayToFile(file, new byte[size]);
+        file.setLastModified(lastModified);
+
+        return file;
+    }
+
+    // Tests
+
+    @Test
+    public void getLocalRepository() throws Exception
+    {
+        assertEquals(this.basedir, this.mocker.getComponentUnderTest().getLocalRepository().getBasedir());
+    }
+
+    @Test
+    public void cleanupRemovesOldestFiles() throws Exception
+    {
+        File oldPom = createFile("groupid/artifactid/1.0/artifactid-1.0.pom", 100, 1000000000L);
+        File metadata = createFile("groupid/artifactid/maven-metadata-central.xml", 10, 2000000000L);
+        File recentPom = createFile("groupid/artifactid/2.0/artifactid-2.0.pom", 100, 3000000000L);
+
+        when(this.configuration.getLocalRepositoryMaxSize()).thenReturn(150L);
+
+        this.mocker.getComponentUnderTest().cleanup();
+
+        assertFalse(oldPom.exists());
+        assertFalse(oldPom.getParentFile().exists());
+        assertTrue(metadata.exists());
+        assertTrue(recentPom.exists());
+    }
+
+    @Test
+    public void cleanupWithoutLimit() throws Exception
+    {
+        File pom = createFile("groupid/artifactid/1.0/artifactid-1.0.pom", 100, 1000000000L);
+
+        when(this.configuration.getLocalRepositoryMaxSize()).thenReturn(0L);
+
+        this.mocker.getComponentUnderTest().cleanup();
+
+        assertTrue(pom.exists());
+    }
+
+    @Test
+    public void cleanupWaitsForSessions() throws Exception
+    {
+        File pom = createFile("groupid/artifactid/1.0/artifactid-1.0.pom", 100, 1000000000L);
+
+        when(this.configuration.getLocalRepositoryMaxSize()).thenReturn(10L);
+
+        AetherLocalRepository localRepository = this.mocker.getComponentUnderTest();
+
+        Thread cleanupThread;
+        localRepository.startSession();
+        try {
+            cleanupThread = new Thread(localRepository::cleanup);
+            cleanupThread.start();
+
+            // The cleanup must not touch the repository while a session is using it
+            cleanupThread.join(100);
+            assertTrue(pom.exists());
+        } finally {
+            localRepository.endSession();
+        }
+
+        cleanupThread.join();
+        assertFalse(pom.exists());
+    }
+}
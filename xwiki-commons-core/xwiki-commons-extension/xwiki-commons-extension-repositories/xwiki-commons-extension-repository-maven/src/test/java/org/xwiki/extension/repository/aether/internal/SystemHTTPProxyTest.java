@@ -19,11 +19,14 @@
  */
 package org.xwiki.extension.repository.aether.internal;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Date;
 
 import org.apache.http.client.ClientProtocolException;
+import org.eclipse.aether.repository.LocalRepository;
 import org.junit.Rule;
 import org.junit.Test;
 import org.xwiki.component.manager.ComponentLookupException;
@@ -33,6 +36,7 @@
 import org.xwiki.extension.repository.ExtensionRepositoryException;
 import org.xwiki.extension.repository.ExtensionRepositoryFactory;
 import org.xwiki.test.annotation.AllComponents;
+import org.xwiki.test.annotation.BeforeComponent;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 
 import com.github.tomakehurst.wiremock.junit.WireMockRule;
@@ -41,6 +45,7 @@
 import static com.github.tomakehurst.wiremock.client.WireMock.findAll;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
 
 @AllComponents
 public class SystemHTTPProxyTest
@@ -52,6 +57,15 @@
     public MockitoComponentMockingRule<ExtensionRepositoryFactory> repositoryFactory =
         new MockitoComponentMockingRule<ExtensionRepositoryFactory>(AetherExtensionRepositoryFactory.class);
 
+    @BeforeComponent
+    public void registerComponents() throws Exception
+    {
+        AetherLocalRepository localRepository =
+            this.repositoryFactory.registerMockComponent(AetherLocalRepository.class);
+        when(localRepository.getLocalRepository())
+            .thenReturn(new LocalRepository(new File("target/test-" + new Date().getTime() + "/aether/")));
+    }
+
     @Test
     public void testProxy() throws ClientProtocolException, IOException, ExtensionRepositoryException,
         ComponentLookupException, URISyntaxException
@@ -19,12 +19,14 @@
  */
 package org.xwiki.extension.repository.xwiki.internal;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringWriter;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.xml.bind.JAXBException;
 
@@ -36,12 +38,11 @@
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
-import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.auth.BasicScheme;
 import org.apache.http.impl.client.BasicAuthCache;
-import org.apache.http.impl.client.CloseableHttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xwiki.extension.Extension;
@@ -55,6 +56,8 @@
 import org.xwiki.extension.repository.DefaultExtensionRepositoryDescriptor;
 import org.xwiki.extension.repository.ExtensionRepositoryDescriptor;
 import org.xwiki.extension.repository.http.internal.HttpClientFactory;
+import org.xwiki.extension.repository.http.internal.HttpClientStatistics;
+import org.xwiki.extension.repository.http.internal.SharedHttpClient;
 import org.xwiki.extension.repository.rating.RatableExtensionRepository;
 import org.xwiki.extension.repository.result.CollectionIterableResult;
 import org.xwiki.extension.repository.result.IterableResult;
@@ -82,7 +85,7 @@
  * @since 4.0M1
  */
 public class XWikiExtensionRepository extends AbstractExtensionRepository
-    implements AdvancedSearchable, RatableExtensionRepository
+    implements AdvancedSearchable, RatableExtensionRepository, Closeable
 {
     public static final Version VERSION10 = new DefaultVersion(Resources.VERSION10);
 
@@ -98,6 +101,10 @@ public class XWikiExtensionRepository extends AbstractExtensionRepository
 
     private final transient HttpClientFactory httpClientFactory;
 
+    private final transient SharedHttpClient httpClient;
+
+    private final transient AtomicBoolean closed = new AtomicBoolean();
+
     private final transient UriBuilder rootUriBuider;
 
     private final transient UriBuilder extensionVersionUriBuider;
@@ -108,7 +115,7 @@ public class XWikiExtensionRepository extends AbstractExtensionRepository
 
     private final transient UriBuilder searchUriBuider;
 
-    private HttpClientContext localContext;
+    private AuthCache authCache;
 
     private Version repositoryVersion;
 
@@ -128,6 +135,7 @@ public XWikiExtensionRepository(ExtensionRepositoryDescriptor repositoryDescript
         this.repositoryFactory = repositoryFactory;
         this.licenseManager = licenseManager;
         this.httpClientFactory = httpClientFactory;
+        this.httpClient = httpClientFactory.getSharedClient(getDescriptor());
 
         // Uri builders
         this.rootUriBuider = createUriBuilder(Resources.ENTRYPOINT);
@@ -139,16 +147,12 @@ public XWikiExtensionRepository(ExtensionRepositoryDescriptor repositoryDescript
         // Setup preemptive authentication
         if (getDescriptor().getProperty("auth.user") != null) {
             // Create AuthCache instance
-            AuthCache authCache = new BasicAuthCache();
+            this.authCache = new BasicAuthCache();
             // Generate BASIC scheme object and add it to the local
             // auth cache
             BasicScheme basicAuth = new BasicScheme();
-            authCache.put(new HttpHost(getDescriptor().getURI().getHost(), getDescriptor().getURI().getPort(),
+            this.authCache.put(new HttpHost(getDescriptor().getURI().getHost(), getDescriptor().getURI().getPort(),
                 getDescriptor().getURI().getScheme()), basicAuth);
-
-            // Add AuthCache to the execution context
-            this.localContext = HttpClientContext.create();
-            this.localContext.setAuthCache(authCache);
         }
     }
 
@@ -212,6 +216,28 @@ public boolean isSortable()
         return this.sortable;
     }
 
+    /**
+     * @return the current state of the connection pool and the response cache used to access the repository
+     * @since 8.3RC1
+     */
+    public HttpClientStatistics getHttpClientStatistics()
+    {
+        return this.httpClient.getStatistics();
+    }
+
+    /**
+     * Release the HTTP client used to access the repository.
+     *
+     * @since 8.3RC1
+     */
+    @Override
+    public void close()
+    {
+        if (this.closed.compareAndSet(false, true)) {
+            this.httpClientFactory.releaseSharedClient(this.httpClient);
+        }
+    }
+
     protected UriBuilder getExtensionFileUriBuider()
     {
         return this.extensionVersionFileUriBuider;
@@ -226,23 +252,14 @@ protected CloseableHttpResponse getRESTResource(UriBuilder builder, Object... va
             throw new IOException("Failed to build REST URL", e);
         }
 
-        CloseableHttpClient httpClient = this.httpClientFactory.createClient(getDescriptor().getProperty("auth.user"),
-            getDescriptor().getProperty("auth.password"));
-
         HttpGet getMethod = new HttpGet(url);
         getMethod.addHeader("Accept", "application/xml");
-        CloseableHttpResponse response;
-        try {
-            if (this.localContext != null) {
-                response = httpClient.execute(getMethod, this.localContext);
-            } else {
-                response = httpClient.execute(getMethod);
-            }
-        } catch (Exception e) {
-            throw new IOException(String.format("Failed to request [%s]", getMethod.getURI()), e);
-        }
+        CloseableHttpResponse response = execute(getMethod);
 
         if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+            // Give the connection back to the pool
+            response.close();
+
             if (response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_FOUND) {
                 throw new ResourceNotFoundException(String.format("Resource with URI [%s] does not exist",
                     response.getStatusLine().getStatusCode(), getMethod.getURI()));
@@ -265,9 +282,6 @@ protected CloseableHttpResponse postRESTResource(UriBuilder builder, String cont
             throw new IOException("Failed to build REST URL", e);
         }
 
-        CloseableHttpClient httpClient = this.httpClientFactory.createClient(getDescriptor().getProperty("auth.user"),
-            getDescriptor().getProperty("auth.password"));
-
         HttpPost postMethod = new HttpPost(url);
         postMethod.addHeader("Accept", "application/xml");
 
@@ -275,18 +289,12 @@ protected CloseableHttpResponse postRESTResource(UriBuilder builder, String cont
             new StringEntity(content, ContentType.create(ContentType.APPLICATION_XML.getMimeType(), Consts.UTF_8));
         postMethod.setEntity(entity);
 
-        CloseableHttpResponse response;
-        try {
-            if (this.localContext != null) {
-                response = httpClient.execute(postMethod, this.localContext);
-            } else {
-                response = httpClient.execute(postMethod);
-            }
-        } catch (Exception e) {
-            throw new IOException(String.format("Failed to request [%s]", postMethod.getURI()), e);
-        }
+        CloseableHttpResponse response = execute(postMethod);
 
         if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+            // Give the connection back to the pool
+            response.close();
+
             throw new IOException(String.format("Invalid answer [%s] from the server when requesting [%s]",
                 response.getStatusLine().getStatusCode(), postMethod.getURI()));
         }
@@ -294,6 +302,15 @@ protected CloseableHttpResponse postRESTResource(UriBuilder builder, String cont
         return response;
     }
 
+    private CloseableHttpResponse execute(HttpUriRequest request) throws IOException
+    {
+        try {
+            return this.httpClient.execute(request, this.authCache);
+        } catch (Exception e) {
+            throw new IOException(String.format("Failed to request [%s]", request.getURI()), e);
+        }
+    }
+
     protected Object getRESTObject(UriBuilder builder, Object... values)
         throws IllegalStateException, IOException, JAXBException
     {
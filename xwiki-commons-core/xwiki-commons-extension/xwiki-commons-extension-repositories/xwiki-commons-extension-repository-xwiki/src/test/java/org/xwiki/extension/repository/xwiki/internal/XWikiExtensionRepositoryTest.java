@@ -33,12 +33,12 @@
 import org.apache.http.StatusLine;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.CloseableHttpClient;
 import org.junit.Before;
 import org.junit.Test;
 import org.xwiki.extension.ExtensionLicenseManager;
 import org.xwiki.extension.repository.ExtensionRepositoryDescriptor;
 import org.xwiki.extension.repository.http.internal.HttpClientFactory;
+import org.xwiki.extension.repository.http.internal.SharedHttpClient;
 import org.xwiki.extension.repository.result.IterableResult;
 import org.xwiki.extension.repository.xwiki.model.jaxb.ExtensionVersionSummary;
 import org.xwiki.extension.repository.xwiki.model.jaxb.ExtensionVersions;
@@ -83,10 +83,10 @@ public void setUp() throws Exception
         CloseableHttpResponse response = mock(CloseableHttpResponse.class);
         when(response.getStatusLine()).thenReturn(statusLine);
         when(response.getEntity()).thenReturn(httpEntity);
-        CloseableHttpClient httpClient = mock(CloseableHttpClient.class);
-        when(httpClient.execute(any(HttpGet.class))).thenReturn(response);
+        SharedHttpClient httpClient = mock(SharedHttpClient.class);
+        when(httpClient.execute(any(HttpGet.class), any())).thenReturn(response);
         HttpClientFactory httpClientFactory = mock(HttpClientFactory.class);
-        when(httpClientFactory.createClient(null, null)).thenReturn(httpClient);
+        when(httpClientFactory.getSharedClient(repositoryDescriptor)).thenReturn(httpClient);
 
         this.repository =
             new XWikiExtensionRepository(repositoryDescriptor, repositoryFactory, mock(ExtensionLicenseManager.class),
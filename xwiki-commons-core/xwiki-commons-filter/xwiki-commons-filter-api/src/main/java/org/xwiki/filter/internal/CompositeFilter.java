@@ -20,10 +20,7 @@
 package org.xwiki.filter.internal;
 
 import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.List;
 
 import org.xwiki.filter.FilterDescriptor;
 import org.xwiki.filter.FilterDescriptorManager;
@@ -38,7 +35,7 @@ public class CompositeFilter implements InvocationHandler
 {
     private FilterDescriptorManager filterManager;
 
-    private List<SubFilter> filters;
+    private SubFilter[] filters;
 
     private static class SubFilter
     {
@@ -46,10 +43,13 @@ public class CompositeFilter implements InvocationHandler
 
         public final FilterDescriptor descriptor;
 
-        public SubFilter(Object filter, FilterDescriptor descriptor)
+        public final FilterEventDispatcher dispatcher;
+
+        public SubFilter(Object filter, FilterDescriptor descriptor, FilterEventDispatcher dispatcher)
         {
             this.filter = filter;
             this.descriptor = descriptor;
+            this.dispatcher = dispatcher;
         }
     }
 
@@ -61,9 +61,18 @@ public CompositeFilter(FilterDescriptorManager filterManager, Object... filters)
     {
         this.filterManager = filterManager;
 
-        this.filters = new ArrayList<SubFilter>(filters.length);
-        for (Object filter : filters) {
-            this.filters.add(new SubFilter(filter, this.filterManager.getFilterDescriptor(filter.getClass())));
+        this.filters = new SubFilter[filters.length];
+        for (int i = 0; i < filters.length; ++i) {
+            Object filter = filters[i];
+            FilterDescriptor descriptor = this.filterManager.getFilterDescriptor(filter.getClass());
+            FilterEventDispatcher dispatcher;
+            if (this.filterManager instanceof DefaultFilterDescriptorManager) {
+                dispatcher = ((DefaultFilterDescriptorManager) this.filterManager)
+                    .getFilterEventDispatcher(filter.getClass(), descriptor);
+            } else {
+                dispatcher = new FilterEventDispatcher(filter.getClass(), descriptor);
+            }
+            this.filters[i] = new SubFilter(filter, descriptor, dispatcher);
         }
     }
 
@@ -71,11 +80,7 @@ public CompositeFilter(FilterDescriptorManager filterManager, Object... filters)
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
     {
         for (SubFilter filter : this.filters) {
-            try {
-                FilterProxy.invoke(filter.filter, filter.descriptor, method, args);
-            } catch (InvocationTargetException e) {
-                throw e.getCause();
-            }
+            filter.dispatcher.invoke(filter.filter, method, args);
         }
 
         return null;
@@ -34,6 +34,8 @@
 import javax.inject.Singleton;
 
 import org.apache.commons.lang3.ClassUtils;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.util.ReflectionMethodUtils;
 import org.xwiki.component.util.ReflectionUtils;
@@ -78,6 +80,11 @@ public class DefaultFilterDescriptorManager implements FilterDescriptorManager
      */
     private Map<Class<?>, FilterDescriptor> descriptors = new ConcurrentHashMap<Class<?>, FilterDescriptor>();
 
+    /**
+     * The event dispatchers, indexed by filter class and descriptor of the filter interfaces sending the events.
+     */
+    private Map<Pair<Class<?>, FilterDescriptor>, FilterEventDispatcher> dispatchers = new ConcurrentHashMap<>();
+
     /**
      * Used to convert default values from {@link String}.
      */
@@ -107,6 +114,18 @@ public FilterDescriptor getFilterDescriptor(Class<?>... interfaces)
         return totalDescriptor;
     }
 
+    /**
+     * @param filterClass the class of the filter receiving the events
+     * @param descriptor the descriptor of the filter interfaces sending the events
+     * @return the dispatcher to use to send events to filters of the passed class
+     * @since 8.3RC1
+     */
+    public FilterEventDispatcher getFilterEventDispatcher(Class<?> filterClass, FilterDescriptor descriptor)
+    {
+        return this.dispatchers.computeIfAbsent(new ImmutablePair<Class<?>, FilterDescriptor>(filterClass, descriptor),
+            key -> new FilterEventDispatcher(filterClass, descriptor));
+    }
+
     /**
      * @param clazz the class
      * @return the methods of the passed class
@@ -279,8 +298,9 @@ public <F> F createFilterProxy(Object targetFilter, ClassLoader loader, Class<?>
     {
         for (Class<?> i : interfaces) {
             if (!i.isInstance(targetFilter)) {
-                return (F) Proxy.newProxyInstance(loader, interfaces,
-                    new FilterProxy(targetFilter, getFilterDescriptor(interfaces)));
+                FilterDescriptor descriptor = getFilterDescriptor(interfaces);
+                return (F) Proxy.newProxyInstance(loader, interfaces, new FilterProxy(targetFilter, descriptor,
+                    getFilterEventDispatcher(targetFilter.getClass(), descriptor)));
             }
         }
 
@@ -0,0 +1,189 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.filter.internal;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.xwiki.filter.FilterDescriptor;
+import org.xwiki.filter.FilterElementDescriptor;
+import org.xwiki.filter.FilterElementParameterDescriptor;
+import org.xwiki.filter.FilterEventParameters;
+import org.xwiki.filter.UnknownFilter;
+
+/**
+ * Dispatch the events received by a filter proxy to a filter of a specific class. The way each event is dispatched is
+ * resolved once: a {@link MethodHandle} when the filter supports the event, a call to {@link UnknownFilter} with
+ * precomputed element id and parameter names when the filter only supports unknown events, or nothing.
+ *
+ * @version $Id$
+ * @since 8.3RC1
+ */
+public final class FilterEventDispatcher
+{
+    private static final Object[] EMPTY_ARGS = new Object[0];
+
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(void.class, Object.class, Object[].class);
+
+    private static final EventInvoker NOOP = (filter, args) -> {
+        // The filter does not support this event
+    };
+
+    @FunctionalInterface
+    private interface EventInvoker
+    {
+        void invoke(Object filter, Object[] args) throws Exception;
+    }
+
+    private final Class<?> filterClass;
+
+    private final FilterDescriptor descriptor;
+
+    private final Map<Method, EventInvoker> invokers = new ConcurrentHashMap<>();
+
+    /**
+     * @param filterClass the class of the filter receiving the events
+     * @param descriptor the descriptor of the filter interfaces sending the events
+     */
+    public FilterEventDispatcher(Class<?> filterClass, FilterDescriptor descriptor)
+    {
+        this.filterClass = filterClass;
+        this.descriptor = descriptor;
+    }
+
+    /**
+     * @param filter the filter to send the event to, its class must be the class of the dispatcher
+     * @param method the event method called
+     * @param args the arguments of the called method
+     * @throws Exception when the execution of the event failed
+     */
+    public void invoke(Object filter, Method method, Object[] args) throws Exception
+    {
+        EventInvoker invoker = this.invokers.get(method);
+
+        if (invoker == null) {
+            invoker = createInvoker(method);
+            this.invokers.put(method, invoker);
+        }
+
+        invoker.invoke(filter, args != null ? args : EMPTY_ARGS);
+    }
+
+    private EventInvoker createInvoker(Method method)
+    {
+        EventInvoker invoker;
+
+        if (method.getDeclaringClass().isAssignableFrom(this.filterClass)) {
+            invoker = createMethodInvoker(method);
+        } else if (UnknownFilter.class.isAssignableFrom(this.filterClass)) {
+            invoker = createUnknownInvoker(method);
+        } else {
+            invoker = NOOP;
+        }
+
+        return invoker;
+    }
+
+    private EventInvoker createMethodInvoker(Method method)
+    {
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.publicLookup().unreflect(method)
+                .asSpreader(Object[].class, method.getParameterCount()).asType(INVOKER_TYPE);
+        } catch (IllegalAccessException e) {
+            // Not a public method (of a public class), fallback on reflection
+            return (filter, args) -> {
+                try {
+                    method.invoke(filter, args);
+                } catch (InvocationTargetException ie) {
+                    rethrow(ie.getCause());
+                }
+            };
+        }
+
+        return (filter, args) -> {
+            try {
+                handle.invokeExact(filter, args);
+            } catch (Throwable t) {
+                rethrow(t);
+            }
+        };
+    }
+
+    private static void rethrow(Throwable t) throws Exception
+    {
+        if (t instanceof Exception) {
+            throw (Exception) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        }
+
+        throw new UndeclaredThrowableException(t);
+    }
+
+    private EventInvoker createUnknownInvoker(Method method)
+    {
+        String methodName = method.getName();
+
+        String id = DefaultFilterDescriptorManager.getElementName(methodName);
+        FilterElementDescriptor element = id != null ? this.descriptor.getElement(id) : null;
+
+        if (element == null) {
+            return NOOP;
+        }
+
+        FilterElementParameterDescriptor<?>[] parameters = element.getParameters();
+        String[] names = new String[parameters.length];
+        int[] indexes = new int[parameters.length];
+        for (int i = 0; i < parameters.length; ++i) {
+            FilterElementParameterDescriptor<?> parameter = parameters[i];
+            names[i] = parameter.getName() != null ? parameter.getName() : String.valueOf(parameter.getIndex());
+            indexes[i] = parameter.getIndex();
+        }
+
+        EventInvoker invoker;
+        if (methodName.startsWith(DefaultFilterDescriptorManager.PREFIX_BEGIN)) {
+            invoker = (filter, args) -> ((UnknownFilter) filter).beginUnknwon(id, toMetadata(names, indexes, args));
+        } else if (methodName.startsWith(DefaultFilterDescriptorManager.PREFIX_END)) {
+            invoker = (filter, args) -> ((UnknownFilter) filter).endUnknwon(id, toMetadata(names, indexes, args));
+        } else {
+            invoker = (filter, args) -> ((UnknownFilter) filter).onUnknwon(id, toMetadata(names, indexes, args));
+        }
+
+        return invoker;
+    }
+
+    private static FilterEventParameters toMetadata(String[] names, int[] indexes, Object[] args)
+    {
+        FilterEventParameters metadata = new FilterEventParameters();
+
+        for (int i = 0; i < names.length; ++i) {
+            metadata.put(names[i], args[indexes[i]]);
+        }
+
+        return metadata;
+    }
+}
@@ -46,24 +46,37 @@ public final class FilterProxy implements InvocationHandler
 
     private Object targetFilter;
 
+    /**
+     * The dispatcher used to send events to the target filter.
+     */
+    private FilterEventDispatcher dispatcher;
+
     /**
      * @param filter the actual filter to send events to
      * @param descriptor the reference filter descriptor
      */
     public FilterProxy(Object filter, FilterDescriptor descriptor)
+    {
+        this(filter, descriptor, new FilterEventDispatcher(filter.getClass(), descriptor));
+    }
+
+    /**
+     * @param filter the actual filter to send events to
+     * @param descriptor the reference filter descriptor
+     * @param dispatcher the dispatcher used to send events to the filter
+     * @since 8.3RC1
+     */
+    public FilterProxy(Object filter, FilterDescriptor descriptor, FilterEventDispatcher dispatcher)
     {
         this.targetFilter = filter;
         this.descriptor = descriptor;
+        this.dispatcher = dispatcher;
     }
 
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
     {
-        try {
-            invoke(this.targetFilter, this.descriptor, method, args);
-        } catch (InvocationTargetException e) {
-            throw e.getCause();
-        }
+        this.dispatcher.invoke(this.targetFilter, method, args);
 
         return null;
     }
@@ -31,6 +31,7 @@
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.util.DefaultParameterizedType;
@@ -50,8 +51,11 @@
 import static org.junit.Assert.assertNotSame;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 public class FilterDescriptorManagerTest
 {
@@ -177,4 +181,54 @@ public void testProxyFailing() throws FilterException, ComponentLookupException
 
         proxyFilter.onUnknwon(null, null);
     }
+
+    @Test
+    public void testProxyDispatch() throws ComponentLookupException
+    {
+        TestFilter filter = mock(TestFilter.class);
+
+        TestFilter proxyFilter =
+            this.mocker.getComponentUnderTest().createFilterProxy(filter, TestFilter.class, UnknownFilter.class);
+
+        assertNotSame(filter, proxyFilter);
+
+        proxyFilter.onChildWithParameters("value", 42);
+        proxyFilter.onChildWithParameters("other value", 43);
+        proxyFilter.beginContainer();
+
+        verify(filter).onChildWithParameters("value", 42);
+        verify(filter).onChildWithParameters("other value", 43);
+        verify(filter).beginContainer();
+    }
+
+    @Test
+    public void testProxyDispatchToUnknownFilter() throws FilterException, ComponentLookupException
+    {
+        UnknownFilter filter = mock(UnknownFilter.class);
+
+        TestFilter proxyFilter =
+            this.mocker.getComponentUnderTest().createFilterProxy(filter, TestFilter.class, UnknownFilter.class);
+
+        proxyFilter.beginContainerWithNamedParameters("value", 42);
+        proxyFilter.beginContainerWithNamedParameters("other value", 43);
+
+        ArgumentCaptor<FilterEventParameters> captor = ArgumentCaptor.forClass(FilterEventParameters.class);
+        verify(filter, times(2)).beginUnknwon(eq("containerWithNamedParameters"), captor.capture());
+        Assert.assertEquals("value", captor.getAllValues().get(0).get("namedParam"));
+        Assert.assertEquals("other value", captor.getAllValues().get(1).get("namedParam"));
+    }
+
+    @Test
+    public void testCompositeFilter() throws ComponentLookupException
+    {
+        TestFilter filter1 = mock(TestFilter.class);
+        TestFilter filter2 = mock(TestFilter.class);
+
+        TestFilter compositeFilter = this.mocker.getComponentUnderTest().createCompositeFilter(filter1, filter2);
+
+        compositeFilter.onChildWithParameters("value", 42);
+
+        verify(filter1).onChildWithParameters("value", 42);
+        verify(filter2).onChildWithParameters("value", 42);
+    }
 }
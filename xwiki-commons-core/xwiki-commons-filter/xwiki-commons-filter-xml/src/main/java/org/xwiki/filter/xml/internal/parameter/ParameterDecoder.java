@@ -0,0 +1,546 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.filter.xml.internal.parameter;
+
+import java.lang.reflect.Type;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Element;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.filter.FilterEventParameters;
+import org.xwiki.filter.xml.internal.XMLUtils;
+import org.xwiki.xml.Sax2Dom;
+
+import com.thoughtworks.xstream.converters.Converter;
+import com.thoughtworks.xstream.converters.ConverterLookup;
+import com.thoughtworks.xstream.converters.SingleValueConverter;
+import com.thoughtworks.xstream.mapper.Mapper;
+
+/**
+ * Decode a parameter directly from SAX events, without building an intermediate DOM.
+ * <p>
+ * Only the common types (the ones converted from a single String value by XStream, enums, maps, collections and
+ * {@link FilterEventParameters}) are decoded directly. As soon as something else is found (an attribute, an
+ * unsupported type, an invalid value, etc.) the events received so far are replayed in a DOM builder and the
+ * parameter is left to {@link ParameterManager#unSerialize(Type, Element)} through {@link #getElement()}.
+ *
+ * @version $Id$
+ * @since 8.3RC1
+ */
+public class ParameterDecoder
+{
+    private static final Attributes NO_ATTRIBUTES = new AttributesImpl();
+
+    private static final Object END_ELEMENT = new Object();
+
+    private static final Set<Class<?>> MAP_CLASSES = new HashSet<Class<?>>(
+        Arrays.<Class<?>>asList(LinkedHashMap.class, HashMap.class, FilterEventParameters.class));
+
+    private static final Set<Class<?>> COLLECTION_CLASSES = new HashSet<Class<?>>(
+        Arrays.<Class<?>>asList(ArrayList.class, LinkedList.class, LinkedHashSet.class, HashSet.class));
+
+    private final Type type;
+
+    private final Mapper mapper;
+
+    private final ConverterLookup converterLookup;
+
+    /**
+     * The events received so far, kept to be able to rebuild the DOM if the parameter can't be decoded directly.
+     */
+    private final List<Object> events = new ArrayList<Object>();
+
+    private final Deque<AbstractFrame> frames = new ArrayDeque<AbstractFrame>();
+
+    private int depth;
+
+    private boolean hasContent;
+
+    private Object value;
+
+    private Sax2Dom domBuilder;
+
+    private Element element;
+
+    /**
+     * A value being decoded.
+     *
+     * @version $Id$
+     */
+    private abstract static class AbstractFrame
+    {
+        /**
+         * @param child the value of a child element
+         * @return false if the child is not supported
+         */
+        boolean add(Object child)
+        {
+            return false;
+        }
+
+        /**
+         * @param text some text found in the element
+         */
+        void characters(String text)
+        {
+            // Ignored by default
+        }
+
+        /**
+         * @return true if the element can contain child elements
+         */
+        boolean isContainer()
+        {
+            return true;
+        }
+
+        /**
+         * @return the decoded value
+         * @throws Exception when failing to decode the value
+         */
+        abstract Object getValue() throws Exception;
+    }
+
+    /**
+     * A value converted from the text of the element.
+     *
+     * @version $Id$
+     */
+    private static class ScalarFrame extends AbstractFrame
+    {
+        private final Class<?> valueClass;
+
+        private final SingleValueConverter converter;
+
+        private StringBuilder text;
+
+        ScalarFrame(Class<?> valueClass, SingleValueConverter converter)
+        {
+            this.valueClass = valueClass;
+            this.converter = converter;
+        }
+
+        @Override
+        void characters(String chunk)
+        {
+            if (this.text == null) {
+                this.text = new StringBuilder(chunk);
+            } else {
+                this.text.append(chunk);
+            }
+        }
+
+        @Override
+        boolean isContainer()
+        {
+            return false;
+        }
+
+        @Override
+        Object getValue() throws Exception
+        {
+            String string = this.text != null ? this.text.toString() : "";
+
+            if (this.converter != null) {
+                return this.converter.fromString(string);
+            }
+
+            return Enum.valueOf((Class) this.valueClass, string);
+        }
+    }
+
+    /**
+     * A null value.
+     *
+     * @version $Id$
+     */
+    private static class NullFrame extends AbstractFrame
+    {
+        @Override
+        boolean add(Object child)
+        {
+            return true;
+        }
+
+        @Override
+        Object getValue()
+        {
+            return null;
+        }
+    }
+
+    /**
+     * A map entry, made of a key and a value.
+     *
+     * @version $Id$
+     */
+    private static class EntryFrame extends AbstractFrame
+    {
+        private final Object[] entry = new Object[2];
+
+        private int size;
+
+        @Override
+        boolean add(Object child)
+        {
+            if (this.size < this.entry.length) {
+                this.entry[this.size++] = child;
+
+                return true;
+            }
+
+            return false;
+        }
+
+        @Override
+        Object getValue() throws Exception
+        {
+            if (this.size < this.entry.length) {
+                throw new IllegalStateException("Incomplete map entry");
+            }
+
+            return this.entry;
+        }
+    }
+
+    /**
+     * A map made of entries.
+     *
+     * @version $Id$
+     */
+    private static class MapFrame extends AbstractFrame
+    {
+        private final Map<Object, Object> map;
+
+        MapFrame(Map<Object, Object> map)
+        {
+            this.map = map;
+        }
+
+        @Override
+        boolean add(Object child)
+        {
+            Object[] entry = (Object[]) child;
+
+            this.map.put(entry[0], entry[1]);
+
+            return true;
+        }
+
+        @Override
+        Object getValue()
+        {
+            return this.map;
+        }
+    }
+
+    /**
+     * A collection of items.
+     *
+     * @version $Id$
+     */
+    private static class CollectionFrame extends AbstractFrame
+    {
+        private final Collection<Object> collection;
+
+        CollectionFrame(Collection<Object> collection)
+        {
+            this.collection = collection;
+        }
+
+        @Override
+        boolean add(Object child)
+        {
+            this.collection.add(child);
+
+            return true;
+        }
+
+        @Override
+        Object getValue()
+        {
+            return this.collection;
+        }
+    }
+
+    /**
+     * @param type the expected type of the parameter
+     * @param mapper the XStream mapper used to resolve the classes from the element names
+     * @param converterLookup the XStream converters used to find how to decode a class
+     */
+    public ParameterDecoder(Type type, Mapper mapper, ConverterLookup converterLookup)
+    {
+        this.type = type;
+        this.mapper = mapper;
+        this.converterLookup = converterLookup;
+    }
+
+    /**
+     * @param uri the namespace URI
+     * @param localName the local name
+     * @param qName the qualified name
+     * @param attributes the attributes of the element
+     * @throws SAXException when failing to build the DOM
+     */
+    public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException
+    {
+        if (this.domBuilder == null && !pushFrame(uri, localName, qName, attributes)) {
+            fallback();
+        }
+
+        if (this.domBuilder != null) {
+            this.domBuilder.startElement(uri, localName, qName, attributes);
+        }
+
+        ++this.depth;
+    }
+
+    /**
+     * @param uri the namespace URI
+     * @param localName the local name
+     * @param qName the qualified name
+     * @throws SAXException when failing to build the DOM
+     */
+    public void endElement(String uri, String localName, String qName) throws SAXException
+    {
+        --this.depth;
+
+        if (this.domBuilder == null && !popFrame()) {
+            fallback();
+        }
+
+        if (this.domBuilder != null) {
+            this.domBuilder.endElement(uri, localName, qName);
+
+            if (this.depth == 0) {
+                this.domBuilder.endDocument();
+                this.element = this.domBuilder.getRootElement();
+            }
+        }
+    }
+
+    /**
+     * @param ch the characters from the XML document
+     * @param start the start position in the array
+     * @param length the number of characters to read from the array
+     * @throws SAXException when failing to build the DOM
+     */
+    public void characters(char[] ch, int start, int length) throws SAXException
+    {
+        if (this.domBuilder != null) {
+            this.domBuilder.characters(ch, start, length);
+        } else {
+            String text = new String(ch, start, length);
+
+            this.events.add(text);
+            this.frames.peek().characters(text);
+
+            if (this.depth == 1) {
+                this.hasContent = true;
+            }
+        }
+    }
+
+    /**
+     * @return true if the parameter element has been fully received
+     */
+    public boolean isDone()
+    {
+        return this.depth == 0;
+    }
+
+    /**
+     * @return the decoded value, only meaningful if {@link #getElement()} is null
+     */
+    public Object getValue()
+    {
+        return this.value;
+    }
+
+    /**
+     * @return the element to unserialize when the parameter could not be decoded directly, null otherwise
+     */
+    public Element getElement()
+    {
+        return this.element;
+    }
+
+    private boolean pushFrame(String uri, String localName, String qName, Attributes attributes)
+    {
+        if (attributes.getLength() > 0) {
+            return false;
+        }
+
+        AbstractFrame frame;
+        if (this.frames.isEmpty()) {
+            frame = createFrame(getRootClass());
+        } else {
+            AbstractFrame parent = this.frames.peek();
+
+            if (this.depth == 1) {
+                this.hasContent = true;
+            }
+
+            if (parent instanceof MapFrame) {
+                frame = new EntryFrame();
+            } else if (parent.isContainer()) {
+                frame = createFrame(getItemClass(qName));
+            } else {
+                frame = null;
+            }
+        }
+
+        if (frame == null) {
+            return false;
+        }
+
+        this.frames.push(frame);
+        this.events.add(new String[] { uri, localName, qName });
+
+        return true;
+    }
+
+    private boolean popFrame()
+    {
+        AbstractFrame frame = this.frames.pop();
+
+        Object frameValue = null;
+        if (this.frames.isEmpty() && !this.hasContent && this.type != null) {
+            // Same behavior as ParameterManager#unSerialize for empty parameters
+            frameValue = XMLUtils.emptyValue(ReflectionUtils.getTypeClass(this.type));
+        }
+
+        if (frameValue == null) {
+            try {
+                frameValue = frame.getValue();
+            } catch (Exception e) {
+                this.frames.push(frame);
+
+                return false;
+            }
+        }
+
+        if (this.frames.isEmpty()) {
+            this.value = frameValue;
+        } else if (!this.frames.peek().add(frameValue)) {
+            this.frames.push(frame);
+
+            return false;
+        }
+
+        this.events.add(END_ELEMENT);
+
+        return true;
+    }
+
+    private Class<?> getRootClass()
+    {
+        if (this.type == Object.class) {
+            return String.class;
+        }
+
+        return this.type != null ? ReflectionUtils.getTypeClass(this.type) : null;
+    }
+
+    private Class<?> getItemClass(String qName)
+    {
+        try {
+            return this.mapper.realClass(qName);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private AbstractFrame createFrame(Class<?> declaredClass)
+    {
+        AbstractFrame frame = null;
+
+        if (declaredClass == Mapper.Null.class) {
+            frame = new NullFrame();
+        } else if (declaredClass != null) {
+            Class<?> valueClass = this.mapper.defaultImplementationOf(declaredClass);
+
+            try {
+                if (MAP_CLASSES.contains(valueClass)) {
+                    frame = new MapFrame((Map<Object, Object>) valueClass.newInstance());
+                } else if (COLLECTION_CLASSES.contains(valueClass)) {
+                    frame = new CollectionFrame((Collection<Object>) valueClass.newInstance());
+                } else if (valueClass.isEnum()) {
+                    frame = new ScalarFrame(valueClass, null);
+                } else {
+                    Converter converter = this.converterLookup.lookupConverterForType(valueClass);
+                    if (converter instanceof SingleValueConverter) {
+                        frame = new ScalarFrame(valueClass, (SingleValueConverter) converter);
+                    }
+                }
+            } catch (Exception e) {
+                // Let XStream deal with it
+            }
+        }
+
+        return frame;
+    }
+
+    /**
+     * Switch to DOM mode: replay the events received so far in a new DOM builder.
+     */
+    private void fallback() throws SAXException
+    {
+        try {
+            this.domBuilder = new Sax2Dom();
+        } catch (ParserConfigurationException e) {
+            throw new SAXException("Failed to create new Sax2Dom handler", e);
+        }
+
+        this.domBuilder.startDocument();
+
+        for (Object event : this.events) {
+            if (event == END_ELEMENT) {
+                this.domBuilder.endElement(null, null, null);
+            } else if (event instanceof String[]) {
+                String[] names = (String[]) event;
+                this.domBuilder.startElement(names[0], names[1], names[2], NO_ATTRIBUTES);
+            } else {
+                char[] text = ((String) event).toCharArray();
+                this.domBuilder.characters(text, 0, text.length);
+            }
+        }
+
+        this.events.clear();
+        this.frames.clear();
+    }
+}
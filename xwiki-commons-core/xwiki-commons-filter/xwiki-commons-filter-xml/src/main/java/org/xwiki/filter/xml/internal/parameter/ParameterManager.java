@@ -53,4 +53,13 @@
      * @throws ClassNotFoundException when failing to find the class of the property to create
      */
     Object unSerialize(Type type, Element rootElement) throws ClassNotFoundException;
+
+    /**
+     * Create a decoder to convert a parameter directly from SAX events, without intermediate {@link Element}.
+     *
+     * @param type the type
+     * @return the decoder
+     * @since 8.3RC1
+     */
+    ParameterDecoder createDecoder(Type type);
 }
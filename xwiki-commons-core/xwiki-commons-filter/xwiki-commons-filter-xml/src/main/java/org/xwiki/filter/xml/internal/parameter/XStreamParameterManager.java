@@ -146,4 +146,10 @@ public Object unSerialize(Type type, Element rootElement) throws ClassNotFoundEx
 
         return this.xstream.unmarshal(new DomReader(rootElement), null, dataHolder);
     }
+
+    @Override
+    public ParameterDecoder createDecoder(Type type)
+    {
+        return new ParameterDecoder(type, this.xstream.getMapper(), this.xstream.getConverterLookup());
+    }
 }
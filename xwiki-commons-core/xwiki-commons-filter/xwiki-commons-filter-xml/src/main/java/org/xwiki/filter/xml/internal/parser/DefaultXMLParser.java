@@ -34,8 +34,6 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 import org.xml.sax.Attributes;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.SAXException;
@@ -48,6 +46,7 @@
 import org.xwiki.filter.UnknownFilter;
 import org.xwiki.filter.xml.XMLConfiguration;
 import org.xwiki.filter.xml.internal.XMLUtils;
+import org.xwiki.filter.xml.internal.parameter.ParameterDecoder;
 import org.xwiki.filter.xml.internal.parameter.ParameterManager;
 import org.xwiki.properties.ConverterManager;
 import org.xwiki.properties.converter.ConversionException;
@@ -95,6 +94,12 @@ public class DefaultXMLParser extends DefaultHandler implements ContentHandler
 
         public FilterEventParameters namedParameters = new FilterEventParameters();
 
+        public boolean inParameters;
+
+        public FilterElementParameterDescriptor<?> parameterDescriptor;
+
+        public ParameterDecoder parameterDecoder;
+
         public Sax2Dom parametersDOMBuilder;
 
         public int elementDepth;
@@ -281,6 +286,11 @@ private boolean onParametersElement(String elementName)
         return onBlockChild() && this.configuration.getElementParameters().equals(elementName);
     }
 
+    private boolean onParameterElement()
+    {
+        return this.elementDepth == this.blockStack.peek().elementDepth + 2;
+    }
+
     private int extractParameterIndex(String elementName)
     {
         Matcher matcher = XMLUtils.INDEX_PATTERN.matcher(elementName);
@@ -295,6 +305,21 @@ private boolean isReservedBlockAttribute(String attributeName)
             || this.configuration.getAttributeParameterName().equals(attributeName);
     }
 
+    private FilterElementParameterDescriptor<?> getParameterDescriptor(Block block, String name)
+    {
+        if (XMLUtils.INDEX_PATTERN.matcher(name).matches()) {
+            int parameterIndex = extractParameterIndex(name);
+
+            if (block.filterElement.getParameters().length > parameterIndex) {
+                return block.filterElement.getParameters()[parameterIndex];
+            }
+        } else if (!isReservedBlockAttribute(name)) {
+            return block.filterElement.getParameter(name);
+        }
+
+        return null;
+    }
+
     private void setParameter(Block block, String name, Object value, boolean attribute) throws SAXException
     {
         if (XMLUtils.INDEX_PATTERN.matcher(name).matches()) {
@@ -397,22 +422,15 @@ public void startElement(String uri, String localName, String qName, Attributes
 
                 setParameter(block, attributeName, attributes.getValue(i), true);
             }
-        } else {
-            if (onParametersElement(qName)) {
-                // starting a new block parameter
-                if (currentBlock.filterElement != null) {
-                    try {
-                        currentBlock.parametersDOMBuilder = new Sax2Dom();
-                    } catch (ParserConfigurationException e) {
-                        throw new SAXException("Failed to create new Sax2Dom handler", e);
-                    }
-                    currentBlock.parametersDOMBuilder.startDocument();
-                }
-            }
-
-            if (currentBlock.parametersDOMBuilder != null) {
-                currentBlock.parametersDOMBuilder.startElement(uri, localName, qName, attributes);
-            }
+        } else if (currentBlock.parameterDecoder != null) {
+            currentBlock.parameterDecoder.startElement(uri, localName, qName, attributes);
+        } else if (currentBlock.parametersDOMBuilder != null) {
+            currentBlock.parametersDOMBuilder.startElement(uri, localName, qName, attributes);
+        } else if (onParametersElement(qName)) {
+            // starting the block parameters (ignored for unknown blocks)
+            currentBlock.inParameters = currentBlock.filterElement != null;
+        } else if (currentBlock.inParameters && onParameterElement()) {
+            startParameter(currentBlock, uri, localName, qName, attributes);
         }
 
         ++this.elementDepth;
@@ -450,35 +468,77 @@ public void endElement(String uri, String localName, String qName) throws SAXExc
 
                 block.fireOnEvent(this.filter);
             }
+        } else if (currentBlock.parameterDecoder != null) {
+            currentBlock.parameterDecoder.endElement(uri, localName, qName);
+
+            if (currentBlock.parameterDecoder.isDone()) {
+                endParameter(currentBlock);
+            }
         } else if (currentBlock.parametersDOMBuilder != null) {
             currentBlock.parametersDOMBuilder.endElement(uri, localName, qName);
 
-            if (onParametersElement(qName)) {
+            if (onParameterElement()) {
                 currentBlock.parametersDOMBuilder.endDocument();
 
-                Element rootElement = currentBlock.parametersDOMBuilder.getRootElement();
-                NodeList parameterNodes = rootElement.getChildNodes();
-                for (int i = 0; i < parameterNodes.getLength(); ++i) {
-                    Node parameterNode = parameterNodes.item(i);
+                Element parameterElement = currentBlock.parametersDOMBuilder.getRootElement();
+                currentBlock.parametersDOMBuilder = null;
 
-                    if (parameterNode.getNodeType() == Node.ELEMENT_NODE) {
-                        String nodeName = parameterNode.getLocalName();
+                setParameter(currentBlock, parameterElement.getLocalName(), parameterElement, true);
+            }
+        } else if (onParametersElement(qName)) {
+            currentBlock.inParameters = false;
+        }
+    }
 
-                        setParameter(currentBlock, nodeName, parameterNode, true);
-                    }
-                }
+    private void startParameter(Block block, String uri, String localName, String qName, Attributes attributes)
+        throws SAXException
+    {
+        String name = qName.substring(qName.indexOf(':') + 1);
 
-                currentBlock.parametersDOMBuilder = null;
+        // Decode the parameter on the fly when its type is known, unless an explicit type is provided
+        FilterElementParameterDescriptor<?> descriptor =
+            attributes.getLength() == 0 ? getParameterDescriptor(block, name) : null;
+
+        if (descriptor != null) {
+            block.parameterDescriptor = descriptor;
+            block.parameterDecoder = this.parameterManager.createDecoder(descriptor.getType());
+            block.parameterDecoder.startElement(uri, localName, qName, attributes);
+        } else {
+            try {
+                block.parametersDOMBuilder = new Sax2Dom();
+            } catch (ParserConfigurationException e) {
+                throw new SAXException("Failed to create new Sax2Dom handler", e);
             }
+            block.parametersDOMBuilder.startDocument();
+            block.parametersDOMBuilder.startElement(uri, localName, qName, attributes);
         }
     }
 
+    private void endParameter(Block block) throws SAXException
+    {
+        ParameterDecoder decoder = block.parameterDecoder;
+        block.parameterDecoder = null;
+
+        if (decoder.getElement() != null) {
+            // The parameter could not be decoded on the fly
+            setParameter(block, block.parameterDescriptor, decoder.getElement());
+        } else {
+            block.setParameter(block.parameterDescriptor.getIndex(), decoder.getValue());
+        }
+
+        block.parameterDescriptor = null;
+    }
+
     @Override
     public void characters(char[] ch, int start, int length) throws SAXException
     {
-        if (!this.blockStack.isEmpty() && this.blockStack.peek().parametersDOMBuilder != null) {
-            this.blockStack.peek().parametersDOMBuilder.characters(ch, start, length);
-        } else if (this.content != null) {
+        Block currentBlock = this.blockStack.isEmpty() ? null : this.blockStack.peek();
+
+        if (currentBlock != null && currentBlock.parameterDecoder != null) {
+            currentBlock.parameterDecoder.characters(ch, start, length);
+        } else if (currentBlock != null && currentBlock.parametersDOMBuilder != null) {
+            currentBlock.parametersDOMBuilder.characters(ch, start, length);
+        } else if (this.content != null && (currentBlock == null || !currentBlock.inParameters)) {
             this.content.append(ch, start, length);
         }
     }
@@ -486,7 +546,9 @@ public void characters(char[] ch, int start, int length) throws SAXException
     @Override
     public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException
     {
-        if (!this.blockStack.isEmpty() && this.blockStack.peek().parametersDOMBuilder != null) {
+        if (!this.blockStack.isEmpty() && this.blockStack.peek().parameterDecoder != null) {
+            this.blockStack.peek().parameterDecoder.characters(ch, start, length);
+        } else if (!this.blockStack.isEmpty() && this.blockStack.peek().parametersDOMBuilder != null) {
             this.blockStack.peek().parametersDOMBuilder.ignorableWhitespace(ch, start, length);
         }
     }
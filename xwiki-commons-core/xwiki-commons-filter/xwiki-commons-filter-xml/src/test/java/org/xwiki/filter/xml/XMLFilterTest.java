@@ -136,6 +136,24 @@ public void testContainerWithMap() throws Exception
             "<containerWithMap><p><_0><entry><string>key</string><int>1</int></entry></_0></p></containerWithMap>");
     }
 
+    @Test
+    public void testContainerWithParametersElements() throws Exception
+    {
+        assertParseAndSerialize("<containerWithParameters param0=\"value0\" param1=\"1\"></containerWithParameters>",
+            "<containerWithParameters><p><_0>value0</_0><_1>1</_1></p></containerWithParameters>");
+    }
+
+    @Test
+    public void testContainerWithComplexMap() throws Exception
+    {
+        assertParseAndSerialize("<containerWithMap><p><map><entry><string>key</string>"
+            + "<list><string>value</string><null></null></list></entry></map></p></containerWithMap>");
+        // Types not decoded on the fly
+        assertParseAndSerialize("<containerWithMap><p><map><entry><string>key</string>"
+            + "<org.xwiki.filter.test.TestData><field1>5</field1></org.xwiki.filter.test.TestData>"
+            + "</entry></map></p></containerWithMap>");
+    }
+
     @Test
     public void testCustomData() throws Exception
     {
@@ -28,6 +28,7 @@
 import org.xwiki.job.event.status.JobStatus;
 import org.xwiki.job.event.status.QuestionAnsweredEvent;
 import org.xwiki.job.event.status.QuestionAskedEvent;
+import org.xwiki.job.internal.CountingLogQueue;
 import org.xwiki.job.internal.DefaultJobProgress;
 import org.xwiki.logging.LogLevel;
 import org.xwiki.logging.LogQueue;
@@ -142,7 +143,7 @@ public AbstractJobStatus(R request, JobStatus parentJobStatus, ObservationManage
         this.observationManager = observationManager;
         this.loggerManager = loggerManager;
 
-        this.logs = new LogQueue();
+        this.logs = new CountingLogQueue();
     }
 
     /**
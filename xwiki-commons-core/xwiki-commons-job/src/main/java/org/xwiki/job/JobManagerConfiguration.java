@@ -42,4 +42,63 @@
      * @since 7.2M2
      */
     int getJobStatusCacheSize();
+
+    /**
+     * @return the maximum number of log events kept in memory by all the statuses in the job status cache, 0 or less
+     *         for no limit
+     * @since 8.3RC1
+     */
+    default int getJobStatusCacheLogSize()
+    {
+        return 100000;
+    }
+
+    /**
+     * @return the maximum number of job ids without status to remember in the job status cache, 0 or less for no
+     *         limit
+     * @since 8.3RC1
+     */
+    default int getJobNoStatusCacheSize()
+    {
+        return 1000;
+    }
+
+    /**
+     * @return the maximum number of job statuses waiting to be written on disk by the asynchronous store, 0 or less
+     *         for no limit
+     * @since 8.3RC1
+     */
+    default int getJobStatusStoreQueueSize()
+    {
+        return 1000;
+    }
+
+    /**
+     * @return true if the job status files should be synchronized with the storage device before being considered
+     *         as written
+     * @since 8.3RC1
+     */
+    default boolean isJobStatusStoreSync()
+    {
+        return false;
+    }
+
+    /**
+     * @return the maximum total size (in bytes) of the finished job statuses kept in the store, the oldest ones are
+     *         removed first, 0 or less for no limit
+     * @since 8.3RC1
+     */
+    default long getJobStatusRetentionSize()
+    {
+        return 0;
+    }
+
+    /**
+     * @return the number of days after which a finished job status is removed from the store, 0 or less for no limit
+     * @since 8.3RC1
+     */
+    default int getJobStatusRetentionAge()
+    {
+        return 0;
+    }
 }
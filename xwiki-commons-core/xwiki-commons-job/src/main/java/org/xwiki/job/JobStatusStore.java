@@ -19,6 +19,7 @@
  */
 package org.xwiki.job;
 
+import java.util.Collections;
 import java.util.List;
 
 import org.xwiki.component.annotation.Role;
@@ -53,4 +54,25 @@
      * @param id the id of the job
      */
     void remove(List<String> id);
+
+    /**
+     * @param prefix the first elements of the ids of the jobs to list, null or empty for all the jobs
+     * @return the stored job statuses whose id starts with the provided prefix
+     * @since 8.3RC1
+     */
+    default List<JobStatusSummary> getJobStatuses(List<String> prefix)
+    {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Wait until all the job statuses passed to {@link #storeAsync(JobStatus)} are actually stored.
+     *
+     * @throws InterruptedException when interrupted while waiting
+     * @since 8.3RC1
+     */
+    default void flush() throws InterruptedException
+    {
+        // Nothing to wait for by default
+    }
 }
@@ -0,0 +1,97 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.job.event.status.JobStatus.State;
+
+/**
+ * A few informations about a stored {@link JobStatus}, available without loading it.
+ *
+ * @version $Id$
+ * @since 8.3RC1
+ */
+public class JobStatusSummary
+{
+    private final List<String> id;
+
+    private final State state;
+
+    private final Date startDate;
+
+    private final long size;
+
+    /**
+     * @param id the id of the job
+     * @param state the state of the job when its status was stored
+     * @param startDate the date when the job was started
+     * @param size the size (in bytes) taken by the job status in the store
+     */
+    public JobStatusSummary(List<String> id, State state, Date startDate, long size)
+    {
+        this.id = id != null ? Collections.unmodifiableList(new ArrayList<String>(id)) : null;
+        this.state = state;
+        this.startDate = startDate;
+        this.size = size;
+    }
+
+    /**
+     * @return the id of the job
+     */
+    public List<String> getId()
+    {
+        return this.id;
+    }
+
+    /**
+     * @return the state of the job when its status was stored
+     */
+    public State getState()
+    {
+        return this.state;
+    }
+
+    /**
+     * @return the date when the job was started
+     */
+    public Date getStartDate()
+    {
+        return this.startDate;
+    }
+
+    /**
+     * @return the size (in bytes) taken by the job status in the store
+     */
+    public long getSize()
+    {
+        return this.size;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.valueOf(this.id);
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import org.xwiki.logging.LogQueue;
+import org.xwiki.logging.event.LogEvent;
+
+/**
+ * A {@link LogQueue} keeping track of the number of log events it contains so that {@link #size()} does not have to
+ * go through the whole queue. Used as the log of the job statuses since their size is checked each time they are
+ * accessed in the status cache.
+ * <p>
+ * Like for {@link java.util.concurrent.ConcurrentLinkedQueue}, the size is not guaranteed to be accurate when the
+ * queue is modified during the call.
+ *
+ * @version $Id$
+ * @since 8.3RC1
+ */
+public class CountingLogQueue extends LogQueue
+{
+    /**
+     * Serialization identifier.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Update the count when removing events through the iterator.
+     */
+    private final class CountingIterator implements Iterator<LogEvent>
+    {
+        private final Iterator<LogEvent> iterator;
+
+        CountingIterator(Iterator<LogEvent> iterator)
+        {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return this.iterator.hasNext();
+        }
+
+        @Override
+        public LogEvent next()
+        {
+            return this.iterator.next();
+        }
+
+        @Override
+        public void remove()
+        {
+            this.iterator.remove();
+
+            CountingLogQueue.this.count.decrementAndGet();
+        }
+    }
+
+    /**
+     * The number of log events in the queue.
+     */
+    private final AtomicInteger count = new AtomicInteger();
+
+    /**
+     * Serialize a regular {@link LogQueue}.
+     *
+     * @return the object to serialize
+     */
+    protected Object writeReplace()
+    {
+        LogQueue log = new LogQueue();
+        log.addAll(this);
+
+        return log;
+    }
+
+    private boolean append(LogEvent e)
+    {
+        boolean added = super.offer(e);
+
+        if (added) {
+            this.count.incrementAndGet();
+        }
+
+        return added;
+    }
+
+    @Override
+    public boolean add(LogEvent e)
+    {
+        return offer(e);
+    }
+
+    @Override
+    public boolean offer(LogEvent e)
+    {
+        return append(e);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends LogEvent> c)
+    {
+        if (c == this) {
+            throw new IllegalArgumentException("Can't add a queue to itself");
+        }
+
+        boolean modified = false;
+        for (LogEvent e : c) {
+            modified |= append(e);
+        }
+
+        return modified;
+    }
+
+    @Override
+    public LogEvent poll()
+    {
+        LogEvent e = super.poll();
+
+        if (e != null) {
+            this.count.decrementAndGet();
+        }
+
+        return e;
+    }
+
+    @Override
+    public boolean remove(Object o)
+    {
+        boolean removed = super.remove(o);
+
+        if (removed) {
+            this.count.decrementAndGet();
+        }
+
+        return removed;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c)
+    {
+        return removeIf(c::contains);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c)
+    {
+        return removeIf(e -> !c.contains(e));
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super LogEvent> filter)
+    {
+        boolean removed = false;
+
+        for (Iterator<LogEvent> iterator = iterator(); iterator.hasNext();) {
+            if (filter.test(iterator.next())) {
+                iterator.remove();
+                removed = true;
+            }
+        }
+
+        return removed;
+    }
+
+    @Override
+    public void clear()
+    {
+        removeIf(e -> true);
+    }
+
+    @Override
+    public int size()
+    {
+        return this.count.get();
+    }
+
+    @Override
+    public Iterator<LogEvent> iterator()
+    {
+        return new CountingIterator(super.iterator());
+    }
+}
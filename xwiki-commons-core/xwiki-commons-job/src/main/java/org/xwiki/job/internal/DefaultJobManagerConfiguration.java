@@ -88,4 +88,40 @@ public int getJobStatusCacheSize()
     {
         return this.configuration.get().getProperty("job.statusCacheSize", 50);
     }
+
+    @Override
+    public int getJobStatusCacheLogSize()
+    {
+        return this.configuration.get().getProperty("job.statusCacheLogSize", 100000);
+    }
+
+    @Override
+    public int getJobNoStatusCacheSize()
+    {
+        return this.configuration.get().getProperty("job.noStatusCacheSize", 1000);
+    }
+
+    @Override
+    public int getJobStatusStoreQueueSize()
+    {
+        return this.configuration.get().getProperty("job.statusStoreQueueSize", 1000);
+    }
+
+    @Override
+    public boolean isJobStatusStoreSync()
+    {
+        return this.configuration.get().getProperty("job.statusStoreSync", false);
+    }
+
+    @Override
+    public long getJobStatusRetentionSize()
+    {
+        return this.configuration.get().getProperty("job.statusRetentionSize", 0L);
+    }
+
+    @Override
+    public int getJobStatusRetentionAge()
+    {
+        return this.configuration.get().getProperty("job.statusRetentionAge", 0);
+    }
 }
@@ -21,36 +21,28 @@
 
 import java.io.File;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.SynchronousQueue;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
-import org.apache.commons.collections4.map.LRUMap;
-import org.apache.commons.configuration.ConfigurationException;
-import org.apache.commons.configuration.PropertiesConfiguration;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
-import org.xwiki.job.DefaultJobStatus;
+import org.xwiki.job.AbstractJobStatus;
 import org.xwiki.job.JobManagerConfiguration;
 import org.xwiki.job.JobStatusStore;
+import org.xwiki.job.JobStatusSummary;
 import org.xwiki.job.annotation.Serializable;
 import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.job.internal.jmx.JMXJobStatusStore;
+import org.xwiki.logging.LogQueue;
 
 /**
  * Default implementation of {@link JobStatusStorage}.
@@ -60,124 +52,17 @@
  */
 @Component
 @Singleton
-public class DefaultJobStatusStore implements JobStatusStore, Initializable
+public class DefaultJobStatusStore implements JobStatusStore, Initializable, Disposable
 {
-    private static class Cache implements Map<List<String>, JobStatus>
-    {
-        // TODO: probably use JCache instead
-        private final Map<List<String>, JobStatus> cache;
-
-        private final Set<List<String>> noStatusCache;
-
-        Cache(int size)
-        {
-            this.cache = new LRUMap<>(size);
-            this.noStatusCache = new HashSet<List<String>>();
-        }
-
-        @Override
-        public int size()
-        {
-            return this.cache.size() + this.noStatusCache.size();
-        }
-
-        @Override
-        public boolean isEmpty()
-        {
-            return this.cache.isEmpty() && this.noStatusCache.isEmpty();
-        }
-
-        @Override
-        public boolean containsKey(Object key)
-        {
-            return this.cache.containsKey(key) || this.noStatusCache.contains(key);
-        }
-
-        @Override
-        public boolean containsValue(Object value)
-        {
-            // not used
-            return false;
-        }
-
-        @Override
-        public JobStatus get(Object key)
-        {
-            if (!this.noStatusCache.contains(key)) {
-                return this.cache.get(key);
-            }
-
-            return NOSTATUS;
-        }
-
-        @Override
-        public JobStatus put(List<String> key, JobStatus value)
-        {
-            JobStatus status = get(key);
-
-            if (value == null) {
-                this.cache.remove(key);
-                this.noStatusCache.add(key);
-            } else {
-                this.cache.put(key, value);
-                this.noStatusCache.remove(key);
-            }
-
-            return status;
-        }
-
-        @Override
-        public JobStatus remove(Object key)
-        {
-            JobStatus status = get(key);
-
-            this.cache.remove(key);
-            this.noStatusCache.remove(key);
-
-            return status;
-        }
-
-        @Override
-        public void putAll(Map<? extends List<String>, ? extends JobStatus> m)
-        {
-            for (Map.Entry<? extends List<String>, ? extends JobStatus> entry : m.entrySet()) {
-                put(entry.getKey(), entry.getValue());
-            }
-        }
-
-        @Override
-        public void clear()
-        {
-            this.cache.clear();
-            this.noStatusCache.clear();
-        }
-
-        @Override
-        public Set<List<String>> keySet()
-        {
-            // not used
-            return null;
-        }
-
-        @Override
-        public Collection<JobStatus> values()
-        {
-            // not used
-            return null;
-        }
-
-        @Override
-        public Set<java.util.Map.Entry<List<String>, JobStatus>> entrySet()
-        {
-            // not used
-            return null;
-        }
-    }
-
     /**
      * The current version of the store. Should be upgraded if any change is made.
+     * <ul>
+     * <li>1: the whole status is stored in {@link #FILENAME_STATUS}</li>
+     * <li>2: the log of {@link AbstractJobStatus} is stored separately in {@link #FILENAME_LOG}</li>
+     * <li>3: the statuses are indexed in {@link #STATUS_INDEX_FILE}</li>
+     * </ul>
      */
-    private static final int VERSION = 1;
+    private static final int VERSION = 3;
 
     /**
      * The name of the file where the job status is stored.
@@ -185,32 +70,31 @@ public Set<java.util.Map.Entry<List<String>, JobStatus>> entrySet()
     private static final String FILENAME_STATUS = "status.xml";
 
     /**
-     * The name of the file where various information about the status store are stored (like the version of the store).
+     * The name of the file where the job status log is stored.
      */
-    private static final String INDEX_FILE = "store.properties";
+    private static final String FILENAME_LOG = "log.bin";
 
     /**
-     * The name of the property containing the version of the store.
+     * The maximum time (in seconds) to wait for the queued statuses to be written when disposing the store.
      */
-    private static final String INDEX_FILE_VERSION = "version";
+    private static final long DISPOSE_TIMEOUT = 60;
 
     /**
-     * Encoding used for file content and names.
+     * The name of the file where the stored statuses are indexed.
      */
-    private static final String DEFAULT_ENCODING = "UTF-8";
+    private static final String STATUS_INDEX_FILE = "status.index";
 
     /**
-     * The encoded version of a <code>null</code> value in the id list.
+     * Used to get the storage directory.
      */
-    private static final String FOLDER_NULL = "&null";
-
-    private static final JobStatus NOSTATUS = new DefaultJobStatus(null, null, null, null);
+    @Inject
+    private JobManagerConfiguration configuration;
 
     /**
-     * Used to get the storage directory.
+     * Used to expose the store statistics when management is available.
      */
     @Inject
-    private JobManagerConfiguration configuration;
+    private ComponentManager componentManager;
 
     /**
      * The logger to log.
@@ -220,78 +104,61 @@ public Set<java.util.Map.Entry<List<String>, JobStatus>> entrySet()
 
     private JobStatusSerializer serializer;
 
-    private ExecutorService executorService;
+    private JobStatusWriteQueue writeQueue;
 
-    private Map<List<String>, JobStatus> cache;
+    private JobStatusCache cache;
 
-    class JobStatusSerializerRunnable implements Runnable
-    {
-        /**
-         * The status to store.
-         */
-        private final JobStatus status;
-
-        JobStatusSerializerRunnable(JobStatus status)
-        {
-            this.status = status;
-        }
+    private JobStatusIndex index;
 
-        @Override
-        public void run()
-        {
-            saveJobStatus(this.status);
-        }
-    }
+    private JobStatusFolders folders;
+
+    private JobStatusRetention retention;
+
+    /**
+     * True if the index is known to contain all the stored statuses.
+     */
+    private volatile boolean indexed;
 
     @Override
     public void initialize() throws InitializationException
     {
+        this.cache = new JobStatusCache(this.configuration.getJobStatusCacheSize(),
+            this.configuration.getJobStatusCacheLogSize(), this.configuration.getJobNoStatusCacheSize());
+
+        this.folders = new JobStatusFolders(this.configuration);
+
+        this.index = new JobStatusIndex(new File(this.folders.getStorage(), STATUS_INDEX_FILE),
+            this.folders::getJobId, this.logger);
+
+        this.retention = new JobStatusRetention(this.index, this.configuration, this::deleteJobStatus);
+
         try {
             this.serializer = new JobStatusSerializer();
+            this.serializer.setSync(this.configuration.isJobStatusStoreSync());
+
+            // Check if the store need to be upgraded or the index rebuilt
+            int version = this.folders.getStoreVersion();
+            if (VERSION > version || !this.index.load()) {
+                this.index.reset();
 
-            // Check if the store need to be upgraded
-            PropertiesConfiguration properties = getStoreProperties();
-            int version = properties.getInt(INDEX_FILE_VERSION, 0);
-            if (VERSION > version) {
                 repair();
 
                 // Update version
-                properties.setProperty(INDEX_FILE_VERSION, VERSION);
-                properties.save();
+                this.folders.setStoreVersion(VERSION);
             }
+
+            this.indexed = true;
+
+            this.retention.initializeOrphans();
+            this.retention.apply();
         } catch (Exception e) {
             this.logger.error("Failed to load jobs", e);
         }
 
-        BasicThreadFactory threadFactory = new BasicThreadFactory.Builder().namingPattern("Job status serializer")
-            .daemon(true).priority(Thread.MIN_PRIORITY).build();
-        this.executorService =
-            new ThreadPoolExecutor(0, 10, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), threadFactory);
+        this.writeQueue =
+            new JobStatusWriteQueue(this::saveJobStatus, this.configuration.getJobStatusStoreQueueSize(), this.logger);
 
-        this.cache = Collections.synchronizedMap(new Cache(this.configuration.getJobStatusCacheSize()));
-    }
-
-    /**
-     * @param name the file or directory name to encode
-     * @return the encoding name
-     */
-    private String encode(String name)
-    {
-        String encoded;
-
-        if (name != null) {
-            try {
-                encoded = URLEncoder.encode(name, DEFAULT_ENCODING);
-            } catch (UnsupportedEncodingException e) {
-                // Should never happen
-
-                encoded = name;
-            }
-        } else {
-            encoded = FOLDER_NULL;
-        }
-
-        return encoded;
+        JMXJobStatusStore.register(this.writeQueue, this.componentManager, this.logger);
     }
 
     /**
@@ -301,7 +168,7 @@ private String encode(String name)
      */
     private void repair() throws IOException
     {
-        File folder = this.configuration.getStorage();
+        File folder = this.folders.getStorage();
 
         if (folder.exists()) {
             if (!folder.isDirectory()) {
@@ -322,20 +189,7 @@ private void repairFolder(File folder)
                 repairFolder(file);
             } else if (file.getName().equals(FILENAME_STATUS)) {
                 try {
-                    JobStatus status = loadStatus(folder);
-
-                    if (status != null) {
-                        File properFolder = getJobFolder(status.getRequest().getId());
-
-                        if (!folder.equals(properFolder)) {
-                            // Move the status in its right place
-                            try {
-                                FileUtils.moveFileToDirectory(file, properFolder, true);
-                            } catch (IOException e) {
-                                this.logger.error("Failed to move job status file", e);
-                            }
-                        }
-                    }
+                    repairStatus(folder, file);
                 } catch (Exception e) {
                     this.logger.warn("Failed to load job status in folder [{}]", folder, e);
                 }
@@ -343,9 +197,65 @@ private void repairFolder(File folder)
         }
     }
 
+    /**
+     * @param folder the folder from where to load the job status
+     * @param file the file containing the job status
+     */
+    private void repairStatus(File folder, File file)
+    {
+        JobStatus status = loadStatus(folder);
+
+        if (status == null) {
+            return;
+        }
+
+        File properFolder = this.folders.getJobFolder(status.getRequest().getId());
+        boolean misplaced = !folder.equals(properFolder);
+
+        if (status instanceof AbstractJobStatus && !new File(folder, FILENAME_LOG).exists()) {
+            // Migrate the status to the split format (the log was stored with the status)
+            // Saving the status also index it
+            saveJobStatus(status);
+
+            if (misplaced) {
+                FileUtils.deleteQuietly(file);
+            }
+        } else {
+            if (misplaced) {
+                // Move the status in its right place
+                moveJobStatus(folder, properFolder);
+            }
+
+            index(status);
+        }
+    }
+
+    private void moveJobStatus(File folder, File properFolder)
+    {
+        try {
+            FileUtils.moveFileToDirectory(new File(folder, FILENAME_STATUS), properFolder, true);
+
+            File logFile = new File(folder, FILENAME_LOG);
+            if (logFile.exists()) {
+                FileUtils.moveFileToDirectory(logFile, properFolder, true);
+            }
+        } catch (IOException e) {
+            this.logger.error("Failed to move job status file", e);
+        }
+    }
+
     private JobStatus loadStatus(List<String> id)
     {
-        return loadStatus(getJobFolder(id));
+        JobStatus status = loadStatus(this.folders.getJobFolder(id));
+
+        // The index can miss a status (crash before the index was updated, status copied by hand, etc.)
+        if (status != null && this.indexed && !this.index.contains(this.folders.getJobKey(id))) {
+            this.logger.debug("Indexing job status [{}] found on the file system", id);
+
+            index(status);
+        }
+
+        return status;
     }
 
     /**
@@ -355,12 +265,40 @@ private JobStatus loadStatus(File folder)
     {
         File statusFile = new File(folder, FILENAME_STATUS);
         if (statusFile.exists()) {
-            return loadJobStatus(statusFile);
+            File logFile = new File(folder, FILENAME_LOG);
+            if (!logFile.exists()) {
+                // The log (if any) is stored with the status
+                return loadJobStatus(statusFile);
+            }
+
+            JobStatus status = this.serializer.readHeader(statusFile);
+
+            // Don't load the log until someone asks for it
+            if (status.getLog() instanceof LazyLogQueue) {
+                ((LazyLogQueue) status.getLog()).setLoader(() -> loadLog(logFile));
+            }
+
+            return status;
         }
 
         return null;
     }
 
+    /**
+     * @param logFile the file containing the job status log
+     * @return the log
+     */
+    private LogQueue loadLog(File logFile)
+    {
+        try {
+            return this.serializer.readLog(logFile);
+        } catch (Exception e) {
+            this.logger.warn("Failed to load job status log [{}]", logFile, e);
+
+            return new LogQueue();
+        }
+    }
+
     /**
      * @param statusFile the file containing job status to load
      * @return the job status
@@ -374,69 +312,98 @@ private JobStatus loadJobStatus(File statusFile)
     // JobStatusStorage
 
     /**
-     * @param id the id of the job
-     * @return the folder where to store the job related informations
+     * @param status the job status to save
+     * @throws IOException when falling to store the provided status
      */
-    private File getJobFolder(List<String> id)
+    private void saveJobStatus(JobStatus status)
     {
-        File folder = this.configuration.getStorage();
+        try {
+            File folder = this.folders.getJobFolder(status.getRequest().getId());
+            File statusFile = new File(folder, FILENAME_STATUS);
+            File logFile = new File(folder, FILENAME_LOG);
+
+            if (status instanceof AbstractJobStatus) {
+                // Write the log first so that the header never references a log older than itself
+                // Not loaded log did not change since it was stored
+                if (LazyLogQueue.isLoaded(status.getLog())) {
+                    this.serializer.writeLog(status.getLog(), logFile);
+                }
 
-        if (id != null) {
-            for (String idElement : id) {
-                folder = new File(folder, encode(idElement));
+                this.serializer.writeHeader(status, statusFile);
+            } else {
+                this.serializer.write(status, statusFile);
+
+                FileUtils.deleteQuietly(logFile);
             }
-        }
 
-        return folder;
+            index(status);
+
+            this.retention.applyIfTooBig();
+        } catch (Exception e) {
+            this.logger.warn("Failed to save job status [{}]", status, e);
+        }
     }
 
-    private PropertiesConfiguration getStoreProperties() throws ConfigurationException
+    /**
+     * @param status the stored job status to index
+     */
+    private void index(JobStatus status)
     {
-        File folder = this.configuration.getStorage();
+        List<String> id = status.getRequest().getId();
 
-        return new PropertiesConfiguration(new File(folder, INDEX_FILE));
+        File folder = this.folders.getJobFolder(id);
+        long size = new File(folder, FILENAME_STATUS).length() + new File(folder, FILENAME_LOG).length();
+
+        String key = this.folders.getJobKey(id);
+
+        this.retention.alive(key);
+
+        this.index.put(key, new JobStatusSummary(id, status.getState(), status.getStartDate(), size));
     }
 
     /**
-     * @param status the job status to save
-     * @throws IOException when falling to store the provided status
+     * Delete the status files of a job (but not the statuses of its children).
+     *
+     * @param key the key of the job in the index
+     * @param id the id of the job
      */
-    private void saveJobStatus(JobStatus status)
+    private void deleteJobStatus(String key, List<String> id)
     {
-        try {
-            File statusFile = getJobFolder(status.getRequest().getId());
-            statusFile = new File(statusFile, FILENAME_STATUS);
+        File folder = this.folders.getJobFolder(id);
 
-            this.serializer.write(status, statusFile);
-        } catch (Exception e) {
-            this.logger.warn("Failed to save job status [{}]", status, e);
+        FileUtils.deleteQuietly(new File(folder, FILENAME_STATUS));
+        FileUtils.deleteQuietly(new File(folder, FILENAME_LOG));
+
+        // Cleanup the folder if the job does not have children
+        String[] children = folder.list();
+        if (children != null && children.length == 0 && !folder.equals(this.folders.getStorage())) {
+            FileUtils.deleteQuietly(folder);
         }
+
+        this.index.remove(key);
+        this.cache.remove(id);
     }
 
     @Override
     public JobStatus getJobStatus(List<String> id)
     {
-        JobStatus status = this.cache.get(id);
-
-        if (status == null) {
-            synchronized (this.cache) {
-                status = this.cache.get(id);
-
-                if (status == null) {
-                    try {
-                        status = loadStatus(id);
+        // The status is loaded outside of any global lock so that a slow load does not block other ids
+        return this.cache.get(id, this::loadCachedStatus);
+    }
 
-                        this.cache.put(id, status);
-                    } catch (Exception e) {
-                        this.logger.warn("Failed to load job status for id [{}]", id, e);
+    /**
+     * @param id the id of the job
+     * @return the status or null if it does not exist or cannot be loaded
+     */
+    private JobStatus loadCachedStatus(List<String> id)
+    {
+        try {
+            return loadStatus(id);
+        } catch (Exception e) {
+            this.logger.warn("Failed to load job status for id [{}]", id, e);
 
-                        this.cache.put(id, null);
-                    }
-                }
-            }
+            return null;
         }
-
-        return status == NOSTATUS ? null : status;
     }
 
     @Override
@@ -454,14 +421,18 @@ public void storeAsync(JobStatus status)
     private void store(JobStatus status, boolean async)
     {
         if (status != null && status.getRequest() != null && status.getRequest().getId() != null) {
-            synchronized (this.cache) {
-                this.cache.put(status.getRequest().getId(), status);
-            }
+            this.cache.put(status.getRequest().getId(), status);
 
             // Only store Serializable job status on file system
             if (status.getClass().isAnnotationPresent(Serializable.class) || status instanceof java.io.Serializable) {
                 if (async) {
-                    this.executorService.execute(new JobStatusSerializerRunnable(status));
+                    try {
+                        this.writeQueue.offer(status);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+
+                        this.logger.warn("Interrupted while queuing job status [{}]", status.getRequest().getId());
+                    }
                 } else {
                     saveJobStatus(status);
                 }
@@ -472,7 +443,10 @@ private void store(JobStatus status, boolean async)
     @Override
     public void remove(List<String> id)
     {
-        File jobFolder = getJobFolder(id);
+        // Make sure a queued status does not recreate the folder
+        this.writeQueue.remove(id);
+
+        File jobFolder = this.folders.getJobFolder(id);
 
         if (jobFolder.exists()) {
             try {
@@ -484,6 +458,35 @@ public void remove(List<String> id)
             this.cache.remove(id);
         }
 
+        this.index.removeBranch(this.folders.getJobKey(id));
+
         this.cache.remove(id);
     }
+
+    @Override
+    public List<JobStatusSummary> getJobStatuses(List<String> prefix)
+    {
+        return this.index.list(this.folders.getJobKey(prefix));
+    }
+
+    @Override
+    public void flush() throws InterruptedException
+    {
+        this.writeQueue.flush();
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        // Make sure all the queued statuses are written
+        try {
+            this.writeQueue.dispose(TimeUnit.SECONDS.toMillis(DISPOSE_TIMEOUT));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        this.index.close();
+
+        JMXJobStatusStore.unregister(this.componentManager, this.logger);
+    }
 }
@@ -0,0 +1,422 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.logging.LogQueue;
+
+/**
+ * A cache of job statuses.
+ * <ul>
+ * <li>reading a cached status does not take any lock shared with other ids</li>
+ * <li>only one thread loads a given missing status, other threads asking for the same status wait for the result and
+ * threads asking for other statuses are not blocked</li>
+ * <li>a status which is put or removed while it's being loaded invalidates the load: the loaded status is not
+ * cached</li>
+ * <li>the size of the cache is bounded both by the number of statuses and by their estimated weight (the number of
+ * log events they contain) since big logs are what is taking most of the memory</li>
+ * <li>the weight of a status is evaluated again when it's accessed until it cannot change anymore (the job is finished
+ * and its log is loaded)</li>
+ * <li>the ids without any status are remembered separately, with their own bound</li>
+ * </ul>
+ * When a bound is exceeded the least recently used entries are evicted.
+ *
+ * @version $Id$
+ * @since 8.3RC1
+ */
+public class JobStatusCache
+{
+    /**
+     * The key used for the <code>null</code> id (not supported by {@link ConcurrentHashMap}).
+     */
+    private static final Object NULL_ID = new Object();
+
+    private static final class Entry
+    {
+        /**
+         * The status, null for an id without status.
+         */
+        private final JobStatus status;
+
+        /**
+         * The last time the entry was accessed, according to the access clock of the cache.
+         */
+        private volatile long lastAccess;
+
+        /**
+         * True when the weight of the status cannot change anymore.
+         */
+        private volatile boolean stable;
+
+        /**
+         * The weight counted in the total weight of the cache. Only accessed while holding the lock of the entry.
+         */
+        private long weight;
+
+        /**
+         * True when the entry is not in the cache anymore and its weight is not counted. Only accessed while holding
+         * the lock of the entry.
+         */
+        private boolean removed;
+
+        Entry(JobStatus status, long lastAccess)
+        {
+            this.status = status;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private final ConcurrentMap<Object, Entry> statuses = new ConcurrentHashMap<>();
+
+    /**
+     * The ids without status.
+     */
+    private final ConcurrentMap<Object, Entry> noStatuses = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Object, FutureTask<JobStatus>> loading = new ConcurrentHashMap<>();
+
+    /**
+     * Used to order the accesses to the entries.
+     */
+    private final AtomicLong clock = new AtomicLong();
+
+    private final AtomicLong weight = new AtomicLong();
+
+    /**
+     * Only one thread evicts entries at a time.
+     */
+    private final Object evictionLock = new Object();
+
+    private final int maxStatus;
+
+    private final long maxWeight;
+
+    private final int maxNoStatus;
+
+    /**
+     * @param maxStatus the maximum number of statuses in the cache
+     * @param maxWeight the maximum total weight of the statuses in the cache, 0 or less for no limit
+     * @param maxNoStatus the maximum number of ids without status remembered in the cache, 0 or less for no limit
+     */
+    public JobStatusCache(int maxStatus, long maxWeight, int maxNoStatus)
+    {
+        this.maxStatus = maxStatus;
+        this.maxWeight = maxWeight > 0 ? maxWeight : Long.MAX_VALUE;
+        this.maxNoStatus = maxNoStatus > 0 ? maxNoStatus : Integer.MAX_VALUE;
+    }
+
+    private static Object toKey(List<String> id)
+    {
+        return id != null ? id : NULL_ID;
+    }
+
+    /**
+     * @param status the status
+     * @return the estimated weight of the status
+     */
+    private static long weigh(JobStatus status)
+    {
+        LogQueue log = status.getLog();
+
+        // Don't force the loading of a lazy log just to weigh it (the size of a CountingLogQueue is also cheap to get)
+        if (log == null || !LazyLogQueue.isLoaded(log)) {
+            return 1L;
+        }
+
+        return 1L + log.size();
+    }
+
+    /**
+     * @param status the status
+     * @return true if the weight of the status cannot change anymore
+     */
+    private static boolean isStable(JobStatus status)
+    {
+        return status.getState() == JobStatus.State.FINISHED && LazyLogQueue.isLoaded(status.getLog());
+    }
+
+    /**
+     * Get the status associated with the passed id, loading it if it's not already in the cache.
+     *
+     * @param id the id of the job
+     * @param loader called to load the status when it's not in the cache, return null when there is no status
+     * @return the status, null if there is none
+     */
+    public JobStatus get(List<String> id, Function<List<String>, JobStatus> loader)
+    {
+        Object key = toKey(id);
+
+        Entry entry = getEntry(key);
+        if (entry != null) {
+            entry.lastAccess = this.clock.incrementAndGet();
+
+            if (entry.status != null && !entry.stable) {
+                weigh(entry);
+                evict();
+            }
+
+            return entry.status;
+        }
+
+        FutureTask<JobStatus> task = new FutureTask<>(() -> loader.apply(id));
+        FutureTask<JobStatus> currentTask = this.loading.putIfAbsent(key, task);
+        if (currentTask == null) {
+            currentTask = task;
+
+            // Load the status in the current thread
+            task.run();
+
+            // Only cache the loaded status if the load was not invalidated in the meantime (the task is removed when
+            // the status is put or removed and that can't happen while the task entry is being computed). Remove the
+            // task only once the result is cached so that other threads either get the entry or wait for the task.
+            this.loading.computeIfPresent(key, (k, t) -> {
+                if (t == task) {
+                    putEntry(k, getLoadedStatus(task), false);
+                }
+
+                return t != task ? t : null;
+            });
+
+            evict();
+        }
+
+        return getResult(currentTask);
+    }
+
+    private Entry getEntry(Object key)
+    {
+        Entry entry = this.statuses.get(key);
+
+        return entry != null ? entry : this.noStatuses.get(key);
+    }
+
+    private JobStatus getLoadedStatus(FutureTask<JobStatus> task)
+    {
+        try {
+            return task.get();
+        } catch (InterruptedException | ExecutionException e) {
+            // Should never happen since the task is already executed and the loader does not throw exceptions
+            return null;
+        }
+    }
+
+    private JobStatus getResult(FutureTask<JobStatus> task)
+    {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            return null;
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to load job status", e.getCause());
+        }
+    }
+
+    /**
+     * @param id the id of the job
+     * @return the cached status or null if there is none (or if it's not cached)
+     */
+    public JobStatus getIfPresent(List<String> id)
+    {
+        Entry entry = this.statuses.get(toKey(id));
+
+        return entry != null ? entry.status : null;
+    }
+
+    /**
+     * @param id the id of the job
+     * @param status the status to put in the cache
+     */
+    public void put(List<String> id, JobStatus status)
+    {
+        Object key = toKey(id);
+
+        // Make sure a load in progress does not override the new status
+        this.loading.remove(key);
+
+        putEntry(key, status, true);
+
+        evict();
+    }
+
+    private void putEntry(Object key, JobStatus status, boolean replace)
+    {
+        if (!replace && getEntry(key) != null) {
+            return;
+        }
+
+        Entry entry = new Entry(status, this.clock.incrementAndGet());
+
+        if (status != null) {
+            removed(this.noStatuses.remove(key));
+            removed(this.statuses.put(key, entry));
+
+            weigh(entry);
+        } else {
+            removed(this.statuses.remove(key));
+            removed(this.noStatuses.put(key, entry));
+        }
+    }
+
+    /**
+     * @param id the id of the job
+     */
+    public void remove(List<String> id)
+    {
+        Object key = toKey(id);
+
+        // Invalidate the load in progress, if any
+        this.loading.remove(key);
+
+        removed(this.statuses.remove(key));
+        removed(this.noStatuses.remove(key));
+    }
+
+    /**
+     * Remove all the entries from the cache.
+     */
+    public void clear()
+    {
+        this.loading.clear();
+
+        for (Object key : this.statuses.keySet()) {
+            removed(this.statuses.remove(key));
+        }
+        this.noStatuses.clear();
+    }
+
+    /**
+     * @return the number of statuses in the cache
+     */
+    public long getStatusCount()
+    {
+        return this.statuses.size();
+    }
+
+    /**
+     * @return the number of ids without status in the cache
+     */
+    public long getNoStatusCount()
+    {
+        return this.noStatuses.size();
+    }
+
+    /**
+     * @return the total weight of the statuses in the cache
+     */
+    public long getWeight()
+    {
+        return this.weight.get();
+    }
+
+    /**
+     * Update the weight of the passed entry.
+     *
+     * @param entry the entry to weigh
+     */
+    private void weigh(Entry entry)
+    {
+        synchronized (entry) {
+            if (!entry.removed) {
+                long entryWeight = weigh(entry.status);
+
+                this.weight.addAndGet(entryWeight - entry.weight);
+                entry.weight = entryWeight;
+                entry.stable = isStable(entry.status);
+            }
+        }
+    }
+
+    /**
+     * Stop counting the weight of an entry removed from the cache.
+     *
+     * @param entry the removed entry, can be null
+     */
+    private void removed(Entry entry)
+    {
+        if (entry != null) {
+            synchronized (entry) {
+                if (!entry.removed) {
+                    entry.removed = true;
+                    this.weight.addAndGet(-entry.weight);
+                }
+            }
+        }
+    }
+
+    private boolean isStatusOverflowing()
+    {
+        return this.statuses.size() > this.maxStatus || this.weight.get() > this.maxWeight;
+    }
+
+    private boolean isNoStatusOverflowing()
+    {
+        return this.noStatuses.size() > this.maxNoStatus;
+    }
+
+    /**
+     * Remove the least recently used entries until the cache is within its bounds.
+     */
+    private void evict()
+    {
+        if (isStatusOverflowing() || isNoStatusOverflowing()) {
+            synchronized (this.evictionLock) {
+                evict(this.statuses, this::isStatusOverflowing);
+                evict(this.noStatuses, this::isNoStatusOverflowing);
+            }
+        }
+    }
+
+    private void evict(ConcurrentMap<Object, Entry> entries, BooleanSupplier overflowing)
+    {
+        if (!overflowing.getAsBoolean()) {
+            return;
+        }
+
+        // Take a snapshot of the access times since they can change while sorting
+        SortedMap<Long, Map.Entry<Object, Entry>> accesses = new TreeMap<>();
+        for (Map.Entry<Object, Entry> entry : entries.entrySet()) {
+            accesses.put(entry.getValue().lastAccess, entry);
+        }
+
+        for (Map.Entry<Object, Entry> entry : accesses.values()) {
+            if (!overflowing.getAsBoolean()) {
+                break;
+            }
+
+            if (entries.remove(entry.getKey(), entry.getValue())) {
+                removed(entry.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.commons.lang3.StringUtils;
+import org.xwiki.job.JobManagerConfiguration;
+
+/**
+ * Resolve the folder where a job status is stored and its key in the {@link JobStatusIndex}, and give access to the
+ * version of the store.
+ *
+ * @version $Id$
+ * @since 8.3RC1
+ */
+public class JobStatusFolders
+{
+    /**
+     * Encoding used for file content and names.
+     */
+    private static final String DEFAULT_ENCODING = "UTF-8";
+
+    /**
+     * The encoded version of a <code>null</code> value in the id list.
+     */
+    private static final String FOLDER_NULL = "&null";
+
+    /**
+     * The name of the file where various information about the status store are stored (like the version of the store).
+     */
+    private static final String INDEX_FILE = "store.properties";
+
+    /**
+     * The name of the property containing the version of the store.
+     */
+    private static final String INDEX_FILE_VERSION = "version";
+
+    private final JobManagerConfiguration configuration;
+
+    /**
+     * @param configuration used to get the storage directory
+     */
+    public JobStatusFolders(JobManagerConfiguration configuration)
+    {
+        this.configuration = configuration;
+    }
+
+    /**
+     * @param name the file or directory name to encode
+     * @return the encoding name
+     */
+    private String encode(String name)
+    {
+        String encoded;
+
+        if (name != null) {
+            try {
+                encoded = URLEncoder.encode(name, DEFAULT_ENCODING);
+            } catch (UnsupportedEncodingException e) {
+                // Should never happen
+
+                encoded = name;
+            }
+        } else {
+            encoded = FOLDER_NULL;
+        }
+
+        return encoded;
+    }
+
+    /**
+     * @param encoded the encoded file or directory name
+     * @return the decoded name
+     */
+    private String decode(String encoded)
+    {
+        String name;
+
+        if (!encoded.equals(FOLDER_NULL)) {
+            try {
+                name = URLDecoder.decode(encoded, DEFAULT_ENCODING);
+            } catch (UnsupportedEncodingException e) {
+                // Should never happen
+
+                name = encoded;
+            }
+        } else {
+            name = null;
+        }
+
+        return name;
+    }
+
+    /**
+     * @return the root folder of the store
+     */
+    public File getStorage()
+    {
+        return this.configuration.getStorage();
+    }
+
+    /**
+     * @param id the id of the job
+     * @return the folder where to store the job related informations
+     */
+    public File getJobFolder(List<String> id)
+    {
+        File folder = getStorage();
+
+        if (id != null) {
+            for (String idElement : id) {
+                folder = new File(folder, encode(idElement));
+            }
+        }
+
+        return folder;
+    }
+
+    /**
+     * @param id the id of the job
+     * @return the key of the job in the index (the relative path of the job folder)
+     */
+    public String getJobKey(List<String> id)
+    {
+        StringBuilder key = new StringBuilder();
+
+        if (id != null) {
+            for (String idElement : id) {
+                if (key.length() > 0) {
+                    key.append(JobStatusIndex.KEY_SEPARATOR);
+                }
+                key.append(encode(idElement));
+            }
+        }
+
+        return key.toString();
+    }
+
+    /**
+     * @param key the key of the job in the index
+     * @return the id of the job
+     */
+    public List<String> getJobId(String key)
+    {
+        if (key.isEmpty()) {
+            return null;
+        }
+
+        List<String> id = new ArrayList<>();
+        for (String element : StringUtils.split(key, JobStatusIndex.KEY_SEPARATOR)) {
+            id.add(decode(element));
+        }
+
+        return id;
+    }
+
+    private PropertiesConfiguration getStoreProperties() throws ConfigurationException
+    {
+        return new PropertiesConfiguration(new File(getStorage(), INDEX_FILE));
+    }
+
+    /**
+     * @return the version of the store, 0 if unknown
+     * @throws ConfigurationException when failing to read the store properties
+     */
+    public int getStoreVersion() throws ConfigurationException
+    {
+        return getStoreProperties().getInt(INDEX_FILE_VERSION, 0);
+    }
+
+    /**
+     * @param version the new version of the store
+     * @throws ConfigurationException when failing to save the store properties
+     */
+    public void setStoreVersion(int version) throws ConfigurationException
+    {
+        PropertiesConfiguration properties = getStoreProperties();
+        properties.setProperty(INDEX_FILE_VERSION, version);
+        properties.save();
+    }
+}
@@ -0,0 +1,385 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.xwiki.job.JobStatusSummary;
+import org.xwiki.job.event.status.JobStatus.State;
+
+/**
+ * An index of the job statuses stored on the file system.
+ * <p>
+ * Each status is indexed with a key which is the path of its folder relative to the store root, using {@code /} as
+ * separator and the empty string for the root. The index is persisted as a journal where each line is either the
+ * new informations about a status or the removal of a status (or of a whole branch). The journal is compacted when
+ * it contains too many outdated lines.
+ *
+ * @version $Id$
+ * @since 8.3RC1
+ */
+public class JobStatusIndex
+{
+    /**
+     * The separator between the elements of a key.
+     */
+    public static final char KEY_SEPARATOR = '/';
+
+    private static final char FIELD_SEPARATOR = '\t';
+
+    private static final String FIELD_SEPARATOR_STRING = String.valueOf(FIELD_SEPARATOR);
+
+    private static final String OP_PUT = "P";
+
+    private static final String OP_REMOVE = "D";
+
+    private static final String OP_REMOVE_BRANCH = "R";
+
+    private static final String NULL = "-";
+
+    /**
+     * The minimum number of outdated lines in the journal before considering compacting it.
+     */
+    private static final int COMPACT_THRESHOLD = 1024;
+
+    private final File file;
+
+    private final Function<String, List<String>> keyDecoder;
+
+    private final Logger logger;
+
+    private final ConcurrentNavigableMap<String, JobStatusSummary> entries = new ConcurrentSkipListMap<>();
+
+    private final AtomicLong size = new AtomicLong();
+
+    private Writer journal;
+
+    private int journalLines;
+
+    /**
+     * @param file the file where the index is persisted
+     * @param keyDecoder used to convert a key into a job id
+     * @param logger the logger to use to report invalid lines in the index
+     */
+    public JobStatusIndex(File file, Function<String, List<String>> keyDecoder, Logger logger)
+    {
+        this.file = file;
+        this.keyDecoder = keyDecoder;
+        this.logger = logger;
+    }
+
+    /**
+     * Load the index from the file system.
+     *
+     * @return false if there is no index to load
+     * @throws IOException when failing to read the index
+     */
+    public synchronized boolean load() throws IOException
+    {
+        if (!this.file.exists()) {
+            return false;
+        }
+
+        this.entries.clear();
+        this.size.set(0);
+        this.journalLines = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(this.file.toPath(), StandardCharsets.UTF_8)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                try {
+                    apply(line);
+                } catch (Exception e) {
+                    // Most probably a line partially written during a crash
+                    this.logger.warn("Ignoring invalid job status index line [{}]", line, e);
+                }
+
+                ++this.journalLines;
+            }
+        }
+
+        compactIfNeeded();
+
+        return true;
+    }
+
+    /**
+     * Remove everything from the index.
+     *
+     * @throws IOException when failing to reset the index file
+     */
+    public synchronized void reset() throws IOException
+    {
+        this.entries.clear();
+        this.size.set(0);
+
+        compact();
+    }
+
+    private void apply(String line)
+    {
+        String[] fields = line.split(FIELD_SEPARATOR_STRING, -1);
+
+        String key = fields[1];
+
+        switch (fields[0]) {
+            case OP_PUT:
+                State state = fields[2].equals(NULL) ? null : State.valueOf(fields[2]);
+                Date startDate = fields[3].equals(NULL) ? null : new Date(Long.parseLong(fields[3]));
+                long statusSize = Long.parseLong(fields[4]);
+
+                putEntry(key, new JobStatusSummary(this.keyDecoder.apply(key), state, startDate, statusSize));
+                break;
+
+            case OP_REMOVE:
+                removeEntry(key);
+                break;
+
+            case OP_REMOVE_BRANCH:
+                removeBranchEntries(key);
+                break;
+
+            default:
+                throw new IllegalArgumentException("Unknown operation");
+        }
+    }
+
+    private void putEntry(String key, JobStatusSummary summary)
+    {
+        JobStatusSummary previous = this.entries.put(key, summary);
+
+        this.size.addAndGet(summary.getSize() - (previous != null ? previous.getSize() : 0));
+    }
+
+    private void removeEntry(String key)
+    {
+        JobStatusSummary previous = this.entries.remove(key);
+
+        if (previous != null) {
+            this.size.addAndGet(-previous.getSize());
+        }
+    }
+
+    private void removeBranchEntries(String key)
+    {
+        for (Iterator<Map.Entry<String, JobStatusSummary>> it = getBranch(key).entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, JobStatusSummary> entry = it.next();
+
+            if (isInBranch(entry.getKey(), key)) {
+                this.size.addAndGet(-entry.getValue().getSize());
+                it.remove();
+            }
+        }
+    }
+
+    private ConcurrentNavigableMap<String, JobStatusSummary> getBranch(String key)
+    {
+        if (key.isEmpty()) {
+            return this.entries;
+        }
+
+        // All the keys of the branch are between the key itself and the key followed by the separator and the
+        // highest character
+        return this.entries.subMap(key, true, key + KEY_SEPARATOR + Character.MAX_VALUE, true);
+    }
+
+    private boolean isInBranch(String entryKey, String key)
+    {
+        return key.isEmpty() || entryKey.length() == key.length()
+            || entryKey.charAt(key.length()) == KEY_SEPARATOR;
+    }
+
+    /**
+     * @param key the key of the job status
+     * @param summary the informations about the job status
+     */
+    public synchronized void put(String key, JobStatusSummary summary)
+    {
+        putEntry(key, summary);
+
+        append(toLine(key, summary));
+    }
+
+    private String toLine(String key, JobStatusSummary summary)
+    {
+        StringBuilder line = new StringBuilder();
+        line.append(OP_PUT);
+        line.append(FIELD_SEPARATOR);
+        line.append(key);
+        line.append(FIELD_SEPARATOR);
+        line.append(summary.getState() != null ? summary.getState().name() : NULL);
+        line.append(FIELD_SEPARATOR);
+        line.append(summary.getStartDate() != null ? String.valueOf(summary.getStartDate().getTime()) : NULL);
+        line.append(FIELD_SEPARATOR);
+        line.append(summary.getSize());
+
+        return line.toString();
+    }
+
+    /**
+     * @param key the key of the job status to remove
+     */
+    public synchronized void remove(String key)
+    {
+        removeEntry(key);
+
+        append(OP_REMOVE + FIELD_SEPARATOR + key);
+    }
+
+    /**
+     * @param key the key of the job status to remove with all the job statuses located under it
+     */
+    public synchronized void removeBranch(String key)
+    {
+        removeBranchEntries(key);
+
+        append(OP_REMOVE_BRANCH + FIELD_SEPARATOR + key);
+    }
+
+    /**
+     * @param key the key of the job status
+     * @return true if the job status is indexed
+     */
+    public boolean contains(String key)
+    {
+        return this.entries.containsKey(key);
+    }
+
+    /**
+     * @param key the key of the job status
+     * @return the informations about the job status or null if it's not indexed
+     */
+    public JobStatusSummary get(String key)
+    {
+        return this.entries.get(key);
+    }
+
+    /**
+     * @param key the key of the branch to list, empty for all the job statuses
+     * @return the job statuses located under the provided key (including the key itself)
+     */
+    public List<JobStatusSummary> list(String key)
+    {
+        List<JobStatusSummary> result = new ArrayList<>();
+
+        for (Map.Entry<String, JobStatusSummary> entry : getBranch(key).entrySet()) {
+            if (isInBranch(entry.getKey(), key)) {
+                result.add(entry.getValue());
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return all the indexed job statuses by key
+     */
+    public Map<String, JobStatusSummary> getEntries()
+    {
+        return this.entries;
+    }
+
+    /**
+     * @return the total size (in bytes) of the indexed job statuses
+     */
+    public long getSize()
+    {
+        return this.size.get();
+    }
+
+    private void append(String line)
+    {
+        try {
+            if (this.journal == null) {
+                this.journal = new BufferedWriter(
+                    new OutputStreamWriter(FileUtils.openOutputStream(this.file, true), StandardCharsets.UTF_8));
+            }
+
+            this.journal.write(line);
+            this.journal.write('\n');
+            this.journal.flush();
+
+            ++this.journalLines;
+
+            compactIfNeeded();
+        } catch (IOException e) {
+            this.logger.warn("Failed to update the job status index [{}]", this.file, e);
+        }
+    }
+
+    private void compactIfNeeded() throws IOException
+    {
+        if (this.journalLines - this.entries.size() > Math.max(COMPACT_THRESHOLD, this.entries.size())) {
+            compact();
+        }
+    }
+
+    private void compact() throws IOException
+    {
+        close();
+
+        File tempFile = new File(this.file.getParentFile(), this.file.getName() + ".tmp");
+
+        this.journalLines = 0;
+        this.journal = new BufferedWriter(
+            new OutputStreamWriter(FileUtils.openOutputStream(tempFile), StandardCharsets.UTF_8));
+
+        try {
+            for (Map.Entry<String, JobStatusSummary> entry : this.entries.entrySet()) {
+                this.journal.write(toLine(entry.getKey(), entry.getValue()));
+                this.journal.write('\n');
+
+                ++this.journalLines;
+            }
+        } finally {
+            close();
+        }
+
+        Files.move(tempFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Release the resources used by the index.
+     */
+    public synchronized void close()
+    {
+        IOUtils.closeQuietly(this.journal);
+        this.journal = null;
+    }
+}
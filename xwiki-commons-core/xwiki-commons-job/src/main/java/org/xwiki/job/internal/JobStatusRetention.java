@@ -0,0 +1,164 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.xwiki.job.JobManagerConfiguration;
+import org.xwiki.job.JobStatusSummary;
+import org.xwiki.job.event.status.JobStatus;
+
+/**
+ * Remove the oldest finished job statuses from the store according to the configured size and age limits.
+ * <p>
+ * The statuses which were not finished when the store was initialized are orphans (the job was interrupted by a
+ * restart or a crash and won't ever finish) and can be removed too.
+ *
+ * @version $Id$
+ * @since 8.3RC1
+ */
+public class JobStatusRetention
+{
+    private final JobStatusIndex index;
+
+    private final JobManagerConfiguration configuration;
+
+    private final BiConsumer<String, List<String>> deleter;
+
+    /**
+     * The keys of the orphan statuses.
+     */
+    private final Set<String> orphans = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param index the index of the stored statuses
+     * @param configuration used to get the retention limits
+     * @param deleter called with the key and the id of each status to delete
+     */
+    public JobStatusRetention(JobStatusIndex index, JobManagerConfiguration configuration,
+        BiConsumer<String, List<String>> deleter)
+    {
+        this.index = index;
+        this.configuration = configuration;
+        this.deleter = deleter;
+    }
+
+    /**
+     * Remember the indexed statuses which are not finished as orphans. No job can be running before the store is
+     * initialized.
+     */
+    public void initializeOrphans()
+    {
+        this.orphans.clear();
+
+        for (Map.Entry<String, JobStatusSummary> entry : this.index.getEntries().entrySet()) {
+            if (!isFinished(entry.getValue().getState())) {
+                this.orphans.add(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Indicate that a new version of the status is stored, the job is alive.
+     *
+     * @param key the key of the job in the index
+     */
+    public void alive(String key)
+    {
+        this.orphans.remove(key);
+    }
+
+    /**
+     * Apply the retention if the index is bigger than the configured size limit.
+     */
+    public void applyIfTooBig()
+    {
+        long maxSize = this.configuration.getJobStatusRetentionSize();
+        if (maxSize > 0 && this.index.getSize() > maxSize) {
+            apply();
+        }
+    }
+
+    /**
+     * Remove the oldest finished job statuses according to the configured size and age limits.
+     */
+    public synchronized void apply()
+    {
+        long maxSize = this.configuration.getJobStatusRetentionSize();
+        int maxAge = this.configuration.getJobStatusRetentionAge();
+
+        if (maxSize <= 0 && maxAge <= 0) {
+            return;
+        }
+
+        long minDate = maxAge > 0 ? System.currentTimeMillis() - TimeUnit.DAYS.toMillis(maxAge) : Long.MIN_VALUE;
+
+        for (Map.Entry<String, JobStatusSummary> entry : getCandidates()) {
+            Date startDate = entry.getValue().getStartDate();
+
+            if (isExpired(startDate, minDate, maxSize)) {
+                this.deleter.accept(entry.getKey(), entry.getValue().getId());
+
+                this.orphans.remove(entry.getKey());
+            } else if (startDate != null) {
+                // Next ones are even more recent
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return the statuses which can be removed (finished or orphaned jobs), oldest first (the ones without date are
+     *         considered the oldest)
+     */
+    private List<Map.Entry<String, JobStatusSummary>> getCandidates()
+    {
+        List<Map.Entry<String, JobStatusSummary>> candidates = new ArrayList<>();
+        for (Map.Entry<String, JobStatusSummary> entry : this.index.getEntries().entrySet()) {
+            if (isFinished(entry.getValue().getState()) || this.orphans.contains(entry.getKey())) {
+                candidates.add(entry);
+            }
+        }
+        candidates.sort(Comparator.comparing(entry -> entry.getValue().getStartDate(),
+            Comparator.nullsFirst(Comparator.<Date>naturalOrder())));
+
+        return candidates;
+    }
+
+    private boolean isExpired(Date startDate, long minDate, long maxSize)
+    {
+        boolean tooOld = startDate != null && startDate.getTime() < minDate;
+
+        return tooOld || (maxSize > 0 && this.index.getSize() > maxSize);
+    }
+
+    private boolean isFinished(JobStatus.State state)
+    {
+        return state == null || state == JobStatus.State.FINISHED;
+    }
+}
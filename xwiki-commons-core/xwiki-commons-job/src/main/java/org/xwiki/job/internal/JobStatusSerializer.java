@@ -19,42 +19,123 @@
  */
 package org.xwiki.job.internal;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.xwiki.job.AbstractJobStatus;
 import org.xwiki.job.event.status.JobStatus;
 import org.xwiki.job.internal.xstream.SafeXStream;
+import org.xwiki.logging.LogQueue;
+import org.xwiki.logging.event.LogEvent;
 
 import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.converters.Converter;
+import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.UnmarshallingContext;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
 
 /**
  * Serialize/unserialize tool for job statuses.
+ * <p>
+ * A status can be stored either as a single XML document or split in two parts:
+ * <ul>
+ * <li>a small XML header containing everything but the log (an empty {@code logs} element stands for it)</li>
+ * <li>a log segment: a binary file starting with a magic number and a format version followed by the deflate
+ * compressed log events, each one stored as the size in bytes of its XStream XML serialization followed by that XML
+ * (UTF-8 encoded). The log events are very repetitive so the segment is a lot smaller than the XML log and it can be
+ * read without parsing the header (and the header can be read without parsing the log)</li>
+ * </ul>
  *
  * @version $Id$
  * @since 5.2M2
  */
 public class JobStatusSerializer
 {
+    /**
+     * Write the log of a status header as an empty element and read it back as a {@link LazyLogQueue}.
+     *
+     * @version $Id$
+     */
+    private static final class LogReferenceConverter implements Converter
+    {
+        @Override
+        public boolean canConvert(Class type)
+        {
+            return LogQueue.class.isAssignableFrom(type);
+        }
+
+        @Override
+        public void marshal(Object source, HierarchicalStreamWriter writer, MarshallingContext context)
+        {
+            // The log is stored in its own file
+        }
+
+        @Override
+        public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context)
+        {
+            return new LazyLogQueue();
+        }
+    }
+
     /**
      * Encoding used for file content and names.
      */
     private static final String DEFAULT_ENCODING = "UTF-8";
 
+    /**
+     * Identify a log segment file ("XJLG").
+     */
+    private static final int LOG_MAGIC = 0x584A4C47;
+
+    /**
+     * The version of the log segment format where the log events are not compressed.
+     */
+    private static final int LOG_VERSION_UNCOMPRESSED = 1;
+
+    /**
+     * The current version of the log segment format.
+     */
+    private static final int LOG_VERSION = 2;
+
+    /**
+     * The extension of the temporary files written before being moved to their final destination.
+     */
+    private static final String TEMP_EXTENSION = ".tmp";
+
     /**
      * Used to serialize and unserialize status.
      */
     private XStream xstream;
 
+    /**
+     * Used to serialize status without their log.
+     */
+    private XStream headerXStream;
+
+    /**
+     * True if the written files should be synchronized with the storage device.
+     */
+    private boolean sync;
+
     /**
      * Default constructor.
      *
@@ -63,6 +144,26 @@
     public JobStatusSerializer() throws ParserConfigurationException
     {
         this.xstream = new SafeXStream();
+
+        this.headerXStream = new SafeXStream();
+        this.headerXStream.registerLocalConverter(AbstractJobStatus.class, "logs", new LogReferenceConverter());
+    }
+
+    /**
+     * @param sync true if the written files should be synchronized with the storage device before being moved to
+     *            their final destination
+     * @since 8.3RC1
+     */
+    public void setSync(boolean sync)
+    {
+        this.sync = sync;
+    }
+
+    private void sync(FileOutputStream stream) throws IOException
+    {
+        if (this.sync) {
+            stream.getFD().sync();
+        }
     }
 
     /**
@@ -72,16 +173,40 @@ public JobStatusSerializer() throws ParserConfigurationException
      */
     public void write(JobStatus status, File file) throws IOException
     {
-        File tempFile = File.createTempFile(file.getName(), ".tmp");
+        write(status, file, this.xstream);
+    }
+
+    /**
+     * Serialize the status without its log (if it's a {@link AbstractJobStatus}).
+     *
+     * @param status the status to serialize
+     * @param file the file to serialize the status to
+     * @throws IOException when failing to serialize the status
+     * @since 8.3RC1
+     */
+    public void writeHeader(JobStatus status, File file) throws IOException
+    {
+        write(status, file, this.headerXStream);
+    }
+
+    private void write(JobStatus status, File file, XStream statusXStream) throws IOException
+    {
+        File tempFile = File.createTempFile(file.getName(), TEMP_EXTENSION);
 
         FileOutputStream stream = FileUtils.openOutputStream(tempFile);
 
         try {
-            write(status, stream);
+            write(status, stream, statusXStream);
+            sync(stream);
         } finally {
             IOUtils.closeQuietly(stream);
         }
 
+        move(tempFile, file);
+    }
+
+    private void move(File tempFile, File file) throws IOException
+    {
         // Copy the file in it's final destination
         file.mkdirs();
         Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
@@ -93,13 +218,103 @@ public void write(JobStatus status, File file) throws IOException
      * @throws IOException when failing to serialize the status
      */
     public void write(JobStatus status, OutputStream stream) throws IOException
+    {
+        write(status, stream, this.xstream);
+    }
+
+    private void write(JobStatus status, OutputStream stream, XStream statusXStream) throws IOException
     {
         OutputStreamWriter writer = new OutputStreamWriter(stream, DEFAULT_ENCODING);
         writer.write("<?xml version=\"1.0\" encoding=\"" + DEFAULT_ENCODING + "\"?>\n");
-        this.xstream.toXML(status, writer);
+        statusXStream.toXML(status, writer);
         writer.flush();
     }
 
+    /**
+     * @param log the log to serialize
+     * @param file the log segment file to write
+     * @throws IOException when failing to serialize the log
+     * @since 8.3RC1
+     */
+    public void writeLog(LogQueue log, File file) throws IOException
+    {
+        File tempFile = File.createTempFile(file.getName(), TEMP_EXTENSION);
+
+        FileOutputStream fileStream = FileUtils.openOutputStream(tempFile);
+        DataOutputStream stream = null;
+
+        try {
+            DataOutputStream headerStream = new DataOutputStream(fileStream);
+            headerStream.writeInt(LOG_MAGIC);
+            headerStream.writeInt(LOG_VERSION);
+
+            DeflaterOutputStream deflaterStream = new DeflaterOutputStream(fileStream);
+            stream = new DataOutputStream(new BufferedOutputStream(deflaterStream));
+
+            for (LogEvent logEvent : log) {
+                byte[] bytes = this.xstream.toXML(logEvent).getBytes(StandardCharsets.UTF_8);
+
+                stream.writeInt(bytes.length);
+                stream.write(bytes);
+            }
+
+            stream.flush();
+            deflaterStream.finish();
+            sync(fileStream);
+        } finally {
+            IOUtils.closeQuietly(stream);
+            IOUtils.closeQuietly(fileStream);
+        }
+
+        move(tempFile, file);
+    }
+
+    /**
+     * @param file the log segment file to read
+     * @return the log
+     * @throws IOException when failing to read the log
+     * @since 8.3RC1
+     */
+    public LogQueue readLog(File file) throws IOException
+    {
+        LogQueue log = new LogQueue();
+
+        InputStream fileStream = new BufferedInputStream(FileUtils.openInputStream(file));
+        DataInputStream stream = new DataInputStream(fileStream);
+
+        try {
+            if (stream.readInt() != LOG_MAGIC) {
+                throw new IOException("Not a job status log file: " + file);
+            }
+            int version = stream.readInt();
+            if (version > LOG_VERSION) {
+                throw new IOException("Unsupported job status log version [" + version + "] in file " + file);
+            }
+            if (version > LOG_VERSION_UNCOMPRESSED) {
+                stream = new DataInputStream(new BufferedInputStream(new InflaterInputStream(fileStream)));
+            }
+
+            while (true) {
+                int size;
+                try {
+                    size = stream.readInt();
+                } catch (EOFException e) {
+                    // End of the log
+                    break;
+                }
+
+                byte[] bytes = new byte[size];
+                stream.readFully(bytes);
+
+                log.add((LogEvent) this.xstream.fromXML(new String(bytes, StandardCharsets.UTF_8)));
+            }
+        } finally {
+            IOUtils.closeQuietly(stream);
+        }
+
+        return log;
+    }
+
     /**
      * @param file the file to read
      * @return the status
@@ -109,6 +324,19 @@ public JobStatus read(File file)
         return (JobStatus) this.xstream.fromXML(file);
     }
 
+    /**
+     * Read a status header written with {@link #writeHeader(JobStatus, File)}. If it's a {@link AbstractJobStatus} its
+     * log is an empty {@link LazyLogQueue} waiting for a loader.
+     *
+     * @param file the file to read
+     * @return the status
+     * @since 8.3RC1
+     */
+    public JobStatus readHeader(File file)
+    {
+        return (JobStatus) this.headerXStream.fromXML(file);
+    }
+
     /**
      * @param stream the stream to read
      * @return the status
@@ -0,0 +1,380 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.xwiki.job.event.status.JobStatus;
+
+/**
+ * A write-behind queue of job statuses to serialize.
+ * <ul>
+ * <li>only the latest status of each job id is kept: a status already waiting to be written is replaced by the new
+ * one (the status is serialized as it is when it's written anyway)</li>
+ * <li>statuses are written in batches by a single writer thread, in the order in which their id was queued</li>
+ * <li>the queue is bounded: when it's full, a new job id waits for some room</li>
+ * <li>the statuses of removed jobs which are still waiting are dropped</li>
+ * </ul>
+ *
+ * @version $Id$
+ * @since 8.3RC1
+ */
+public class JobStatusWriteQueue
+{
+    private static final int BATCH_SIZE = 100;
+
+    private final Consumer<JobStatus> writer;
+
+    private final int capacity;
+
+    private final Logger logger;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition notEmpty = this.lock.newCondition();
+
+    private final Condition notFull = this.lock.newCondition();
+
+    private final Condition drained = this.lock.newCondition();
+
+    private final Condition currentWritten = this.lock.newCondition();
+
+    private final Map<List<String>, JobStatus> pending = new LinkedHashMap<>();
+
+    /**
+     * The statuses taken from the queue by the writer thread and not yet written.
+     */
+    private final List<JobStatus> batch = new ArrayList<>();
+
+    /**
+     * The status currently being written.
+     */
+    private JobStatus current;
+
+    private boolean disposed;
+
+    private Thread writerThread;
+
+    private final AtomicLong queued = new AtomicLong();
+
+    private final AtomicLong coalesced = new AtomicLong();
+
+    private final AtomicLong written = new AtomicLong();
+
+    private final AtomicLong totalLatency = new AtomicLong();
+
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    /**
+     * @param writer used to actually write a status
+     * @param capacity the maximum number of statuses waiting to be written, 0 or less for no limit
+     * @param logger the logger to use to report writing errors
+     */
+    public JobStatusWriteQueue(Consumer<JobStatus> writer, int capacity, Logger logger)
+    {
+        this.writer = writer;
+        this.capacity = capacity;
+        this.logger = logger;
+    }
+
+    /**
+     * Queue the status for writing. If a status with the same id is already waiting it's replaced.
+     *
+     * @param status the status to write
+     * @throws InterruptedException when interrupted while waiting for some room in the queue
+     */
+    public void offer(JobStatus status) throws InterruptedException
+    {
+        List<String> id = status.getRequest().getId();
+
+        this.lock.lock();
+
+        try {
+            this.queued.incrementAndGet();
+
+            // Replace the status waiting to be written, if any
+            if (this.pending.containsKey(id)) {
+                this.pending.put(id, status);
+                this.coalesced.incrementAndGet();
+
+                return;
+            }
+
+            while (this.capacity > 0 && this.pending.size() >= this.capacity && !this.disposed) {
+                this.notFull.await();
+            }
+
+            if (!this.disposed) {
+                this.pending.put(id, status);
+
+                startWriter();
+
+                this.notEmpty.signal();
+
+                return;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+
+        // Nobody is going to write it anymore
+        write(status);
+    }
+
+    private void startWriter()
+    {
+        // The writer thread is started with the first status to write and runs until the queue is disposed
+        if (this.writerThread == null) {
+            BasicThreadFactory threadFactory = new BasicThreadFactory.Builder()
+                .namingPattern("Job status serializer").daemon(true).priority(Thread.MIN_PRIORITY).build();
+
+            this.writerThread = threadFactory.newThread(this::run);
+            this.writerThread.start();
+        }
+    }
+
+    private void run()
+    {
+        for (JobStatus status = takeStatus(); status != null; status = takeStatus()) {
+            write(status);
+
+            this.lock.lock();
+
+            try {
+                this.current = null;
+
+                this.currentWritten.signalAll();
+
+                if (this.batch.isEmpty() && this.pending.isEmpty()) {
+                    this.drained.signalAll();
+                }
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return the next status to write or null if the queue has been disposed and everything was written
+     */
+    private JobStatus takeStatus()
+    {
+        this.lock.lock();
+
+        try {
+            if (this.batch.isEmpty()) {
+                while (this.pending.isEmpty()) {
+                    if (this.disposed) {
+                        return null;
+                    }
+
+                    this.notEmpty.awaitUninterruptibly();
+                }
+
+                // Take a batch of statuses to not have to synchronize with the queue producers for each status
+                for (Iterator<JobStatus> it = this.pending.values().iterator(); it.hasNext()
+                    && this.batch.size() < BATCH_SIZE;) {
+                    this.batch.add(it.next());
+                    it.remove();
+                }
+
+                this.notFull.signalAll();
+            }
+
+            this.current = this.batch.remove(0);
+
+            return this.current;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Drop the statuses waiting to be written for the passed job and its children, and wait for the end of the
+     * writing of such a status if one is in progress so that nothing is written for those jobs after this call.
+     *
+     * @param id the id of the job, null for all the jobs
+     */
+    public void remove(List<String> id)
+    {
+        this.lock.lock();
+
+        try {
+            int size = this.pending.size();
+            this.pending.keySet().removeIf(pendingId -> isInBranch(pendingId, id));
+            if (this.pending.size() < size) {
+                this.notFull.signalAll();
+            }
+
+            this.batch.removeIf(status -> isInBranch(status.getRequest().getId(), id));
+
+            // The writer thread itself can remove statuses (retention)
+            while (Thread.currentThread() != this.writerThread && this.current != null
+                && isInBranch(this.current.getRequest().getId(), id)) {
+                this.currentWritten.awaitUninterruptibly();
+            }
+
+            if (this.current == null && this.batch.isEmpty() && this.pending.isEmpty()) {
+                this.drained.signalAll();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private static boolean isInBranch(List<String> id, List<String> branch)
+    {
+        if (branch == null) {
+            return true;
+        }
+
+        return id != null && id.size() >= branch.size() && id.subList(0, branch.size()).equals(branch);
+    }
+
+    private void write(JobStatus status)
+    {
+        long start = System.nanoTime();
+
+        try {
+            this.writer.accept(status);
+        } catch (Exception e) {
+            this.logger.warn("Failed to write job status [{}]", status.getRequest().getId(), e);
+        }
+
+        long latency = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+
+        this.written.incrementAndGet();
+        this.totalLatency.addAndGet(latency);
+        this.maxLatency.accumulateAndGet(latency, Math::max);
+    }
+
+    /**
+     * Wait until all the queued statuses are written.
+     *
+     * @throws InterruptedException when interrupted while waiting
+     */
+    public void flush() throws InterruptedException
+    {
+        this.lock.lock();
+
+        try {
+            while (!this.pending.isEmpty() || !this.batch.isEmpty() || this.current != null) {
+                this.drained.await();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Write the remaining statuses and stop the writer thread.
+     *
+     * @param timeout the maximum time to wait for the remaining statuses to be written, in milliseconds
+     * @throws InterruptedException when interrupted while waiting
+     */
+    public void dispose(long timeout) throws InterruptedException
+    {
+        Thread thread;
+
+        this.lock.lock();
+
+        try {
+            this.disposed = true;
+
+            this.notEmpty.signalAll();
+            this.notFull.signalAll();
+
+            thread = this.writerThread;
+        } finally {
+            this.lock.unlock();
+        }
+
+        if (thread != null) {
+            thread.join(timeout);
+        }
+    }
+
+    /**
+     * @return the number of statuses waiting to be written
+     */
+    public int getQueueSize()
+    {
+        this.lock.lock();
+
+        try {
+            return this.pending.size() + this.batch.size() + (this.current != null ? 1 : 0);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of statuses which have been queued
+     */
+    public long getQueuedCount()
+    {
+        return this.queued.get();
+    }
+
+    /**
+     * @return the number of statuses which replaced a status with the same id already waiting to be written
+     */
+    public long getCoalescedCount()
+    {
+        return this.coalesced.get();
+    }
+
+    /**
+     * @return the number of written statuses
+     */
+    public long getWrittenCount()
+    {
+        return this.written.get();
+    }
+
+    /**
+     * @return the average time (microseconds) spent writing a status
+     */
+    public long getAverageWriteLatency()
+    {
+        long count = this.written.get();
+
+        return count > 0 ? this.totalLatency.get() / count : 0;
+    }
+
+    /**
+     * @return the maximum time (microseconds) spent writing a status
+     */
+    public long getMaxWriteLatency()
+    {
+        return this.maxLatency.get();
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.xwiki.logging.LogQueue;
+import org.xwiki.logging.event.LogEvent;
+
+/**
+ * A {@link LogQueue} which loads its content the first time it's accessed. Used as the log of the statuses loaded
+ * from the store so that the log of a status is only read when someone needs it.
+ *
+ * @version $Id$
+ * @since 8.3RC1
+ */
+public class LazyLogQueue extends CountingLogQueue
+{
+    /**
+     * Serialization identifier.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Used to load the log, null when the log is loaded.
+     */
+    private transient volatile Supplier<? extends Collection<LogEvent>> loader;
+
+    /**
+     * @param log the log
+     * @return true if the passed log is in memory, false if it's going to be loaded when accessed
+     */
+    public static boolean isLoaded(LogQueue log)
+    {
+        return !(log instanceof LazyLogQueue) || ((LazyLogQueue) log).isLoaded();
+    }
+
+    /**
+     * @param loader used to load the log the first time it's accessed
+     */
+    public void setLoader(Supplier<? extends Collection<LogEvent>> loader)
+    {
+        this.loader = loader;
+    }
+
+    /**
+     * @return true if the log is in memory, false if it's going to be loaded when accessed
+     */
+    public boolean isLoaded()
+    {
+        return this.loader == null;
+    }
+
+    private void load()
+    {
+        if (this.loader != null) {
+            synchronized (this) {
+                Supplier<? extends Collection<LogEvent>> currentLoader = this.loader;
+                if (currentLoader != null) {
+                    super.addAll(currentLoader.get());
+
+                    this.loader = null;
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean add(LogEvent e)
+    {
+        load();
+
+        return super.add(e);
+    }
+
+    @Override
+    public boolean offer(LogEvent e)
+    {
+        load();
+
+        return super.offer(e);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends LogEvent> c)
+    {
+        load();
+
+        return super.addAll(c);
+    }
+
+    @Override
+    public LogEvent poll()
+    {
+        load();
+
+        return super.poll();
+    }
+
+    @Override
+    public LogEvent peek()
+    {
+        load();
+
+        return super.peek();
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        load();
+
+        return super.isEmpty();
+    }
+
+    @Override
+    public int size()
+    {
+        load();
+
+        return super.size();
+    }
+
+    @Override
+    public boolean contains(Object o)
+    {
+        load();
+
+        return super.contains(o);
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> c)
+    {
+        load();
+
+        return super.containsAll(c);
+    }
+
+    @Override
+    public boolean remove(Object o)
+    {
+        load();
+
+        return super.remove(o);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c)
+    {
+        load();
+
+        return super.removeAll(c);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c)
+    {
+        load();
+
+        return super.retainAll(c);
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super LogEvent> filter)
+    {
+        load();
+
+        return super.removeIf(filter);
+    }
+
+    @Override
+    public void clear()
+    {
+        load();
+
+        super.clear();
+    }
+
+    @Override
+    public Object[] toArray()
+    {
+        load();
+
+        return super.toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a)
+    {
+        load();
+
+        return super.toArray(a);
+    }
+
+    @Override
+    public Iterator<LogEvent> iterator()
+    {
+        load();
+
+        return super.iterator();
+    }
+
+    @Override
+    public Spliterator<LogEvent> spliterator()
+    {
+        load();
+
+        return super.spliterator();
+    }
+
+    @Override
+    public void forEach(Consumer<? super LogEvent> action)
+    {
+        load();
+
+        super.forEach(action);
+    }
+
+    @Override
+    public String toString()
+    {
+        load();
+
+        return super.toString();
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal.jmx;
+
+import org.slf4j.Logger;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.job.internal.JobStatusWriteQueue;
+import org.xwiki.management.JMXBeanRegistration;
+
+/**
+ * Expose the statistics of the job status store asynchronous write queue.
+ *
+ * @version $Id$
+ * @since 8.3RC1
+ */
+public class JMXJobStatusStore implements JMXJobStatusStoreMBean
+{
+    /**
+     * The name under which the store statistics are exposed.
+     */
+    private static final String MBEAN_NAME = "type=Job,name=JobStatusStore";
+
+    /**
+     * The queue for which to return management data.
+     */
+    private final JobStatusWriteQueue queue;
+
+    /**
+     * @param queue the queue for which to return management data
+     */
+    public JMXJobStatusStore(JobStatusWriteQueue queue)
+    {
+        this.queue = queue;
+    }
+
+    /**
+     * Expose the statistics of the passed queue if management is available.
+     *
+     * @param queue the queue for which to return management data
+     * @param componentManager used to find the MBean registration, can be null in unit tests
+     * @param logger the logger to use to report registration failures
+     */
+    public static void register(JobStatusWriteQueue queue, ComponentManager componentManager, Logger logger)
+    {
+        if (componentManager != null && componentManager.hasComponent(JMXBeanRegistration.class)) {
+            try {
+                componentManager.<JMXBeanRegistration>getInstance(JMXBeanRegistration.class)
+                    .registerMBean(new JMXJobStatusStore(queue), MBEAN_NAME);
+            } catch (ComponentLookupException e) {
+                logger.warn("Failed to register the job status store MBean", e);
+            }
+        }
+    }
+
+    /**
+     * Stop exposing the statistics of the queue.
+     *
+     * @param componentManager used to find the MBean registration, can be null in unit tests
+     * @param logger the logger to use to report unregistration failures
+     */
+    public static void unregister(ComponentManager componentManager, Logger logger)
+    {
+        if (componentManager != null && componentManager.hasComponent(JMXBeanRegistration.class)) {
+            try {
+                componentManager.<JMXBeanRegistration>getInstance(JMXBeanRegistration.class)
+                    .unregisterMBean(MBEAN_NAME);
+            } catch (ComponentLookupException e) {
+                logger.warn("Failed to unregister the job status store MBean", e);
+            }
+        }
+    }
+
+    @Override
+    public int getQueueSize()
+    {
+        return this.queue.getQueueSize();
+    }
+
+    @Override
+    public long getQueuedCount()
+    {
+        return this.queue.getQueuedCount();
+    }
+
+    @Override
+    public long getCoalescedCount()
+    {
+        return this.queue.getCoalescedCount();
+    }
+
+    @Override
+    public long getWrittenCount()
+    {
+        return this.queue.getWrittenCount();
+    }
+
+    @Override
+    public long getAverageWriteLatency()
+    {
+        return this.queue.getAverageWriteLatency();
+    }
+
+    @Override
+    public long getMaxWriteLatency()
+    {
+        return this.queue.getMaxWriteLatency();
+    }
+}
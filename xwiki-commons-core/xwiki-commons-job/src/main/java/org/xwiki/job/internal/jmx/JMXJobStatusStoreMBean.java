@@ -0,0 +1,62 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal.jmx;
+
+/**
+ * MBean API related to the job status store. Supports the following features:
+ * <ul>
+ *   <li>Retrieve the size and the write latency of the asynchronous write queue</li>
+ * </ul>
+ *
+ * @version $Id$
+ * @since 8.3RC1
+ */
+public interface JMXJobStatusStoreMBean
+{
+    /**
+     * @return the number of statuses waiting to be written
+     */
+    int getQueueSize();
+
+    /**
+     * @return the number of statuses which have been queued
+     */
+    long getQueuedCount();
+
+    /**
+     * @return the number of queued statuses which replaced a status with the same id already waiting to be written
+     */
+    long getCoalescedCount();
+
+    /**
+     * @return the number of written statuses
+     */
+    long getWrittenCount();
+
+    /**
+     * @return the average time (microseconds) spent writing a status
+     */
+    long getAverageWriteLatency();
+
+    /**
+     * @return the maximum time (microseconds) spent writing a status
+     */
+    long getMaxWriteLatency();
+}
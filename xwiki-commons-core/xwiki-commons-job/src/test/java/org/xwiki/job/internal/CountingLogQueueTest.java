@@ -0,0 +1,88 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.junit.Test;
+import org.xwiki.logging.LogLevel;
+import org.xwiki.logging.event.LogEvent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link CountingLogQueue}.
+ *
+ * @version $Id$
+ */
+public class CountingLogQueueTest
+{
+    private LogEvent event(String message)
+    {
+        return new LogEvent(LogLevel.INFO, message, null, null);
+    }
+
+    @Test
+    public void size()
+    {
+        CountingLogQueue log = new CountingLogQueue();
+
+        log.info("message 1");
+        log.add(event("message 2"));
+        log.offer(event("message 3"));
+        log.addAll(Arrays.asList(event("message 4"), event("message 5")));
+
+        assertEquals(5, log.size());
+
+        log.poll();
+        log.remove(log.peek());
+
+        assertEquals(3, log.size());
+
+        Iterator<LogEvent> iterator = log.iterator();
+        iterator.next();
+        iterator.remove();
+
+        assertEquals(2, log.size());
+
+        log.removeIf(event -> event.getMessage().equals("message 4"));
+
+        assertEquals(1, log.size());
+        assertEquals("message 5", log.peek().getMessage());
+
+        log.clear();
+
+        assertEquals(0, log.size());
+        assertTrue(log.isEmpty());
+    }
+
+    @Test
+    public void lazyLogSize()
+    {
+        LazyLogQueue log = new LazyLogQueue();
+        log.setLoader(() -> Arrays.asList(event("message 1"), event("message 2")));
+
+        log.info("message 3");
+
+        assertEquals(3, log.size());
+    }
+}
@@ -21,6 +21,7 @@
 
 import java.io.File;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
 
 import org.apache.commons.io.FileUtils;
@@ -33,6 +34,7 @@
 import org.xwiki.job.DefaultJobStatus;
 import org.xwiki.job.DefaultRequest;
 import org.xwiki.job.JobManagerConfiguration;
+import org.xwiki.job.JobStatusSummary;
 import org.xwiki.job.event.status.JobStatus;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 
@@ -65,6 +67,15 @@ public void before() throws Exception
         when(jobManagerConfiguration.getJobStatusCacheSize()).thenReturn(100);
     }
 
+    /**
+     * Reload the store from the file system.
+     */
+    private void reinitialize() throws Exception
+    {
+        this.componentManager.getComponentUnderTest().dispose();
+        this.componentManager.getComponentUnderTest().initialize();
+    }
+
     @Test
     public void getJobStatusWithNullId() throws Exception
     {
@@ -108,6 +119,10 @@ public void getJobStatusInWrongPlaceAndWithInvalidLogArgument() throws Exception
             this.componentManager.getComponentUnderTest().getJobStatus(Arrays.asList("invalidlogargument"));
 
         Assert.assertEquals(3, jobStatus.getLog().size());
+
+        // The status has been migrated to its proper place with a separated log
+        Assert.assertTrue(new File("target/test/jobs/status/invalidlogargument/log.bin").exists());
+        Assert.assertFalse(new File("target/test/jobs/status/id1/invalidlogargument/status.xml").exists());
     }
 
     @Test
@@ -157,4 +172,146 @@ public void storeJobStatus() throws ComponentLookupException
 
         Assert.assertSame(jobStatus, this.componentManager.getComponentUnderTest().getJobStatus(id));
     }
+
+    @Test
+    public void storeJobStatusWithLog() throws Exception
+    {
+        List<String> id = Arrays.asList("newstatuswithlog");
+
+        DefaultRequest request = new DefaultRequest();
+        request.setId(id);
+        DefaultJobStatus<DefaultRequest> jobStatus = new DefaultJobStatus<>(request, null, null, null);
+        jobStatus.getLog().error("error message");
+
+        this.componentManager.getComponentUnderTest().store(jobStatus);
+
+        File folder = new File("target/test/jobs/status/newstatuswithlog");
+        Assert.assertTrue(new File(folder, "log.bin").exists());
+        Assert.assertFalse(
+            FileUtils.readFileToString(new File(folder, "status.xml"), "UTF-8").contains("error message"));
+
+        // Reload the status from the file system
+        reinitialize();
+
+        DefaultJobStatus<?> storedStatus =
+            (DefaultJobStatus<?>) this.componentManager.getComponentUnderTest().getJobStatus(id);
+
+        Assert.assertNotSame(jobStatus, storedStatus);
+        Assert.assertFalse(((LazyLogQueue) storedStatus.getLog()).isLoaded());
+        Assert.assertEquals("error message", storedStatus.getLog().peek().getMessage());
+    }
+
+    @Test
+    public void storeAsyncJobStatus() throws Exception
+    {
+        List<String> id = Arrays.asList("newasyncstatus");
+
+        DefaultRequest request = new DefaultRequest();
+        request.setId(id);
+        JobStatus jobStatus = new DefaultJobStatus<>(request, null, null, null);
+
+        this.componentManager.getComponentUnderTest().storeAsync(jobStatus);
+
+        Assert.assertSame(jobStatus, this.componentManager.getComponentUnderTest().getJobStatus(id));
+
+        this.componentManager.getComponentUnderTest().flush();
+
+        Assert.assertTrue(new File("target/test/jobs/status/newasyncstatus/status.xml").exists());
+    }
+
+    @Test
+    public void getJobStatuses() throws Exception
+    {
+        List<JobStatusSummary> statuses =
+            this.componentManager.getComponentUnderTest().getJobStatuses(Arrays.asList("id1"));
+
+        Assert.assertEquals(2, statuses.size());
+        Assert.assertEquals(Arrays.asList("id1", "id2"), statuses.get(0).getId());
+        Assert.assertEquals(Arrays.asList("id1", "id2", "id3"), statuses.get(1).getId());
+        Assert.assertEquals(JobStatus.State.FINISHED, statuses.get(0).getState());
+        Assert.assertTrue(statuses.get(0).getSize() > 0);
+
+        Assert.assertEquals(4, this.componentManager.getComponentUnderTest().getJobStatuses(null).size());
+
+        this.componentManager.getComponentUnderTest().remove(Arrays.asList("id1", "id2"));
+
+        Assert.assertEquals(0,
+            this.componentManager.getComponentUnderTest().getJobStatuses(Arrays.asList("id1")).size());
+    }
+
+    @Test
+    public void retentionByAge() throws Exception
+    {
+        JobManagerConfiguration jobManagerConfiguration =
+            this.componentManager.getInstance(JobManagerConfiguration.class);
+        when(jobManagerConfiguration.getJobStatusRetentionAge()).thenReturn(1);
+
+        List<String> id = Arrays.asList("oldstatus");
+
+        DefaultRequest request = new DefaultRequest();
+        request.setId(id);
+        DefaultJobStatus<DefaultRequest> jobStatus = new DefaultJobStatus<>(request, null, null, null);
+        jobStatus.setState(JobStatus.State.FINISHED);
+        jobStatus.setStartDate(new Date(0));
+
+        this.componentManager.getComponentUnderTest().store(jobStatus);
+
+        Assert.assertTrue(new File("target/test/jobs/status/oldstatus/status.xml").exists());
+
+        // Retention is applied when the store is initialized
+        reinitialize();
+
+        Assert.assertFalse(new File("target/test/jobs/status/oldstatus").exists());
+        Assert.assertNull(this.componentManager.getComponentUnderTest().getJobStatus(id));
+    }
+
+    @Test
+    public void retentionOfInterruptedJob() throws Exception
+    {
+        JobManagerConfiguration jobManagerConfiguration =
+            this.componentManager.getInstance(JobManagerConfiguration.class);
+        when(jobManagerConfiguration.getJobStatusRetentionAge()).thenReturn(1);
+
+        List<String> id = Arrays.asList("interrupted");
+
+        DefaultRequest request = new DefaultRequest();
+        request.setId(id);
+        DefaultJobStatus<DefaultRequest> jobStatus = new DefaultJobStatus<>(request, null, null, null);
+        jobStatus.setState(JobStatus.State.RUNNING);
+        jobStatus.setStartDate(new Date(0));
+
+        this.componentManager.getComponentUnderTest().store(jobStatus);
+
+        // The job is still running
+        Assert.assertTrue(new File("target/test/jobs/status/interrupted/status.xml").exists());
+
+        // The job won't ever finish after a restart
+        reinitialize();
+
+        Assert.assertFalse(new File("target/test/jobs/status/interrupted").exists());
+    }
+
+    @Test
+    public void getJobStatusMissingFromIndex() throws Exception
+    {
+        List<String> id = Arrays.asList("notindexed");
+
+        DefaultRequest request = new DefaultRequest();
+        request.setId(id);
+        DefaultJobStatus<DefaultRequest> jobStatus = new DefaultJobStatus<>(request, null, null, null);
+        jobStatus.setState(JobStatus.State.FINISHED);
+
+        this.componentManager.getComponentUnderTest().store(jobStatus);
+
+        // Simulate a crash between the write of the status and the update of the index
+        this.componentManager.getComponentUnderTest().dispose();
+        FileUtils.write(new File("target/test/jobs/status/status.index"), "D\tnotindexed\n", "UTF-8", true);
+        this.componentManager.getComponentUnderTest().initialize();
+
+        Assert.assertTrue(this.componentManager.getComponentUnderTest().getJobStatuses(id).isEmpty());
+
+        Assert.assertNotNull(this.componentManager.getComponentUnderTest().getJobStatus(id));
+
+        Assert.assertEquals(1, this.componentManager.getComponentUnderTest().getJobStatuses(id).size());
+    }
 }
@@ -0,0 +1,264 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.xwiki.job.DefaultJobStatus;
+import org.xwiki.job.DefaultRequest;
+import org.xwiki.job.event.status.JobStatus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Unit tests for {@link JobStatusCache}.
+ *
+ * @version $Id$
+ */
+public class JobStatusCacheTest
+{
+    private JobStatus createStatus(List<String> id, int logs)
+    {
+        DefaultRequest request = new DefaultRequest();
+        request.setId(id);
+        DefaultJobStatus<DefaultRequest> status = new DefaultJobStatus<>(request, null, null, null);
+
+        for (int i = 0; i < logs; ++i) {
+            status.getLog().info("log " + i);
+        }
+
+        return status;
+    }
+
+    @Test
+    public void getLoadsOnce()
+    {
+        JobStatusCache cache = new JobStatusCache(10, 0, 0);
+
+        List<String> id = Arrays.asList("id");
+        JobStatus status = createStatus(id, 0);
+
+        AtomicInteger loads = new AtomicInteger();
+
+        assertSame(status, cache.get(id, i -> {
+            loads.incrementAndGet();
+            return status;
+        }));
+        assertSame(status, cache.get(id, i -> {
+            loads.incrementAndGet();
+            return null;
+        }));
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void getWithNullId()
+    {
+        JobStatusCache cache = new JobStatusCache(10, 0, 0);
+
+        JobStatus status = createStatus(null, 0);
+
+        assertSame(status, cache.get(null, i -> status));
+        assertSame(status, cache.getIfPresent(null));
+
+        cache.remove(null);
+
+        assertNull(cache.getIfPresent(null));
+    }
+
+    @Test
+    public void getCoalescesConcurrentLoads() throws Exception
+    {
+        final JobStatusCache cache = new JobStatusCache(10, 0, 0);
+
+        final List<String> id = Arrays.asList("id");
+        final JobStatus status = createStatus(id, 0);
+
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        Thread thread = new Thread(() -> cache.get(id, i -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return status;
+        }));
+        thread.start();
+
+        loading.await();
+
+        // Other ids are not blocked by the load in progress
+        JobStatus otherStatus = createStatus(Arrays.asList("other"), 0);
+        assertSame(otherStatus, cache.get(Arrays.asList("other"), i -> otherStatus));
+
+        release.countDown();
+
+        assertSame(status, cache.get(id, i -> {
+            loads.incrementAndGet();
+            return status;
+        }));
+
+        thread.join();
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void putOverridesLoad()
+    {
+        JobStatusCache cache = new JobStatusCache(10, 0, 0);
+
+        List<String> id = Arrays.asList("id");
+        JobStatus loadedStatus = createStatus(id, 0);
+        JobStatus storedStatus = createStatus(id, 0);
+
+        cache.get(id, i -> {
+            // The status is stored while it's being loaded
+            cache.put(id, storedStatus);
+            return loadedStatus;
+        });
+
+        assertSame(storedStatus, cache.getIfPresent(id));
+    }
+
+    @Test
+    public void removeInvalidatesLoad()
+    {
+        JobStatusCache cache = new JobStatusCache(10, 0, 0);
+
+        List<String> id = Arrays.asList("id");
+        JobStatus loadedStatus = createStatus(id, 0);
+
+        // The status is removed while it's being loaded
+        assertSame(loadedStatus, cache.get(id, i -> {
+            cache.remove(id);
+            return loadedStatus;
+        }));
+
+        assertNull(cache.getIfPresent(id));
+        assertEquals(0, cache.getStatusCount());
+        assertEquals(0, cache.getWeight());
+
+        // The next access loads the status again
+        JobStatus status = createStatus(id, 0);
+        assertSame(status, cache.get(id, i -> status));
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed()
+    {
+        JobStatusCache cache = new JobStatusCache(2, 0, 0);
+
+        List<String> id1 = Arrays.asList("id1");
+        List<String> id2 = Arrays.asList("id2");
+        List<String> id3 = Arrays.asList("id3");
+
+        cache.put(id1, createStatus(id1, 0));
+        cache.put(id2, createStatus(id2, 0));
+
+        // Access id1 so that id2 is the least recently used
+        cache.get(id1, i -> null);
+
+        cache.put(id3, createStatus(id3, 0));
+
+        assertEquals(2, cache.getStatusCount());
+        assertNull(cache.getIfPresent(id2));
+        assertEquals(id1, cache.getIfPresent(id1).getRequest().getId());
+        assertEquals(id3, cache.getIfPresent(id3).getRequest().getId());
+    }
+
+    @Test
+    public void evictOnWeight()
+    {
+        JobStatusCache cache = new JobStatusCache(10, 20, 0);
+
+        List<String> id1 = Arrays.asList("id1");
+        List<String> id2 = Arrays.asList("id2");
+
+        cache.put(id1, createStatus(id1, 9));
+        cache.put(id2, createStatus(id2, 9));
+
+        assertEquals(20, cache.getWeight());
+
+        List<String> id3 = Arrays.asList("id3");
+        cache.put(id3, createStatus(id3, 9));
+
+        assertEquals(20, cache.getWeight());
+        assertNull(cache.getIfPresent(id1));
+    }
+
+    @Test
+    public void boundNoStatus()
+    {
+        JobStatusCache cache = new JobStatusCache(10, 0, 2);
+
+        List<String> id1 = Arrays.asList("id1");
+        List<String> id2 = Arrays.asList("id2");
+        List<String> id3 = Arrays.asList("id3");
+
+        cache.get(id1, i -> null);
+        cache.get(id2, i -> null);
+        cache.get(id3, i -> null);
+
+        assertEquals(2, cache.getNoStatusCount());
+        assertEquals(0, cache.getStatusCount());
+
+        // id1 has been evicted so it's loaded again
+        JobStatus status = createStatus(id1, 0);
+        assertSame(status, cache.get(id1, i -> status));
+    }
+
+    @Test
+    public void weighAgainOnAccess()
+    {
+        JobStatusCache cache = new JobStatusCache(10, 0, 0);
+
+        List<String> id = Arrays.asList("id");
+        JobStatus status = createStatus(id, 0);
+
+        cache.put(id, status);
+
+        assertEquals(1, cache.getWeight());
+
+        // The log of a running job grows after it's put in the cache
+        status.getLog().info("log");
+        status.getLog().info("log");
+
+        cache.get(id, i -> null);
+
+        assertEquals(3, cache.getWeight());
+
+        cache.remove(id);
+
+        assertEquals(0, cache.getWeight());
+    }
+}
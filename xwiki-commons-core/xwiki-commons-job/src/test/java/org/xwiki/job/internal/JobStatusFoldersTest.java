@@ -0,0 +1,81 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.job.JobManagerConfiguration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link JobStatusFolders}.
+ *
+ * @version $Id$
+ */
+public class JobStatusFoldersTest
+{
+    private File storage = new File("target/test/folders");
+
+    private JobStatusFolders folders;
+
+    @Before
+    public void before() throws Exception
+    {
+        FileUtils.deleteDirectory(this.storage);
+
+        JobManagerConfiguration configuration = mock(JobManagerConfiguration.class);
+        when(configuration.getStorage()).thenReturn(this.storage);
+
+        this.folders = new JobStatusFolders(configuration);
+    }
+
+    @Test
+    public void keyAndFolder()
+    {
+        List<String> id = Arrays.asList("a/b", null, "c");
+
+        assertEquals("a%2Fb/&null/c", this.folders.getJobKey(id));
+        assertEquals(new File(this.storage, "a%2Fb/&null/c"), this.folders.getJobFolder(id));
+        assertEquals(id, this.folders.getJobId(this.folders.getJobKey(id)));
+
+        assertEquals("", this.folders.getJobKey(null));
+        assertEquals(this.storage, this.folders.getJobFolder(null));
+        assertNull(this.folders.getJobId(""));
+    }
+
+    @Test
+    public void storeVersion() throws Exception
+    {
+        assertEquals(0, this.folders.getStoreVersion());
+
+        this.folders.setStoreVersion(3);
+
+        assertEquals(3, this.folders.getStoreVersion());
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.xwiki.job.JobStatusSummary;
+import org.xwiki.job.event.status.JobStatus.State;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit tests for {@link JobStatusIndex}.
+ *
+ * @version $Id$
+ */
+public class JobStatusIndexTest
+{
+    private File file = new File("target/test/index/status.index");
+
+    private JobStatusIndex index;
+
+    @Before
+    public void before() throws Exception
+    {
+        FileUtils.deleteDirectory(this.file.getParentFile());
+
+        this.index = createIndex();
+    }
+
+    private JobStatusIndex createIndex()
+    {
+        return new JobStatusIndex(this.file, key -> key.isEmpty() ? null : Arrays.asList(key.split("/")),
+            mock(Logger.class));
+    }
+
+    private void put(String key, long size)
+    {
+        this.index.put(key,
+            new JobStatusSummary(Arrays.asList(key.split("/")), State.FINISHED, new Date(size), size));
+    }
+
+    private String keys(List<JobStatusSummary> summaries)
+    {
+        StringBuilder builder = new StringBuilder();
+
+        for (JobStatusSummary summary : summaries) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(String.join("/", summary.getId()));
+        }
+
+        return builder.toString();
+    }
+
+    @Test
+    public void listBranch()
+    {
+        put("a", 1);
+        put("a/b", 2);
+        put("a/b/c", 3);
+        put("a-b", 4);
+        put("ab", 5);
+
+        assertEquals("a,a/b,a/b/c", keys(this.index.list("a")));
+        assertEquals("a/b,a/b/c", keys(this.index.list("a/b")));
+        assertEquals("a,a-b,a/b,a/b/c,ab", keys(this.index.list("")));
+        assertEquals(15, this.index.getSize());
+
+        this.index.removeBranch("a/b");
+
+        assertEquals("a", keys(this.index.list("a")));
+        assertEquals(10, this.index.getSize());
+
+        this.index.remove("a");
+
+        assertFalse(this.index.contains("a"));
+        assertEquals(9, this.index.getSize());
+    }
+
+    @Test
+    public void load() throws Exception
+    {
+        assertFalse(this.index.load());
+
+        put("a", 1);
+        put("a/b", 2);
+        put("a", 3);
+        put("c", 4);
+        this.index.removeBranch("a/b");
+        this.index.remove("c");
+        this.index.close();
+
+        JobStatusIndex loadedIndex = createIndex();
+
+        assertTrue(loadedIndex.load());
+        assertEquals("a", keys(loadedIndex.list("")));
+        assertEquals(3, loadedIndex.get("a").getSize());
+        assertEquals(new Date(3), loadedIndex.get("a").getStartDate());
+        assertEquals(State.FINISHED, loadedIndex.get("a").getState());
+        assertNull(loadedIndex.get("c"));
+        assertEquals(3, loadedIndex.getSize());
+    }
+
+    @Test
+    public void compact() throws Exception
+    {
+        for (int i = 0; i < 5000; ++i) {
+            put("a", i);
+        }
+        this.index.close();
+
+        // The journal should have been compacted
+        assertTrue(FileUtils.readLines(this.file, "UTF-8").size() < 5000);
+
+        JobStatusIndex loadedIndex = createIndex();
+
+        assertTrue(loadedIndex.load());
+        assertEquals(4999, loadedIndex.get("a").getSize());
+    }
+
+    @Test
+    public void reset() throws Exception
+    {
+        put("a", 1);
+
+        this.index.reset();
+
+        assertTrue(this.index.list("").isEmpty());
+        assertTrue(this.file.exists());
+
+        this.index.close();
+
+        JobStatusIndex loadedIndex = createIndex();
+
+        assertTrue(loadedIndex.load());
+        assertTrue(loadedIndex.list("").isEmpty());
+    }
+}
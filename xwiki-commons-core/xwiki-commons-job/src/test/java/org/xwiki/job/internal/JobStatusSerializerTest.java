@@ -37,12 +37,16 @@
 import org.xwiki.job.event.status.JobStatus;
 import org.xwiki.job.test.SerializableStandaloneComponent;
 import org.xwiki.job.test.StandaloneComponent;
+import org.xwiki.logging.LogLevel;
+import org.xwiki.logging.LogQueue;
 
 import static org.junit.Assert.assertNull;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 
 /**
@@ -203,6 +207,86 @@ public void testLogWithException() throws IOException
         assertEquals("exception message", status.getLog().peek().getThrowable().getMessage());
     }
 
+    @Test
+    public void testSplitLog() throws IOException
+    {
+        DefaultJobStatus<Request> status = new DefaultJobStatus<Request>(new DefaultRequest(), null, null, null);
+
+        status.getLog().error("error message", new Exception("exception message"));
+        status.getLog().info("info message {}", "argument");
+
+        File logFile = new File("target/test/log.bin");
+
+        this.serializer.writeHeader(status, this.testFile);
+        this.serializer.writeLog(status.getLog(), logFile);
+
+        DefaultJobStatus<Request> header = (DefaultJobStatus<Request>) this.serializer.read(this.testFile);
+
+        assertTrue(header.getLog().isEmpty());
+
+        LogQueue log = this.serializer.readLog(logFile);
+
+        assertEquals(2, log.size());
+        assertEquals("error message", log.peek().getMessage());
+        assertEquals("exception message", log.peek().getThrowable().getMessage());
+        assertEquals("argument", log.getLogs(LogLevel.INFO).get(0).getArgumentArray()[0]);
+    }
+
+    @Test
+    public void testCompactLog() throws IOException
+    {
+        DefaultJobStatus<Request> status = new DefaultJobStatus<Request>(new DefaultRequest(), null, null, null);
+
+        for (int i = 0; i < 100; ++i) {
+            status.getLog().info("info message {}", i);
+        }
+
+        File logFile = new File("target/test/log.bin");
+
+        this.serializer.write(status, this.testFile);
+        this.serializer.writeLog(status.getLog(), logFile);
+
+        // The log segment is a lot smaller than the XML log
+        assertTrue(logFile.length() * 5 < this.testFile.length());
+
+        LogQueue log = this.serializer.readLog(logFile);
+
+        assertEquals(100, log.size());
+        assertEquals(99, log.getLogs(LogLevel.INFO).get(99).getArgumentArray()[0]);
+    }
+
+    @Test
+    public void testLazyLog() throws IOException
+    {
+        DefaultJobStatus<Request> status = new DefaultJobStatus<Request>(new DefaultRequest(), null, null, null);
+
+        status.getLog().error("error message");
+
+        File logFile = new File("target/test/log.bin");
+
+        this.serializer.writeHeader(status, this.testFile);
+        this.serializer.writeLog(status.getLog(), logFile);
+
+        DefaultJobStatus<Request> header = (DefaultJobStatus<Request>) this.serializer.readHeader(this.testFile);
+
+        LazyLogQueue log = (LazyLogQueue) header.getLog();
+        log.setLoader(() -> {
+            try {
+                return this.serializer.readLog(logFile);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        assertFalse(log.isLoaded());
+        assertEquals("error message", header.getLog().peek().getMessage());
+        assertTrue(log.isLoaded());
+
+        // Logs added after the load come after the stored ones
+        header.getLog().info("info message");
+        assertEquals(2, header.getLog().size());
+    }
+
     @Test
     public void testLogWithArguments() throws IOException
     {
@@ -0,0 +1,160 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.xwiki.job.DefaultJobStatus;
+import org.xwiki.job.DefaultRequest;
+import org.xwiki.job.event.status.JobStatus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit tests for {@link JobStatusWriteQueue}.
+ *
+ * @version $Id$
+ */
+public class JobStatusWriteQueueTest
+{
+    private JobStatus createStatus(String... id)
+    {
+        DefaultRequest request = new DefaultRequest();
+        request.setId(Arrays.asList(id));
+
+        return new DefaultJobStatus<>(request, null, null, null);
+    }
+
+    @Test
+    public void coalesceAndFlush() throws Exception
+    {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<JobStatus> written = Collections.synchronizedList(new ArrayList<JobStatus>());
+
+        JobStatusWriteQueue queue = new JobStatusWriteQueue(status -> {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            written.add(status);
+        }, 0, mock(Logger.class));
+
+        JobStatus status1 = createStatus("id1");
+        queue.offer(status1);
+
+        // Wait for the writer to be busy with the first status
+        assertTrue(writing.await(10, TimeUnit.SECONDS));
+
+        JobStatus status2 = createStatus("id2");
+        JobStatus status2bis = createStatus("id2");
+        queue.offer(status2);
+        queue.offer(status2bis);
+
+        assertEquals(2, queue.getQueueSize());
+        assertEquals(1, queue.getCoalescedCount());
+
+        release.countDown();
+        queue.flush();
+
+        assertEquals(Arrays.asList(status1, status2bis), written);
+        assertEquals(0, queue.getQueueSize());
+        assertEquals(3, queue.getQueuedCount());
+        assertEquals(2, queue.getWrittenCount());
+
+        queue.dispose(10000);
+    }
+
+    @Test
+    public void offerAfterDispose() throws Exception
+    {
+        List<JobStatus> written = new ArrayList<>();
+
+        JobStatusWriteQueue queue = new JobStatusWriteQueue(written::add, 10, mock(Logger.class));
+
+        queue.dispose(10000);
+
+        JobStatus status = createStatus("id");
+        queue.offer(status);
+
+        // Written directly in the calling thread
+        assertEquals(1, written.size());
+        assertSame(status, written.get(0));
+    }
+
+    @Test
+    public void removeDropsQueuedStatuses() throws Exception
+    {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<JobStatus> written = Collections.synchronizedList(new ArrayList<JobStatus>());
+
+        JobStatusWriteQueue queue = new JobStatusWriteQueue(status -> {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            written.add(status);
+        }, 0, mock(Logger.class));
+
+        JobStatus status1 = createStatus("id1");
+        queue.offer(status1);
+
+        // Wait for the writer to be busy with the first status
+        assertTrue(writing.await(10, TimeUnit.SECONDS));
+
+        queue.offer(createStatus("id2"));
+        queue.offer(createStatus("id2", "child"));
+        JobStatus status3 = createStatus("id3");
+        queue.offer(status3);
+
+        queue.remove(Arrays.asList("id2"));
+
+        assertEquals(2, queue.getQueueSize());
+
+        // Removing the status being written waits for the end of the write
+        Thread thread = new Thread(() -> queue.remove(Arrays.asList("id1")));
+        thread.start();
+        thread.join(100);
+        assertTrue(thread.isAlive());
+
+        release.countDown();
+        thread.join(10000);
+        queue.flush();
+
+        assertEquals(Arrays.asList(status1, status3), written);
+
+        queue.dispose(10000);
+    }
+}
@@ -46,6 +46,12 @@
      * addition, it also overrides any previous call to {@link #pushLogListener(EventListener)} (which will get active
      * again after a call to {@link #popLogListener()}).
      * </p>
+     * <p>
+     * Since 8.3RC1 the listener is not registered in the {@link org.xwiki.observation.ObservationManager} anymore but
+     * in the {@link org.xwiki.observation.ThreadEventListenerManager}: it only receives the
+     * {@link org.xwiki.logging.event.LogEvent}s generated by the current thread and not the other events sent by this
+     * thread.
+     * </p>
      *
      * @param listener the listener that will receive all future logging events
      */
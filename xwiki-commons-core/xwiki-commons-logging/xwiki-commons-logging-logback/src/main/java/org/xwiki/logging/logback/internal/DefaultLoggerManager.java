@@ -21,7 +21,6 @@
 
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.Stack;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -34,7 +33,7 @@
 import org.xwiki.logging.LoggerManager;
 import org.xwiki.observation.EventListener;
 import org.xwiki.observation.ObservationManager;
-import org.xwiki.observation.WrappedThreadEventListener;
+import org.xwiki.observation.ThreadEventListenerManager;
 
 import ch.qos.logback.classic.LoggerContext;
 import ch.qos.logback.classic.spi.ILoggingEvent;
@@ -51,11 +50,23 @@
 public class DefaultLoggerManager implements LoggerManager, Initializable
 {
     /**
-     * Used to register/unregister {@link org.xwiki.logging.event.LogEvent} listeners.
+     * The name of the listener generating log events from Logback.
+     */
+    private static final String LOGBACK_EVENT_GENERATOR = "LogbackEventGenerator";
+
+    /**
+     * Used to make sure the {@link LogbackEventGenerator} appender (which is initialized with the event listeners) is
+     * registered before any log is grabbed.
      */
     @Inject
     private ObservationManager observation;
 
+    /**
+     * Used to register/unregister {@link org.xwiki.logging.event.LogEvent} listeners for the current thread.
+     */
+    @Inject
+    private ThreadEventListenerManager threadListeners;
+
     /**
      * The logger.
      */
@@ -63,9 +74,11 @@ public class DefaultLoggerManager implements LoggerManager, Initializable
     private Logger logger;
 
     /**
-     * The stack of listeners for the current thread.
+     * The number of listeners pushed by this manager in the current thread stack. Kept separately from
+     * {@link ThreadEventListenerManager#isActive()} since other components can push their own listeners in the same
+     * stack and it should not decide when the logs of the thread are grabbed.
      */
-    private ThreadLocal<Stack<EventListener>> listeners = new ThreadLocal<Stack<EventListener>>();
+    private final ThreadLocal<Integer> pushedListeners = new ThreadLocal<>();
 
     /**
      * Logback utilities.
@@ -102,44 +115,40 @@ public void initialize() throws InitializationException
     @Override
     public void pushLogListener(EventListener listener)
     {
-        Stack<EventListener> listenerStack = this.listeners.get();
-
-        if (listenerStack == null) {
-            listenerStack = new Stack<EventListener>();
-            this.listeners.set(listenerStack);
-        }
-
-        if (!listenerStack.isEmpty()) {
-            this.observation.removeListener(listenerStack.peek().getName());
-        }
+        Integer pushed = this.pushedListeners.get();
 
         if (listener != null) {
-            this.observation.addListener(new WrappedThreadEventListener(listener));
+            // Trigger the (lazy) initialization of the listeners (a null listener only hides the logs so there is no
+            // need to initialize them, it might even be too early)
+            this.observation.getListener(LOGBACK_EVENT_GENERATOR);
         }
-        if (listenerStack.isEmpty()) {
+
+        if (pushed == null) {
             grabLog(Thread.currentThread());
+
+            pushed = 0;
         }
-        listenerStack.push(listener);
+
+        this.threadListeners.pushListener(listener);
+
+        this.pushedListeners.set(pushed + 1);
     }
 
     @Override
     public EventListener popLogListener()
     {
-        Stack<EventListener> listenerStack = this.listeners.get();
+        Integer pushed = this.pushedListeners.get();
 
         EventListener listener;
-        if (listenerStack != null && !listenerStack.isEmpty()) {
-            listener = listenerStack.pop();
-            if (listener != null) {
-                this.observation.removeListener(listener.getName());
-            }
-            if (listenerStack.isEmpty()) {
-                ungrabLog(Thread.currentThread());
+        if (pushed != null) {
+            listener = this.threadListeners.popListener();
+
+            if (pushed > 1) {
+                this.pushedListeners.set(pushed - 1);
             } else {
-                EventListener topListener = listenerStack.peek();
-                if (topListener != null) {
-                    this.observation.addListener(new WrappedThreadEventListener(topListener));
-                }
+                this.pushedListeners.remove();
+
+                ungrabLog(Thread.currentThread());
             }
         } else {
             listener = null;
@@ -39,6 +39,7 @@
 import org.xwiki.logging.event.LogEvent;
 import org.xwiki.observation.EventListener;
 import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.ThreadEventListenerManager;
 import org.xwiki.observation.event.Event;
 
 import ch.qos.logback.classic.spi.ILoggingEvent;
@@ -79,6 +80,12 @@ public class LogbackEventGenerator extends AppenderBase<ILoggingEvent> implement
     @Inject
     private ComponentManager componentManager;
 
+    /**
+     * Used to send the log to the listener capturing the logs of the current thread.
+     */
+    @Inject
+    private ThreadEventListenerManager threadListeners;
+
     /**
      * Logback utilities.
      */
@@ -147,6 +154,9 @@ protected void append(ILoggingEvent event)
                     throwable, event.getTimeStamp());
 
             getObservationManager().notify(logevent, event.getLoggerName(), null);
+
+            // Send the log to the thread capturing it (if any)
+            this.threadListeners.notify(logevent, event.getLoggerName(), null);
         } catch (IllegalArgumentException e) {
             this.logger.debug("Unsupported log level [{}]", event.getLevel());
         } catch (ComponentLookupException e) {
@@ -30,7 +30,9 @@
 import org.xwiki.logging.LogLevel;
 import org.xwiki.logging.LogQueue;
 import org.xwiki.logging.event.LogQueueListener;
+import org.xwiki.observation.ThreadEventListenerManager;
 import org.xwiki.observation.internal.DefaultObservationManager;
+import org.xwiki.observation.internal.DefaultThreadEventListenerManager;
 import org.xwiki.test.annotation.ComponentList;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 
@@ -50,7 +52,8 @@
  * @version $Id$
  * @since 3.2M3
  */
-@ComponentList({ DefaultLoggerManager.class, DefaultObservationManager.class, LogbackEventGenerator.class })
+@ComponentList({ DefaultLoggerManager.class, DefaultObservationManager.class, DefaultThreadEventListenerManager.class,
+    LogbackEventGenerator.class })
 public class DefaultLoggerManagerTest
 {
     @Rule
@@ -197,6 +200,35 @@ public void testNullListeners()
         Assert.assertEquals("[test] after pop", this.listAppender.list.get(1).getMessage());
     }
 
+    @Test
+    public void testListenerPushedByAnotherComponent() throws Exception
+    {
+        ThreadEventListenerManager threadListeners = this.mocker.getInstance(ThreadEventListenerManager.class);
+
+        // Another component uses the thread stack
+        threadListeners.pushListener(null);
+
+        LogQueue queue = new LogQueue();
+
+        this.loggerManager.pushLogListener(new LogQueueListener("loglistenerid", queue));
+
+        this.logger.error("[test] after push");
+
+        // Make sure the log has been grabbed
+        Assert.assertEquals("[test] after push", queue.poll().getMessage());
+        Assert.assertEquals(0, this.listAppender.list.size());
+
+        this.loggerManager.popLogListener();
+
+        this.logger.error("[test] after pop");
+
+        // Make sure the log is not grabbed anymore even if the thread stack is still active
+        Assert.assertTrue(threadListeners.isActive());
+        Assert.assertEquals("[test] after pop", this.listAppender.list.get(0).getMessage());
+
+        threadListeners.popListener();
+    }
+
     @Test
     public void testGetSetLoggerLevel()
     {
@@ -33,6 +33,7 @@
 import org.xwiki.observation.ObservationManager;
 import org.xwiki.observation.event.Event;
 import org.xwiki.observation.internal.DefaultObservationManager;
+import org.xwiki.observation.internal.DefaultThreadEventListenerManager;
 import org.xwiki.test.AllLogRule;
 import org.xwiki.test.ComponentManagerRule;
 import org.xwiki.test.annotation.ComponentList;
@@ -49,6 +50,7 @@
  */
 @ComponentList({
     DefaultObservationManager.class,
+    DefaultThreadEventListenerManager.class,
     LogbackEventGenerator.class
 })
 public class LogbackEventGeneratorTest
@@ -0,0 +1,86 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Indicate that an {@link EventListener} should not be called in the thread sending the event. Events are queued and
+ * delivered to the listener in a separate thread, in the order in which they were sent.
+ * <p>
+ * Since the event is sent after the {@link ObservationManager#notify(org.xwiki.observation.event.Event, Object)} call
+ * returns, the listener should not expect the source and data to be in the state they were when the event was sent
+ * and it cannot cancel the event.
+ *
+ * @version $Id$
+ * @since 8.3RC1
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Inherited
+public @interface AsynchronousListener
+{
+    /**
+     * What to do when the queue of the listener is full.
+     *
+     * @version $Id$
+     */
+    enum Overflow
+    {
+        /**
+         * Block the thread sending the event until there is room in the queue.
+         */
+        BLOCK,
+
+        /**
+         * Remove the oldest event from the queue to make room for the new one.
+         */
+        DROP_OLDEST,
+
+        /**
+         * Call the listener directly in the thread sending the event, after the events already queued. If a batch is
+         * currently delivering events in another thread, wait for some room in the queue instead so that the events
+         * are still received in the order in which they were sent.
+         */
+        CALLER_RUNS
+    }
+
+    /**
+     * @return the maximum number of events waiting to be delivered to the listener
+     */
+    int queueSize() default 1000;
+
+    /**
+     * @return the maximum number of events delivered to the listener in a row before giving the thread back to other
+     *         listeners
+     */
+    int batchSize() default 100;
+
+    /**
+     * @return what to do when the queue of the listener is full
+     */
+    Overflow overflow() default Overflow.BLOCK;
+}
@@ -0,0 +1,77 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation;
+
+import org.xwiki.component.annotation.Role;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Manage a stack of listeners associated with the current {@link Thread}. Only the listener at the top of the stack of
+ * the thread sending an event receives it, without being registered in the {@link ObservationManager}.
+ * <p>
+ * It's a cheaper alternative to registering a {@link WrappedThreadEventListener} in the {@link ObservationManager}
+ * since the cost of sending an event does not depend on the number of threads having their own listener.
+ * <p>
+ * The {@link ObservationManager} does not forward its events to this stack: a listener pushed here only receives the
+ * events explicitly passed to {@link #notify(Event, Object, Object)} (for example the logs captured by the
+ * {@code LoggerManager}).
+ *
+ * @version $Id$
+ * @since 8.3RC1
+ */
+@Role
+public interface ThreadEventListenerManager
+{
+    /**
+     * Set the listener receiving the events sent by the current thread. The previous listener will be active again
+     * after a call to {@link #popListener()}.
+     *
+     * @param listener the listener, null to disable events for the current thread until the next
+     *            {@link #popListener()}
+     */
+    void pushListener(EventListener listener);
+
+    /**
+     * Remove the current listener from the current thread stack. The previous listener (if any) will be active again.
+     *
+     * @return the listener removed from the stack
+     */
+    EventListener popListener();
+
+    /**
+     * @return the listener receiving the events of the current thread, null if there is none
+     */
+    EventListener getListener();
+
+    /**
+     * @return true if the current thread has an active stack of listeners (even if the current listener is null),
+     *         whatever the component which pushed them
+     */
+    boolean isActive();
+
+    /**
+     * Call the current thread listener if it matches the passed Event.
+     *
+     * @param event the event to pass to the listener
+     * @param source the source of the event (or <code>null</code>)
+     * @param data the additional data related to the event (or <code>null</code>)
+     */
+    void notify(Event event, Object source, Object data);
+}
@@ -0,0 +1,347 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.xwiki.observation.AsynchronousListener;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Queue the events sent to an {@link AsynchronousListener} and deliver them in batches using the provided
+ * {@link Executor}. At most one batch is executed at a given time for a listener so that events are received in the
+ * order in which they were sent.
+ *
+ * @version $Id$
+ * @since 8.3RC1
+ */
+public class AsynchronousListenerQueue implements EventListener
+{
+    /**
+     * The time in milliseconds to wait for some room in the queue before trying again to call the listener in the
+     * thread sending the event.
+     */
+    private static final long CALLER_RUNS_WAIT = 10;
+
+    /**
+     * An event waiting to be delivered.
+     */
+    private static class QueuedEvent
+    {
+        private final Event event;
+
+        private final Object source;
+
+        private final Object data;
+
+        private final long date = System.nanoTime();
+
+        QueuedEvent(Event event, Object source, Object data)
+        {
+            this.event = event;
+            this.source = source;
+            this.data = data;
+        }
+    }
+
+    private final EventListener listener;
+
+    private final AsynchronousListener configuration;
+
+    private final Executor executor;
+
+    private final Logger logger;
+
+    private final BlockingQueue<QueuedEvent> queue;
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private final AtomicLong delivered = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong deliveryTime = new AtomicLong();
+
+    private volatile long maxDeliveryTime;
+
+    private volatile boolean disposed;
+
+    /**
+     * @param listener the listener to call
+     * @param configuration the asynchronous configuration of the listener
+     * @param executor the executor used to run the batches
+     * @param logger the logger used to report listeners failures
+     */
+    public AsynchronousListenerQueue(EventListener listener, AsynchronousListener configuration, Executor executor,
+        Logger logger)
+    {
+        this.listener = listener;
+        this.configuration = configuration;
+        this.executor = executor;
+        this.logger = logger;
+
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, configuration.queueSize()));
+    }
+
+    /**
+     * @return the listener to call
+     */
+    public EventListener getListener()
+    {
+        return this.listener;
+    }
+
+    @Override
+    public String getName()
+    {
+        return this.listener.getName();
+    }
+
+    @Override
+    public List<Event> getEvents()
+    {
+        return this.listener.getEvents();
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        if (this.disposed) {
+            return;
+        }
+
+        QueuedEvent queuedEvent = new QueuedEvent(event, source, data);
+
+        if (!this.queue.offer(queuedEvent)) {
+            switch (this.configuration.overflow()) {
+                case DROP_OLDEST:
+                    while (!this.queue.offer(queuedEvent)) {
+                        if (this.queue.poll() != null) {
+                            this.dropped.incrementAndGet();
+                        }
+                    }
+                    break;
+
+                case CALLER_RUNS:
+                    callerRuns(queuedEvent);
+                    return;
+
+                default:
+                    try {
+                        this.queue.put(queuedEvent);
+                    } catch (InterruptedException e) {
+                        this.dropped.incrementAndGet();
+
+                        Thread.currentThread().interrupt();
+
+                        return;
+                    }
+                    break;
+            }
+        }
+
+        schedule();
+    }
+
+    /**
+     * Deliver the event in the current thread without overtaking the events already queued.
+     *
+     * @param queuedEvent the event to deliver
+     */
+    private void callerRuns(QueuedEvent queuedEvent)
+    {
+        while (true) {
+            if (this.scheduled.compareAndSet(false, true)) {
+                // No batch is running: deliver the events queued before this one and then this one
+                try {
+                    for (int i = this.queue.size(); i > 0; --i) {
+                        QueuedEvent previousEvent = this.queue.poll();
+
+                        if (previousEvent == null) {
+                            break;
+                        }
+
+                        deliver(previousEvent);
+                    }
+
+                    deliver(queuedEvent);
+                } finally {
+                    this.scheduled.set(false);
+
+                    if (!this.queue.isEmpty()) {
+                        schedule();
+                    }
+                }
+
+                return;
+            }
+
+            // A batch is running: calling the listener now would break the order so wait for some room in the queue
+            try {
+                if (this.queue.offer(queuedEvent, CALLER_RUNS_WAIT, TimeUnit.MILLISECONDS)) {
+                    schedule();
+
+                    return;
+                }
+            } catch (InterruptedException e) {
+                this.dropped.incrementAndGet();
+
+                Thread.currentThread().interrupt();
+
+                return;
+            }
+        }
+    }
+
+    /**
+     * Make sure a batch is going to deliver the queued events.
+     */
+    private void schedule()
+    {
+        if (this.scheduled.compareAndSet(false, true)) {
+            try {
+                this.executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // The executor is stopped, deliver the events in the current thread
+                drain();
+            }
+        }
+    }
+
+    /**
+     * Deliver a batch of events.
+     */
+    private void drain()
+    {
+        try {
+            for (int i = 0; i < this.configuration.batchSize(); ++i) {
+                QueuedEvent queuedEvent = this.queue.poll();
+
+                if (queuedEvent == null) {
+                    break;
+                }
+
+                deliver(queuedEvent);
+            }
+        } finally {
+            this.scheduled.set(false);
+
+            // Give the thread back and continue in a new batch
+            if (!this.queue.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    private void deliver(QueuedEvent queuedEvent)
+    {
+        long start = System.nanoTime();
+
+        try {
+            this.listener.onEvent(queuedEvent.event, queuedEvent.source, queuedEvent.data);
+        } catch (Exception e) {
+            // protect from bad listeners
+            this.logger.error("Failed to send event [{}] to listener [{}]", queuedEvent.event, this.listener, e);
+        }
+
+        long time = System.nanoTime() - start;
+
+        this.delivered.incrementAndGet();
+        this.deliveryTime.addAndGet(time);
+        if (time > this.maxDeliveryTime) {
+            this.maxDeliveryTime = time;
+        }
+    }
+
+    /**
+     * Stop accepting new events. Already queued events are still delivered.
+     */
+    public void dispose()
+    {
+        this.disposed = true;
+    }
+
+    /**
+     * @return the number of events waiting to be delivered
+     */
+    public int getQueueSize()
+    {
+        return this.queue.size();
+    }
+
+    /**
+     * @return the time in milliseconds the oldest queued event has been waiting
+     */
+    public long getLag()
+    {
+        QueuedEvent oldest = this.queue.peek();
+
+        return oldest != null ? (System.nanoTime() - oldest.date) / 1000000L : 0;
+    }
+
+    /**
+     * @return the number of events delivered to the listener
+     */
+    public long getDeliveredCount()
+    {
+        return this.delivered.get();
+    }
+
+    /**
+     * @return the number of events removed from the queue without being delivered to the listener
+     */
+    public long getDroppedCount()
+    {
+        return this.dropped.get();
+    }
+
+    /**
+     * @return the average time in microseconds spent by the listener to handle an event
+     */
+    public long getAverageLatency()
+    {
+        long count = this.delivered.get();
+
+        return count > 0 ? this.deliveryTime.get() / count / 1000L : 0;
+    }
+
+    /**
+     * @return the maximum time in microseconds spent by the listener to handle an event
+     */
+    public long getMaxLatency()
+    {
+        return this.maxDeliveryTime / 1000L;
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.listener.toString();
+    }
+}
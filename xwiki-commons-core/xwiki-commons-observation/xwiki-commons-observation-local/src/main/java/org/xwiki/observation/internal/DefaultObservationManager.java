@@ -20,14 +20,18 @@
 package org.xwiki.observation.internal;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.descriptor.ComponentDescriptor;
@@ -36,10 +40,14 @@
 import org.xwiki.component.event.ComponentDescriptorRemovedEvent;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.management.JMXBeanRegistration;
+import org.xwiki.observation.AsynchronousListener;
 import org.xwiki.observation.EventListener;
 import org.xwiki.observation.ObservationManager;
 import org.xwiki.observation.event.AllEvent;
 import org.xwiki.observation.event.Event;
+import org.xwiki.observation.internal.jmx.JMXAsynchronousListeners;
 
 /**
  * Default implementation of the {@link ObservationManager}.
@@ -47,13 +55,35 @@
  * This component use synchronized for concurrent protection instead of having
  * {@link java.util.concurrent.ConcurrentHashMap} everywhere because it's more efficient since most of methods access to
  * several maps and generally do enumerations.
+ * <p>
+ * {@link #notify(Event, Object, Object)} does not walk the registration maps: it reads a dispatch table which associate
+ * each concrete event class with the precomputed array of listeners to call (including the {@link AllEvent}
+ * listeners). The dispatch table is thrown away and lazily rebuilt each time listeners or events are added or removed.
+ * <p>
+ * Listeners annotated with {@link AsynchronousListener} are called through an {@link AsynchronousListenerQueue} running
+ * on a dedicated thread pool. The other listeners are called in the thread sending the event.
  *
  * @version $Id$
  */
 @Component
 @Singleton
-public class DefaultObservationManager implements ObservationManager
+public class DefaultObservationManager implements ObservationManager, Disposable
 {
+    /**
+     * Shared empty dispatch entry.
+     */
+    private static final RegisteredListener[] NO_LISTENER = new RegisteredListener[0];
+
+    /**
+     * The name of the MBean exposing the asynchronous listeners statistics.
+     */
+    private static final String MBEAN_NAME = "type=Observation,name=AsynchronousListeners";
+
+    /**
+     * The time in seconds to wait for asynchronous listeners to handle queued events when disposing the component.
+     */
+    private static final long DISPOSE_TIMEOUT = 10;
+
     /**
      * @see #getListenersByEvent()
      */
@@ -64,6 +94,21 @@ public class DefaultObservationManager implements ObservationManager
      */
     private volatile Map<String, EventListener> listenersByName;
 
+    /**
+     * @see #getDispatchTable(Class)
+     */
+    private volatile Map<Class<? extends Event>, RegisteredListener[]> dispatchTable = new ConcurrentHashMap<>();
+
+    /**
+     * The queues of the listeners annotated with {@link AsynchronousListener} indexed by listener name.
+     */
+    private final Map<String, AsynchronousListenerQueue> asynchronousListeners = new ConcurrentHashMap<>();
+
+    /**
+     * @see #getAsynchronousExecutor()
+     */
+    private ExecutorService asynchronousExecutor;
+
     /**
      * Used to find all components implementing {@link EventListener} to register them automatically.
      */
@@ -83,9 +128,10 @@ public class DefaultObservationManager implements ObservationManager
     private static class RegisteredListener
     {
         /**
-         * Events of a given type associated with a given listener.
+         * Events of a given type associated with a given listener. The array is never modified, a new one is created
+         * each time an event is added or removed so that it can be safely enumerated while listeners are modified.
          */
-        private List<Event> events = new ArrayList<>();
+        private volatile Event[] events = new Event[0];
 
         /**
          * Listener associated with the events.
@@ -107,17 +153,23 @@ public class DefaultObservationManager implements ObservationManager
         /**
          * @param event the event to add
          */
-        void addEvent(Event event)
+        synchronized void addEvent(Event event)
         {
-            this.events.add(event);
+            Event[] newEvents = Arrays.copyOf(this.events, this.events.length + 1);
+            newEvents[this.events.length] = event;
+
+            this.events = newEvents;
         }
 
         /**
          * @param event the event to remove
          */
-        void removeEvent(Event event)
+        synchronized void removeEvent(Event event)
         {
-            this.events.remove(event);
+            List<Event> newEvents = new ArrayList<>(Arrays.asList(this.events));
+            if (newEvents.remove(event)) {
+                this.events = newEvents.toArray(new Event[newEvents.size()]);
+            }
         }
     }
 
@@ -147,6 +199,58 @@ private Map<String, EventListener> getListenersByName()
         return this.listenersByName;
     }
 
+    /**
+     * @param eventClass the class of the event to dispatch
+     * @return the listeners to call for the passed event class, including the listeners of {@link AllEvent}
+     */
+    private RegisteredListener[] getDispatchTable(Class<? extends Event> eventClass)
+    {
+        Map<Class<? extends Event>, RegisteredListener[]> table = this.dispatchTable;
+
+        RegisteredListener[] listeners = table.get(eventClass);
+        if (listeners == null) {
+            listeners = createDispatchEntry(eventClass);
+
+            // If the listeners have been modified in the meantime the table we put the entry in is already discarded
+            table.put(eventClass, listeners);
+        }
+
+        return listeners;
+    }
+
+    /**
+     * @param eventClass the class of the event to dispatch
+     * @return the listeners to call for the passed event class, including the listeners of {@link AllEvent}
+     */
+    private RegisteredListener[] createDispatchEntry(Class<? extends Event> eventClass)
+    {
+        Map<Class<? extends Event>, Map<String, RegisteredListener>> listeners = getListenersByEvent();
+
+        List<RegisteredListener> entry = new ArrayList<>();
+
+        Map<String, RegisteredListener> eventListeners = listeners.get(eventClass);
+        if (eventListeners != null) {
+            entry.addAll(eventListeners.values());
+        }
+
+        if (eventClass != AllEvent.class) {
+            Map<String, RegisteredListener> allEventListeners = listeners.get(AllEvent.class);
+            if (allEventListeners != null) {
+                entry.addAll(allEventListeners.values());
+            }
+        }
+
+        return entry.isEmpty() ? NO_LISTENER : entry.toArray(new RegisteredListener[entry.size()]);
+    }
+
+    /**
+     * Discard the current dispatch table so that it's rebuilt with the current listeners.
+     */
+    private void invalidateDispatchTable()
+    {
+        this.dispatchTable = new ConcurrentHashMap<>();
+    }
+
     /**
      * Lazily initialized to allow @Inject {@link ObservationManager} in a listener.
      *
@@ -193,6 +297,20 @@ public void addListener(EventListener eventListener)
         // Register the listener by name. If already registered, override it.
         listeners.put(eventListener.getName(), eventListener);
 
+        AsynchronousListener asynchronous = eventListener.getClass().getAnnotation(AsynchronousListener.class);
+        AsynchronousListenerQueue previousQueue;
+        if (asynchronous != null) {
+            previousQueue = this.asynchronousListeners.put(eventListener.getName(),
+                new AsynchronousListenerQueue(eventListener, asynchronous, getAsynchronousExecutor(), this.logger));
+        } else {
+            previousQueue = this.asynchronousListeners.remove(eventListener.getName());
+        }
+        if (previousQueue != null) {
+            // The replaced listener should not receive any new event
+            previousQueue.dispose();
+        }
+        EventListener dispatchedListener = getDispatchedListener(eventListener.getName());
+
         // For each event defined for this listener, add it to the Event Map.
         for (Event event : eventListener.getEvents()) {
             // Check if this is a new Event type not already registered
@@ -202,23 +320,31 @@ public void addListener(EventListener eventListener)
                 eventListeners = new ConcurrentHashMap<String, RegisteredListener>();
                 this.listenersByEvent.put(event.getClass(), eventListeners);
                 // There is no RegisteredListener yet, create one
-                eventListeners.put(eventListener.getName(), new RegisteredListener(eventListener, event));
+                eventListeners.put(eventListener.getName(), new RegisteredListener(dispatchedListener, event));
             } else {
                 // Add an event to existing RegisteredListener object
                 RegisteredListener registeredListener = eventListeners.get(eventListener.getName());
                 if (registeredListener == null) {
-                    eventListeners.put(eventListener.getName(), new RegisteredListener(eventListener, event));
+                    eventListeners.put(eventListener.getName(), new RegisteredListener(dispatchedListener, event));
                 } else {
                     registeredListener.addEvent(event);
                 }
             }
         }
+
+        invalidateDispatchTable();
     }
 
     @Override
     public void removeListener(String listenerName)
     {
         getListenersByName().remove(listenerName);
+
+        AsynchronousListenerQueue asynchronousListener = this.asynchronousListeners.remove(listenerName);
+        if (asynchronousListener != null) {
+            asynchronousListener.dispose();
+        }
+
         for (Map.Entry<Class<? extends Event>, Map<String, RegisteredListener>> entry : this.listenersByEvent
             .entrySet()) {
             entry.getValue().remove(listenerName);
@@ -226,6 +352,8 @@ public void removeListener(String listenerName)
                 this.listenersByEvent.remove(entry.getKey());
             }
         }
+
+        invalidateDispatchTable();
     }
 
     @Override
@@ -240,18 +368,24 @@ public void addEvent(String listenerName, Event event)
         if (listener != null) {
             listener.addEvent(event);
         } else {
-            listeners.put(listenerName, new RegisteredListener(this.getListener(listenerName), event));
+            listeners.put(listenerName, new RegisteredListener(getDispatchedListener(listenerName), event));
         }
+
+        invalidateDispatchTable();
     }
 
     @Override
     public void removeEvent(String listenerName, Event event)
     {
         Map<String, RegisteredListener> listeners = getListenersByEvent().get(event.getClass());
-        RegisteredListener listener = listeners.get(listenerName);
-        if (listener != null) {
-            listener.removeEvent(event);
+        if (listeners != null) {
+            RegisteredListener listener = listeners.get(listenerName);
+            if (listener != null) {
+                listener.removeEvent(event);
+            }
         }
+
+        invalidateDispatchTable();
     }
 
     @Override
@@ -260,19 +394,75 @@ public EventListener getListener(String listenerName)
         return getListenersByName().get(listenerName);
     }
 
+    /**
+     * @param listenerName the name of the listener
+     * @return the object to call when sending an event to the listener: the listener itself or its asynchronous queue
+     */
+    private EventListener getDispatchedListener(String listenerName)
+    {
+        EventListener listener = this.asynchronousListeners.get(listenerName);
+
+        return listener != null ? listener : getListener(listenerName);
+    }
+
+    /**
+     * @return the thread pool used to deliver events to asynchronous listeners
+     */
+    private synchronized ExecutorService getAsynchronousExecutor()
+    {
+        if (this.asynchronousExecutor == null) {
+            BasicThreadFactory threadFactory = new BasicThreadFactory.Builder()
+                .namingPattern("Asynchronous event listener %d").daemon(true).build();
+            this.asynchronousExecutor = Executors.newCachedThreadPool(threadFactory);
+
+            // Expose the asynchronous listeners statistics when management is available
+            // Can be null in unit tests
+            if (this.componentManager != null && this.componentManager.hasComponent(JMXBeanRegistration.class)) {
+                try {
+                    this.componentManager.<JMXBeanRegistration>getInstance(JMXBeanRegistration.class).registerMBean(
+                        new JMXAsynchronousListeners(this.asynchronousListeners.values()), MBEAN_NAME);
+                } catch (ComponentLookupException e) {
+                    this.logger.warn("Failed to register the asynchronous listeners MBean", e);
+                }
+            }
+        }
+
+        return this.asynchronousExecutor;
+    }
+
     @Override
-    public void notify(Event event, Object source, Object data)
+    public synchronized void dispose()
     {
-        // Find all listeners for this event
-        Map<String, RegisteredListener> regListeners = getListenersByEvent().get(event.getClass());
-        if (regListeners != null) {
-            notify(regListeners.values(), event, source, data);
+        if (this.asynchronousExecutor != null) {
+            for (AsynchronousListenerQueue asynchronousListener : this.asynchronousListeners.values()) {
+                asynchronousListener.dispose();
+            }
+
+            // Give a chance to already queued events to be delivered
+            this.asynchronousExecutor.shutdown();
+            try {
+                this.asynchronousExecutor.awaitTermination(DISPOSE_TIMEOUT, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (this.componentManager != null && this.componentManager.hasComponent(JMXBeanRegistration.class)) {
+                try {
+                    this.componentManager.<JMXBeanRegistration>getInstance(JMXBeanRegistration.class)
+                        .unregisterMBean(MBEAN_NAME);
+                } catch (ComponentLookupException e) {
+                    this.logger.warn("Failed to unregister the asynchronous listeners MBean", e);
+                }
+            }
         }
+    }
 
-        // Find listener listening all events
-        Map<String, RegisteredListener> allEventRegListeners = this.listenersByEvent.get(AllEvent.class);
-        if (allEventRegListeners != null) {
-            notify(allEventRegListeners.values(), event, source, data);
+    @Override
+    public void notify(Event event, Object source, Object data)
+    {
+        // Find all listeners for this event (including the ones listening to all events)
+        for (RegisteredListener listener : getDispatchTable(event.getClass())) {
+            notify(listener, event, source, data);
         }
 
         // We want this Observation Manager to be able to handle new Event Listener components being added or removed
@@ -286,31 +476,29 @@ public void notify(Event event, Object source, Object data)
     }
 
     /**
-     * Call the provided listeners matching the passed Event. The definition of <em>source</em> and <em>data</em> is
-     * purely up to the communicating classes.
+     * Call the provided listener if it's matching the passed Event. The definition of <em>source</em> and
+     * <em>data</em> is purely up to the communicating classes.
      *
-     * @param listeners the listeners to notify
+     * @param listener the listener to notify
      * @param event the event to pass to the registered listeners
      * @param source the source of the event (or <code>null</code>)
      * @param data the additional data related to the event (or <code>null</code>)
      */
-    private void notify(Collection<RegisteredListener> listeners, Event event, Object source, Object data)
+    private void notify(RegisteredListener listener, Event event, Object source, Object data)
     {
-        for (RegisteredListener listener : listeners) {
-            // Verify that one of the events matches and send the first matching event
-            for (Event listenerEvent : listener.events) {
-                if (listenerEvent.matches(event)) {
-                    try {
-                        listener.listener.onEvent(event, source, data);
-                    } catch (Exception e) {
-                        // protect from bad listeners
-                        this.logger.error("Failed to send event [{}] to listener [{}]", new Object[] { event,
-                            listener.listener, e });
-                    }
-
-                    // Only send the first matching event since the listener should only be called once per event.
-                    break;
+        // Verify that one of the events matches and send the first matching event
+        for (Event listenerEvent : listener.events) {
+            if (listenerEvent.matches(event)) {
+                try {
+                    listener.listener.onEvent(event, source, data);
+                } catch (Exception e) {
+                    // protect from bad listeners
+                    this.logger.error("Failed to send event [{}] to listener [{}]",
+                        new Object[] { event, listener.listener, e });
                 }
+
+                // Only send the first matching event since the listener should only be called once per event.
+                break;
             }
         }
     }
@@ -0,0 +1,125 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ThreadEventListenerManager;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Default implementation of {@link ThreadEventListenerManager}.
+ * <p>
+ * The stack is only accessed by its own thread so it does not need any synchronization.
+ *
+ * @version $Id$
+ * @since 8.3RC1
+ */
+@Component
+@Singleton
+public class DefaultThreadEventListenerManager implements ThreadEventListenerManager
+{
+    /**
+     * The logger to log.
+     */
+    @Inject
+    private Logger logger;
+
+    /**
+     * The stack of listeners for the current thread.
+     */
+    private final ThreadLocal<List<EventListener>> listeners = new ThreadLocal<>();
+
+    @Override
+    public void pushListener(EventListener listener)
+    {
+        List<EventListener> listenerStack = this.listeners.get();
+
+        if (listenerStack == null) {
+            listenerStack = new ArrayList<>();
+            this.listeners.set(listenerStack);
+        }
+
+        listenerStack.add(listener);
+    }
+
+    @Override
+    public EventListener popListener()
+    {
+        List<EventListener> listenerStack = this.listeners.get();
+
+        EventListener listener;
+        if (listenerStack != null && !listenerStack.isEmpty()) {
+            listener = listenerStack.remove(listenerStack.size() - 1);
+
+            if (listenerStack.isEmpty()) {
+                // Don't keep anything associated with a thread which might come from a pool
+                this.listeners.remove();
+            }
+        } else {
+            listener = null;
+        }
+
+        return listener;
+    }
+
+    @Override
+    public EventListener getListener()
+    {
+        List<EventListener> listenerStack = this.listeners.get();
+
+        return listenerStack != null ? listenerStack.get(listenerStack.size() - 1) : null;
+    }
+
+    @Override
+    public boolean isActive()
+    {
+        return this.listeners.get() != null;
+    }
+
+    @Override
+    public void notify(Event event, Object source, Object data)
+    {
+        EventListener listener = getListener();
+
+        if (listener != null) {
+            // Only send the first matching event since the listener should only be called once per event.
+            for (Event listenerEvent : listener.getEvents()) {
+                if (listenerEvent.matches(event)) {
+                    try {
+                        listener.onEvent(event, source, data);
+                    } catch (Exception e) {
+                        // protect from bad listeners
+                        this.logger.error("Failed to send event [{}] to listener [{}]", event, listener, e);
+                    }
+
+                    break;
+                }
+            }
+        }
+    }
+}
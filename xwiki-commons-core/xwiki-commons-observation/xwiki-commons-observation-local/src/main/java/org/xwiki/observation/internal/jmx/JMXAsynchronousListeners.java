@@ -0,0 +1,94 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal.jmx;
+
+import java.util.Collection;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+import org.xwiki.observation.internal.AsynchronousListenerQueue;
+
+/**
+ * Expose the statistics of the asynchronous Event Listeners.
+ *
+ * @version $Id$
+ * @since 8.3RC1
+ */
+public class JMXAsynchronousListeners implements JMXAsynchronousListenersMBean
+{
+    private static final String[] COLUMN_NAMES = new String[] { "listenerName", "queueSize", "lag", "delivered",
+        "dropped", "averageLatency", "maxLatency" };
+
+    private static final String[] COLUMN_DESCRIPTIONS = new String[] { "The name of the listener",
+        "The number of events waiting to be delivered",
+        "The time (milliseconds) the oldest queued event has been waiting", "The number of delivered events",
+        "The number of events dropped because the queue was full",
+        "The average time (microseconds) spent by the listener to handle an event",
+        "The maximum time (microseconds) spent by the listener to handle an event" };
+
+    /**
+     * The asynchronous listeners for which to return management data.
+     */
+    private final Collection<AsynchronousListenerQueue> listeners;
+
+    /**
+     * @param listeners the asynchronous listeners for which to return management data
+     */
+    public JMXAsynchronousListeners(Collection<AsynchronousListenerQueue> listeners)
+    {
+        this.listeners = listeners;
+    }
+
+    @Override
+    public TabularData getListeners()
+    {
+        TabularData data;
+
+        try {
+            CompositeType rowType = new CompositeType("listener", "Asynchronous listener statistics", COLUMN_NAMES,
+                COLUMN_DESCRIPTIONS, new OpenType[] { SimpleType.STRING, SimpleType.INTEGER, SimpleType.LONG,
+                    SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG });
+
+            TabularType type = new TabularType("listeners", "Asynchronous listeners statistics", rowType,
+                new String[] { COLUMN_NAMES[0] });
+            data = new TabularDataSupport(type);
+
+            for (AsynchronousListenerQueue listener : this.listeners) {
+                CompositeData rowData = new CompositeDataSupport(rowType, COLUMN_NAMES,
+                    new Object[] { listener.getName(), listener.getQueueSize(), listener.getLag(),
+                        listener.getDeliveredCount(), listener.getDroppedCount(), listener.getAverageLatency(),
+                        listener.getMaxLatency() });
+                data.put(rowData);
+            }
+        } catch (OpenDataException e) {
+            throw new RuntimeException("Failed to gather information on asynchronous listeners", e);
+        }
+
+        return data;
+    }
+}
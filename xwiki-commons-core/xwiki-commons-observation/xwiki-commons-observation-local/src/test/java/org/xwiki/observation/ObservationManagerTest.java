@@ -19,8 +19,12 @@
  */
 package org.xwiki.observation;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Assert;
 import org.junit.Rule;
@@ -49,6 +53,32 @@
  */
 public class ObservationManagerTest
 {
+    @AsynchronousListener(queueSize = 10, batchSize = 2)
+    private static class TestAsynchronousListener extends AbstractEventListener
+    {
+        private final List<Object> sources = Collections.synchronizedList(new ArrayList<>());
+
+        private final List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+
+        private final CountDownLatch latch;
+
+        TestAsynchronousListener(Event event, int expected)
+        {
+            super("asynchronous", event);
+
+            this.latch = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+            this.sources.add(source);
+            this.threads.add(Thread.currentThread());
+
+            this.latch.countDown();
+        }
+    }
+
     @Rule
     public final MockitoComponentMockingRule<ObservationManager> mocker =
         new MockitoComponentMockingRule<ObservationManager>(DefaultObservationManager.class);
@@ -235,4 +265,82 @@ public void testRegisterListenerForTwoEventsOfSameType() throws ComponentLookupE
         verify(listener).onEvent(eventMatcher1, "some source", "some data");
         verify(listener).onEvent(eventMatcher2, "some source", "some data");
     }
+
+    /**
+     * Verify that listeners registered or removed after an event of the same type has been sent are taken into
+     * account.
+     */
+    @Test
+    public void testNotifyAfterListenersModification() throws ComponentLookupException
+    {
+        final EventListener listener = mock(EventListener.class, "listener");
+        final EventListener allListener = mock(EventListener.class, "allListener");
+        final Event event = mock(Event.class);
+
+        when(listener.getName()).thenReturn("mylistener");
+        when(listener.getEvents()).thenReturn(Arrays.asList(event));
+        when(allListener.getName()).thenReturn("myalllistener");
+        when(allListener.getEvents()).thenReturn(Arrays.asList(AllEvent.ALLEVENT));
+        when(event.matches(event)).thenReturn(true);
+
+        this.mocker.getComponentUnderTest().notify(event, "source1");
+
+        this.mocker.getComponentUnderTest().addListener(listener);
+        this.mocker.getComponentUnderTest().notify(event, "source2");
+        verify(listener).onEvent(event, "source2", null);
+
+        this.mocker.getComponentUnderTest().addListener(allListener);
+        this.mocker.getComponentUnderTest().notify(event, "source3");
+        verify(listener).onEvent(event, "source3", null);
+        verify(allListener).onEvent(event, "source3", null);
+
+        this.mocker.getComponentUnderTest().removeListener("mylistener");
+        this.mocker.getComponentUnderTest().notify(event, "source4");
+        verify(listener, never()).onEvent(event, "source4", null);
+        verify(allListener).onEvent(event, "source4", null);
+
+        verify(listener, never()).onEvent(event, "source1", null);
+    }
+
+    @Test
+    public void testNotifyAsynchronousListener() throws Exception
+    {
+        final Event event = mock(Event.class);
+        when(event.matches(event)).thenReturn(true);
+
+        TestAsynchronousListener listener = new TestAsynchronousListener(event, 5);
+
+        this.mocker.getComponentUnderTest().addListener(listener);
+        for (int i = 0; i < 5; ++i) {
+            this.mocker.getComponentUnderTest().notify(event, i);
+        }
+
+        Assert.assertTrue(listener.latch.await(10, TimeUnit.SECONDS));
+
+        // Events are received in the order they have been sent, but not in the thread which sent them
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4), listener.sources);
+        Assert.assertFalse(listener.threads.contains(Thread.currentThread()));
+    }
+
+    @Test
+    public void testReplaceAsynchronousListener() throws Exception
+    {
+        final Event event = mock(Event.class);
+        when(event.matches(event)).thenReturn(true);
+
+        TestAsynchronousListener asynchronousListener = new TestAsynchronousListener(event, 1);
+        this.mocker.getComponentUnderTest().addListener(asynchronousListener);
+
+        // Replace the asynchronous listener with a synchronous one
+        EventListener listener = mock(EventListener.class);
+        when(listener.getName()).thenReturn("asynchronous");
+        when(listener.getEvents()).thenReturn(Arrays.asList(event));
+        this.mocker.getComponentUnderTest().addListener(listener);
+
+        this.mocker.getComponentUnderTest().notify(event, "source");
+
+        verify(listener).onEvent(event, "source", null);
+        Assert.assertFalse(asynchronousListener.latch.await(100, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(asynchronousListener.sources.isEmpty());
+    }
 }
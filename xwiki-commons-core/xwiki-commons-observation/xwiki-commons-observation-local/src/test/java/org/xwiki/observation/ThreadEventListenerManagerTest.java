@@ -0,0 +1,141 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.internal.DefaultThreadEventListenerManager;
+import org.xwiki.test.mockito.MockitoComponentMockingRule;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link ThreadEventListenerManager}.
+ *
+ * @version $Id$
+ */
+public class ThreadEventListenerManagerTest
+{
+    @Rule
+    public final MockitoComponentMockingRule<ThreadEventListenerManager> mocker =
+        new MockitoComponentMockingRule<ThreadEventListenerManager>(DefaultThreadEventListenerManager.class);
+
+    private EventListener mockListener(String name, Event event)
+    {
+        EventListener listener = mock(EventListener.class, name);
+
+        when(listener.getName()).thenReturn(name);
+        when(listener.getEvents()).thenReturn(Arrays.asList(event));
+
+        return listener;
+    }
+
+    @Test
+    public void notifyStackedListeners() throws Exception
+    {
+        Event event = mock(Event.class);
+        when(event.matches(event)).thenReturn(true);
+
+        EventListener listener1 = mockListener("listener1", event);
+        EventListener listener2 = mockListener("listener2", event);
+
+        ThreadEventListenerManager manager = this.mocker.getComponentUnderTest();
+
+        Assert.assertFalse(manager.isActive());
+
+        manager.pushListener(listener1);
+        manager.pushListener(listener2);
+
+        Assert.assertTrue(manager.isActive());
+        Assert.assertSame(listener2, manager.getListener());
+
+        manager.notify(event, "source1", null);
+
+        verify(listener2).onEvent(event, "source1", null);
+        verify(listener1, never()).onEvent(event, "source1", null);
+
+        Assert.assertSame(listener2, manager.popListener());
+
+        manager.notify(event, "source2", null);
+
+        verify(listener1).onEvent(event, "source2", null);
+
+        Assert.assertSame(listener1, manager.popListener());
+        Assert.assertFalse(manager.isActive());
+        Assert.assertNull(manager.popListener());
+    }
+
+    @Test
+    public void notifyNullListener() throws Exception
+    {
+        Event event = mock(Event.class);
+        when(event.matches(event)).thenReturn(true);
+
+        EventListener listener = mockListener("listener", event);
+
+        ThreadEventListenerManager manager = this.mocker.getComponentUnderTest();
+
+        manager.pushListener(listener);
+        manager.pushListener(null);
+
+        manager.notify(event, null, null);
+
+        verify(listener, never()).onEvent(any(Event.class), any(), any());
+
+        manager.popListener();
+        manager.popListener();
+    }
+
+    @Test
+    public void notifyOtherThread() throws Exception
+    {
+        final Event event = mock(Event.class);
+        when(event.matches(event)).thenReturn(true);
+
+        EventListener listener = mockListener("listener", event);
+
+        final ThreadEventListenerManager manager = this.mocker.getComponentUnderTest();
+
+        manager.pushListener(listener);
+
+        Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                manager.notify(event, null, null);
+            }
+        });
+        thread.start();
+        thread.join();
+
+        verify(listener, never()).onEvent(any(Event.class), any(), any());
+
+        manager.popListener();
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.AsynchronousListener;
+import org.xwiki.observation.event.Event;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link AsynchronousListenerQueue}.
+ *
+ * @version $Id$
+ */
+public class AsynchronousListenerQueueTest
+{
+    private static final int EVENTS = 200;
+
+    private static class TestListener extends AbstractEventListener
+    {
+        private final List<Object> sources = Collections.synchronizedList(new ArrayList<>());
+
+        private final List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+
+        TestListener(Event event)
+        {
+            super("listener", event);
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+            this.sources.add(source);
+            this.threads.add(Thread.currentThread());
+
+            // Slow listener to fill the queue
+            try {
+                Thread.sleep(0, 100000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @AsynchronousListener(queueSize = 2, batchSize = 1, overflow = AsynchronousListener.Overflow.CALLER_RUNS)
+    private static class CallerRuns
+    {
+    }
+
+    @AsynchronousListener(queueSize = 2, batchSize = 1, overflow = AsynchronousListener.Overflow.BLOCK)
+    private static class Block
+    {
+    }
+
+    private ExecutorService executor;
+
+    private Event event;
+
+    private TestListener listener;
+
+    @Before
+    public void before()
+    {
+        this.executor = Executors.newSingleThreadExecutor();
+
+        this.event = mock(Event.class);
+        when(this.event.matches(this.event)).thenReturn(true);
+
+        this.listener = new TestListener(this.event);
+    }
+
+    @After
+    public void after()
+    {
+        this.executor.shutdownNow();
+    }
+
+    private AsynchronousListenerQueue createQueue(Class<?> configuration)
+    {
+        return new AsynchronousListenerQueue(this.listener, configuration.getAnnotation(AsynchronousListener.class),
+            this.executor, mock(Logger.class));
+    }
+
+    private List<Object> send(AsynchronousListenerQueue queue) throws InterruptedException
+    {
+        List<Object> expected = new ArrayList<>();
+        for (int i = 0; i < EVENTS; ++i) {
+            queue.onEvent(this.event, i, null);
+            expected.add(i);
+        }
+
+        for (int i = 0; i < 1000 && queue.getDeliveredCount() < EVENTS; ++i) {
+            Thread.sleep(10);
+        }
+
+        return expected;
+    }
+
+    @Test
+    public void callerRunsKeepsOrder() throws InterruptedException
+    {
+        AsynchronousListenerQueue queue = createQueue(CallerRuns.class);
+
+        List<Object> expected = send(queue);
+
+        Assert.assertEquals(EVENTS, queue.getDeliveredCount());
+        Assert.assertEquals(0, queue.getDroppedCount());
+        Assert.assertEquals(expected, this.listener.sources);
+    }
+
+    @Test
+    public void blockKeepsOrder() throws InterruptedException
+    {
+        AsynchronousListenerQueue queue = createQueue(Block.class);
+
+        List<Object> expected = send(queue);
+
+        Assert.assertEquals(EVENTS, queue.getDeliveredCount());
+        Assert.assertEquals(expected, this.listener.sources);
+        Assert.assertFalse(this.listener.threads.contains(Thread.currentThread()));
+    }
+
+    @Test
+    public void disposedQueueIgnoresNewEvents() throws InterruptedException
+    {
+        AsynchronousListenerQueue queue = createQueue(Block.class);
+
+        queue.onEvent(this.event, "before", null);
+        queue.dispose();
+        queue.onEvent(this.event, "after", null);
+
+        for (int i = 0; i < 1000 && queue.getDeliveredCount() < 1; ++i) {
+            Thread.sleep(10);
+        }
+
+        Assert.assertEquals(Collections.singletonList("before"), this.listener.sources);
+        Assert.assertEquals(0, queue.getQueueSize());
+    }
+}
@@ -22,6 +22,7 @@
 import java.util.Properties;
 
 import org.xwiki.component.annotation.Role;
+import org.xwiki.velocity.tools.RegexTool;
 
 /**
  * Configuration properties for the Velocity module.
@@ -44,7 +45,17 @@
 
     /**
      * @return the list of configured Velocity Tools (the key is the name under which the tool will be available
-     *         in the Velocity Context and the value is the tool's class name)
+     *         in the Velocity Context and the value is the tool's class name). A tool with a public constructor taking
+     *         a {@link VelocityConfiguration} is created with it, so that it can read its own configuration.
      */
     Properties getTools();
+
+    /**
+     * @return the maximum number of compiled regular expressions kept by the {@link RegexTool}
+     * @since 8.3RC1
+     */
+    default int getRegexPatternCacheSize()
+    {
+        return RegexTool.DEFAULT_PATTERN_CACHE_SIZE;
+    }
 }
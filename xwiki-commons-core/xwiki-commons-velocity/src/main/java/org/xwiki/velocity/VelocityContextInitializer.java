@@ -37,4 +37,20 @@
      * @param context the Velocity context to initialize
      */
     void initialize(VelocityContext context);
+
+    /**
+     * Allow putting objects in the read-only context shared by all the Velocity Contexts (where the Velocity tools
+     * are). It's called only once and then again each time a {@link VelocityContextInitializer} is registered or
+     * unregistered, so the objects must be thread safe and must not depend on the current request.
+     * <p>
+     * Like the Velocity tools, the shared objects are returned by {@link VelocityContext#get(String)} but are not
+     * listed by {@link VelocityContext#getKeys()} or {@link VelocityContext#containsKey(Object)}.
+     *
+     * @param sharedContext the Velocity context shared by all the Velocity Contexts
+     * @since 8.3RC1
+     */
+    default void initializeShared(VelocityContext sharedContext)
+    {
+        // Nothing is shared by default
+    }
 }
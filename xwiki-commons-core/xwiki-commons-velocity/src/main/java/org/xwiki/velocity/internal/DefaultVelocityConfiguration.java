@@ -124,6 +124,12 @@ public Properties getProperties()
         return props;
     }
 
+    @Override
+    public int getRegexPatternCacheSize()
+    {
+        return this.configuration.getProperty(PREFIX + "regexPatternCacheSize", RegexTool.DEFAULT_PATTERN_CACHE_SIZE);
+    }
+
     @Override
     public Properties getTools()
     {
@@ -19,7 +19,10 @@
  */
 package org.xwiki.velocity.internal;
 
+import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Properties;
 
 import javax.inject.Inject;
@@ -29,6 +32,8 @@
 import org.apache.velocity.context.Context;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.component.phase.Initializable;
@@ -72,6 +77,54 @@ public class DefaultVelocityContextFactory implements VelocityContextFactory, In
      */
     private Context toolsContext;
 
+    /**
+     * The resolved initializers and the shared context, null when it needs to be resolved again.
+     */
+    private volatile Initializers initializers;
+
+    /**
+     * Incremented each time the initializers are reset, to not keep initializers resolved before a reset.
+     */
+    private long initializersVersion;
+
+    /**
+     * A {@link VelocityContextInitializer} component.
+     */
+    private static final class InitializerReference
+    {
+        private final String hint;
+
+        /**
+         * The instance of the initializer, null if a new instance must be looked up for each context.
+         */
+        private final VelocityContextInitializer instance;
+
+        InitializerReference(String hint, VelocityContextInitializer instance)
+        {
+            this.hint = hint;
+            this.instance = instance;
+        }
+    }
+
+    /**
+     * The {@link VelocityContextInitializer}s and the read-only context they share between all the created contexts.
+     */
+    private static final class Initializers
+    {
+        private final List<InitializerReference> list;
+
+        /**
+         * The tools and the shared bindings of the initializers.
+         */
+        private final Context sharedContext;
+
+        Initializers(List<InitializerReference> list, Context sharedContext)
+        {
+            this.list = list;
+            this.sharedContext = sharedContext;
+        }
+    }
+
     @Override
     public void initialize() throws InitializationException
     {
@@ -86,7 +139,7 @@ public void initialize() throws InitializationException
                 Object toolInstance;
                 if (value instanceof String) {
                     try {
-                        toolInstance = Class.forName((String) value).newInstance();
+                        toolInstance = createTool(Class.forName((String) value));
                     } catch (Exception e) {
                         throw new InitializationException("Failed to initialize tool [" + value + "]", e);
                     }
@@ -99,19 +152,97 @@ public void initialize() throws InitializationException
         }
     }
 
+    /**
+     * @param toolClass the class of the tool
+     * @return the tool instance, created with the Velocity configuration if the tool has a public constructor taking
+     *         it
+     * @throws ReflectiveOperationException when failing to create the tool
+     */
+    private Object createTool(Class<?> toolClass) throws ReflectiveOperationException
+    {
+        try {
+            return toolClass.getConstructor(VelocityConfiguration.class).newInstance(this.velocityConfiguration);
+        } catch (NoSuchMethodException e) {
+            return toolClass.newInstance();
+        }
+    }
+
+    /**
+     * Forget the resolved {@link VelocityContextInitializer}s (and their shared bindings), called when an initializer
+     * is registered or unregistered.
+     *
+     * @since 8.3RC1
+     */
+    public synchronized void resetInitializers()
+    {
+        this.initializersVersion++;
+        this.initializers = null;
+    }
+
+    private Initializers getInitializers() throws XWikiVelocityException
+    {
+        Initializers currentInitializers = this.initializers;
+
+        if (currentInitializers == null) {
+            long version;
+            synchronized (this) {
+                version = this.initializersVersion;
+            }
+
+            VelocityContext sharedContext = new VelocityContext();
+            for (Object key : this.toolsContext.getKeys()) {
+                sharedContext.put((String) key, this.toolsContext.get((String) key));
+            }
+
+            List<ComponentDescriptor<VelocityContextInitializer>> descriptors =
+                this.componentManager.getComponentDescriptorList((Type) VelocityContextInitializer.class);
+            List<InitializerReference> list = new ArrayList<>(descriptors.size());
+            for (ComponentDescriptor<VelocityContextInitializer> descriptor : descriptors) {
+                VelocityContextInitializer initializer = getInitializer(descriptor.getRoleHint());
+
+                initializer.initializeShared(sharedContext);
+
+                // Only singletons can be reused for all the contexts
+                list.add(new InitializerReference(descriptor.getRoleHint(),
+                    descriptor.getInstantiationStrategy() == ComponentInstantiationStrategy.SINGLETON ? initializer
+                        : null));
+            }
+
+            currentInitializers = new Initializers(list, sharedContext);
+
+            synchronized (this) {
+                if (version == this.initializersVersion) {
+                    this.initializers = currentInitializers;
+                }
+            }
+        }
+
+        return currentInitializers;
+    }
+
+    private VelocityContextInitializer getInitializer(String hint) throws XWikiVelocityException
+    {
+        try {
+            return this.componentManager.getInstance(VelocityContextInitializer.class, hint);
+        } catch (ComponentLookupException e) {
+            throw new XWikiVelocityException("Failed to locate Velocity Context initializer [" + hint + "]", e);
+        }
+    }
+
     @Override
     public VelocityContext createContext() throws XWikiVelocityException
     {
+        Initializers currentInitializers = getInitializers();
+
         // Note: This constructor uses the passed context as an internal read-only context.
-        VelocityContext context = new VelocityContext(this.toolsContext);
+        VelocityContext context = new VelocityContext(currentInitializers.sharedContext);
 
         // Call all components implementing the VelocityContextInitializer's role.
-        try {
-            for (Object interceptor : this.componentManager.getInstanceList(VelocityContextInitializer.class)) {
-                ((VelocityContextInitializer) interceptor).initialize(context);
-            }
-        } catch (ComponentLookupException e) {
-            throw new XWikiVelocityException("Failed to locate some Velocity Context initializers", e);
+        for (InitializerReference reference : currentInitializers.list) {
+            VelocityContextInitializer initializer =
+                reference.instance != null ? reference.instance : getInitializer(reference.hint);
+
+            initializer.initialize(context);
         }
 
         return context;
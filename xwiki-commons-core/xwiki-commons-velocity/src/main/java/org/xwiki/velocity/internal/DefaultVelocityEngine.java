@@ -19,8 +19,8 @@
  */
 package org.xwiki.velocity.internal;
 
+import java.io.IOException;
 import java.io.Reader;
-import java.io.StringReader;
 import java.io.Writer;
 import java.util.Enumeration;
 import java.util.Map;
@@ -42,6 +42,7 @@
 import org.xwiki.component.annotation.InstantiationStrategy;
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.context.ExecutionContext;
 import org.xwiki.velocity.VelocityConfiguration;
 import org.xwiki.velocity.VelocityContextFactory;
 import org.xwiki.velocity.VelocityEngine;
@@ -56,6 +57,17 @@
  * <p>
  * This class implements {@link org.apache.velocity.runtime.log.LogChute} (through {@link AbstractSLF4JLogChute}) to
  * access to {@link RuntimeServices}.
+ * <p>
+ * The parsed templates are kept in a {@link VelocityTemplateCache} so that the same content is not parsed again each
+ * time it's evaluated. Its size can be configured with the {@value #TEMPLATE_CACHE_SIZE_PROPERTY} property (0 to
+ * disable it) and the total size of the cached sources with the {@value #TEMPLATE_CACHE_SOURCE_SIZE_PROPERTY}
+ * property. A parsed template is initialized once, right after being parsed, and is not modified after that.
+ * <p>
+ * Velocity macros handling is not thread safe so the macro namespaces are scoped: each namespace name is prefixed with
+ * an identifier of the current {@link ExecutionContext} (or of the current thread when there isn't any) so that two
+ * unrelated evaluations running at the same time never share the same Velocity namespace. The scope is inherited by
+ * the child contexts and its namespaces are released when no context use it anymore (see
+ * {@link MacroNamespaceScopes}).
  *
  * @version $Id$
  */
@@ -68,6 +80,23 @@ public class DefaultVelocityEngine extends AbstractSLF4JLogChute implements Velo
      */
     private static final String TEMPLATE_SCOPE_NAME = "template";
 
+    /**
+     * The name of the property containing the maximum number of parsed templates to keep.
+     */
+    private static final String TEMPLATE_CACHE_SIZE_PROPERTY = "xwiki.template.cache.size";
+
+    private static final int DEFAULT_TEMPLATE_CACHE_SIZE = 1000;
+
+    /**
+     * The name of the property containing the maximum total size (in characters) of the sources of the parsed templates
+     * to keep.
+     */
+    private static final String TEMPLATE_CACHE_SOURCE_SIZE_PROPERTY = "xwiki.template.cache.sourceSize";
+
+    private static final long DEFAULT_TEMPLATE_CACHE_SOURCE_SIZE = 10L * 1024 * 1024;
+
+    private static final int READ_BUFFER_SIZE = 4096;
+
     /**
      * Used to set it as a Velocity Application Attribute so that Velocity extensions done by XWiki can use it to lookup
      * other components.
@@ -104,9 +133,19 @@ public class DefaultVelocityEngine extends AbstractSLF4JLogChute implements Velo
      */
     private RuntimeServices rsvc;
 
+    /**
+     * The parsed templates.
+     */
+    private VelocityTemplateCache templateCache;
+
     /** Counter for the number of active rendering processes using each namespace. */
     private final Map<String, Integer> namespaceUsageCount = new ConcurrentHashMap<String, Integer>();
 
+    /**
+     * Scope the macro namespaces to the current {@link ExecutionContext}.
+     */
+    private final MacroNamespaceScopes macroNamespaceScopes = new MacroNamespaceScopes(this::releaseMacroNamespace);
+
     @Override
     public void initialize(Properties overridingProperties) throws XWikiVelocityException
     {
@@ -127,9 +166,25 @@ public void initialize(Properties overridingProperties) throws XWikiVelocityExce
             throw new XWikiVelocityException("Cannot start the Velocity engine", e);
         }
 
+        this.macroNamespaceScopes.initialize(this.componentManager);
+
+        this.templateCache = new VelocityTemplateCache(this.rsvc,
+            this.rsvc.getInt(TEMPLATE_CACHE_SIZE_PROPERTY, DEFAULT_TEMPLATE_CACHE_SIZE),
+            this.rsvc.getConfiguration().getLong(TEMPLATE_CACHE_SOURCE_SIZE_PROPERTY,
+                DEFAULT_TEMPLATE_CACHE_SOURCE_SIZE));
+
         this.engine = velocityEngine;
     }
 
+    /**
+     * @return the cache of parsed templates, null if the engine is not initialized yet
+     * @since 8.3RC1
+     */
+    public VelocityTemplateCache getTemplateCache()
+    {
+        return this.templateCache;
+    }
+
     /**
      * @param velocityEngine the Velocity engine against which to initialize Velocity properties
      * @param configurationProperties the Velocity properties coming from XWiki's configuration
@@ -186,20 +241,40 @@ private void restoreTemplateScope(InternalContextAdapterImpl ica, Scope currentT
         }
     }
 
-    private String toThreadSafeNamespace(String namespace)
+    /**
+     * @param namespace the namespace of an execution context which does not exist anymore
+     */
+    private void releaseMacroNamespace(String namespace)
+    {
+        this.namespaceUsageCount.remove(namespace);
+        this.rsvc.dumpVMNamespace(namespace);
+    }
+
+    private static String read(Reader source) throws XWikiVelocityException
     {
-        return StringUtils.isNotEmpty(namespace) ? Thread.currentThread().getId() + ":" + namespace : namespace;
+        StringBuilder builder = new StringBuilder();
+        char[] buffer = new char[READ_BUFFER_SIZE];
+
+        try {
+            for (int count = source.read(buffer); count != -1; count = source.read(buffer)) {
+                builder.append(buffer, 0, count);
+            }
+        } catch (IOException e) {
+            throw new XWikiVelocityException("Failed to read the content to evaluate", e);
+        }
+
+        return builder.toString();
     }
 
     @Override
-    public boolean evaluate(Context context, Writer out, String templateName, String source)
+    public boolean evaluate(Context context, Writer out, String templateName, Reader source)
         throws XWikiVelocityException
     {
-        return evaluate(context, out, templateName, new StringReader(source));
+        return evaluate(context, out, templateName, read(source));
     }
 
     @Override
-    public boolean evaluate(Context context, Writer out, String templateName, Reader source)
+    public boolean evaluate(Context context, Writer out, String templateName, String source)
         throws XWikiVelocityException
     {
         // Ensure that initialization has been called
@@ -210,7 +285,7 @@ public boolean evaluate(Context context, Writer out, String templateName, Reader
 
         // Velocity macros handling is all but thread safe. We try to make sure that the same namespace is not going to
         // be manipulated by several threads at the same time
-        String namespace = toThreadSafeNamespace(templateName);
+        String namespace = this.macroNamespaceScopes.getNamespace(templateName);
 
         // We override the default implementation here. See #init(RuntimeServices)
         // for explanations.
@@ -219,7 +294,7 @@ public boolean evaluate(Context context, Writer out, String templateName, Reader
                 startedUsingMacroNamespaceInternal(namespace);
             }
 
-            return evaluateInternal(context, out, namespace, source);
+            return evaluateInternal(context, out, templateName, namespace, source);
         } catch (StopCommand s) {
             // Someone explicitly stopped the script with something like #stop. No reason to make a scene.
             return true;
@@ -232,93 +307,96 @@ public boolean evaluate(Context context, Writer out, String templateName, Reader
         }
     }
 
-    private boolean evaluateInternal(Context context, Writer out, String namespace, Reader source) throws Exception
+    private boolean evaluateInternal(Context context, Writer out, String templateName, String namespace,
+        String source) throws Exception
     {
-        // The trick is done here: We use the signature that allows
-        // passing a boolean and we pass false, thus preventing Velocity
-        // from cleaning the namespace of its velocimacros even though the
-        // config property velocimacro.permissions.allow.inline.local.scope
-        // is set to true.
-        SimpleNode nodeTree = this.rsvc.parse(source, namespace, false);
-
-        if (nodeTree != null) {
-            InternalContextAdapterImpl ica =
-                new InternalContextAdapterImpl(context != null ? context : this.velocityContextFactory.createContext());
-            ica.pushCurrentTemplateName(namespace);
-            boolean provideTemplateScope = this.rsvc.getBoolean("template.provide.scope.control", true);
-            Object templateScopeMarker = new Object();
-            Scope templateScope = null;
-            if (provideTemplateScope) {
-                Object previous = ica.get(TEMPLATE_SCOPE_NAME);
-                templateScope = new Scope(templateScopeMarker, previous);
-                templateScope.put("templateName", namespace);
-                ica.put(TEMPLATE_SCOPE_NAME, templateScope);
-            }
-            try {
-                nodeTree.init(ica, this.rsvc);
-                nodeTree.render(ica, out);
-            } catch (StopCommand stop) {
-                // Check if we're supposed to stop here or not:
-                // - stop if the template is breaking explicitly on the provided $template
-                // - or stop if this is the topmost evaluation
-                if (!stop.isFor(templateScopeMarker) && ica.getTemplateNameStack().length > 1) {
-                    throw stop;
-                }
-            } finally {
-                ica.popCurrentTemplateName();
-                if (provideTemplateScope) {
-                    restoreTemplateScope(ica, templateScope);
-                }
+        InternalContextAdapterImpl ica =
+            new InternalContextAdapterImpl(context != null ? context : this.velocityContextFactory.createContext());
+        ica.pushCurrentTemplateName(namespace);
+
+        try {
+            SimpleNode nodeTree = this.templateCache.getTree(templateName, namespace, source, ica);
+
+            if (nodeTree != null) {
+                render(nodeTree, ica, out, namespace);
+
+                return true;
             }
-            return true;
+        } finally {
+            ica.popCurrentTemplateName();
         }
 
         return false;
     }
 
+    private void render(SimpleNode nodeTree, InternalContextAdapterImpl ica, Writer out, String namespace)
+        throws Exception
+    {
+        boolean provideTemplateScope = this.rsvc.getBoolean("template.provide.scope.control", true);
+        Object templateScopeMarker = new Object();
+        Scope templateScope = null;
+        if (provideTemplateScope) {
+            Object previous = ica.get(TEMPLATE_SCOPE_NAME);
+            templateScope = new Scope(templateScopeMarker, previous);
+            templateScope.put("templateName", namespace);
+            ica.put(TEMPLATE_SCOPE_NAME, templateScope);
+        }
+        try {
+            nodeTree.render(ica, out);
+        } catch (StopCommand stop) {
+            // Check if we're supposed to stop here or not:
+            // - stop if the template is breaking explicitly on the provided $template
+            // - or stop if this is the topmost evaluation
+            if (!stop.isFor(templateScopeMarker) && ica.getTemplateNameStack().length > 1) {
+                throw stop;
+            }
+        } finally {
+            if (provideTemplateScope) {
+                restoreTemplateScope(ica, templateScope);
+            }
+        }
+    }
+
     @Override
     public void clearMacroNamespace(String templateName)
     {
-        this.rsvc.dumpVMNamespace(toThreadSafeNamespace(templateName));
+        this.rsvc.dumpVMNamespace(this.macroNamespaceScopes.getNamespace(templateName));
     }
 
     @Override
     public void startedUsingMacroNamespace(String namespace)
     {
-        startedUsingMacroNamespaceInternal(toThreadSafeNamespace(namespace));
+        startedUsingMacroNamespaceInternal(this.macroNamespaceScopes.getNamespace(namespace));
     }
 
     private void startedUsingMacroNamespaceInternal(String namespace)
     {
-        Integer count = this.namespaceUsageCount.get(namespace);
-        if (count == null) {
-            count = Integer.valueOf(0);
-        }
-        count = count + 1;
-        this.namespaceUsageCount.put(namespace, count);
+        this.namespaceUsageCount.merge(namespace, 1, Integer::sum);
     }
 
     @Override
     public void stoppedUsingMacroNamespace(String namespace)
     {
-        stoppedUsingMacroNamespaceInternal(toThreadSafeNamespace(namespace));
+        stoppedUsingMacroNamespaceInternal(this.macroNamespaceScopes.getNamespace(namespace));
     }
 
     private void stoppedUsingMacroNamespaceInternal(String namespace)
     {
-        Integer count = this.namespaceUsageCount.get(namespace);
-        if (count == null) {
-            // This shouldn't happen
-            this.logger.warn("Wrong usage count for namespace [{}]", namespace);
-            return;
-        }
-        count = count - 1;
-        if (count <= 0) {
-            this.namespaceUsageCount.remove(namespace);
-            this.rsvc.dumpVMNamespace(namespace);
-        } else {
-            this.namespaceUsageCount.put(namespace, count);
-        }
+        // The namespace is dumped while holding the entry so that it cannot be used again at the same time
+        this.namespaceUsageCount.compute(namespace, (key, count) -> {
+            if (count == null) {
+                // This shouldn't happen
+                this.logger.warn("Wrong usage count for namespace [{}]", key);
+                return null;
+            }
+
+            if (count <= 1) {
+                this.rsvc.dumpVMNamespace(key);
+                return null;
+            }
+
+            return count - 1;
+        });
     }
 
     @Override
@@ -0,0 +1,206 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.velocity.internal;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+
+/**
+ * Scope the Velocity macro namespaces to the {@link ExecutionContext} in which they are used.
+ * <p>
+ * The scope is stored in an inherited property of the execution context so that the child contexts (for example the
+ * ones of asynchronous tasks started by a request) share the macros of their parent. There is no explicit end for an
+ * execution context so the namespaces used in a scope are released once the scope is not referenced anymore by any
+ * context.
+ * <p>
+ * When there isn't any execution context the namespaces are scoped to the current thread.
+ *
+ * @version $Id$
+ * @since 8.3RC1
+ */
+public class MacroNamespaceScopes
+{
+    /**
+     * The name of the {@link ExecutionContext} property containing the scope of the macro namespaces.
+     */
+    private static final String SCOPE_PROPERTY = "velocity.macroNamespaceScope";
+
+    /**
+     * Used to generate unique scope identifiers.
+     */
+    private static final AtomicLong SCOPE_COUNTER = new AtomicLong();
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MacroNamespaceScopes.class);
+
+    /**
+     * The value stored in the execution context.
+     */
+    private static final class Scope
+    {
+        private final String id = "context" + SCOPE_COUNTER.incrementAndGet();
+    }
+
+    /**
+     * Remember the namespaces of a scope after the scope itself is garbage collected.
+     */
+    private static final class ScopeReference extends WeakReference<Scope>
+    {
+        private final String id;
+
+        private final Set<String> namespaces = ConcurrentHashMap.newKeySet();
+
+        ScopeReference(Scope scope, ReferenceQueue<Scope> queue)
+        {
+            super(scope, queue);
+
+            this.id = scope.id;
+        }
+    }
+
+    private final ReferenceQueue<Scope> releasedScopes = new ReferenceQueue<>();
+
+    /**
+     * The scopes which are still referenced by an execution context, indexed by identifier.
+     */
+    private final Map<String, ScopeReference> scopes = new ConcurrentHashMap<>();
+
+    private final Consumer<String> releaser;
+
+    private final ThreadLocal<String> threadScope =
+        ThreadLocal.withInitial(() -> String.valueOf(Thread.currentThread().getId()));
+
+    /**
+     * Used to get the current execution context, null if not available.
+     */
+    private Execution execution;
+
+    /**
+     * @param releaser called with each namespace of a scope which is not used anymore
+     */
+    public MacroNamespaceScopes(Consumer<String> releaser)
+    {
+        this.releaser = releaser;
+    }
+
+    /**
+     * @param componentManager used to lookup the {@link Execution}
+     */
+    public void initialize(ComponentManager componentManager)
+    {
+        if (componentManager.hasComponent(Execution.class)) {
+            try {
+                this.execution = componentManager.getInstance(Execution.class);
+            } catch (ComponentLookupException e) {
+                LOGGER.warn("Failed to lookup the Execution, macro namespaces will be scoped to threads: {}",
+                    e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @param namespace the namespace
+     * @return the namespace scoped to the current {@link ExecutionContext}, or to the current thread if there isn't any
+     */
+    public String getNamespace(String namespace)
+    {
+        // Take the opportunity to cleanup the namespaces of the execution contexts which don't exist anymore
+        releaseUnusedScopes();
+
+        if (StringUtils.isEmpty(namespace)) {
+            return namespace;
+        }
+
+        ExecutionContext context = this.execution != null ? this.execution.getContext() : null;
+
+        if (context != null) {
+            return getNamespace(context, namespace);
+        }
+
+        return this.threadScope.get() + ':' + namespace;
+    }
+
+    /**
+     * @param context the execution context in which the namespace is used
+     * @param namespace the namespace
+     * @return the namespace scoped to the passed execution context
+     */
+    public String getNamespace(ExecutionContext context, String namespace)
+    {
+        Scope scope = (Scope) context.getProperty(SCOPE_PROPERTY);
+
+        if (scope == null) {
+            scope = new Scope();
+            context.newProperty(SCOPE_PROPERTY).inherited().initial(scope).declare();
+        }
+
+        String scopedNamespace = scope.id + ':' + namespace;
+
+        ScopeReference reference = this.scopes.get(scope.id);
+        if (reference == null) {
+            reference = new ScopeReference(scope, this.releasedScopes);
+            ScopeReference previous = this.scopes.putIfAbsent(scope.id, reference);
+            if (previous != null) {
+                reference = previous;
+            }
+        }
+        reference.namespaces.add(scopedNamespace);
+
+        return scopedNamespace;
+    }
+
+    /**
+     * Release the namespaces of the scopes which are not referenced anymore by any execution context.
+     */
+    public void releaseUnusedScopes()
+    {
+        for (Reference<? extends Scope> reference = this.releasedScopes.poll(); reference != null;
+            reference = this.releasedScopes.poll()) {
+            ScopeReference scopeReference = (ScopeReference) reference;
+
+            this.scopes.remove(scopeReference.id);
+
+            for (String namespace : scopeReference.namespaces) {
+                this.releaser.accept(namespace);
+            }
+        }
+    }
+
+    /**
+     * @return the number of scopes which are still referenced by an execution context
+     */
+    public int getSize()
+    {
+        return this.scopes.size();
+    }
+}
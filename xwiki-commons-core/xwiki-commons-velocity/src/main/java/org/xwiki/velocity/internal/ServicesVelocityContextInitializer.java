@@ -49,6 +49,7 @@ public class ServicesVelocityContextInitializer implements VelocityContextInitia
     @Override
     public void initialize(VelocityContext context)
     {
+        // Not put in the shared context so that it's still listed in the keys of the context
         context.put("services", this.scriptServiceManager);
     }
 }
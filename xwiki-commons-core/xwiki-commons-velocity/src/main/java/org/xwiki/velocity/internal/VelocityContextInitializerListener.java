@@ -0,0 +1,76 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.velocity.internal;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.event.ComponentDescriptorAddedEvent;
+import org.xwiki.component.event.ComponentDescriptorRemovedEvent;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+import org.xwiki.velocity.VelocityContextFactory;
+import org.xwiki.velocity.VelocityContextInitializer;
+
+/**
+ * Reset the {@link VelocityContextInitializer}s resolved by {@link DefaultVelocityContextFactory} when one is
+ * registered or unregistered.
+ *
+ * @version $Id$
+ * @since 8.3RC1
+ */
+@Component
+@Named(VelocityContextInitializerListener.NAME)
+@Singleton
+public class VelocityContextInitializerListener extends AbstractEventListener
+{
+    /**
+     * The name of the listener.
+     */
+    public static final String NAME = "velocity.contextinitializers";
+
+    /**
+     * Lazily resolved to not initialize the factory (and its tools) with the listener.
+     */
+    @Inject
+    private Provider<VelocityContextFactory> factoryProvider;
+
+    /**
+     * Setup event listener.
+     */
+    public VelocityContextInitializerListener()
+    {
+        super(NAME, new ComponentDescriptorAddedEvent(VelocityContextInitializer.class),
+            new ComponentDescriptorRemovedEvent(VelocityContextInitializer.class));
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        VelocityContextFactory factory = this.factoryProvider.get();
+
+        if (factory instanceof DefaultVelocityContextFactory) {
+            ((DefaultVelocityContextFactory) factory).resetInitializers();
+        }
+    }
+}
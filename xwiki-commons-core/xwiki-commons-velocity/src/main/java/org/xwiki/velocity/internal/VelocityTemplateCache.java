@@ -0,0 +1,463 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.velocity.internal;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.velocity.context.InternalContextAdapter;
+import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.runtime.directive.Macro;
+import org.apache.velocity.runtime.parser.node.ASTDirective;
+import org.apache.velocity.runtime.parser.node.Node;
+import org.apache.velocity.runtime.parser.node.SimpleNode;
+
+/**
+ * A bounded cache of parsed Velocity templates, indexed by template name and content hash. The cache is limited both in
+ * number of templates and in total size of the parsed sources, the least recently used templates being removed first.
+ * <p>
+ * The result of the Velocity parser does not only depend on the content: the macro definitions and calls it contains
+ * are bound to the namespace of the evaluation which initialized them, and {@code #name} is a macro call or some text
+ * depending on the macros available at that time. So a template containing macro definitions or calls is only reused in
+ * the same namespace (a template without any is reused in any namespace) and each entry remembers the macros it
+ * defines, which have to be registered again if the namespace was cleaned in the meantime, and which of the names it
+ * contains were macros when it was parsed; the entry is only reused if the same names are still macros in the
+ * namespace of the evaluation.
+ * <p>
+ * A parsed template can be rendered by several threads at the same time (the Velocity resource manager does the
+ * same).
+ *
+ * @version $Id$
+ * @since 8.3RC1
+ */
+public class VelocityTemplateCache
+{
+    private static final Pattern DIRECTIVE_PATTERN = Pattern.compile("#\\{?@?([a-zA-Z_][a-zA-Z0-9_\\-]*)");
+
+    private static final String MACRO_DIRECTIVE = "macro";
+
+    /**
+     * The keywords handled by the Velocity grammar itself, which are not registered as directives.
+     */
+    private static final Set<String> KEYWORDS =
+        new HashSet<>(Arrays.asList("set", "if", "elseif", "else", "end"));
+
+    private static final char DASH = '-';
+
+    /**
+     * The key of a parsed template.
+     */
+    private static final class Key
+    {
+        private final String templateName;
+
+        /**
+         * The namespace the template is bound to, null if it can be reused in any namespace.
+         */
+        private final String namespace;
+
+        /**
+         * The hash of the content of the template (the content itself is not kept).
+         */
+        private final byte[] sourceHash;
+
+        private final int hash;
+
+        Key(String templateName, String namespace, byte[] sourceHash)
+        {
+            this.templateName = templateName;
+            this.namespace = namespace;
+            this.sourceHash = sourceHash;
+            this.hash = (Objects.hashCode(templateName) * 31 + Objects.hashCode(namespace)) * 31
+                + Arrays.hashCode(sourceHash);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (obj == this) {
+                return true;
+            }
+
+            if (obj instanceof Key) {
+                Key other = (Key) obj;
+
+                return this.hash == other.hash && Objects.equals(this.templateName, other.templateName)
+                    && Objects.equals(this.namespace, other.namespace)
+                    && Arrays.equals(this.sourceHash, other.sourceHash);
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * A parsed template.
+     */
+    public static final class Entry
+    {
+        private final SimpleNode tree;
+
+        private final String[] macroNames;
+
+        private final boolean[] macroVisibility;
+
+        private final List<ASTDirective> macroDefinitions;
+
+        private final int sourceSize;
+
+        Entry(SimpleNode tree, String[] macroNames, boolean[] macroVisibility, int sourceSize)
+        {
+            this.tree = tree;
+            this.macroNames = macroNames;
+            this.macroVisibility = macroVisibility;
+            this.macroDefinitions = findMacroDefinitions(tree);
+            this.sourceSize = sourceSize;
+        }
+
+        /**
+         * @return the parsed template
+         */
+        public SimpleNode getTree()
+        {
+            return this.tree;
+        }
+
+        /**
+         * @return the macros defined by the template, to register again in the namespace of each evaluation
+         */
+        public List<ASTDirective> getMacroDefinitions()
+        {
+            return this.macroDefinitions;
+        }
+
+        /**
+         * @return true if the template does not contain any macro definition or call, i.e. if it can be reused in any
+         *         namespace
+         */
+        private boolean isNamespaceIndependent()
+        {
+            return this.macroNames.length == 0 && this.macroDefinitions.isEmpty();
+        }
+    }
+
+    /**
+     * The parsed templates, in access order.
+     */
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75F, true);
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong parseTime = new AtomicLong();
+
+    private final RuntimeServices runtimeServices;
+
+    private final int maxSize;
+
+    private final long maxSourceSize;
+
+    /**
+     * The total size of the sources of the parsed templates in the cache.
+     */
+    private long sourceSize;
+
+    /**
+     * @param runtimeServices the Velocity runtime used to check the directives and macros
+     * @param maxSize the maximum number of parsed templates to keep
+     * @param maxSourceSize the maximum total size (in characters) of the sources of the parsed templates to keep
+     */
+    public VelocityTemplateCache(RuntimeServices runtimeServices, int maxSize, long maxSourceSize)
+    {
+        this.runtimeServices = runtimeServices;
+        this.maxSize = maxSize;
+        this.maxSourceSize = maxSourceSize;
+    }
+
+    private static List<ASTDirective> findMacroDefinitions(SimpleNode tree)
+    {
+        List<ASTDirective> definitions = new ArrayList<>();
+
+        addMacroDefinitions(tree, definitions);
+
+        return definitions.isEmpty() ? Collections.<ASTDirective>emptyList() : definitions;
+    }
+
+    private static void addMacroDefinitions(Node node, List<ASTDirective> definitions)
+    {
+        if (node instanceof ASTDirective && MACRO_DIRECTIVE.equals(((ASTDirective) node).getDirectiveName())) {
+            definitions.add((ASTDirective) node);
+        }
+
+        for (int i = 0; i < node.jjtGetNumChildren(); ++i) {
+            addMacroDefinitions(node.jjtGetChild(i), definitions);
+        }
+    }
+
+    /**
+     * @param source the content of the template
+     * @return the names which could be macro calls depending on the macros available when parsing
+     */
+    private String[] getMacroNames(String source)
+    {
+        Set<String> names = new LinkedHashSet<>();
+
+        Matcher matcher = DIRECTIVE_PATTERN.matcher(source);
+        while (matcher.find()) {
+            String name = matcher.group(1);
+            addMacroName(name, names);
+
+            // Also check the names before each dash in case it's not supported in a directive name
+            for (int index = name.indexOf(DASH); index > 0; index = name.indexOf(DASH, index + 1)) {
+                addMacroName(name.substring(0, index), names);
+            }
+        }
+
+        return names.toArray(new String[names.size()]);
+    }
+
+    private void addMacroName(String name, Set<String> names)
+    {
+        if (!KEYWORDS.contains(name) && this.runtimeServices.getDirective(name) == null) {
+            names.add(name);
+        }
+    }
+
+    private boolean[] getMacroVisibility(String[] macroNames, String namespace)
+    {
+        boolean[] visibility = new boolean[macroNames.length];
+
+        for (int i = 0; i < macroNames.length; ++i) {
+            visibility[i] = this.runtimeServices.isVelocimacro(macroNames[i], namespace);
+        }
+
+        return visibility;
+    }
+
+    /**
+     * @param templateName the name of the template
+     * @param namespace the namespace in which the template is going to be evaluated
+     * @param source the content of the template
+     * @return the parsed template or null if it's not in the cache or if it would not be parsed the same way in the
+     *         passed namespace
+     */
+    public Entry get(String templateName, String namespace, String source)
+    {
+        byte[] sourceHash = DigestUtils.sha256(source);
+
+        Entry entry;
+        synchronized (this.entries) {
+            entry = this.entries.get(new Key(templateName, null, sourceHash));
+            if (entry == null) {
+                entry = this.entries.get(new Key(templateName, namespace, sourceHash));
+            }
+        }
+
+        if (entry != null
+            && Arrays.equals(entry.macroVisibility, getMacroVisibility(entry.macroNames, namespace))) {
+            this.hits.incrementAndGet();
+
+            return entry;
+        }
+
+        this.misses.incrementAndGet();
+
+        return null;
+    }
+
+    /**
+     * Get the parsed template from the cache or parse it (and put it in the cache).
+     *
+     * @param templateName the name of the template
+     * @param namespace the namespace in which the template is going to be evaluated
+     * @param source the content of the template
+     * @param context the context used to initialize the template
+     * @return the parsed and initialized template, the same instance can be rendered by several threads at the same
+     *         time
+     * @throws Exception when failing to parse the template
+     */
+    public SimpleNode getTree(String templateName, String namespace, String source, InternalContextAdapter context)
+        throws Exception
+    {
+        Entry entry = get(templateName, namespace, source);
+
+        if (entry != null) {
+            // Register the macros in the namespace like the initialization of the tree would do (the namespace might
+            // have been cleaned since then), without modifying the shared tree
+            for (ASTDirective macro : entry.getMacroDefinitions()) {
+                new Macro().init(this.runtimeServices, context, macro);
+            }
+
+            return entry.getTree();
+        }
+
+        // The trick is done here: We use the signature that allows
+        // passing a boolean and we pass false, thus preventing Velocity
+        // from cleaning the namespace of its velocimacros even though the
+        // config property velocimacro.permissions.allow.inline.local.scope
+        // is set to true.
+        return parse(templateName, namespace, source, () -> {
+            SimpleNode tree = this.runtimeServices.parse(new StringReader(source), namespace, false);
+
+            // Initialize the tree before it's shared, it's only rendered after that
+            if (tree != null) {
+                tree.init(context, this.runtimeServices);
+            }
+
+            return tree;
+        });
+    }
+
+    /**
+     * Parse the template and put it in the cache.
+     *
+     * @param templateName the name of the template
+     * @param namespace the namespace in which the template is going to be evaluated
+     * @param source the content of the template
+     * @param parser parse the template (and register the macros it defines in the namespace)
+     * @return the parsed template
+     * @throws Exception when failing to parse the template
+     */
+    public SimpleNode parse(String templateName, String namespace, String source, Parser parser) throws Exception
+    {
+        String[] macroNames = getMacroNames(source);
+        boolean[] macroVisibility = getMacroVisibility(macroNames, namespace);
+
+        long start = System.nanoTime();
+        SimpleNode tree = parser.parse();
+        this.parseTime.addAndGet(System.nanoTime() - start);
+
+        if (tree != null && this.maxSize > 0 && source.length() <= this.maxSourceSize) {
+            Entry entry = new Entry(tree, macroNames, macroVisibility, source.length());
+
+            put(new Key(templateName, entry.isNamespaceIndependent() ? null : namespace, DigestUtils.sha256(source)),
+                entry);
+        }
+
+        return tree;
+    }
+
+    private void put(Key key, Entry entry)
+    {
+        synchronized (this.entries) {
+            Entry previous = this.entries.put(key, entry);
+            this.sourceSize += entry.sourceSize - (previous != null ? previous.sourceSize : 0);
+
+            // Remove the least recently used entries until the cache is back to its limits
+            Iterator<Entry> iterator = this.entries.values().iterator();
+            while ((this.entries.size() > this.maxSize || this.sourceSize > this.maxSourceSize)
+                && iterator.hasNext()) {
+                this.sourceSize -= iterator.next().sourceSize;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove all the parsed templates.
+     */
+    public void clear()
+    {
+        synchronized (this.entries) {
+            this.entries.clear();
+            this.sourceSize = 0;
+        }
+    }
+
+    /**
+     * @return the number of parsed templates in the cache
+     */
+    public int getSize()
+    {
+        synchronized (this.entries) {
+            return this.entries.size();
+        }
+    }
+
+    /**
+     * @return the total size (in characters) of the sources of the parsed templates in the cache
+     */
+    public long getSourceSize()
+    {
+        synchronized (this.entries) {
+            return this.sourceSize;
+        }
+    }
+
+    /**
+     * @return the number of evaluations which reused a parsed template
+     */
+    public long getHits()
+    {
+        return this.hits.get();
+    }
+
+    /**
+     * @return the number of evaluations which had to parse the template
+     */
+    public long getMisses()
+    {
+        return this.misses.get();
+    }
+
+    /**
+     * @return the total time spent parsing templates, in nanoseconds
+     */
+    public long getParseTime()
+    {
+        return this.parseTime.get();
+    }
+
+    /**
+     * Parse a template.
+     *
+     * @version $Id$
+     */
+    @FunctionalInterface
+    public interface Parser
+    {
+        /**
+         * @return the parsed template
+         * @throws Exception when failing to parse the template
+         */
+        SimpleNode parse() throws Exception;
+    }
+}
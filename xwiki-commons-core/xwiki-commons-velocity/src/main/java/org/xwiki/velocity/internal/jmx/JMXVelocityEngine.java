@@ -22,6 +22,7 @@
 import java.lang.reflect.Field;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.management.openmbean.ArrayType;
 import javax.management.openmbean.CompositeData;
@@ -34,6 +35,8 @@
 import javax.management.openmbean.TabularType;
 
 import org.xwiki.velocity.VelocityEngine;
+import org.xwiki.velocity.internal.DefaultVelocityEngine;
+import org.xwiki.velocity.internal.VelocityTemplateCache;
 
 /**
  * Uses non-stable (ie might need to be modified when we upgrade the Velocity JAR) introspection to access private
@@ -100,6 +103,57 @@ public TabularData getTemplates()
         return data;
     }
 
+    /**
+     * @return the cache of parsed templates of the engine, null if it does not have any
+     */
+    private VelocityTemplateCache getTemplateCache()
+    {
+        return this.engine instanceof DefaultVelocityEngine ? ((DefaultVelocityEngine) this.engine).getTemplateCache()
+            : null;
+    }
+
+    @Override
+    public int getParsedTemplateCount()
+    {
+        VelocityTemplateCache cache = getTemplateCache();
+
+        return cache != null ? cache.getSize() : 0;
+    }
+
+    @Override
+    public long getParsedTemplateHits()
+    {
+        VelocityTemplateCache cache = getTemplateCache();
+
+        return cache != null ? cache.getHits() : 0;
+    }
+
+    @Override
+    public long getParsedTemplateMisses()
+    {
+        VelocityTemplateCache cache = getTemplateCache();
+
+        return cache != null ? cache.getMisses() : 0;
+    }
+
+    @Override
+    public long getParseTime()
+    {
+        VelocityTemplateCache cache = getTemplateCache();
+
+        return cache != null ? TimeUnit.NANOSECONDS.toMillis(cache.getParseTime()) : 0;
+    }
+
+    @Override
+    public void clearParsedTemplates()
+    {
+        VelocityTemplateCache cache = getTemplateCache();
+
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
     /**
      * @return the data using standard Java classes, {@link #getTemplates()} wraps it in generic Open types to make the
      *         returned data portable and accessible remotely from a JMX management console
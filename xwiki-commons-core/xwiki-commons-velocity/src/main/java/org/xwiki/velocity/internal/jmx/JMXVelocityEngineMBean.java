@@ -25,6 +25,7 @@
  * MBean API related to Velocity Engines. Supports the following features:
  * <ul>
  *   <li>Retrieve list of template namespaces along with the name of macros registered in each template namespace</li>
+ *   <li>Retrieve statistics about the cache of parsed templates</li>
  * </ul>
  *
  * @version $Id$
@@ -36,4 +37,35 @@
      * @return the list of template namespaces along with the name of macros registered in each template namespace
      */
     TabularData getTemplates();
+
+    /**
+     * @return the number of parsed templates in the cache
+     * @since 8.3RC1
+     */
+    int getParsedTemplateCount();
+
+    /**
+     * @return the number of evaluations which reused a parsed template
+     * @since 8.3RC1
+     */
+    long getParsedTemplateHits();
+
+    /**
+     * @return the number of evaluations which had to parse the template
+     * @since 8.3RC1
+     */
+    long getParsedTemplateMisses();
+
+    /**
+     * @return the total time spent parsing templates, in milliseconds
+     * @since 8.3RC1
+     */
+    long getParseTime();
+
+    /**
+     * Remove all the parsed templates from the cache.
+     *
+     * @since 8.3RC1
+     */
+    void clearParsedTemplates();
 }
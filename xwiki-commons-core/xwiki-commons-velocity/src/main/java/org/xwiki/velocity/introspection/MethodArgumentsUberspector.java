@@ -21,7 +21,11 @@
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.velocity.runtime.RuntimeServices;
 import org.apache.velocity.util.RuntimeServicesAware;
@@ -44,6 +48,10 @@
  * obj.someMethod(SomeEnum.VALUE)
  * // if obj has someMethod(SomeEnum) and not someMethod(String)}
  * </pre>
+ * <p>
+ * The candidate methods (and the types to which each argument has to be converted) are resolved once for each class,
+ * method name and number of arguments, including when there isn't any. They are associated to the class so that they
+ * are dropped with it when its class loader is garbage collected.
  *
  * @since 4.1M2
  * @version $Id$
@@ -51,11 +59,75 @@
  */
 public class MethodArgumentsUberspector extends AbstractChainableUberspector implements RuntimeServicesAware
 {
+    /**
+     * The name of the field containing the {@link Method} of the {@link VelMethod} implementations.
+     */
+    private static final String METHOD_FIELD = "method";
+
+    /**
+     * The field containing the {@link Method} of each {@link VelMethod} implementation.
+     */
+    private static final ClassValue<Field> METHOD_FIELDS = new ClassValue<Field>()
+    {
+        @Override
+        protected Field computeValue(Class<?> type)
+        {
+            try {
+                Field methodField = type.getDeclaredField(METHOD_FIELD);
+                methodField.setAccessible(true);
+
+                return methodField;
+            } catch (NoSuchFieldException e) {
+                return null;
+            }
+        }
+    };
+
+    private static final Candidate[] NO_CANDIDATE = new Candidate[0];
+
+    /**
+     * The candidate methods for each class, indexed by method name and number of arguments.
+     */
+    private final ClassValue<Map<String, Candidate[]>> candidates = new ClassValue<Map<String, Candidate[]>>()
+    {
+        @Override
+        protected Map<String, Candidate[]> computeValue(Class<?> type)
+        {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
     /**
      * The component used to convert method arguments to formal parameter types.
      */
     private ConverterManager converterManager;
 
+    /**
+     * A method which could be called with converted arguments.
+     */
+    private static final class Candidate
+    {
+        /**
+         * The type expected for each argument.
+         */
+        private final Class<?>[] expectedClasses;
+
+        Candidate(Method method, int argumentCount)
+        {
+            Class<?>[] parameterTypes = method.getParameterTypes();
+
+            // If the method is a varargs then extract the type from the vararg array
+            this.expectedClasses = new Class<?>[argumentCount];
+            for (int i = 0; i < argumentCount; i++) {
+                if (method.isVarArgs() && i >= parameterTypes.length - 1) {
+                    this.expectedClasses[i] = parameterTypes[parameterTypes.length - 1].getComponentType();
+                } else {
+                    this.expectedClasses[i] = parameterTypes[i];
+                }
+            }
+        }
+    }
+
     @Override
     public void setRuntimeServices(RuntimeServices runtimeServices)
     {
@@ -120,14 +192,39 @@ public VelMethod getMethod(Object obj, String methodName, Object[] args, Info i)
      */
     private Method getPrivateMethod(VelMethod velMethod) throws Exception
     {
-        Field methodField = velMethod.getClass().getDeclaredField("method");
-        boolean isAccessible = methodField.isAccessible();
-        try {
-            methodField.setAccessible(true);
-            return (Method) methodField.get(velMethod);
-        } finally {
-            methodField.setAccessible(isAccessible);
+        Field methodField = METHOD_FIELDS.get(velMethod.getClass());
+        if (methodField == null) {
+            throw new NoSuchFieldException(METHOD_FIELD);
+        }
+
+        return (Method) methodField.get(velMethod);
+    }
+
+    /**
+     * @param type the class of the object the method is invoked on
+     * @param methodName the method we're looking for
+     * @param argumentCount the number of arguments
+     * @return the methods with the specified name and the same number of formal parameters as the number of arguments
+     */
+    private Candidate[] getCandidates(Class<?> type, String methodName, int argumentCount)
+    {
+        Map<String, Candidate[]> classCandidates = this.candidates.get(type);
+
+        String key = methodName + '/' + argumentCount;
+        Candidate[] methodCandidates = classCandidates.get(key);
+        if (methodCandidates == null) {
+            List<Candidate> list = new ArrayList<>();
+            for (Method method : type.getMethods()) {
+                if (method.getName().equalsIgnoreCase(methodName)
+                    && (method.getParameterTypes().length == argumentCount || method.isVarArgs())) {
+                    list.add(new Candidate(method, argumentCount));
+                }
+            }
+            methodCandidates = list.isEmpty() ? NO_CANDIDATE : list.toArray(new Candidate[list.size()]);
+            classCandidates.put(key, methodCandidates);
         }
+
+        return methodCandidates;
     }
 
     /**
@@ -142,15 +239,11 @@ private Method getPrivateMethod(VelMethod velMethod) throws Exception
      */
     private Object[] convertArguments(Object obj, String methodName, Object[] args)
     {
-        for (Method method : obj.getClass().getMethods()) {
-            if (method.getName().equalsIgnoreCase(methodName)
-//                && method.getParameterTypes().length == args.length) {
-                && (method.getParameterTypes().length == args.length || method.isVarArgs())) {
-                try {
-                    return convertArguments(args, method.getParameterTypes(), method.isVarArgs());
-                } catch (Exception e) {
-                    // Ignore and try the next method.
-                }
+        for (Candidate candidate : getCandidates(obj.getClass(), methodName, args.length)) {
+            try {
+                return convertArguments(args, candidate.expectedClasses);
+            } catch (Exception e) {
+                // Ignore and try the next method.
             }
         }
         return null;
@@ -162,22 +255,15 @@ private Object[] convertArguments(Object obj, String methodName, Object[] args)
      * Throws a runtime exception if the conversion fails.
      *
      * @param arguments the method actual arguments
-     * @param parameterTypes the method formal parameter types
-     * @param isVarArgs true if the method contains a varargs (ie the last parameter is a varargs)
+     * @param expectedClasses the type expected for each argument
      * @return a new array of arguments where some values have been converted to match the formal method parameter types
      */
-    private Object[] convertArguments(Object[] arguments, Class<?>[] parameterTypes, boolean isVarArgs)
+    private Object[] convertArguments(Object[] arguments, Class<?>[] expectedClasses)
     {
         Object[] convertedArguments = Arrays.copyOf(arguments, arguments.length);
         for (int i = 0; i < arguments.length; i++) {
             // Try to convert the argument if it's not null and if it doesn't match the parameter type.
-            // If the method is a varargs then extract the type from the vararg array
-            Class<?> expectedClass;
-            if (isVarArgs && i >= parameterTypes.length - 1) {
-                expectedClass = parameterTypes[parameterTypes.length - 1].getComponentType();
-            } else {
-                expectedClass = parameterTypes[i];
-            }
+            Class<?> expectedClass = expectedClasses[i];
             if (arguments[i] != null && !expectedClass.isInstance(arguments[i])) {
                 convertedArguments[i] = this.converterManager.convert(expectedClass, arguments[i]);
             }
@@ -20,19 +20,111 @@
 package org.xwiki.velocity.tools;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
+import org.apache.commons.collections4.map.LRUMap;
+import org.xwiki.velocity.VelocityConfiguration;
+
 /**
  * Velocity Tool offering various Regex-based APIs to make it easy to manipulate regular expressions from Velocity.
+ * <p>
+ * The compiled regular expressions are kept in a bounded cache so that calling the tool in a loop does not compile
+ * the same regular expression again and again.
  *
  * @version $Id$
  * @since 2.0RC2
  */
 public class RegexTool
 {
+    /**
+     * The default maximum number of compiled regular expressions to keep.
+     *
+     * @since 8.3RC1
+     */
+    public static final int DEFAULT_PATTERN_CACHE_SIZE = 1000;
+
+    /**
+     * The key of a compiled regular expression.
+     */
+    private static final class PatternKey
+    {
+        private final String regex;
+
+        private final int flags;
+
+        PatternKey(String regex, int flags)
+        {
+            this.regex = regex;
+            this.flags = flags;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return this.regex.hashCode() * 31 + this.flags;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (obj instanceof PatternKey) {
+                PatternKey other = (PatternKey) obj;
+
+                return this.flags == other.flags && this.regex.equals(other.regex);
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * Iterate over the matches of a regular expression, finding them only when asked.
+     */
+    private final class MatchIterator implements Iterator<List<RegexResult>>
+    {
+        private final Matcher matcher;
+
+        private Boolean found;
+
+        MatchIterator(Matcher matcher)
+        {
+            this.matcher = matcher;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            if (this.found == null) {
+                this.found = this.matcher.find();
+            }
+
+            return this.found;
+        }
+
+        @Override
+        public List<RegexResult> next()
+        {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            this.found = null;
+
+            return toResults(this.matcher);
+        }
+    }
+
+    /**
+     * The least recently used compiled regular expressions, null if they are not cached.
+     */
+    private final Map<PatternKey, Pattern> patterns;
+
     /**
      * Result of a Regex search.
      */
@@ -90,6 +182,75 @@ public int getEnd()
         }
     }
 
+    /**
+     * Create a tool keeping at most {@link #DEFAULT_PATTERN_CACHE_SIZE} compiled regular expressions.
+     */
+    public RegexTool()
+    {
+        this(DEFAULT_PATTERN_CACHE_SIZE);
+    }
+
+    /**
+     * @param patternCacheSize the maximum number of compiled regular expressions to keep, 0 to not keep any
+     * @since 8.3RC1
+     */
+    public RegexTool(int patternCacheSize)
+    {
+        this.patterns = patternCacheSize > 0 ? new LRUMap<PatternKey, Pattern>(patternCacheSize) : null;
+    }
+
+    /**
+     * Create a tool configured with the passed Velocity configuration.
+     *
+     * @param configuration the Velocity configuration
+     * @see VelocityConfiguration#getRegexPatternCacheSize()
+     * @since 8.3RC1
+     */
+    public RegexTool(VelocityConfiguration configuration)
+    {
+        this(configuration.getRegexPatternCacheSize());
+    }
+
+    /**
+     * @param regex the regular expression
+     * @param flags the match flags
+     * @return the compiled regular expression
+     * @throws PatternSyntaxException if the regular expression is invalid
+     */
+    private Pattern getPattern(String regex, int flags)
+    {
+        if (this.patterns == null) {
+            return Pattern.compile(regex, flags);
+        }
+
+        PatternKey key = new PatternKey(regex, flags);
+
+        Pattern pattern;
+        synchronized (this.patterns) {
+            pattern = this.patterns.get(key);
+        }
+
+        if (pattern == null) {
+            // Compile outside of the lock, the worst case being to compile the same regular expression twice
+            pattern = Pattern.compile(regex, flags);
+
+            synchronized (this.patterns) {
+                this.patterns.put(key, pattern);
+            }
+        }
+
+        return pattern;
+    }
+
+    private List<RegexResult> toResults(Matcher matcher)
+    {
+        List<RegexResult> match = new ArrayList<>(matcher.groupCount() + 1);
+        for (int i = 0; i < matcher.groupCount() + 1; i++) {
+            match.add(new RegexResult(matcher.start(i), matcher.end(i), matcher.group(i)));
+        }
+        return match;
+    }
+
     /**
      * @param content the content to parse
      * @param regex the regex to look for in the passed content
@@ -99,12 +260,12 @@ public int getEnd()
      */
     public List<RegexResult> find(String content, String regex)
     {
-        List<RegexResult> result = new ArrayList<RegexResult>();
-        Matcher matcher = Pattern.compile(regex, Pattern.MULTILINE).matcher(content);
+        List<RegexResult> result;
+        Matcher matcher = getPattern(regex, Pattern.MULTILINE).matcher(content);
         if (matcher.find()) {
-            for (int i = 0; i < matcher.groupCount() + 1; i++) {
-                result.add(new RegexResult(matcher.start(i), matcher.end(i), matcher.group(i)));
-            }
+            result = toResults(matcher);
+        } else {
+            result = new ArrayList<RegexResult>();
         }
         return result;
     }
@@ -119,17 +280,34 @@ public List<RegexResult> find(String content, String regex)
     public List<List<RegexResult>> findAll(String content, String regex)
     {
         List<List<RegexResult>> result = new ArrayList<>();
-        Matcher matcher = Pattern.compile(regex, Pattern.MULTILINE).matcher(content);
-        while (matcher.find()) {
-            List<RegexResult> match = new ArrayList<>();
-            for (int i = 0; i < matcher.groupCount() + 1; i++) {
-                match.add(new RegexResult(matcher.start(i), matcher.end(i), matcher.group(i)));
-            }
+        for (List<RegexResult> match : findAllIterable(content, regex)) {
             result.add(match);
         }
         return result;
     }
 
+    /**
+     * Same as {@link #findAll(String, String)} but the matches are searched while iterating instead of all at once,
+     * which is better when iterating over a lot of matches or when not all the matches are needed. E.g.:
+     *
+     * <pre>
+     * {@code #foreach ($match in $regextool.findAllIterable($content, $regex))
+     *   ## $match.get(0) is the whole match, $match.get(1) the first capturing group, etc.
+     * #end}
+     * </pre>
+     *
+     * @param content the content to parse
+     * @param regex the regular expression to look for in the passed content
+     * @return the matches, each match being the {@link RegexResult} objects of all the capturing groups
+     * @since 8.3RC1
+     */
+    public Iterable<List<RegexResult>> findAllIterable(final String content, String regex)
+    {
+        final Pattern pattern = getPattern(regex, Pattern.MULTILINE);
+
+        return () -> new MatchIterator(pattern.matcher(content));
+    }
+
     /**
      * Compiles a regular expression into a java {@code Pattern} object.
      *
@@ -141,7 +319,7 @@ public List<List<RegexResult>> findAll(String content, String regex)
     public Pattern compile(String regex)
     {
         try {
-            return Pattern.compile(regex);
+            return getPattern(regex, 0);
         } catch (PatternSyntaxException ex) {
             return null;
         }
@@ -19,7 +19,9 @@
  */
 package org.xwiki.velocity.internal;
 
+import java.lang.reflect.Type;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Properties;
 
 import org.apache.velocity.VelocityContext;
@@ -28,6 +30,11 @@
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.component.descriptor.DefaultComponentDescriptor;
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.test.annotation.AfterComponent;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
@@ -36,6 +43,7 @@
 import org.xwiki.velocity.VelocityContextInitializer;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -71,6 +79,21 @@ public void overrideComponents() throws Exception
         this.mocker.registerMockComponent(ComponentManager.class);
     }
 
+    private void registerInitializer(VelocityContextInitializer initializer,
+        ComponentInstantiationStrategy strategy) throws Exception
+    {
+        DefaultComponentDescriptor<VelocityContextInitializer> descriptor = new DefaultComponentDescriptor<>();
+        descriptor.setRoleType(VelocityContextInitializer.class);
+        descriptor.setRoleHint("test");
+        descriptor.setInstantiationStrategy(strategy);
+
+        ComponentManager mockComponentManager = this.mocker.getInstance(ComponentManager.class);
+        when(mockComponentManager.<VelocityContextInitializer>getComponentDescriptorList(
+            (Type) VelocityContextInitializer.class)).thenReturn(
+                Arrays.<ComponentDescriptor<VelocityContextInitializer>>asList(descriptor));
+        when(mockComponentManager.getInstance(VelocityContextInitializer.class, "test")).thenReturn(initializer);
+    }
+
     /**
      * Verify that we get different contexts when we call the createContext method but that they contain the same
      * references to the Velocity tools. Also tests that objects we put in one context are not shared with other
@@ -81,20 +104,82 @@ public void createDifferentContext() throws Exception
     {
         // We also verify that the VelocityContextInitializers are called.
         VelocityContextInitializer mockInitializer = mock(VelocityContextInitializer.class);
-        ComponentManager mockComponentManager = this.mocker.getInstance(ComponentManager.class);
-        when(mockComponentManager.getInstanceList(VelocityContextInitializer.class)).thenReturn(
-            Arrays.<Object>asList(mockInitializer));
+        registerInitializer(mockInitializer, ComponentInstantiationStrategy.SINGLETON);
 
         VelocityContext context1 = this.factory.createContext();
         context1.put("param", "value");
         VelocityContext context2 = this.factory.createContext();
 
         verify(mockInitializer, times(2)).initialize(any(VelocityContext.class));
-        verify(mockComponentManager, times(2)).getInstanceList(VelocityContextInitializer.class);
+        // The initializers are resolved only once
+        ComponentManager mockComponentManager = this.mocker.getInstance(ComponentManager.class);
+        verify(mockComponentManager, times(1)).getInstance(VelocityContextInitializer.class, "test");
 
         Assert.assertNotSame(context1, context2);
         Assert.assertNotNull(context1.get("listtool"));
         Assert.assertSame(context2.get("listtool"), context1.get("listtool"));
         Assert.assertNull(context2.get("param"));
     }
+
+    @Test
+    public void createContextWithSharedBindings() throws Exception
+    {
+        VelocityContextInitializer mockInitializer = mock(VelocityContextInitializer.class);
+        final Object sharedObject = new Object();
+        doAnswer(new Answer<Void>()
+        {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable
+            {
+                ((VelocityContext) invocation.getArguments()[0]).put("shared", sharedObject);
+
+                return null;
+            }
+        }).when(mockInitializer).initializeShared(any(VelocityContext.class));
+        registerInitializer(mockInitializer, ComponentInstantiationStrategy.SINGLETON);
+
+        VelocityContext context1 = this.factory.createContext();
+        context1.put("shared", "overwritten");
+        VelocityContext context2 = this.factory.createContext();
+
+        verify(mockInitializer, times(1)).initializeShared(any(VelocityContext.class));
+        Assert.assertEquals("overwritten", context1.get("shared"));
+        Assert.assertSame(sharedObject, context2.get("shared"));
+        Assert.assertNotNull(context2.get("listtool"));
+    }
+
+    @Test
+    public void createContextAfterResetInitializers() throws Exception
+    {
+        VelocityContextInitializer mockInitializer = mock(VelocityContextInitializer.class);
+        ComponentManager mockComponentManager = this.mocker.getInstance(ComponentManager.class);
+        when(mockComponentManager.<VelocityContextInitializer>getComponentDescriptorList(
+            (Type) VelocityContextInitializer.class)).thenReturn(
+                Collections.<ComponentDescriptor<VelocityContextInitializer>>emptyList());
+
+        this.factory.createContext();
+
+        registerInitializer(mockInitializer, ComponentInstantiationStrategy.SINGLETON);
+        ((DefaultVelocityContextFactory) this.factory).resetInitializers();
+
+        this.factory.createContext();
+
+        verify(mockComponentManager, times(2)).getComponentDescriptorList((Type) VelocityContextInitializer.class);
+        verify(mockInitializer).initialize(any(VelocityContext.class));
+    }
+
+    @Test
+    public void createContextWithPerLookupInitializer() throws Exception
+    {
+        VelocityContextInitializer mockInitializer = mock(VelocityContextInitializer.class);
+        registerInitializer(mockInitializer, ComponentInstantiationStrategy.PER_LOOKUP);
+
+        this.factory.createContext();
+        this.factory.createContext();
+
+        // A new instance is looked up for each context (and once to initialize the shared context)
+        ComponentManager mockComponentManager = this.mocker.getInstance(ComponentManager.class);
+        verify(mockComponentManager, times(3)).getInstance(VelocityContextInitializer.class, "test");
+        verify(mockInitializer, times(2)).initialize(any(VelocityContext.class));
+    }
 }
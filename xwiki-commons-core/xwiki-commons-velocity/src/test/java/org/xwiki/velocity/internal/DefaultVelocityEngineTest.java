@@ -38,6 +38,8 @@
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
 import org.xwiki.test.mockito.MockitoComponentMockingRule;
 import org.xwiki.velocity.VelocityConfiguration;
 import org.xwiki.velocity.XWikiVelocityException;
@@ -262,4 +264,206 @@ public void testEvaluateWithStopCommand() throws Exception
 
         assertEvaluate("hello world", "hello world#stop", "mytemplate");
     }
+
+    @Test
+    public void testEvaluateReusesParsedTemplate() throws Exception
+    {
+        this.engine.initialize(new Properties());
+
+        assertEvaluate("hello World", "#set($foo='hello')$foo World", "mytemplate");
+        assertEvaluate("hello World", "#set($foo='hello')$foo World", "mytemplate");
+
+        Assert.assertEquals(1, this.engine.getTemplateCache().getSize());
+        Assert.assertEquals(1, this.engine.getTemplateCache().getHits());
+        Assert.assertEquals(1, this.engine.getTemplateCache().getMisses());
+
+        // Same content but different template
+        assertEvaluate("hello World", "#set($foo='hello')$foo World", "othertemplate");
+
+        Assert.assertEquals(2, this.engine.getTemplateCache().getSize());
+    }
+
+    @Test
+    public void testEvaluateReusedParsedTemplateRegistersMacros() throws Exception
+    {
+        this.engine.initialize(new Properties());
+
+        assertEvaluate("test", "#macro(mymacro)test#end#mymacro()", "namespace");
+        assertEvaluate("#mymacro", "#mymacro", "namespace");
+        assertEvaluate("test", "#macro(mymacro)test#end#mymacro()", "namespace");
+
+        Assert.assertEquals(1, this.engine.getTemplateCache().getHits());
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<Void> future = pool.submit(new Callable<Void>()
+        {
+            @Override
+            public Void call() throws Exception
+            {
+                assertEvaluate("test", "#macro(mymacro)test#end#mymacro()", "namespace");
+
+                return null;
+            }
+        });
+        future.get();
+        pool.shutdown();
+
+        // Not reused in the namespace of another thread
+        Assert.assertEquals(1, this.engine.getTemplateCache().getHits());
+    }
+
+    @Test
+    public void testEvaluateReusedParsedTemplateInSeveralNamespaces() throws Exception
+    {
+        Execution execution = this.mocker.registerMockComponent(Execution.class);
+        ExecutionContext context1 = new ExecutionContext();
+        ExecutionContext context2 = new ExecutionContext();
+
+        this.engine.initialize(new Properties());
+
+        when(execution.getContext()).thenReturn(context1);
+        this.engine.startedUsingMacroNamespace("namespace");
+        this.engine.evaluate(new org.apache.velocity.VelocityContext(), new StringWriter(), "namespace",
+            "#macro(mymacro)one#end");
+        assertEvaluate("one", "#mymacro()", "namespace");
+        assertEvaluate("hello", "#set($foo='hello')$foo", "namespace");
+
+        when(execution.getContext()).thenReturn(context2);
+        this.engine.startedUsingMacroNamespace("namespace");
+        this.engine.evaluate(new org.apache.velocity.VelocityContext(), new StringWriter(), "namespace",
+            "#macro(mymacro)two#end");
+        assertEvaluate("two", "#mymacro()", "namespace");
+        assertEvaluate("hello", "#set($foo='hello')$foo", "namespace");
+
+        // Only the template without macros is shared between the namespaces
+        Assert.assertEquals(1, this.engine.getTemplateCache().getHits());
+
+        when(execution.getContext()).thenReturn(context1);
+        assertEvaluate("one", "#mymacro()", "namespace");
+        when(execution.getContext()).thenReturn(context2);
+        assertEvaluate("two", "#mymacro()", "namespace");
+
+        Assert.assertEquals(3, this.engine.getTemplateCache().getHits());
+
+        this.engine.stoppedUsingMacroNamespace("namespace");
+        when(execution.getContext()).thenReturn(context1);
+        this.engine.stoppedUsingMacroNamespace("namespace");
+    }
+
+    @Test
+    public void testEvaluateParsesAgainWhenMacrosChanged() throws Exception
+    {
+        this.engine.initialize(new Properties());
+
+        this.engine.startedUsingMacroNamespace("namespace");
+
+        try {
+            assertEvaluate("#mymacro", "#mymacro", "namespace");
+
+            this.engine.evaluate(new org.apache.velocity.VelocityContext(), new StringWriter(), "namespace",
+                "#macro(mymacro)test#end");
+
+            assertEvaluate("test", "#mymacro", "namespace");
+        } finally {
+            this.engine.stoppedUsingMacroNamespace("namespace");
+        }
+
+        assertEvaluate("#mymacro", "#mymacro", "namespace");
+    }
+
+    @Test
+    public void testEvaluateWithoutTemplateCache() throws Exception
+    {
+        Properties properties = new Properties();
+        properties.put("xwiki.template.cache.size", "0");
+        this.engine.initialize(properties);
+
+        assertEvaluate("hello World", "#set($foo='hello')$foo World", "mytemplate");
+        assertEvaluate("hello World", "#set($foo='hello')$foo World", "mytemplate");
+
+        Assert.assertEquals(0, this.engine.getTemplateCache().getSize());
+        Assert.assertEquals(0, this.engine.getTemplateCache().getHits());
+    }
+
+    @Test
+    public void testTemplateCacheLimitedBySourceSize() throws Exception
+    {
+        String source = "#set($foo='hello')$foo World";
+
+        Properties properties = new Properties();
+        properties.put("xwiki.template.cache.sourceSize", String.valueOf(source.length() + 10));
+        this.engine.initialize(properties);
+
+        assertEvaluate("hello World", source, "template1");
+        assertEvaluate("hello World", source, "template2");
+
+        // The first template was removed to make room for the second one
+        Assert.assertEquals(1, this.engine.getTemplateCache().getSize());
+        Assert.assertEquals(source.length(), this.engine.getTemplateCache().getSourceSize());
+
+        assertEvaluate("hello World", source, "template2");
+
+        Assert.assertEquals(1, this.engine.getTemplateCache().getHits());
+    }
+
+    @Test
+    public void testMacroNamespacesScopedToExecutionContext() throws Exception
+    {
+        Execution execution = this.mocker.registerMockComponent(Execution.class);
+        ExecutionContext context1 = new ExecutionContext();
+        ExecutionContext context2 = new ExecutionContext();
+
+        this.engine.initialize(new Properties());
+
+        when(execution.getContext()).thenReturn(context1);
+        this.engine.startedUsingMacroNamespace("namespace");
+        this.engine.evaluate(new org.apache.velocity.VelocityContext(), new StringWriter(), "namespace",
+            "#macro(mymacro)test#end");
+        assertEvaluate("test", "#mymacro", "namespace");
+
+        // The macro is not visible from another execution context in the same thread
+        when(execution.getContext()).thenReturn(context2);
+        assertEvaluate("#mymacro", "#mymacro", "namespace");
+
+        // But it is from another thread using the same execution context (never at the same time)
+        when(execution.getContext()).thenReturn(context1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<Void> future = pool.submit(new Callable<Void>()
+        {
+            @Override
+            public Void call() throws Exception
+            {
+                assertEvaluate("test", "#mymacro", "namespace");
+
+                return null;
+            }
+        });
+        future.get();
+        pool.shutdown();
+
+        this.engine.stoppedUsingMacroNamespace("namespace");
+        assertEvaluate("#mymacro", "#mymacro", "namespace");
+    }
+
+    @Test
+    public void testMacroNamespaceUsageCount() throws Exception
+    {
+        this.engine.initialize(new Properties());
+
+        this.engine.startedUsingMacroNamespace("namespace");
+        this.engine.startedUsingMacroNamespace("namespace");
+        this.engine.evaluate(new org.apache.velocity.VelocityContext(), new StringWriter(), "namespace",
+            "#macro(mymacro)test#end");
+
+        this.engine.stoppedUsingMacroNamespace("namespace");
+        assertEvaluate("test", "#mymacro", "namespace");
+
+        this.engine.stoppedUsingMacroNamespace("namespace");
+        assertEvaluate("#mymacro", "#mymacro", "namespace");
+
+        // Unbalanced call
+        this.engine.stoppedUsingMacroNamespace("namespace");
+        verify(this.mocker.getMockedLogger()).warn("Wrong usage count for namespace [{}]",
+            Thread.currentThread().getId() + ":namespace");
+    }
 }
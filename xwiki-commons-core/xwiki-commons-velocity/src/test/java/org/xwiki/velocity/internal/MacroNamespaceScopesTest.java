@@ -0,0 +1,87 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.velocity.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xwiki.context.ExecutionContext;
+
+/**
+ * Unit tests for {@link MacroNamespaceScopes}.
+ *
+ * @version $Id$
+ */
+public class MacroNamespaceScopesTest
+{
+    private final List<String> released = Collections.synchronizedList(new ArrayList<String>());
+
+    private final MacroNamespaceScopes scopes = new MacroNamespaceScopes(this.released::add);
+
+    @Test
+    public void getNamespace()
+    {
+        ExecutionContext context = new ExecutionContext();
+
+        String namespace = this.scopes.getNamespace(context, "namespace");
+
+        Assert.assertTrue(namespace.endsWith(":namespace"));
+        Assert.assertEquals(namespace, this.scopes.getNamespace(context, "namespace"));
+
+        // Child contexts share the scope of their parent
+        ExecutionContext child = new ExecutionContext();
+        child.inheritFrom(context);
+        Assert.assertEquals(namespace, this.scopes.getNamespace(child, "namespace"));
+
+        // Other contexts have their own scope
+        Assert.assertNotEquals(namespace, this.scopes.getNamespace(new ExecutionContext(), "namespace"));
+    }
+
+    @Test
+    public void releaseUnusedScopes() throws InterruptedException
+    {
+        ExecutionContext context = new ExecutionContext();
+
+        String namespace1 = this.scopes.getNamespace(context, "namespace1");
+        String namespace2 = this.scopes.getNamespace(context, "namespace2");
+
+        this.scopes.releaseUnusedScopes();
+
+        Assert.assertEquals(1, this.scopes.getSize());
+        Assert.assertTrue(this.released.isEmpty());
+
+        context = null;
+
+        for (int i = 0; i < 100 && this.scopes.getSize() > 0; ++i) {
+            System.gc();
+            Thread.sleep(10);
+
+            this.scopes.releaseUnusedScopes();
+        }
+
+        Assert.assertEquals(0, this.scopes.getSize());
+        Collections.sort(this.released);
+        Assert.assertEquals(Arrays.asList(namespace1, namespace2), this.released);
+    }
+}
@@ -100,4 +100,24 @@ public void testGetTemplates() throws Exception
             engine.stoppedUsingMacroNamespace("testmacronamespace");
         }
     }
+
+    @Test
+    public void testParsedTemplates() throws Exception
+    {
+        VelocityEngine engine = this.componentManager.getInstance(VelocityEngine.class);
+        engine.initialize(new Properties());
+        JMXVelocityEngine jmxBean = new JMXVelocityEngine(engine);
+
+        engine.evaluate(new VelocityContext(), new StringWriter(), "template", "#set($foo = 'bar')$foo");
+        engine.evaluate(new VelocityContext(), new StringWriter(), "template", "#set($foo = 'bar')$foo");
+
+        Assert.assertEquals(1, jmxBean.getParsedTemplateCount());
+        Assert.assertEquals(1, jmxBean.getParsedTemplateHits());
+        Assert.assertEquals(1, jmxBean.getParsedTemplateMisses());
+        Assert.assertTrue(jmxBean.getParseTime() >= 0);
+
+        jmxBean.clearParsedTemplates();
+
+        Assert.assertEquals(0, jmxBean.getParsedTemplateCount());
+    }
 }
@@ -194,6 +194,16 @@ public void getMethodWhenAddingSameMethodNameToExtendingClassAndConversion() thr
         assertEquals("success", this.writer.toString());
     }
 
+    @Test
+    public void getMethodWhenConversionInLoop() throws Exception
+    {
+        when(this.converterManager.convert(List.class, "test")).thenReturn(Arrays.asList("converted"));
+        when(this.converterManager.convert(List.class, "other")).thenReturn(Arrays.asList("other"));
+        this.engine.evaluate(this.context, this.writer, "template",
+            new StringReader("#foreach($value in ['test', 'other', 'test'])$var.method($value) #end"));
+        assertEquals("success failure success ", this.writer.toString());
+    }
+
     @Test
     public void getMethodWhenInnerMethodAndNoConversion() throws Exception
     {
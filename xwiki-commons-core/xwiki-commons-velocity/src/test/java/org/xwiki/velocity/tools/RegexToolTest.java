@@ -19,14 +19,20 @@
  */
 package org.xwiki.velocity.tools;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.xwiki.velocity.VelocityConfiguration;
 import org.xwiki.velocity.tools.RegexTool.RegexResult;
 
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
 /**
  * Unit tests for {@link RegexTool}.
  *
@@ -156,4 +162,62 @@ public void testQuoteReplacement()
         RegexTool tool = new RegexTool();
         Assert.assertEquals(Matcher.quoteReplacement("$1 \\$2"), tool.quoteReplacement("$1 \\$2"));
     }
+
+    @Test
+    public void findAllIterable()
+    {
+        RegexTool tool = new RegexTool();
+        Iterator<List<RegexResult>> iterator =
+            tool.findAllIterable("one :two three (:four) five :six seven=:eight", ":(\\w+) (\\w+)").iterator();
+
+        Assert.assertTrue(iterator.hasNext());
+        Assert.assertTrue(iterator.hasNext());
+        List<RegexResult> match = iterator.next();
+        Assert.assertEquals(3, match.size());
+        Assert.assertEquals(":two three", match.get(0).getGroup());
+        Assert.assertEquals("three", match.get(2).getGroup());
+
+        match = iterator.next();
+        Assert.assertEquals(":six seven", match.get(0).getGroup());
+        Assert.assertEquals(28, match.get(0).getStart());
+
+        Assert.assertFalse(iterator.hasNext());
+        try {
+            iterator.next();
+            Assert.fail("Should have thrown a NoSuchElementException");
+        } catch (NoSuchElementException expected) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void compileReusesPatterns()
+    {
+        RegexTool tool = new RegexTool(10);
+
+        Pattern pattern = tool.compile("a+b");
+        Assert.assertSame(pattern, tool.compile("a+b"));
+
+        for (int i = 0; i < 100; i++) {
+            Assert.assertNotNull(tool.compile("a+b" + i));
+        }
+
+        // Evicted
+        Assert.assertNotSame(pattern, tool.compile("a+b"));
+
+        // Not cached
+        tool = new RegexTool(0);
+        Assert.assertNotSame(tool.compile("a+b"), tool.compile("a+b"));
+    }
+
+    @Test
+    public void createWithConfiguration()
+    {
+        VelocityConfiguration configuration = mock(VelocityConfiguration.class);
+        when(configuration.getRegexPatternCacheSize()).thenReturn(0);
+
+        RegexTool tool = new RegexTool(configuration);
+
+        Assert.assertNotSame(tool.compile("a+b"), tool.compile("a+b"));
+    }
 }
@@ -19,16 +19,30 @@
  */
 package org.xwiki.xml;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
-import java.util.regex.Pattern;
-
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Supplier;
+
+import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
@@ -37,6 +51,9 @@
 import javax.xml.transform.sax.SAXResult;
 import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.apache.commons.io.IOUtils;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -66,45 +83,130 @@
     /** XML encoding of the "ampersand" character. */
     private static final String AMP = "&#38;";
 
-    /** Regular expression recognizing XML-escaped "ampersand" characters. */
-    private static final Pattern AMP_PATTERN = Pattern.compile("&(?:amp|#0*+38|#x0*+26);");
-
     /** XML encoding of the "single quote" character. */
     private static final String APOS = "&#39;";
 
-    /** Regular expression recognizing XML-escaped "single quote" characters. */
-    private static final Pattern APOS_PATTERN = Pattern.compile("&(?:apos|#0*+39|#x0*+27);");
-
     /** XML encoding of the "double quote" character. */
     private static final String QUOT = "&#34;";
 
-    /** Regular expression recognizing XML-escaped "double quote" characters. */
-    private static final Pattern QUOT_PATTERN = Pattern.compile("&(?:quot|#0*+34|#x0*+22);");
-
     /** XML encoding of the "left curly bracket". */
     private static final String LCURL = "&#123;";
 
-    /** Regular expression recognizing XML-escaped "left curly bracket" characters. */
-    private static final Pattern LCURL_PATTERN = Pattern.compile("&(?:#0*+123|#x0*+7[bB]);");
-
     /** XML encoding of the "less than" character. */
     private static final String LT = "&#60;";
 
-    /** Regular expression recognizing XML-escaped "less than" characters. */
-    private static final Pattern LT_PATTERN = Pattern.compile("&(?:lt|#0*+60|#x0*+3[cC]);");
-
     /** XML encoding of the "greater than" character. */
     private static final String GT = "&#62;";
 
-    /** Regular expression recognizing XML-escaped "greater than" characters. */
-    private static final Pattern GT_PATTERN = Pattern.compile("&(?:gt|#0*+62|#x0*+3[eE]);");
-
     /** Helper object for manipulating DOM Level 3 Load and Save APIs. */
     private static final DOMImplementationLS LS_IMPL;
 
     /** Xerces configuration parameter for disabling fetching and checking XMLs against their DTD. */
     private static final String DISABLE_DTD_PARAM = "http://apache.org/xml/features/nonvalidating/load-external-dtd";
 
+    /** The maximum number of compiled XSLT stylesheets to keep in memory. */
+    private static final int TEMPLATES_CACHE_SIZE = 100;
+
+    /** The maximum number of idle factories to keep in memory. */
+    private static final int FACTORY_POOL_SIZE = 16;
+
+    /** The scheme of the system ids which can be checked for modifications. */
+    private static final String FILE_SCHEME = "file";
+
+    /**
+     * The compiled XSLT stylesheets, indexed by their system id and the hash of their content (or, when the content is
+     * not provided, the date of last modification of the file). {@link Templates} are thread safe so they can be
+     * shared.
+     */
+    private static final Map<String, Templates> TEMPLATES =
+        Collections.synchronizedMap(new LinkedHashMap<String, Templates>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Templates> eldest)
+            {
+                return size() > TEMPLATES_CACHE_SIZE;
+            }
+        });
+
+    /**
+     * The factories are not thread safe so they are pooled, which avoids the service lookup done by
+     * {@link TransformerFactory#newInstance()} for each call.
+     */
+    private static final Pool<TransformerFactory> TRANSFORMER_FACTORIES = new Pool<>(TransformerFactory::newInstance);
+
+    /**
+     * The document builders are not thread safe so they are pooled, which avoids the service lookup done by
+     * {@link DocumentBuilderFactory#newInstance()} for each created document.
+     */
+    private static final Pool<DocumentBuilder> DOCUMENT_BUILDERS = new Pool<>(() -> {
+        try {
+            return DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        } catch (ParserConfigurationException ex) {
+            LOGGER.error("Cannot create DOM Documents", ex);
+            return null;
+        }
+    });
+
+    /**
+     * A bounded pool of objects which are not thread safe.
+     * <p>
+     * Contrary to a {@link ThreadLocal} the pooled objects don't stay in the (long living) threads and they are created
+     * with the class loader of {@link XMLUtils} as context class loader so that they don't retain the class loader of
+     * an extension.
+     *
+     * @param <T> the type of the pooled objects
+     */
+    private static final class Pool<T>
+    {
+        /** The idle objects. */
+        private final BlockingQueue<T> objects = new ArrayBlockingQueue<>(FACTORY_POOL_SIZE);
+
+        /** Create the new objects. */
+        private final Supplier<T> factory;
+
+        /**
+         * @param factory used to create the new objects
+         */
+        Pool(Supplier<T> factory)
+        {
+            this.factory = factory;
+        }
+
+        /**
+         * @return an idle object or a new one if none is available
+         */
+        T borrow()
+        {
+            T object = this.objects.poll();
+
+            if (object == null) {
+                Thread thread = Thread.currentThread();
+                ClassLoader currentClassLoader = thread.getContextClassLoader();
+                thread.setContextClassLoader(XMLUtils.class.getClassLoader());
+                try {
+                    object = this.factory.get();
+                } finally {
+                    thread.setContextClassLoader(currentClassLoader);
+                }
+            }
+
+            return object;
+        }
+
+        /**
+         * @param object the object to give back to the pool
+         */
+        void release(T object)
+        {
+            if (object != null) {
+                // Simply forget the object if the pool is full
+                this.objects.offer(object);
+            }
+        }
+    }
+
     static {
         DOMImplementationLS implementation = null;
         try {
@@ -139,7 +241,7 @@ public static String extractXML(Node node, int start, int length)
         ExtractHandler handler = null;
         try {
             handler = new ExtractHandler(start, length);
-            Transformer xformer = TransformerFactory.newInstance().newTransformer();
+            Transformer xformer = newTransformer();
             xformer.transform(new DOMSource(node), new SAXResult(handler));
             return handler.getResult();
         } catch (Throwable t) {
@@ -235,43 +337,26 @@ public static String escape(Object content)
      * &gt;, ", ', &amp; and {.  Left curly bracket is included here to protect against {{/html}} in xwiki 2.x syntax.
      *
      * @param content the text to escape, may be {@code null}
-     * @return a new escaped {@code String}, {@code null} if {@code null} input
+     * @return the escaped {@code String} (the passed content when there's nothing to escape), {@code null} if
+     *         {@code null} input
      */
     public static String escapeAttributeValue(Object content)
     {
-        if (content == null) {
-            return null;
-        }
-        String str = String.valueOf(content);
-        StringBuilder result = new StringBuilder((int) (str.length() * 1.1));
-        int length = str.length();
-        char c;
-        for (int i = 0; i < length; ++i) {
-            c = str.charAt(i);
-            switch (c) {
-                case '&':
-                    result.append(AMP);
-                    break;
-                case '\'':
-                    result.append(APOS);
-                    break;
-                case '"':
-                    result.append(QUOT);
-                    break;
-                case '<':
-                    result.append(LT);
-                    break;
-                case '>':
-                    result.append(GT);
-                    break;
-                case '{':
-                    result.append(LCURL);
-                    break;
-                default:
-                    result.append(c);
-            }
-        }
-        return result.toString();
+        return escape(content, true);
+    }
+
+    /**
+     * Escapes all the XML special characters and left curly bracket using numerical XML entities and writes the result
+     * directly to the passed output. See {@link #escapeAttributeValue(Object)}.
+     *
+     * @param content the text to escape
+     * @param out where to write the escaped text
+     * @throws IOException when failing to write to the output
+     * @since 8.3RC1
+     */
+    public static void escapeAttributeValue(CharSequence content, Appendable out) throws IOException
+    {
+        appendEscaped(content, 0, out, true);
     }
 
     /**
@@ -279,36 +364,105 @@ public static String escapeAttributeValue(Object content)
      * string can safely be used as an XML text node. Specifically, escapes &lt;, &gt;, and &amp;.
      *
      * @param content the text to escape, may be {@code null}
-     * @return a new escaped {@code String}, {@code null} if {@code null} input
+     * @return the escaped {@code String} (the passed content when there's nothing to escape), {@code null} if
+     *         {@code null} input
      */
     public static String escapeElementContent(Object content)
+    {
+        return escape(content, false);
+    }
+
+    /**
+     * Escapes the XML special characters using numerical XML entities and writes the result directly to the passed
+     * output. See {@link #escapeElementContent(Object)}.
+     *
+     * @param content the text to escape
+     * @param out where to write the escaped text
+     * @throws IOException when failing to write to the output
+     * @since 8.3RC1
+     */
+    public static void escapeElementContent(CharSequence content, Appendable out) throws IOException
+    {
+        appendEscaped(content, 0, out, false);
+    }
+
+    private static String escape(Object content, boolean attribute)
     {
         if (content == null) {
             return null;
         }
         String str = String.valueOf(content);
-        StringBuilder result = new StringBuilder((int) (str.length() * 1.1));
+
+        // Avoid any allocation when there's nothing to escape, which is the most common case.
         int length = str.length();
-        char c;
-        for (int i = 0; i < length; ++i) {
-            c = str.charAt(i);
-            switch (c) {
-                case '&':
-                    result.append(AMP);
-                    break;
-                case '<':
-                    result.append(LT);
-                    break;
-                case '>':
-                    result.append(GT);
-                    break;
-                default:
-                    result.append(c);
-            }
+        int index = 0;
+        while (index < length && getEntity(str.charAt(index), attribute) == null) {
+            ++index;
+        }
+        if (index == length) {
+            return str;
+        }
+
+        StringBuilder result = new StringBuilder((int) (length * 1.1));
+        result.append(str, 0, index);
+        try {
+            appendEscaped(str, index, result, attribute);
+        } catch (IOException e) {
+            // Cannot happen with a StringBuilder
+            throw new IllegalStateException(e);
         }
         return result.toString();
     }
 
+    private static void appendEscaped(CharSequence content, int start, Appendable out, boolean attribute)
+        throws IOException
+    {
+        int length = content.length();
+        int last = start;
+        for (int i = start; i < length; ++i) {
+            String entity = getEntity(content.charAt(i), attribute);
+            if (entity != null) {
+                out.append(content, last, i).append(entity);
+                last = i + 1;
+            }
+        }
+        out.append(content, last, length);
+    }
+
+    /**
+     * @param c the character to escape
+     * @param attribute {@code true} if the character is part of an attribute value, {@code false} if it's part of an
+     *            element content
+     * @return the XML entity to use for the passed character, {@code null} if the character doesn't need escaping
+     */
+    private static String getEntity(char c, boolean attribute)
+    {
+        String entity;
+        switch (c) {
+            case '&':
+                entity = AMP;
+                break;
+            case '<':
+                entity = LT;
+                break;
+            case '>':
+                entity = GT;
+                break;
+            case '\'':
+                entity = attribute ? APOS : null;
+                break;
+            case '"':
+                entity = attribute ? QUOT : null;
+                break;
+            case '{':
+                entity = attribute ? LCURL : null;
+                break;
+            default:
+                entity = null;
+        }
+        return entity;
+    }
+
     /**
      * Unescape encoded special XML characters. Only &gt;, &lt; &amp;, ", ' and { are unescaped, since they are the only
      * ones that affect the resulting markup.
@@ -323,14 +477,134 @@ public static String unescape(Object content)
         }
         String str = String.valueOf(content);
 
-        str = APOS_PATTERN.matcher(str).replaceAll("'");
-        str = QUOT_PATTERN.matcher(str).replaceAll("\"");
-        str = LT_PATTERN.matcher(str).replaceAll("<");
-        str = GT_PATTERN.matcher(str).replaceAll(">");
-        str = AMP_PATTERN.matcher(str).replaceAll("&");
-        str = LCURL_PATTERN.matcher(str).replaceAll("{");
+        StringBuilder result = null;
+        int last = 0;
+        int index = str.indexOf('&');
+        while (index >= 0) {
+            int end = getEntityEnd(str, index + 1);
+            char c = end < str.length() && str.charAt(end) == ';' ? getEntityCharacter(str, index + 1, end) : 0;
+            if (c != 0) {
+                if (result == null) {
+                    result = new StringBuilder(str.length());
+                }
+                result.append(str, last, index).append(c);
+                last = end + 1;
+            }
+            index = str.indexOf('&', c != 0 ? last : index + 1);
+        }
 
-        return str;
+        if (result == null) {
+            return str;
+        }
+        return result.append(str, last, str.length()).toString();
+    }
+
+    /**
+     * @param str the escaped text
+     * @param start the index of the first character of the entity, after {@code &}
+     * @return the index of the first character after the entity name or number
+     */
+    private static int getEntityEnd(String str, int start)
+    {
+        int end = start;
+        while (end < str.length() && isEntityNameCharacter(str.charAt(end))) {
+            ++end;
+        }
+        return end;
+    }
+
+    /**
+     * @param str the escaped text
+     * @param start the index of the first character of the entity, after {@code &}
+     * @param end the index of the {@code ;} ending the entity
+     * @return the unescaped character, {@code 0} if the entity is not one of the supported entities
+     */
+    private static char getEntityCharacter(String str, int start, int end)
+    {
+        char c;
+        if (str.charAt(start) == '#') {
+            boolean hexadecimal = start + 1 < end && str.charAt(start + 1) == 'x';
+            c = getNumericalEntityCharacter(str, hexadecimal ? start + 2 : start + 1, end, hexadecimal ? 16 : 10);
+        } else {
+            c = getNamedEntityCharacter(str.substring(start, end));
+        }
+        return c;
+    }
+
+    /**
+     * @param str the escaped text
+     * @param start the index of the first digit of the entity
+     * @param end the index of the {@code ;} ending the entity
+     * @param radix the radix of the number
+     * @return the unescaped character, {@code 0} if the entity is not one of the supported entities
+     */
+    private static char getNumericalEntityCharacter(String str, int start, int end, int radix)
+    {
+        int index = start;
+        while (index < end && str.charAt(index) == '0') {
+            ++index;
+        }
+        // The supported characters have at most 3 decimal digits (and 2 hexadecimal digits).
+        if (index >= end || end - index > 3) {
+            return 0;
+        }
+        int codePoint = 0;
+        for (; index < end && codePoint >= 0; ++index) {
+            char digitCharacter = str.charAt(index);
+            // Only ASCII digits are allowed.
+            int digit = digitCharacter < 128 ? Character.digit(digitCharacter, radix) : -1;
+            codePoint = digit < 0 ? -1 : codePoint * radix + digit;
+        }
+        return getNumericalEntityCharacter(codePoint);
+    }
+
+    private static boolean isEntityNameCharacter(char c)
+    {
+        // Only ASCII letters and digits are allowed.
+        return c == '#' || (c < 128 && Character.isLetterOrDigit(c));
+    }
+
+    private static char getNumericalEntityCharacter(int codePoint)
+    {
+        char c;
+        switch (codePoint) {
+            case '&':
+            case '\'':
+            case '"':
+            case '<':
+            case '>':
+            case '{':
+                c = (char) codePoint;
+                break;
+            default:
+                c = 0;
+        }
+        return c;
+    }
+
+    private static char getNamedEntityCharacter(String name)
+    {
+        char c;
+        switch (name) {
+            case "amp":
+                c = '&';
+                break;
+            case "apos":
+                c = '\'';
+                break;
+            case "quot":
+                c = '"';
+                break;
+            case "lt":
+                c = '<';
+                break;
+            case "gt":
+                c = '>';
+                break;
+            default:
+                c = 0;
+        }
+        return c;
     }
 
     /**
@@ -340,11 +614,12 @@ public static String unescape(Object content)
      */
     public static Document createDOMDocument()
     {
+        DocumentBuilder documentBuilder = DOCUMENT_BUILDERS.borrow();
+
         try {
-            return DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-        } catch (ParserConfigurationException ex) {
-            LOGGER.error("Cannot create DOM Documents", ex);
-            return null;
+            return documentBuilder != null ? documentBuilder.newDocument() : null;
+        } finally {
+            DOCUMENT_BUILDERS.release(documentBuilder);
         }
     }
 
@@ -427,8 +702,7 @@ public static String transform(Source xml, Source xslt)
         if (xml != null && xslt != null) {
             try {
                 StringWriter output = new StringWriter();
-                Result result = new StreamResult(output);
-                javax.xml.transform.TransformerFactory.newInstance().newTransformer(xslt).transform(xml, result);
+                transform(xml, xslt, new StreamResult(output));
                 return output.toString();
             } catch (Exception ex) {
                 LOGGER.warn("Failed to apply XSLT transformation: [{}]", ex.getMessage());
@@ -437,6 +711,135 @@ public static String transform(Source xml, Source xslt)
         return null;
     }
 
+    /**
+     * Apply an XSLT transformation to a Document and write the transformation result directly to the passed
+     * {@link Result} (e.g. a {@link StreamResult} wrapping a {@link java.io.Writer}).
+     * <p>
+     * The compiled stylesheets are cached: stylesheets provided as a {@link StreamSource} are indexed by their system
+     * id and the hash of their content or, when the content is not provided, by the system id and the date of last
+     * modification of the file it points to.
+     *
+     * @param xml the document to transform
+     * @param xslt the stylesheet to apply
+     * @param result where to write the transformation result
+     * @throws TransformerException when failing to compile the stylesheet or to apply the transformation
+     * @since 8.3RC1
+     */
+    public static void transform(Source xml, Source xslt, Result result) throws TransformerException
+    {
+        getTemplates(xslt).newTransformer().transform(xml, result);
+    }
+
+    /**
+     * @param xslt the stylesheet to compile
+     * @return the compiled stylesheet, from the cache if possible
+     * @throws TransformerException when failing to compile the stylesheet
+     */
+    private static Templates getTemplates(Source xslt) throws TransformerException
+    {
+        if (!(xslt instanceof StreamSource)) {
+            return newTemplates(xslt);
+        }
+
+        StreamSource source = (StreamSource) xslt;
+        String key;
+        try {
+            if (source.getReader() != null) {
+                String content = IOUtils.toString(source.getReader());
+                key = source.getSystemId() + '#' + hash(content.getBytes(StandardCharsets.UTF_8));
+                source = new StreamSource(new StringReader(content), source.getSystemId());
+            } else if (source.getInputStream() != null) {
+                byte[] bytes = IOUtils.toByteArray(source.getInputStream());
+                key = source.getSystemId() + '#' + hash(bytes);
+                source = new StreamSource(new ByteArrayInputStream(bytes), source.getSystemId());
+            } else {
+                key = getFileKey(source.getSystemId());
+                if (key == null) {
+                    // Not possible to know if the stylesheet changed
+                    return newTemplates(source);
+                }
+            }
+        } catch (IOException e) {
+            throw new TransformerException("Failed to read the XSLT stylesheet", e);
+        }
+
+        Templates templates = TEMPLATES.get(key);
+        if (templates == null) {
+            templates = newTemplates(source);
+            TEMPLATES.put(key, templates);
+        }
+
+        return templates;
+    }
+
+    /**
+     * @param systemId the system id of the stylesheet
+     * @return the key of the stylesheet file, changing each time the file is modified, or null if the system id is not
+     *         a file
+     */
+    private static String getFileKey(String systemId)
+    {
+        if (systemId != null) {
+            try {
+                URI uri = new URI(systemId);
+                if (FILE_SCHEME.equals(uri.getScheme())) {
+                    File file = new File(uri);
+
+                    return systemId + '#' + file.lastModified() + '#' + file.length();
+                }
+            } catch (Exception e) {
+                LOGGER.debug("Failed to resolve the stylesheet file [{}]: {}", systemId, e.getMessage());
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param bytes the content of the stylesheet
+     * @return the hash of the content
+     */
+    private static String hash(byte[] bytes)
+    {
+        try {
+            return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            // Should never happen, SHA-256 is supported by all the JVMs
+            throw new IllegalStateException("Failed to hash the XSLT stylesheet", e);
+        }
+    }
+
+    /**
+     * @param source the XSLT stylesheet
+     * @return the compiled stylesheet
+     * @throws TransformerException if the stylesheet cannot be compiled
+     */
+    private static Templates newTemplates(Source source) throws TransformerException
+    {
+        TransformerFactory factory = TRANSFORMER_FACTORIES.borrow();
+
+        try {
+            return factory.newTemplates(source);
+        } finally {
+            TRANSFORMER_FACTORIES.release(factory);
+        }
+    }
+
+    /**
+     * @return a new identity transformer
+     * @throws TransformerException if the transformer cannot be created
+     */
+    private static Transformer newTransformer() throws TransformerException
+    {
+        TransformerFactory factory = TRANSFORMER_FACTORIES.borrow();
+
+        try {
+            return factory.newTransformer();
+        } finally {
+            TRANSFORMER_FACTORIES.release(factory);
+        }
+    }
+
     /**
      * Parse and pretty print a XML content.
      *
@@ -450,7 +853,7 @@ public static String transform(Source xml, Source xslt)
     public static String formatXMLContent(String content) throws TransformerFactoryConfigurationError,
         TransformerException
     {
-        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        Transformer transformer = newTransformer();
         transformer.setOutputProperty(OutputKeys.INDENT, "yes");
         transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
 
@@ -22,6 +22,9 @@
 import java.io.Reader;
 import java.io.StringReader;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -47,6 +50,7 @@
 import org.xwiki.xml.html.HTMLCleanerConfiguration;
 import org.xwiki.xml.html.HTMLConstants;
 import org.xwiki.xml.html.filter.HTMLFilter;
+import org.xwiki.xml.internal.html.filter.FusedHTMLFilter;
 
 /**
  * Default implementation for {@link org.xwiki.xml.html.HTMLCleaner} using the <a href="HTML Cleaner
@@ -89,7 +93,7 @@ public class DefaultHTMLCleaner implements HTMLCleaner, Initializable
 
     /**
      * {@link HTMLFilter} for filtering HTML attributes that are used by many different elements and for which we cannot
-     * write simple transformations like in {@link #getDefaultCleanerTransformations(HTMLCleanerConfiguration)}.
+     * write simple transformations like in {@link #getDefaultCleanerTransformations(boolean)}.
      */
     @Inject
     @Named("attribute")
@@ -98,9 +102,30 @@ public class DefaultHTMLCleaner implements HTMLCleaner, Initializable
     @Inject
     private Execution execution;
 
+    /**
+     * The configured HTML Cleaner instances, indexed by the cleaning parameters they depend on. They are never modified
+     * after being created and HTML Cleaner is thread safe so they can be shared.
+     */
+    private final Map<String, HtmlCleaner> cleaners = new ConcurrentHashMap<>();
+
+    /**
+     * The default filters, in the order they are applied.
+     */
+    private List<HTMLFilter> defaultFilters;
+
+    /**
+     * Applies the default filters in a single traversal, {@code null} if some of the default filters have been
+     * overridden.
+     */
+    private HTMLFilter fusedFilter;
+
     @Override
     public void initialize() throws InitializationException
     {
+        this.defaultFilters = Arrays.asList(this.bodyFilter, this.listItemFilter, this.listFilter, this.fontFilter,
+            this.attributeFilter);
+        this.fusedFilter = FusedHTMLFilter.fuse(this.defaultFilters);
+
         // The clean method below is thread safe. However it seems that DOMOutputter.output() is not fully thread safe
         // since it causes the following exception on the first time it's called from different threads:
         //  Caused by: org.jdom.JDOMException: Reflection failed while creating new JAXP document:
@@ -144,11 +169,8 @@ public Document clean(Reader originalHtmlContent, HTMLCleanerConfiguration confi
     {
         Document result;
 
-        // Note: Instantiation of an HtmlCleaner object is cheap so there's no need to cache an instance of it,
-        // especially since this makes it extra safe with regards to multithreading (even though HTML Cleaner is
-        // already supposed to be thread safe).
-        CleanerProperties cleanerProperties = getDefaultCleanerProperties(configuration);
-        HtmlCleaner cleaner = new HtmlCleaner(cleanerProperties);
+        HtmlCleaner cleaner = getCleaner(configuration);
+        CleanerProperties cleanerProperties = cleaner.getProperties();
 
         TagNode cleanedNode;
         try {
@@ -174,8 +196,13 @@ public Document clean(Reader originalHtmlContent, HTMLCleanerConfiguration confi
         }
 
         // Finally apply filters.
-        for (HTMLFilter filter : configuration.getFilters()) {
-            filter.filter(result, configuration.getParameters());
+        List<HTMLFilter> filters = configuration.getFilters();
+        if (this.fusedFilter != null && this.defaultFilters.equals(filters)) {
+            this.fusedFilter.filter(result, configuration.getParameters());
+        } else {
+            for (HTMLFilter filter : filters) {
+                filter.filter(result, configuration.getParameters());
+            }
         }
 
         return result;
@@ -196,9 +223,26 @@ public HTMLCleanerConfiguration getDefaultConfiguration()
 
     /**
      * @param configuration the configuration to use for the cleaning
+     * @return the HTML Cleaner instance configured for the parameters of the given configuration
+     */
+    private HtmlCleaner getCleaner(HTMLCleanerConfiguration configuration)
+    {
+        // If the caller has defined NAMESPACE_AWARE configuration property then use it, otherwise use our default.
+        String param = configuration.getParameters().get(HTMLCleanerConfiguration.NAMESPACES_AWARE);
+        boolean namespacesAware = (param != null) ? Boolean.parseBoolean(param) : true;
+        String restrictedParam = configuration.getParameters().get(HTMLCleanerConfiguration.RESTRICTED);
+        boolean restricted = "true".equalsIgnoreCase(restrictedParam);
+
+        return this.cleaners.computeIfAbsent(namespacesAware + "/" + restricted,
+            key -> new HtmlCleaner(getDefaultCleanerProperties(namespacesAware, restricted)));
+    }
+
+    /**
+     * @param namespacesAware whether the cleaning should be namespace aware
+     * @param restricted whether the cleaning should be restricted
      * @return the default {@link CleanerProperties} to be used for cleaning.
      */
-    private CleanerProperties getDefaultCleanerProperties(HTMLCleanerConfiguration configuration)
+    private CleanerProperties getDefaultCleanerProperties(boolean namespacesAware, boolean restricted)
     {
         CleanerProperties defaultProperties = new CleanerProperties();
         defaultProperties.setOmitUnknownTags(true);
@@ -217,13 +261,10 @@ private CleanerProperties getDefaultCleanerProperties(HTMLCleanerConfiguration c
         // Remove CDATA outside of script and style since according to the spec it has no effect there.
         defaultProperties.setOmitCdataOutsideScriptAndStyle(true);
 
-        // If the caller has defined NAMESPACE_AWARE configuration property then use it, otherwise use our default.
-        String param = configuration.getParameters().get(HTMLCleanerConfiguration.NAMESPACES_AWARE);
-        boolean namespacesAware = (param != null) ? Boolean.parseBoolean(param) : true;
         defaultProperties.setNamespacesAware(namespacesAware);
 
         // Set Cleaner transformations
-        defaultProperties.setCleanerTransformations(getDefaultCleanerTransformations(configuration));
+        defaultProperties.setCleanerTransformations(getDefaultCleanerTransformations(restricted));
         
         // By default, we are cleaning XHTML 1.0 code, not HTML 5.
         // Note: Tests are broken if we don't set the version 4, meaning that supporting HTML5 requires some work.
@@ -234,11 +275,11 @@ private CleanerProperties getDefaultCleanerProperties(HTMLCleanerConfiguration c
     }
 
     /**
-     * @param configuration The cleaner configuration.
+     * @param restricted whether the cleaning should be restricted
      * @return the default cleaning transformations to perform on tags, in addition to the base transformations done by
      *         HTML Cleaner
      */
-    private CleanerTransformations getDefaultCleanerTransformations(HTMLCleanerConfiguration configuration)
+    private CleanerTransformations getDefaultCleanerTransformations(boolean restricted)
     {
         CleanerTransformations defaultTransformations = new CleanerTransformations();
 
@@ -261,8 +302,7 @@ private CleanerTransformations getDefaultCleanerTransformations(HTMLCleanerConfi
         tt.addAttributeTransformation(HTMLConstants.ATTRIBUTE_STYLE, "text-align:center");
         defaultTransformations.addTransformation(tt);
 
-        String restricted = configuration.getParameters().get(HTMLCleanerConfiguration.RESTRICTED);
-        if ("true".equalsIgnoreCase(restricted)) {
+        if (restricted) {
 
             tt = new TagTransformation(HTMLConstants.TAG_SCRIPT, HTMLConstants.TAG_PRE, false);
             defaultTransformations.addTransformation(tt);
@@ -19,7 +19,9 @@
  */
 package org.xwiki.xml.internal.html.filter;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.inject.Inject;
@@ -34,6 +36,7 @@
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.NodeList;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.xml.html.HTMLConstants;
@@ -106,6 +109,47 @@ public void filter(Document document, Map<String, String> cleaningParameters)
         }
     }
 
+    /**
+     * Replaces the filtered attributes of the given element with the corresponding CSS properties. The attributes are
+     * processed in the order of the element's attribute map, which is also the order used by the XPath evaluation.
+     *
+     * @param element the element whose attributes are filtered
+     */
+    void filter(Element element)
+    {
+        NamedNodeMap attributes = element.getAttributes();
+        List<Attr> filteredAttributes = null;
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Attr attribute = (Attr) attributes.item(i);
+            if (ATTRIBUTE_TO_CSS_PROPERTY.containsKey(attribute.getName())) {
+                if (filteredAttributes == null) {
+                    filteredAttributes = new ArrayList<>();
+                }
+                filteredAttributes.add(attribute);
+            }
+        }
+        if (filteredAttributes != null) {
+            for (Attr attribute : filteredAttributes) {
+                filterAttribute(attribute);
+            }
+        }
+    }
+
+    /**
+     * @param element an element
+     * @return {@code true} if the given element has at least one of the attributes handled by this filter
+     */
+    boolean hasFilteredAttribute(Element element)
+    {
+        boolean hasFilteredAttribute = false;
+        if (element.hasAttributes()) {
+            for (String attributeName : ATTRIBUTE_TO_CSS_PROPERTY.keySet()) {
+                hasFilteredAttribute |= element.hasAttribute(attributeName);
+            }
+        }
+        return hasFilteredAttribute;
+    }
+
     private void filterAttribute(Attr attribute)
     {
         Element element = attribute.getOwnerElement();
@@ -0,0 +1,194 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.xml.internal.html.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xwiki.xml.html.filter.AbstractHTMLFilter;
+import org.xwiki.xml.html.filter.HTMLFilter;
+
+/**
+ * Applies the default HTML cleaning filters ({@link BodyFilter}, {@link ListItemFilter}, {@link ListFilter},
+ * {@link FontFilter} and {@link AttributeFilter}, in this order) using a single traversal of the document instead of
+ * one traversal per filter. The result is the same as applying the filters one after the other.
+ *
+ * @version $Id$
+ * @since 8.3RC1
+ */
+public class FusedHTMLFilter extends AbstractHTMLFilter
+{
+    /**
+     * The types of the filters which can be fused, in the order they are applied.
+     */
+    private static final List<Class<? extends HTMLFilter>> FUSED_FILTERS = Arrays.<Class<? extends HTMLFilter>>asList(
+        BodyFilter.class, ListItemFilter.class, ListFilter.class, FontFilter.class, AttributeFilter.class);
+
+    private final BodyFilter bodyFilter;
+
+    private final ListItemFilter listItemFilter;
+
+    private final ListFilter listFilter;
+
+    private final FontFilter fontFilter;
+
+    private final AttributeFilter attributeFilter;
+
+    /**
+     * @param bodyFilter the filter wrapping invalid body elements with paragraphs
+     * @param listItemFilter the filter adding missing list parents
+     * @param listFilter the filter fixing the list children
+     * @param fontFilter the filter replacing font elements
+     * @param attributeFilter the filter replacing presentation attributes with CSS properties
+     */
+    public FusedHTMLFilter(BodyFilter bodyFilter, ListItemFilter listItemFilter, ListFilter listFilter,
+        FontFilter fontFilter, AttributeFilter attributeFilter)
+    {
+        this.bodyFilter = bodyFilter;
+        this.listItemFilter = listItemFilter;
+        this.listFilter = listFilter;
+        this.fontFilter = fontFilter;
+        this.attributeFilter = attributeFilter;
+    }
+
+    /**
+     * @param filters the filters to fuse, in the order they are applied
+     * @return the filter applying the passed filters in a single traversal, {@code null} if they are not the default
+     *         filters
+     */
+    public static FusedHTMLFilter fuse(List<HTMLFilter> filters)
+    {
+        if (filters.size() != FUSED_FILTERS.size()) {
+            return null;
+        }
+        for (int i = 0; i < filters.size(); ++i) {
+            if (!FUSED_FILTERS.get(i).isInstance(filters.get(i))) {
+                return null;
+            }
+        }
+
+        return new FusedHTMLFilter((BodyFilter) filters.get(0), (ListItemFilter) filters.get(1),
+            (ListFilter) filters.get(2), (FontFilter) filters.get(3), (AttributeFilter) filters.get(4));
+    }
+
+    @Override
+    public void filter(Document document, Map<String, String> cleaningParameters)
+    {
+        // The body filter only looks at the children of the body element so it doesn't need a full traversal. It
+        // only adds paragraphs, which are not handled by the other filters.
+        this.bodyFilter.filter(document, cleaningParameters);
+
+        // Collect the elements handled by the other filters, in document order.
+        FilteredElements elements = new FilteredElements();
+        Element root = document.getDocumentElement();
+        Node node = root;
+        while (node != null) {
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                elements.add((Element) node);
+            }
+            node = next(node, root);
+        }
+
+        // The list item filter can remove paragraphs from the document, along with their content. The filters
+        // applied one after the other would not see the removed elements anymore.
+        boolean detached = false;
+        for (Element listItem : elements.listItems) {
+            detached |= this.listItemFilter.filter(listItem);
+        }
+        filter(elements.lists, this.listFilter::filter, detached, document);
+        filter(elements.fontTags, this.fontFilter::filter, detached, document);
+        filter(elements.attributeElements, this.attributeFilter::filter, detached, document);
+    }
+
+    /**
+     * @param elements the elements to filter
+     * @param filter the filter to apply
+     * @param detached true if some elements may have been removed from the document
+     * @param document the filtered document
+     */
+    private void filter(List<Element> elements, Consumer<Element> filter, boolean detached, Document document)
+    {
+        for (Element element : elements) {
+            if (!detached || isAttached(element, document)) {
+                filter.accept(element);
+            }
+        }
+    }
+
+    /**
+     * @param node the current node
+     * @param root the root of the traversal
+     * @return the next node in document order, or {@code null} when the traversal is done
+     */
+    private Node next(Node node, Node root)
+    {
+        Node current = node;
+        Node next = current.getFirstChild();
+        while (next == null && current != root) {
+            next = current.getNextSibling();
+            current = current.getParentNode();
+        }
+        return next;
+    }
+
+    private boolean isAttached(Node node, Document document)
+    {
+        Node ancestor = node;
+        while (ancestor.getParentNode() != null) {
+            ancestor = ancestor.getParentNode();
+        }
+        return ancestor == document;
+    }
+
+    /**
+     * The elements handled by the fused filters, in document order.
+     */
+    private final class FilteredElements
+    {
+        private final List<Element> listItems = new ArrayList<>();
+
+        private final List<Element> lists = new ArrayList<>();
+
+        private final List<Element> fontTags = new ArrayList<>();
+
+        private final List<Element> attributeElements = new ArrayList<>();
+
+        void add(Element element)
+        {
+            String name = element.getNodeName();
+            if (TAG_LI.equals(name)) {
+                this.listItems.add(element);
+            } else if (TAG_UL.equals(name) || TAG_OL.equals(name)) {
+                this.lists.add(element);
+            } else if (TAG_FONT.equals(name)) {
+                this.fontTags.add(element);
+            }
+            if (!TAG_FONT.equals(name) && attributeFilter.hasFilteredAttribute(element)) {
+                this.attributeElements.add(element);
+            }
+        }
+    }
+}
@@ -80,7 +80,7 @@ public void filter(Document document, Map<String, String> cleaningParameters)
      *
      * @param list the list to be filtered
      */
-    private void filter(Element list)
+    void filter(Element list)
     {
         // Iterate all the child nodes of the given list to see who's allowed and who's not allowed inside it.
         Node child = list.getFirstChild();
@@ -46,24 +46,38 @@ public void filter(Document document, Map<String, String> cleaningParameters)
     {
         // Iterate all lists and fix them.
         for (Element listItem : filterDescendants(document.getDocumentElement(), new String[] { TAG_LI })) {
-            Node parent = listItem.getParentNode();
-            if (parent != null && (!parent.getNodeName().equalsIgnoreCase(TAG_UL)
-                && !parent.getNodeName().equalsIgnoreCase(TAG_OL)))
-            {
-                // Add a UL parent
-                Element newUL = listItem.getOwnerDocument().createElement(TAG_UL);
-                parent.replaceChild(newUL, listItem);
-                newUL.appendChild(listItem);
+            filter(listItem);
+        }
+    }
+
+    /**
+     * Adds a &lt;ul&gt; parent to the given list item if it doesn't have a list parent.
+     *
+     * @param listItem the list item to be filtered
+     * @return {@code true} if a paragraph parent has been removed from the document, {@code false} otherwise
+     */
+    boolean filter(Element listItem)
+    {
+        boolean removedParagraph = false;
+        Node parent = listItem.getParentNode();
+        if (parent != null && (!parent.getNodeName().equalsIgnoreCase(TAG_UL)
+            && !parent.getNodeName().equalsIgnoreCase(TAG_OL)))
+        {
+            // Add a UL parent
+            Element newUL = listItem.getOwnerDocument().createElement(TAG_UL);
+            parent.replaceChild(newUL, listItem);
+            newUL.appendChild(listItem);
 
-                // If the parent is a <p> then remove it. HTMLCleaner will clean "<li></li>" by wrapping it in a
-                // paragraph: "<p><li></li></p>". Since this isn't valid XHTML we need to remove the <p>.
-                if (parent.getNodeName().equalsIgnoreCase(TAG_P)) {
-                    Node parentOfParent = parent.getParentNode();
-                    if (parentOfParent != null) {
-                        parentOfParent.replaceChild(newUL, parent);
-                    }
+            // If the parent is a <p> then remove it. HTMLCleaner will clean "<li></li>" by wrapping it in a
+            // paragraph: "<p><li></li></p>". Since this isn't valid XHTML we need to remove the <p>.
+            if (parent.getNodeName().equalsIgnoreCase(TAG_P)) {
+                Node parentOfParent = parent.getParentNode();
+                if (parentOfParent != null) {
+                    parentOfParent.replaceChild(newUL, parent);
+                    removedParagraph = true;
                 }
             }
         }
+        return removedParagraph;
     }
 }
@@ -19,8 +19,19 @@
  */
 package org.xwiki.xml;
 
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.apache.commons.io.FileUtils;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 /**
  * Unit tests for {@link org.xwiki.xml.XMLUtils}.
@@ -30,6 +41,9 @@
  */
 public class XMLUtilsTest
 {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void testEscapeXMLComment()
     {
@@ -190,10 +204,90 @@ public void testUnescapeOtherEscapes()
         Assert.assertEquals("Extra hexadecimal entities were unescaped", "&#x5;", XMLUtils.unescape("&#x5;"));
     }
 
+    @Test
+    public void testUnescapeSinglePass()
+    {
+        Assert.assertEquals("Escaped entities were unescaped twice", "&lt;&#123;",
+            XMLUtils.unescape("&amp;lt;&amp;#123;"));
+        Assert.assertEquals("Failed to unescape left curly bracket", "{{{", XMLUtils.unescape("&#123;&#x7b;&#x007B;"));
+        Assert.assertEquals("Unsupported entities were unescaped", "&#380;&#X26;&#x;&#;&AMP;&amp &#\u0663\u0668;",
+            XMLUtils.unescape("&#380;&#X26;&#x;&#;&AMP;&amp &#\u0663\u0668;"));
+        Assert.assertEquals("Failed to unescape entities after ampersands", "&&<", XMLUtils.unescape("&&amp;&lt;"));
+    }
+
+    @Test
+    public void testEscapeReturnsSameInstanceWhenNothingToEscape()
+    {
+        String content = "nothing to escape";
+        Assert.assertSame(content, XMLUtils.escapeAttributeValue(content));
+        Assert.assertSame(content, XMLUtils.escapeElementContent(content));
+        Assert.assertSame(content, XMLUtils.unescape(content));
+    }
+
+    @Test
+    public void testEscapeToAppendable() throws Exception
+    {
+        StringBuilder builder = new StringBuilder("before ");
+        XMLUtils.escapeAttributeValue("a<'\"{&", builder);
+        Assert.assertEquals("before a&#60;&#39;&#34;&#123;&#38;", builder.toString());
+
+        builder = new StringBuilder("before ");
+        XMLUtils.escapeElementContent("a<'\"{&>", builder);
+        Assert.assertEquals("before a&#60;'\"{&#38;&#62;", builder.toString());
+    }
+
     @Test
     public void testGetDomDocument()
     {
         // Nothing much that we can test here...
         Assert.assertNotNull(XMLUtils.createDOMDocument());
     }
+
+    @Test
+    public void testTransform()
+    {
+        String xslt = "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+            + "<xsl:output method=\"text\"/><xsl:template match=\"/\">[<xsl:value-of select=\"a\"/>]</xsl:template>"
+            + "</xsl:stylesheet>";
+
+        Assert.assertEquals("[x]", XMLUtils.transform(new StreamSource(new StringReader("<a>x</a>")),
+            new StreamSource(new StringReader(xslt))));
+        // The second call uses the cached compiled stylesheet.
+        Assert.assertEquals("[y]", XMLUtils.transform(new StreamSource(new StringReader("<a>y</a>")),
+            new StreamSource(new StringReader(xslt))));
+        Assert.assertNull(XMLUtils.transform(null, new StreamSource(new StringReader(xslt))));
+    }
+
+    @Test
+    public void testTransformToResult() throws Exception
+    {
+        String xslt = "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+            + "<xsl:output method=\"text\"/><xsl:template match=\"/\">(<xsl:value-of select=\"a\"/>)</xsl:template>"
+            + "</xsl:stylesheet>";
+
+        StringWriter writer = new StringWriter();
+        writer.write("before");
+        XMLUtils.transform(new StreamSource(new StringReader("<a>x</a>")), new StreamSource(new StringReader(xslt)),
+            new StreamResult(writer));
+        Assert.assertEquals("before(x)", writer.toString());
+    }
+
+    @Test
+    public void testTransformWithModifiedStylesheetFile() throws Exception
+    {
+        File file = this.folder.newFile("stylesheet.xsl");
+        String xslt = "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+            + "<xsl:output method=\"text\"/><xsl:template match=\"/\">%s<xsl:value-of select=\"a\"/></xsl:template>"
+            + "</xsl:stylesheet>";
+
+        FileUtils.write(file, String.format(xslt, "first:"), StandardCharsets.UTF_8);
+        file.setLastModified(1000000L);
+        Assert.assertEquals("first:x", XMLUtils.transform(new StreamSource(new StringReader("<a>x</a>")),
+            new StreamSource(file.toURI().toString())));
+
+        FileUtils.write(file, String.format(xslt, "second:"), StandardCharsets.UTF_8);
+        file.setLastModified(2000000L);
+        Assert.assertEquals("second:x", XMLUtils.transform(new StreamSource(new StringReader("<a>x</a>")),
+            new StreamSource(file.toURI().toString())));
+    }
 }
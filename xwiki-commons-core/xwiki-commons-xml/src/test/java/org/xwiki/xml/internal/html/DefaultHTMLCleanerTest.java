@@ -375,6 +375,34 @@ public void verifySpanIsExpanded() throws Exception
         assertHTML("<p><span class=\"fa fa-icon\"></span></p>", "<span class=\"fa fa-icon\" />");
     }
 
+    /**
+     * Verify that the default filters applied in a single traversal give the same result as the filters applied one
+     * after the other.
+     */
+    @Test
+    public void fusedDefaultFilters() throws Exception
+    {
+        String input = "text<p align=\"center\">before<li>item</li>"
+            + "<font color=\"red\" align=\"left\">lost</font></p>"
+            + "<ul><p>not an item</p><li><font size=\"2\"><font face=\"Arial\">nested</font></font></li></ul>"
+            + "<table bgcolor=\"blue\"><tr><td valign=\"top\" align=\"right\"><li>orphan</li></td></tr></table>"
+            + "<ol><ul><li>nested list</li></ul></ol><img align=\"left\"/>";
+
+        HTMLCleanerConfiguration defaultConfiguration = this.mocker.getComponentUnderTest().getDefaultConfiguration();
+        String fused = HTMLUtils.toString(
+            this.mocker.getComponentUnderTest().clean(new StringReader(input), defaultConfiguration));
+
+        // Adding a filter prevents the default filters from being fused. The unique id filter has no effect here.
+        HTMLCleanerConfiguration configuration = this.mocker.getComponentUnderTest().getDefaultConfiguration();
+        List<HTMLFilter> filters = new ArrayList<HTMLFilter>(configuration.getFilters());
+        filters.add(this.mocker.<HTMLFilter>getInstance(HTMLFilter.class, "uniqueId"));
+        configuration.setFilters(filters);
+        String sequential =
+            HTMLUtils.toString(this.mocker.getComponentUnderTest().clean(new StringReader(input), configuration));
+
+        Assert.assertEquals(sequential, fused);
+    }
+
     private void assertHTML(String expected, String actual) throws ComponentLookupException
     {
         Assert.assertEquals(HEADER_FULL + expected + FOOTER,